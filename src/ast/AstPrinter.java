@@ -60,6 +60,72 @@ public class AstPrinter implements Expr.Visitor<String> {
         return "tenary( "+expr.condition.accept(this)+" ){ "+ expr.thenExpr.accept(this)+" else "+expr.elseExpr.accept(this)+" }";
     }
 
+    @Override
+    public String visitAssignExpr(Expr.Assign expr) {
+        String operator = expr.operator == null ? "=" : expr.operator.lexeme;
+        return parenthesize(operator + " " + expr.name.lexeme, expr.value);
+    }
+    @Override
+    public String visitGetExpr(Expr.Get expr) {
+        return parenthesize("." + expr.name.lexeme, expr.object);
+    }
+    @Override
+    public String visitCallExpr(Expr.Call expr) {
+        return parenthesize("call " + expr.callee.accept(this), expr.arguments.toArray(new Expr[0]));
+    }
+    @Override
+    public String visitArrayExpr(Expr.Array expr) {
+        return parenthesize("array", expr.elements.toArray(new Expr[0]));
+    }
+    @Override
+    public String visitJStringExpr(Expr.JString expr) {
+        return '"' + expr.value + '"';
+    }
+    @Override
+    public String visitJCharExpr(Expr.JChar expr) {
+        return "'" + expr.value + "'";
+    }
+    @Override
+    public String visitArrayAccessExpr(Expr.ArrayAccess expr) {
+        return parenthesize("[]", expr.name, expr.index);
+    }
+    @Override
+    public String visitLogicalExpr(Expr.Logical expr) {
+        return parenthesize(expr.operator.lexeme, expr.left, expr.right);
+    }
+    @Override
+    public String visitSetExpr(Expr.Set expr) {
+        return parenthesize("set ." + expr.name.lexeme, expr.object, expr.value);
+    }
+    @Override
+    public String visitSuperExpr(Expr.Super expr) {
+        return "super." + expr.method.lexeme;
+    }
+    @Override
+    public String visitThisExpr(Expr.This expr) {
+        return "this";
+    }
+    @Override
+    public String visitPostfixExpr(Expr.Postfix expr) {
+        return parenthesize("postfix " + expr.operator.lexeme, expr.left);
+    }
+    @Override
+    public String visitVariableExpr(Expr.Variable expr) {
+        return expr.name.lexeme;
+    }
+    @Override
+    public String visitLambdaFunctionExpr(Expr.LambdaFunction expr) {
+        return "<fn anonymous>";
+    }
+    @Override
+    public String visitAnonymousClassExpr(Expr.AnonymousClass expr) {
+        return "<class anonymous>";
+    }
+    @Override
+    public String visitObjectLiteralExpr(Expr.ObjectLiteral expr) {
+        return parenthesize("object", expr.values.toArray(new Expr[0]));
+    }
+
     public static void main(String[] args) {
         Expr expression = new Expr.Binary(
                             new Expr.Unary(
@@ -44,6 +44,9 @@ public abstract class Expr {
 		public final Token name;
 		public final Expr value;
 		public final Token operator;
+		public int depth = -1;
+		public int slot = -1;
+		public boolean captured;
 	}
 	public static class Binary extends Expr {
 		public Binary(Expr left, Token operator, Expr right) {
@@ -86,6 +89,7 @@ public abstract class Expr {
 
 		public final Expr object;
 		public final Token name;
+		public interpreter.klass.PropertyCache cache;
 	}
 	public static class Call extends Expr {
 		public Call(Expr callee, Token paren, List<Expr> arguments) {
@@ -138,6 +142,7 @@ public abstract class Expr {
 		}
 
 		public final String value;
+		public interpreter.string.JLangString string;
 	}
 	public static class JChar extends Expr {
 		public JChar(char value) {
@@ -150,6 +155,7 @@ public abstract class Expr {
 		}
 
 		public final char value;
+		public interpreter.jchar.JLangChar character;
 	}
 	public static class ArrayAccess extends Expr {
 		public ArrayAccess(Expr name, Expr index) {
@@ -196,6 +202,7 @@ public abstract class Expr {
 		public final Expr object;
 		public final Token name;
 		public final Expr value;
+		public interpreter.klass.PropertyCache cache;
 	}
 	public static class Super extends Expr {
 		public Super(Token keyword, Token method) {
@@ -210,6 +217,10 @@ public abstract class Expr {
 
 		public final Token keyword;
 		public final Token method;
+		public int depth = -1;
+		public int slot;
+		public int thisDepth;
+		public int thisSlot;
 	}
 	public static class This extends Expr {
 		public This(Token keyword) {
@@ -222,6 +233,8 @@ public abstract class Expr {
 		}
 
 		public final Token keyword;
+		public int depth = -1;
+		public int slot;
 	}
 	public static class Unary extends Expr {
 		public Unary(Token operator, Expr right) {
@@ -304,6 +317,9 @@ public abstract class Expr {
 		}
 
 		public final Token name;
+		public int depth = -1;
+		public int slot = -1;
+		public boolean captured;
 	}
 	public static class LambdaFunction extends Expr {
 		public LambdaFunction(Token name, List<Token> params, List<Stmt> body) {
@@ -320,6 +336,10 @@ public abstract class Expr {
 		public final Token name;
 		public final List<Token> params;
 		public final List<Stmt> body;
+		public int slotCount;
+		public int[] cells;
+		public int[] captureDepths;
+		public int[] captureSlots;
 	}
 	public static class AnonymousClass extends Expr {
 		public AnonymousClass(Token name, List<Expr.Variable> parents, List<Stmt.Function> methods) {
@@ -7,6 +7,14 @@ import java.util.List;
 
 public class GenerateAST {
     private static void defineType( PrintWriter writer, String baseName, String className, String fieldList) {
+        // Fields after a '|' are filled in later, by the Resolver, by the
+        // tier-2 profiling or by the Interpreter's inline caches, so they stay
+        // mutable and out of the constructor.
+        String resolvedList = null;
+        if (fieldList.contains("|")) {
+            resolvedList = fieldList.split("\\|")[1].trim();
+            fieldList = fieldList.split("\\|")[0].trim();
+        }
         writer.println("\tpublic static class " + className + " extends " + baseName + " {");
         // Constructor.
         writer.println("\t\tpublic " + className + "(" + fieldList + ") {");
@@ -29,6 +37,11 @@ public class GenerateAST {
         for (String field : fields) {
             writer.println("\t\tpublic final " + field + ";");
         }
+        if (resolvedList != null) {
+            for (String field : resolvedList.split(", ")) {
+                writer.println("\t\tpublic " + field + ";");
+            }
+        }
         writer.println("\t}");
     }
     private static void defineVisitor(
@@ -69,53 +82,57 @@ public class GenerateAST {
     public static void main(String[] args) throws Exception {
         System.out.println("Generate AST");
         String outputDir = "F:\\Pro Documents\\Low Level Code\\repos\\jlang\\src\\ast";
+        if (args.length == 1) outputDir = args[0];
         
         defineAst(outputDir, "Expr", Arrays.asList(
-            "Assign : Token name, Expr value, Token operator",
+            "Assign : Token name, Expr value, Token operator | int depth = -1, int slot = -1, boolean captured",
             "Binary : Expr left, Token operator, Expr right",
             "Grouping : Expr expression",
-            "Get : Expr object, Token name",
+            "Get : Expr object, Token name | interpreter.klass.PropertyCache cache",
             "Call : Expr callee, Token paren, List<Expr> arguments",
             "Literal : Object value",
             "Array : List<Expr> elements",
-            "JString : String value",
-            "JChar : char value",
+            "JString : String value | interpreter.string.JLangString string",
+            "JChar : char value | interpreter.jchar.JLangChar character",
             "ArrayAccess : Expr name, Expr index",
             "Logical : Expr left, Token operator, Expr right",
-            "Set : Expr object, Token name, Expr value",
-            "Super : Token keyword, Token method",
-            "This : Token keyword",
+            "Set : Expr object, Token name, Expr value | interpreter.klass.PropertyCache cache",
+            "Super : Token keyword, Token method | int depth = -1, int slot, int thisDepth, int thisSlot",
+            "This : Token keyword | int depth = -1, int slot",
             "Unary : Token operator, Expr right",
             "Postfix : Expr left, Token operator",
             "Block : List<Expr> statements",
             "Comma : Expr left, Expr right",
             "Ternary : Expr condition, Expr thenExpr, Expr elseExpr",
-            "Variable : Token name",
+            "Variable : Token name | int depth = -1, int slot = -1, boolean captured",
             "LambdaFunction : Token name, List<Token> params," +
-                                    " List<Stmt> body",
+                                    " List<Stmt> body | int slotCount, int[] cells," +
+                                    " int[] captureDepths, int[] captureSlots",
             "AnonymousClass : Token name, List<Expr.Variable> parents, List<Stmt.Function> methods",
             "ObjectLiteral : List<Token> keys, List<Expr> values"
 
         ));
 
         defineAst(outputDir, "Stmt", Arrays.asList(
-            "Block : List<Stmt> statements", 
+            "Block : List<Stmt> statements | int slotCount, int[] cells",
             "Class : Token name, List<Expr.Variable> parents," +
-                    " List<Stmt.Function> methods",
+                    " List<Stmt.Function> methods | int slot = -1, boolean captured",
             "Expression : Expr expression",
             "Function : Token name, List<Token> params," +
-                                " List<Stmt> body",
+                                " List<Stmt> body | int slot = -1, int slotCount, int[] cells," +
+                                " int[] captureDepths, int[] captureSlots, boolean captured," +
+                                " int hotness, jit.CompiledCode compiled",
             "If : Expr condition, Stmt thenBranch," +
                                 " Stmt elseBranch",
             "Print : Expr expression",
             "Return : Token keyword, Expr value",
-            "Var : Token name, Expr initializer",
-            "Const : Token name, Expr initializer",
+            "Var : Token name, Expr initializer | int slot = -1, boolean captured",
+            "Const : Token name, Expr initializer | int slot = -1, boolean captured",
             "While : Expr condition, Stmt body",
             "Break : Token keyword",
             "Continue : Token keyword",
             "TryCatch : Stmt tryBlock, List<Catch> catchBlocks, Stmt finallyBlock",
-            "Catch : Token exceptionType, Token variable, Stmt block"
+            "Catch : Token exceptionType, Token variable, Stmt block | boolean captured"
 
 
         ));
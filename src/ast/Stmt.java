@@ -31,6 +31,8 @@ public abstract class Stmt {
 		}
 
 		public final List<Stmt> statements;
+		public int slotCount;
+		public int[] cells;
 	}
 	public static class Class extends Stmt {
 		public Class(Token name, List<Expr.Variable> parents, List<Stmt.Function> methods) {
@@ -47,6 +49,8 @@ public abstract class Stmt {
 		public final Token name;
 		public final List<Expr.Variable> parents;
 		public final List<Stmt.Function> methods;
+		public int slot = -1;
+		public boolean captured;
 	}
 	public static class Expression extends Stmt {
 		public Expression(Expr expression) {
@@ -75,6 +79,14 @@ public abstract class Stmt {
 		public final Token name;
 		public final List<Token> params;
 		public final List<Stmt> body;
+		public int slot = -1;
+		public int slotCount;
+		public int[] cells;
+		public int[] captureDepths;
+		public int[] captureSlots;
+		public boolean captured;
+		public int hotness;
+		public jit.CompiledCode compiled;
 	}
 	public static class If extends Stmt {
 		public If(Expr condition, Stmt thenBranch, Stmt elseBranch) {
@@ -131,6 +143,8 @@ public abstract class Stmt {
 
 		public final Token name;
 		public final Expr initializer;
+		public int slot = -1;
+		public boolean captured;
 	}
 	public static class Const extends Stmt {
 		public Const(Token name, Expr initializer) {
@@ -145,6 +159,8 @@ public abstract class Stmt {
 
 		public final Token name;
 		public final Expr initializer;
+		public int slot = -1;
+		public boolean captured;
 	}
 	public static class While extends Stmt {
 		public While(Expr condition, Stmt body) {
@@ -215,6 +231,7 @@ public abstract class Stmt {
 		public final Token exceptionType;
 		public final Token variable;
 		public final Stmt block;
+		public boolean captured;
 	}
 
 	public abstract <R> R accept(Visitor<R> visitor);
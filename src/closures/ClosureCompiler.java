@@ -0,0 +1,859 @@
+package closures;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ast.Expr;
+import ast.Stmt;
+import enivirement.Cell;
+import enivirement.Environment;
+import interpreter.Completion;
+import interpreter.Interpreter;
+import interpreter.Output;
+import interpreter.array.JLangArray;
+import interpreter.callable.JLangFunction;
+import interpreter.errors.RuntimeError;
+import interpreter.jchar.JLangChar;
+import interpreter.klass.JLangBaseObject;
+import interpreter.klass.JLangClass;
+import interpreter.klass.JLangInstance;
+import interpreter.klass.PropertyCache;
+import interpreter.string.JLangString;
+import tokenizer.Token;
+import tokenizer.TokenType;
+
+// Turns the resolved AST into lambdas, once per program. The visitor and the
+// operator switches only run here: every lambda already knows which
+// operator it applies, which slot and depth it reads and how many
+// arguments it passes, so running the program never goes back to the AST.
+//
+// Locals are kept boxed in the frame's slots; nothing here uses the
+// Environment's numbers array.
+class ClosureCompiler implements Expr.Visitor<Evaluator>, Stmt.Visitor<Executor> {
+    private final ClosureEngine engine;
+    private final Environment globals;
+
+    ClosureCompiler(ClosureEngine engine) {
+        this.engine = engine;
+        this.globals = engine.globals;
+    }
+
+    Executor[] compile(List<Stmt> statements) {
+        Executor[] executors = new Executor[statements.size()];
+        for (int i = 0; i < executors.length; i++) {
+            executors[i] = compile(statements.get(i));
+        }
+        return executors;
+    }
+
+    private Executor compile(Stmt stmt) {
+        return stmt == null ? null : stmt.accept(this);
+    }
+
+    private Evaluator compile(Expr expr) {
+        return expr == null ? null : expr.accept(this);
+    }
+
+    private Evaluator[] compileAll(List<? extends Expr> expressions) {
+        Evaluator[] evaluators = new Evaluator[expressions.size()];
+        for (int i = 0; i < evaluators.length; i++) {
+            evaluators[i] = compile(expressions.get(i));
+        }
+        return evaluators;
+    }
+
+    private CompiledFunction function(Stmt.Function function, boolean isInitializer) {
+        return new CompiledFunction(function.name.lexeme, function.params.size(),
+            function.slotCount, function.cells, function.captureDepths, function.captureSlots,
+            isInitializer, engine, compile(function.body));
+    }
+
+    private Map<String, CompiledFunction> methods(List<Stmt.Function> methods, boolean initializers) {
+        Map<String, CompiledFunction> compiled = new HashMap<>();
+        for (Stmt.Function method : methods) {
+            compiled.put(method.name.lexeme, function(method, initializers
+                && method.name.lexeme.equals(JLangClass.CLASS_INITIALIZATION_FUNCTION_NAME)));
+        }
+        return compiled;
+    }
+
+    private static Token[] names(List<Expr.Variable> variables) {
+        Token[] names = new Token[variables.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = variables.get(i).name;
+        }
+        return names;
+    }
+
+    // The environment holding a local, picked without a loop for the
+    // depths that come up most.
+    private static Evaluator local(int depth, int slot) {
+        switch (depth) {
+            case 0: return frame -> frame.slots[slot];
+            case 1: return frame -> frame.enclosing.slots[slot];
+            default: return frame -> frame.ancestor(depth).slots[slot];
+        }
+    }
+
+    // The value of a captured variable, kept in a cell.
+    private static Evaluator cell(int depth, int slot) {
+        switch (depth) {
+            case 0: return frame -> ((Cell) frame.slots[slot]).value;
+            case 1: return frame -> ((Cell) frame.enclosing.slots[slot]).value;
+            default: return frame -> frame.getCellAt(depth, slot);
+        }
+    }
+
+    private static Executor run(Executor[] statements) {
+        if (statements.length == 1) return statements[0];
+        return frame -> {
+            for (int i = 0; i < statements.length; i++) {
+                Completion completion = statements[i].execute(frame);
+                if (completion != Completion.NORMAL) return completion;
+            }
+            return Completion.NORMAL;
+        };
+    }
+
+    private Evaluator increment(Token operator, Expr operand) {
+        double delta = operator.type == TokenType.INCREMENT ? 1.0 : -1.0;
+        // prefix and postfix both leave the old value behind, as they do in the Interpreter
+        if (operand instanceof Expr.Variable) {
+            Expr.Variable variable = (Expr.Variable) operand;
+            int depth = variable.depth;
+            int slot = variable.slot;
+            if (variable.captured) {
+                return frame -> {
+                    Cell cell = (Cell) frame.ancestor(depth).slots[slot];
+                    Object current = cell.value;
+                    Operations.checkNumberOperand(operator, current);
+                    cell.value = (double) current + delta;
+                    return current;
+                };
+            }
+            if (depth != -1) {
+                return frame -> {
+                    Environment scope = frame.ancestor(depth);
+                    Object current = scope.slots[slot];
+                    Operations.checkNumberOperand(operator, current);
+                    scope.slots[slot] = (double) current + delta;
+                    return current;
+                };
+            }
+            Token name = variable.name;
+            return frame -> {
+                Object current = globals.get(name);
+                Operations.checkNumberOperand(operator, current);
+                globals.assign(name, (double) current + delta);
+                return current;
+            };
+        }
+        Evaluator target = compile(operand);
+        return frame -> {
+            Operations.checkNumberOperand(operator, target.evaluate(frame));
+            throw new RuntimeException("The operand is not a variable and cannot be assigned a new value.");
+        };
+    }
+
+    @Override
+    public Evaluator visitAssignExpr(Expr.Assign expr) {
+        Evaluator value = compile(expr.value);
+        Token name = expr.name;
+        int depth = expr.depth;
+        int slot = expr.slot;
+        if (expr.operator != null && expr.operator.type != TokenType.EQUAL) {
+            Token operator = expr.operator;
+            if (expr.captured) {
+                return frame -> {
+                    Object operand = value.evaluate(frame);
+                    Cell cell = (Cell) frame.ancestor(depth).slots[slot];
+                    return cell.value = Operations.compound(operator, cell.value, operand);
+                };
+            }
+            if (depth != -1) {
+                return frame -> {
+                    Object operand = value.evaluate(frame);
+                    Environment scope = frame.ancestor(depth);
+                    Object result = Operations.compound(operator, scope.slots[slot], operand);
+                    scope.slots[slot] = result;
+                    return result;
+                };
+            }
+            return frame -> {
+                Object operand = value.evaluate(frame);
+                Object result = Operations.compound(operator, globals.get(name), operand);
+                globals.assign(name, result);
+                return result;
+            };
+        }
+        if (expr.captured) {
+            return frame -> {
+                Object result = value.evaluate(frame);
+                frame.assignCellAt(depth, slot, result);
+                return result;
+            };
+        }
+        switch (depth) {
+            case -1:
+                return frame -> {
+                    Object result = value.evaluate(frame);
+                    globals.assign(name, result);
+                    return result;
+                };
+            case 0: return frame -> frame.slots[slot] = value.evaluate(frame);
+            case 1: return frame -> frame.enclosing.slots[slot] = value.evaluate(frame);
+            default: return frame -> frame.ancestor(depth).slots[slot] = value.evaluate(frame);
+        }
+    }
+
+    @Override
+    public Evaluator visitBinaryExpr(Expr.Binary expr) {
+        Token operator = expr.operator;
+        Evaluator left = compile(expr.left);
+        if (expr.right instanceof Expr.Literal && ((Expr.Literal) expr.right).value instanceof Double) {
+            Evaluator constant = binaryConstant(operator, left, (Double) ((Expr.Literal) expr.right).value);
+            if (constant != null) return constant;
+        }
+        Evaluator right = compile(expr.right);
+        switch (operator.type) {
+            case PLUS:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    Object b = right.evaluate(frame);
+                    if (a instanceof Double && b instanceof Double) return (double) a + (double) b;
+                    return Operations.binary(operator, a, b);
+                };
+            case MINUS:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    Object b = right.evaluate(frame);
+                    if (a instanceof Double && b instanceof Double) return (double) a - (double) b;
+                    return Operations.binary(operator, a, b);
+                };
+            case STAR:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    Object b = right.evaluate(frame);
+                    if (a instanceof Double && b instanceof Double) return (double) a * (double) b;
+                    return Operations.binary(operator, a, b);
+                };
+            case SLASH:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    Object b = right.evaluate(frame);
+                    // division by zero is left to the slow path, which throws
+                    if (a instanceof Double && b instanceof Double && (double) b != 0.0) {
+                        return (double) a / (double) b;
+                    }
+                    return Operations.binary(operator, a, b);
+                };
+            case LESS:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    Object b = right.evaluate(frame);
+                    if (a instanceof Double && b instanceof Double) return (double) a < (double) b;
+                    return Operations.binary(operator, a, b);
+                };
+            case LESS_EQUAL:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    Object b = right.evaluate(frame);
+                    if (a instanceof Double && b instanceof Double) return (double) a <= (double) b;
+                    return Operations.binary(operator, a, b);
+                };
+            case GREATER:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    Object b = right.evaluate(frame);
+                    if (a instanceof Double && b instanceof Double) return (double) a > (double) b;
+                    return Operations.binary(operator, a, b);
+                };
+            case GREATER_EQUAL:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    Object b = right.evaluate(frame);
+                    if (a instanceof Double && b instanceof Double) return (double) a >= (double) b;
+                    return Operations.binary(operator, a, b);
+                };
+            case EQUAL_EQUAL:
+                return frame -> Interpreter.isEqual(left.evaluate(frame), right.evaluate(frame));
+            case BANG_EQUAL:
+                return frame -> !Interpreter.isEqual(left.evaluate(frame), right.evaluate(frame));
+            default:
+                return frame -> Operations.binary(operator, left.evaluate(frame), right.evaluate(frame));
+        }
+    }
+
+    // x + 1, i < n - 1 and the like: the right operand is a number known
+    // here, so only the left one is evaluated and checked. Returns null for
+    // the operators that have no such lambda.
+    private static Evaluator binaryConstant(Token operator, Evaluator left, Double boxed) {
+        double right = boxed;
+        switch (operator.type) {
+            case PLUS:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    if (a instanceof Double) return (double) a + right;
+                    return Operations.binary(operator, a, boxed);
+                };
+            case MINUS:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    if (a instanceof Double) return (double) a - right;
+                    return Operations.binary(operator, a, boxed);
+                };
+            case STAR:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    if (a instanceof Double) return (double) a * right;
+                    return Operations.binary(operator, a, boxed);
+                };
+            case LESS:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    if (a instanceof Double) return (double) a < right;
+                    return Operations.binary(operator, a, boxed);
+                };
+            case LESS_EQUAL:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    if (a instanceof Double) return (double) a <= right;
+                    return Operations.binary(operator, a, boxed);
+                };
+            case GREATER:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    if (a instanceof Double) return (double) a > right;
+                    return Operations.binary(operator, a, boxed);
+                };
+            case GREATER_EQUAL:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    if (a instanceof Double) return (double) a >= right;
+                    return Operations.binary(operator, a, boxed);
+                };
+            // Double.equals() semantics, as Interpreter.isEqual() has them
+            case EQUAL_EQUAL:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    if (a instanceof Double) return Double.compare((double) a, right) == 0;
+                    return Interpreter.isEqual(a, boxed);
+                };
+            case BANG_EQUAL:
+                return frame -> {
+                    Object a = left.evaluate(frame);
+                    if (a instanceof Double) return Double.compare((double) a, right) != 0;
+                    return !Interpreter.isEqual(a, boxed);
+                };
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public Evaluator visitGroupingExpr(Expr.Grouping expr) {
+        return compile(expr.expression);
+    }
+
+    @Override
+    public Evaluator visitGetExpr(Expr.Get expr) {
+        PropertyCache cache = new PropertyCache(expr.name);
+        Evaluator object = compile(expr.object);
+        return frame -> cache.get(object.evaluate(frame));
+    }
+
+    @Override
+    public Evaluator visitCallExpr(Expr.Call expr) {
+        if (expr.callee instanceof Expr.Get) return invoke(expr, (Expr.Get) expr.callee);
+        Token paren = expr.paren;
+        Interpreter interpreter = engine.interpreter;
+        Evaluator callee = compile(expr.callee);
+        Evaluator[] arguments = compileAll(expr.arguments);
+        int count = arguments.length;
+        return frame -> {
+            Object function = callee.evaluate(frame);
+            if (function instanceof ClosureFunction) {
+                ClosureFunction closure = (ClosureFunction) function;
+                if (closure.function.arity == count) {
+                    // the arguments go straight into the parameter slots of the new frame
+                    Environment callFrame = new Environment(closure.closure, closure.function.slotCount,
+                        closure.function.cells);
+                    for (int i = 0; i < count; i++) {
+                        callFrame.defineArgument(i, arguments[i].evaluate(frame));
+                    }
+                    return closure.invoke(callFrame);
+                }
+            }
+            Object[] values = new Object[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = arguments[i].evaluate(frame);
+            }
+            return Operations.call(paren, interpreter, function, values);
+        };
+    }
+
+    // obj.name(...): a method found on an instance runs in a frame that gets
+    // the receiver directly, a bound method is only made for other callees.
+    private Evaluator invoke(Expr.Call expr, Expr.Get get) {
+        Token paren = expr.paren;
+        Interpreter interpreter = engine.interpreter;
+        PropertyCache cache = new PropertyCache(get.name);
+        Evaluator object = compile(get.object);
+        Evaluator[] arguments = compileAll(expr.arguments);
+        int count = arguments.length;
+        return frame -> {
+            Object receiver = object.evaluate(frame);
+            JLangFunction method = cache.method(receiver);
+            if (method instanceof ClosureFunction) {
+                ClosureFunction closure = (ClosureFunction) method;
+                if (closure.function.arity == count) {
+                    Environment callFrame = closure.newFrame(receiver);
+                    for (int i = 0; i < count; i++) {
+                        callFrame.defineArgument(i, arguments[i].evaluate(frame));
+                    }
+                    return closure.invoke(callFrame);
+                }
+            }
+            Object function = method != null ? method.bind((JLangInstance) receiver) : cache.get(receiver);
+            Object[] values = new Object[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = arguments[i].evaluate(frame);
+            }
+            return Operations.call(paren, interpreter, function, values);
+        };
+    }
+
+    @Override
+    public Evaluator visitLiteralExpr(Expr.Literal expr) {
+        Object value = expr.value;
+        return frame -> value;
+    }
+
+    @Override
+    public Evaluator visitArrayExpr(Expr.Array expr) {
+        Evaluator[] elements = compileAll(expr.elements);
+        return frame -> {
+            Object[] values = new Object[elements.length];
+            for (int i = 0; i < elements.length; i++) {
+                values[i] = elements[i].evaluate(frame);
+            }
+            return new JLangArray(values);
+        };
+    }
+
+    @Override
+    public Evaluator visitJStringExpr(Expr.JString expr) {
+        JLangString value = new JLangString(expr.value);
+        return frame -> value;
+    }
+
+    @Override
+    public Evaluator visitJCharExpr(Expr.JChar expr) {
+        JLangChar value = JLangChar.of(expr.value);
+        return frame -> value;
+    }
+
+    @Override
+    public Evaluator visitArrayAccessExpr(Expr.ArrayAccess expr) {
+        Evaluator array = compile(expr.name);
+        Evaluator index = compile(expr.index);
+        return frame -> {
+            Object target = array.evaluate(frame);
+            return Operations.index(target, index.evaluate(frame));
+        };
+    }
+
+    @Override
+    public Evaluator visitLogicalExpr(Expr.Logical expr) {
+        Evaluator left = compile(expr.left);
+        Evaluator right = compile(expr.right);
+        if (expr.operator.type == TokenType.OR) {
+            return frame -> {
+                Object value = left.evaluate(frame);
+                return Interpreter.isTruthy(value) ? value : right.evaluate(frame);
+            };
+        }
+        return frame -> {
+            Object value = left.evaluate(frame);
+            return Interpreter.isTruthy(value) ? right.evaluate(frame) : value;
+        };
+    }
+
+    @Override
+    public Evaluator visitSetExpr(Expr.Set expr) {
+        Token name = expr.name;
+        PropertyCache cache = new PropertyCache(name);
+        Evaluator object = compile(expr.object);
+        Evaluator value = compile(expr.value);
+        return frame -> {
+            Object target = object.evaluate(frame);
+            if (!(target instanceof JLangInstance)) {
+                throw new RuntimeError(name, "Only instances have fields.");
+            }
+            Object result = value.evaluate(frame);
+            cache.set(target, result);
+            return result;
+        };
+    }
+
+    @Override
+    public Evaluator visitSuperExpr(Expr.Super expr) {
+        Token method = expr.method;
+        int depth = expr.depth;
+        int slot = expr.slot;
+        int thisDepth = expr.thisDepth;
+        int thisSlot = expr.thisSlot;
+        return frame -> {
+            JLangClass klass = (JLangClass) frame.getAt(depth, slot);
+            JLangInstance object = (JLangInstance) frame.getAt(thisDepth, thisSlot);
+            JLangFunction found = klass.findSuperMethod(method.lexeme);
+            if (found != null) return found.bind(object);
+            throw new RuntimeError(method, "Undefined method '" + method.lexeme + "' for superclass.");
+        };
+    }
+
+    @Override
+    public Evaluator visitThisExpr(Expr.This expr) {
+        // 'this' is the only slot of the scope bind() creates, or a slot of
+        // the closure
+        if (expr.depth != -1) return local(expr.depth, expr.slot);
+        Token keyword = expr.keyword;
+        return frame -> globals.get(keyword);
+    }
+
+    @Override
+    public Evaluator visitUnaryExpr(Expr.Unary expr) {
+        Token operator = expr.operator;
+        switch (operator.type) {
+            case BANG: {
+                Evaluator operand = compile(expr.right);
+                return frame -> !Interpreter.isTruthy(operand.evaluate(frame));
+            }
+            case MINUS: {
+                Evaluator operand = compile(expr.right);
+                return frame -> {
+                    Object value = operand.evaluate(frame);
+                    Operations.checkNumberOperand(operator, value);
+                    return -(double) value;
+                };
+            }
+            default:
+                return increment(operator, expr.right);
+        }
+    }
+
+    @Override
+    public Evaluator visitPostfixExpr(Expr.Postfix expr) {
+        return increment(expr.operator, expr.left);
+    }
+
+    // Block and comma expressions print their value, as they do in the Interpreter.
+    private static Evaluator sequence(Evaluator[] expressions) {
+        return frame -> {
+            Object result = null;
+            for (int i = 0; i < expressions.length; i++) {
+                result = expressions[i].evaluate(frame);
+            }
+            Output.println(Interpreter.stringify(result));
+            return result;
+        };
+    }
+
+    @Override
+    public Evaluator visitBlockExpr(Expr.Block expr) {
+        return sequence(compileAll(expr.statements));
+    }
+
+    @Override
+    public Evaluator visitCommaExpr(Expr.Comma expr) {
+        return sequence(new Evaluator[] { compile(expr.left), compile(expr.right) });
+    }
+
+    @Override
+    public Evaluator visitTernaryExpr(Expr.Ternary expr) {
+        Evaluator condition = compile(expr.condition);
+        Evaluator thenExpr = compile(expr.thenExpr);
+        Evaluator elseExpr = compile(expr.elseExpr);
+        return frame -> Interpreter.isTruthy(condition.evaluate(frame))
+            ? thenExpr.evaluate(frame) : elseExpr.evaluate(frame);
+    }
+
+    @Override
+    public Evaluator visitVariableExpr(Expr.Variable expr) {
+        if (expr.captured) return cell(expr.depth, expr.slot);
+        if (expr.depth != -1) return local(expr.depth, expr.slot);
+        Token name = expr.name;
+        return frame -> globals.get(name);
+    }
+
+    @Override
+    public Evaluator visitLambdaFunctionExpr(Expr.LambdaFunction expr) {
+        CompiledFunction function = new CompiledFunction(null, expr.params.size(),
+            expr.slotCount, expr.cells, expr.captureDepths, expr.captureSlots, false, engine,
+            compile(expr.body));
+        return frame -> function.close(frame);
+    }
+
+    @Override
+    public Evaluator visitAnonymousClassExpr(Expr.AnonymousClass expr) {
+        Token[] parentNames = names(expr.parents);
+        Evaluator[] parents = compileAll(expr.parents);
+        Map<String, CompiledFunction> methods = methods(expr.methods, false);
+        return frame -> {
+            List<JLangClass> superclasses = Operations.superclasses(parentNames, parents, frame);
+            Map<String, JLangFunction> table = new HashMap<>();
+            for (Map.Entry<String, CompiledFunction> method : methods.entrySet()) {
+                table.put(method.getKey(), method.getValue().close(frame));
+            }
+            for (JLangClass superclass : superclasses) {
+                for (Map.Entry<String, JLangFunction> method : superclass.methods.entrySet()) {
+                    table.putIfAbsent(method.getKey(), method.getValue());
+                }
+            }
+            return new JLangClass("AnonymousClass", superclasses, table);
+        };
+    }
+
+    @Override
+    public Evaluator visitObjectLiteralExpr(Expr.ObjectLiteral expr) {
+        Token[] keys = new Token[expr.keys.size()];
+        for (int i = 0; i < keys.length; i++) {
+            Token key = expr.keys.get(i);
+            keys[i] = new Token(TokenType.IDENTIFIER, key.lexeme, null, key.line);
+        }
+        Evaluator[] values = compileAll(expr.values);
+        return frame -> {
+            JLangBaseObject object = new JLangBaseObject((JLangClass) globals.valueOf("Object"));
+            for (int i = 0; i < keys.length; i++) {
+                object.set(keys[i], values[i].evaluate(frame));
+            }
+            return object;
+        };
+    }
+
+    @Override
+    public Executor visitBlockStmt(Stmt.Block stmt) {
+        Executor body = run(compile(stmt.statements));
+        int slotCount = stmt.slotCount;
+        int[] cells = stmt.cells;
+        // a block that declares nothing runs in the enclosing frame
+        if (slotCount == 0) return body;
+        return frame -> body.execute(new Environment(frame, slotCount, cells));
+    }
+
+    @Override
+    public Executor visitClassStmt(Stmt.Class stmt) {
+        Token name = stmt.name;
+        int slot = stmt.slot;
+        boolean captured = stmt.captured;
+        Token[] parentNames = names(stmt.parents);
+        Evaluator[] parents = compileAll(stmt.parents);
+        Map<String, CompiledFunction> methods = methods(stmt.methods, true);
+        return frame -> {
+            if (slot == -1) frame.define(name.lexeme, null);
+            List<JLangClass> superclasses = Operations.superclasses(parentNames, parents, frame);
+
+            // the methods capture the class for their super lookups from one scope holding it
+            JLangClass klass = new JLangClass(name.lexeme, superclasses, new HashMap<>());
+            Environment environment = frame;
+            if (!superclasses.isEmpty()) {
+                environment = new Environment(frame, 1);
+                environment.define(0, klass);
+            }
+            for (Map.Entry<String, CompiledFunction> method : methods.entrySet()) {
+                klass.defineMethod(method.getKey(), method.getValue().close(environment));
+            }
+
+            if (captured) {
+                frame.defineCell(slot, klass);
+            } else if (slot != -1) {
+                frame.define(slot, klass);
+            } else {
+                frame.assign(name, klass);
+            }
+            return Completion.NORMAL;
+        };
+    }
+
+    @Override
+    public Executor visitExpressionStmt(Stmt.Expression stmt) {
+        Evaluator expression = compile(stmt.expression);
+        return frame -> {
+            expression.evaluate(frame);
+            return Completion.NORMAL;
+        };
+    }
+
+    @Override
+    public Executor visitFunctionStmt(Stmt.Function stmt) {
+        CompiledFunction function = function(stmt, false);
+        int slot = stmt.slot;
+        if (stmt.captured) {
+            return frame -> {
+                frame.defineCell(slot, function.close(frame));
+                return Completion.NORMAL;
+            };
+        }
+        if (slot != -1) {
+            return frame -> {
+                frame.slots[slot] = function.close(frame);
+                return Completion.NORMAL;
+            };
+        }
+        String name = stmt.name.lexeme;
+        return frame -> {
+            frame.define(name, function.close(frame));
+            return Completion.NORMAL;
+        };
+    }
+
+    @Override
+    public Executor visitIfStmt(Stmt.If stmt) {
+        Evaluator condition = compile(stmt.condition);
+        Executor thenBranch = compile(stmt.thenBranch);
+        Executor elseBranch = compile(stmt.elseBranch);
+        if (elseBranch == null) {
+            return frame -> Interpreter.isTruthy(condition.evaluate(frame))
+                ? thenBranch.execute(frame) : Completion.NORMAL;
+        }
+        return frame -> Interpreter.isTruthy(condition.evaluate(frame))
+            ? thenBranch.execute(frame) : elseBranch.execute(frame);
+    }
+
+    @Override
+    public Executor visitPrintStmt(Stmt.Print stmt) {
+        Evaluator expression = compile(stmt.expression);
+        return frame -> {
+            Output.println(Interpreter.stringify(expression.evaluate(frame)));
+            return Completion.NORMAL;
+        };
+    }
+
+    @Override
+    public Executor visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.value == null) {
+            return frame -> {
+                engine.returnValue = null;
+                return Completion.RETURN;
+            };
+        }
+        Evaluator value = compile(stmt.value);
+        return frame -> {
+            engine.returnValue = value.evaluate(frame);
+            return Completion.RETURN;
+        };
+    }
+
+    private Executor declaration(Token name, int slot, boolean captured, boolean isConstant,
+                                 Expr initializer) {
+        Evaluator value = initializer == null ? frame -> null : compile(initializer);
+        if (captured) {
+            return frame -> {
+                frame.defineCell(slot, value.evaluate(frame));
+                return Completion.NORMAL;
+            };
+        }
+        if (slot != -1) {
+            return frame -> {
+                frame.slots[slot] = value.evaluate(frame);
+                return Completion.NORMAL;
+            };
+        }
+        String global = name.lexeme;
+        if (isConstant) {
+            return frame -> {
+                frame.defineConst(global, value.evaluate(frame));
+                return Completion.NORMAL;
+            };
+        }
+        return frame -> {
+            frame.define(global, value.evaluate(frame));
+            return Completion.NORMAL;
+        };
+    }
+
+    @Override
+    public Executor visitVarStmt(Stmt.Var stmt) {
+        return declaration(stmt.name, stmt.slot, stmt.captured, false, stmt.initializer);
+    }
+
+    @Override
+    public Executor visitConstStmt(Stmt.Const stmt) {
+        return declaration(stmt.name, stmt.slot, stmt.captured, true, stmt.initializer);
+    }
+
+    @Override
+    public Executor visitWhileStmt(Stmt.While stmt) {
+        Evaluator condition = compile(stmt.condition);
+        Executor body = compile(stmt.body);
+        return frame -> {
+            while (Interpreter.isTruthy(condition.evaluate(frame))) {
+                Completion completion = body.execute(frame);
+                // CONTINUE just moves on to the next iteration
+                if (completion == Completion.BREAK) break;
+                if (completion == Completion.RETURN) return completion;
+            }
+            return Completion.NORMAL;
+        };
+    }
+
+    @Override
+    public Executor visitBreakStmt(Stmt.Break stmt) {
+        return frame -> Completion.BREAK;
+    }
+
+    @Override
+    public Executor visitContinueStmt(Stmt.Continue stmt) {
+        return frame -> Completion.CONTINUE;
+    }
+
+    @Override
+    public Executor visitTryCatchStmt(Stmt.TryCatch stmt) {
+        Executor tryBlock = compile(stmt.tryBlock);
+        // simple class names of the exceptions each catch block handles
+        String[] exceptionTypes = new String[stmt.catchBlocks.size()];
+        Executor[] catchBlocks = new Executor[exceptionTypes.length];
+        boolean[] captured = new boolean[exceptionTypes.length];
+        for (int i = 0; i < exceptionTypes.length; i++) {
+            exceptionTypes[i] = stmt.catchBlocks.get(i).exceptionType.lexeme;
+            catchBlocks[i] = compile(stmt.catchBlocks.get(i).block);
+            captured[i] = stmt.catchBlocks.get(i).captured;
+        }
+        Executor finallyBlock = compile(stmt.finallyBlock);
+        return frame -> {
+            Completion completion = Completion.NORMAL;
+            try {
+                completion = tryBlock.execute(frame);
+            } catch (RuntimeException ex) {
+                int handler = -1;
+                for (int i = 0; i < exceptionTypes.length; i++) {
+                    if (ex.getClass().getSimpleName().equals(exceptionTypes[i])) {
+                        handler = i;
+                        break;
+                    }
+                }
+                if (handler == -1) throw ex;
+                // the exception variable gets a scope of its own
+                Environment catchFrame = new Environment(frame, 1);
+                catchFrame.define(0, captured[handler] ? new Cell(ex) : ex);
+                completion = catchBlocks[handler].execute(catchFrame);
+            } finally {
+                if (finallyBlock != null) {
+                    Object pendingReturn = engine.returnValue;
+                    Completion finallyCompletion = finallyBlock.execute(frame);
+                    // an abrupt finally block wins over the try block
+                    if (finallyCompletion != Completion.NORMAL) return finallyCompletion;
+                    engine.returnValue = pendingReturn;
+                }
+            }
+            return completion;
+        };
+    }
+
+    @Override
+    public Executor visitCatchStmt(Stmt.Catch stmt) {
+        // Catch clauses are compiled by visitTryCatchStmt.
+        return null;
+    }
+}
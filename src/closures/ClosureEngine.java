@@ -0,0 +1,41 @@
+package closures;
+
+import java.util.List;
+
+import ast.Stmt;
+import enivirement.Environment;
+import interpreter.Interpreter;
+import interpreter.errors.RuntimeError;
+import main.JLang;
+
+// Runs programs as trees of lambdas made by the ClosureCompiler. Like
+// nodes.NodeEngine it shares the globals and the built-ins of the
+// Interpreter it is created from.
+public class ClosureEngine {
+    final Interpreter interpreter;
+    final Environment globals;
+    // value of the return statement that is unwinding the current call
+    Object returnValue = null;
+
+    public ClosureEngine(Interpreter interpreter) {
+        this.interpreter = interpreter;
+        this.globals = interpreter.globals;
+    }
+
+    public void interpret(List<Stmt> statements) {
+        Executor[] program = new ClosureCompiler(this).compile(statements);
+        try {
+            for (Executor statement : program) {
+                statement.execute(globals);
+            }
+        } catch (RuntimeError error) {
+            JLang.runtimeError(error);
+        }
+    }
+
+    Object takeReturnValue() {
+        Object value = returnValue;
+        returnValue = null;
+        return value;
+    }
+}
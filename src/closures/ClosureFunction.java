@@ -0,0 +1,91 @@
+package closures;
+
+import java.util.List;
+
+import enivirement.Environment;
+import interpreter.Completion;
+import interpreter.Interpreter;
+import interpreter.callable.JLangFunction;
+import interpreter.klass.JLangObject;
+
+// A function of the closure engine together with the variables it captures. Like nodes.NodeFunction it extends JLangFunction so methods fit in
+// the usual JLangClass method tables and built-ins can call back into it.
+public class ClosureFunction extends JLangFunction {
+    final CompiledFunction function;
+    final Environment closure;
+
+    ClosureFunction(CompiledFunction function, Environment closure) {
+        super(null, closure, function.isInitializer);
+        this.function = function;
+        this.closure = closure;
+    }
+
+    @Override
+    public ClosureFunction bind(JLangObject instance) {
+        Environment environment = new Environment(closure, 1);
+        environment.define(0, instance);
+        return new ClosureFunction(function, environment);
+    }
+
+    @Override
+    public int arity() {
+        return function.arity;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        Environment frame = new Environment(closure, function.slotCount, function.cells);
+        for (int i = 0; i < function.arity; i++) {
+            frame.defineArgument(i, arguments.get(i));
+        }
+        return invoke(frame);
+    }
+
+    @Override
+    public Environment newFrame(Object receiver) {
+        Environment environment = new Environment(closure, 1);
+        environment.define(0, receiver);
+        return new Environment(environment, function.slotCount, function.cells);
+    }
+
+    @Override
+    public Object callOn(Interpreter interpreter, Object receiver, Object[] arguments) {
+        Environment frame = newFrame(receiver);
+        for (int i = 0; i < arguments.length; i++) {
+            frame.defineArgument(i, arguments[i]);
+        }
+        return invoke(frame);
+    }
+
+    // Runs the body in a frame whose parameter slots are already filled in.
+    Object invoke(Environment frame) {
+        Completion completion = function.execute(frame);
+        if (function.isInitializer) {
+            function.engine.takeReturnValue();
+            // 'this', from the closure of a bound method or the scope newFrame() added
+            return frame.enclosing.getAt(0, 0);
+        }
+        if (completion == Completion.RETURN) return function.engine.takeReturnValue();
+        return null;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments) {
+        Environment frame = new Environment(closure, function.slotCount, function.cells);
+        for (int i = 0; i < arguments.length; i++) {
+            frame.defineArgument(i, arguments[i]);
+        }
+        return invoke(frame);
+    }
+
+    @Override
+    public String typeName() {
+        return function.name == null ? "JLangAnonymousFunction" : "JLangFunction";
+    }
+
+    @Override
+    public String toString() {
+        if (function.name == null) return "<fn anonymous >";
+        return "<fn " + function.name + ">";
+    }
+}
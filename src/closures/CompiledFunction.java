@@ -0,0 +1,47 @@
+package closures;
+
+import enivirement.Environment;
+import interpreter.Completion;
+
+// The compiled body of a function or lambda, shared by every closure made
+// from the declaration.
+final class CompiledFunction {
+    // null for lambdas
+    final String name;
+    final int arity;
+    final int slotCount;
+    // slots holding cells, null for none
+    final int[] cells;
+    // where the closure finds the variables it captures
+    final int[] captureDepths;
+    final int[] captureSlots;
+    final boolean isInitializer;
+    final ClosureEngine engine;
+    final Executor[] body;
+
+    CompiledFunction(String name, int arity, int slotCount, int[] cells, int[] captureDepths,
+                     int[] captureSlots, boolean isInitializer, ClosureEngine engine, Executor[] body) {
+        this.name = name;
+        this.arity = arity;
+        this.slotCount = slotCount;
+        this.cells = cells;
+        this.captureDepths = captureDepths;
+        this.captureSlots = captureSlots;
+        this.isInitializer = isInitializer;
+        this.engine = engine;
+        this.body = body;
+    }
+
+    // A closure of this function created in the given frame.
+    ClosureFunction close(Environment frame) {
+        return new ClosureFunction(this, frame.capture(captureDepths, captureSlots));
+    }
+
+    Completion execute(Environment frame) {
+        for (int i = 0; i < body.length; i++) {
+            Completion completion = body[i].execute(frame);
+            if (completion != Completion.NORMAL) return completion;
+        }
+        return Completion.NORMAL;
+    }
+}
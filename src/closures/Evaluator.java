@@ -0,0 +1,10 @@
+package closures;
+
+import enivirement.Environment;
+
+// A compiled expression. Everything that can be decided from the AST has
+// been decided by the ClosureCompiler when the lambda was made.
+@FunctionalInterface
+interface Evaluator {
+    Object evaluate(Environment frame);
+}
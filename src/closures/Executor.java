@@ -0,0 +1,10 @@
+package closures;
+
+import enivirement.Environment;
+import interpreter.Completion;
+
+// A compiled statement.
+@FunctionalInterface
+interface Executor {
+    Completion execute(Environment frame);
+}
@@ -0,0 +1,182 @@
+package closures;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import enivirement.Environment;
+import interpreter.Interpreter;
+import interpreter.array.JLangArray;
+import interpreter.callable.JLangCallable;
+import interpreter.errors.DivisionByZeroException;
+import interpreter.errors.InvalidArgumentsException;
+import interpreter.errors.RuntimeError;
+import interpreter.jchar.JLangChar;
+import interpreter.klass.JLangClass;
+import interpreter.range.JLangRange;
+import interpreter.string.JLangString;
+import tokenizer.Token;
+import tokenizer.TokenType;
+
+// The slow paths the compiled lambdas fall back to. They do what the
+// matching Interpreter code does, down to the error messages.
+final class Operations {
+    private Operations() {}
+
+    static void checkNumberOperand(Token operator, Object operand) {
+        if (operand instanceof Double) return;
+        throw new RuntimeError(operator, "Operand must be a number.");
+    }
+
+    static void checkNumberOperands(Token operator, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) return;
+        throw new RuntimeError(operator, "Operands must be numbers.");
+    }
+
+    // Any binary operator on operands the lambda had no fast path for.
+    static Object binary(Token operator, Object left, Object right) {
+        switch (operator.type) {
+            case GREATER:
+                checkNumberOperands(operator, left, right);
+                return (double)left > (double)right;
+            case GREATER_EQUAL:
+                checkNumberOperands(operator, left, right);
+                return (double)left >= (double)right;
+            case LESS:
+                checkNumberOperands(operator, left, right);
+                return (double)left < (double)right;
+            case LESS_EQUAL:
+                checkNumberOperands(operator, left, right);
+                return (double)left <= (double)right;
+            case BANG_EQUAL:
+                return !Interpreter.isEqual(left, right);
+            case EQUAL_EQUAL:
+                return Interpreter.isEqual(left, right);
+            case MINUS:
+                checkNumberOperands(operator, left, right);
+                return (double)left - (double)right;
+            case PLUS:
+                if (left instanceof Double && right instanceof Double) {
+                    return (double)left + (double)right;
+                }
+                if (left instanceof JLangString && right instanceof JLangString) {
+                    return JLangString.concat((JLangString) left, (JLangString) right);
+                }
+                if (left instanceof JLangChar && right instanceof JLangChar) {
+                    return new JLangString(String.valueOf(((JLangChar) left).getValue()) + ((JLangChar) right).getValue());
+                }
+                if (left instanceof JLangString) {
+                    return JLangString.concat((JLangString) left, new JLangString(Interpreter.stringify(right)));
+                }
+                if (right instanceof JLangString) {
+                    return JLangString.concat(new JLangString(Interpreter.stringify(left)), (JLangString) right);
+                }
+                throw new RuntimeError(operator,
+                "Operands must be two numbers or at least one string.");
+            case SLASH:
+                checkNumberOperands(operator, left, right);
+                if ((double) right == 0.0) {
+                    throw new DivisionByZeroException(operator, "Division by zero.");
+                }
+                return (double)left / (double)right;
+            case STAR:
+                checkNumberOperands(operator, left, right);
+                return (double)left * (double)right;
+            case SHIFT_LEFT:
+                checkNumberOperands(operator, left, right);
+                return ((Double) left).intValue() << ((Double) right).intValue();
+            case SHIFT_RIGHT:
+                checkNumberOperands(operator, left, right);
+                return ((Double) left).intValue() >> ((Double) right).intValue();
+            case POWER:
+                checkNumberOperands(operator, left, right);
+                return Math.pow((Double) left, (Double) right);
+            default:
+                // Unreachable.
+                return null;
+        }
+    }
+
+    // The new value of a compound assignment: a Double, or an Integer for
+    // the shifts.
+    static Object compound(Token operator, Object current, Object value) {
+        boolean numbers = current instanceof Double && value instanceof Double;
+        if (operator.type != TokenType.PLUS_EQUAL && operator.type != TokenType.MINUS_EQUAL
+                && operator.type != TokenType.STAR_EQUAL && operator.type != TokenType.SLASH_EQUAL
+                && operator.type != TokenType.SHIFT_LEFT_EQUAL && operator.type != TokenType.SHIFT_RIGHT_EQUAL) {
+            throw new RuntimeError(operator, "Invalid assignment operator.");
+        }
+        if (!numbers) throw new RuntimeError(operator, "Operands must be numbers.");
+        double left = (double) current;
+        double right = (double) value;
+        switch (operator.type) {
+            case PLUS_EQUAL: return left + right;
+            case MINUS_EQUAL: return left - right;
+            case STAR_EQUAL: return left * right;
+            case SLASH_EQUAL:
+                if (right == 0) throw new RuntimeError(operator, "Division by zero.");
+                return left / right;
+            case SHIFT_LEFT_EQUAL: return (int) left << (int) right;
+            default: return (int) left >> (int) right;
+        }
+    }
+
+    static Object index(Object array, Object index) {
+        if (!(index instanceof Double)) {
+            throw new RuntimeException("Array index must be an integer.");
+        }
+        int position = ((Double) index).intValue();
+        if (array instanceof JLangArray) {
+            try {
+                return ((JLangArray) array).getItem(position);
+            } catch (IndexOutOfBoundsException e) {
+                throw new RuntimeException("Array of length " + ((JLangArray) array).size() + " index " + position + " out of bounds");
+            }
+        }
+        if (array instanceof JLangString) {
+            try {
+                return ((JLangString) array).getItem(position);
+            } catch (IndexOutOfBoundsException e) {
+                throw new RuntimeException("String of length " + ((JLangString) array).length() + " index " + position + " out of bounds");
+            }
+        }
+        if (array instanceof JLangRange) {
+            try {
+                return ((JLangRange) array).getItem(position);
+            } catch (IndexOutOfBoundsException e) {
+                throw new RuntimeException("Range of length " + ((JLangRange) array).length() + " index " + position + " out of bounds");
+            }
+        }
+        throw new RuntimeException("Only arrays are accessible by index.");
+    }
+
+    // A call of anything but a ClosureFunction with the right number of
+    // arguments, which the call lambdas handle themselves.
+    static Object call(Token paren, Interpreter interpreter, Object callee, Object[] arguments) {
+        if (!(callee instanceof JLangCallable)) {
+            throw new RuntimeError(paren, "Can only call functions and classes.");
+        }
+        JLangCallable function = (JLangCallable) callee;
+        if (arguments.length != function.arity() && function.arity() != -1) {
+            throw new RuntimeError(paren, "Expected " +
+            function.arity() + " arguments but got " +
+            arguments.length + ".");
+        }
+        try {
+            return function.call(interpreter, arguments);
+        } catch (InvalidArgumentsException e) {
+            throw new RuntimeError(new Token(TokenType.FUN, "", null, 1), e.getMessage());
+        }
+    }
+
+    static List<JLangClass> superclasses(Token[] names, Evaluator[] parents, Environment frame) {
+        List<JLangClass> superclasses = new ArrayList<>();
+        for (int i = 0; i < parents.length; i++) {
+            Object superclass = parents[i].evaluate(frame);
+            if (!(superclass instanceof JLangClass)) {
+                throw new RuntimeError(names[i], "Superclass must be a class.");
+            }
+            superclasses.add((JLangClass) superclass);
+        }
+        return superclasses;
+    }
+}
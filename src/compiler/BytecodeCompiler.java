@@ -0,0 +1,916 @@
+package compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ast.Expr;
+import ast.Stmt;
+import interpreter.jchar.JLangChar;
+import interpreter.klass.JLangClass;
+import interpreter.klass.PropertyCache;
+import interpreter.string.JLangString;
+import main.JLang;
+import resolver.FunctionType;
+import tokenizer.Token;
+import tokenizer.TokenType;
+
+// Lowers a resolved program into bytecode for vm.VM. Locals live in stack
+// slots of their function's frame and captured variables become upvalues,
+// so the VM never looks a local up by name.
+public class BytecodeCompiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    private static class Local {
+        final String name;
+        final int depth;
+        boolean isCaptured = false;
+
+        Local(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+        }
+    }
+
+    private static class UpvalueRef {
+        final int index;
+        final boolean isLocal;
+
+        UpvalueRef(int index, boolean isLocal) {
+            this.index = index;
+            this.isLocal = isLocal;
+        }
+    }
+
+    private static class LoopState {
+        final int start;
+        final int scopeDepth;
+        final int tryDepth;
+        final List<Integer> breakJumps = new ArrayList<>();
+
+        LoopState(int start, int scopeDepth, int tryDepth) {
+            this.start = start;
+            this.scopeDepth = scopeDepth;
+            this.tryDepth = tryDepth;
+        }
+    }
+
+    private static class TryState {
+        final Stmt finallyBlock;
+        boolean handlerActive = true;
+
+        TryState(Stmt finallyBlock) {
+            this.finallyBlock = finallyBlock;
+        }
+    }
+
+    private static class FunctionState {
+        final FunctionState enclosing;
+        final FunctionType type;
+        final Chunk chunk = new Chunk();
+        final List<Local> locals = new ArrayList<>();
+        final List<UpvalueRef> upvalues = new ArrayList<>();
+        final List<LoopState> loops = new ArrayList<>();
+        final List<TryState> tries = new ArrayList<>();
+        int scopeDepth = 0;
+        int stackDepth = 0;
+        int maxStack = 0;
+
+        FunctionState(FunctionState enclosing, FunctionType type) {
+            this.enclosing = enclosing;
+            this.type = type;
+        }
+    }
+
+    // Names of hidden locals start with a space so no identifier can match them.
+    private static final String HIDDEN = " ";
+
+    private FunctionState current = null;
+    private int line = 0;
+    private boolean hadError = false;
+
+    public FunctionProto compile(List<Stmt> statements) {
+        current = new FunctionState(null, FunctionType.NONE);
+        addLocal(HIDDEN);
+        adjustStack(1);
+        for (Stmt statement : statements) {
+            compile(statement);
+        }
+        emitOp(OpCode.NIL, 1);
+        emitOp(OpCode.RETURN, -1);
+        FunctionProto script = new FunctionProto("script", FunctionType.NONE, 0, 0, current.maxStack, current.chunk);
+        current = null;
+        return hadError ? null : script;
+    }
+
+    private void compile(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void compile(Expr expr) {
+        expr.accept(this);
+    }
+
+    private void error(Token token, String message) {
+        JLang.error(token, message);
+        hadError = true;
+    }
+
+    // Emitting
+
+    private void adjustStack(int effect) {
+        current.stackDepth += effect;
+        if (current.stackDepth > current.maxStack) current.maxStack = current.stackDepth;
+    }
+
+    private void emitOp(int op, int effect) {
+        current.chunk.write(op, line);
+        adjustStack(effect);
+    }
+
+    private void emitOperand(int operand) {
+        current.chunk.write(operand, line);
+    }
+
+    private int emitJump(int op, int effect) {
+        emitOp(op, effect);
+        emitOperand(-1);
+        return current.chunk.count() - 1;
+    }
+
+    private void patchJump(int operand) {
+        current.chunk.patch(operand, current.chunk.count());
+    }
+
+    private int makeConstant(Object value) {
+        return current.chunk.addConstant(value);
+    }
+
+    // Scopes and variables
+
+    private void beginScope() {
+        current.scopeDepth++;
+    }
+
+    private void endScope() {
+        current.scopeDepth--;
+        List<Local> locals = current.locals;
+        while (!locals.isEmpty() && locals.get(locals.size() - 1).depth > current.scopeDepth) {
+            emitOp(locals.get(locals.size() - 1).isCaptured ? OpCode.CLOSE_UPVALUE : OpCode.POP, -1);
+            locals.remove(locals.size() - 1);
+        }
+    }
+
+    // Pops the locals deeper than depth without forgetting them, for jumps out of a scope.
+    private void emitPopsTo(int depth) {
+        List<Local> locals = current.locals;
+        for (int i = locals.size() - 1; i >= 0 && locals.get(i).depth > depth; i--) {
+            emitOp(locals.get(i).isCaptured ? OpCode.CLOSE_UPVALUE : OpCode.POP, -1);
+        }
+    }
+
+    private int addLocal(String name) {
+        current.locals.add(new Local(name, current.scopeDepth));
+        return current.locals.size() - 1;
+    }
+
+    private boolean isGlobalScope() {
+        return current.type == FunctionType.NONE && current.scopeDepth == 0;
+    }
+
+    private static int resolveLocal(FunctionState state, String name) {
+        for (int i = state.locals.size() - 1; i >= 0; i--) {
+            if (state.locals.get(i).name.equals(name)) return i;
+        }
+        return -1;
+    }
+
+    private static int resolveUpvalue(FunctionState state, String name) {
+        if (state.enclosing == null) return -1;
+        int local = resolveLocal(state.enclosing, name);
+        if (local != -1) {
+            state.enclosing.locals.get(local).isCaptured = true;
+            return addUpvalue(state, local, true);
+        }
+        int upvalue = resolveUpvalue(state.enclosing, name);
+        if (upvalue != -1) return addUpvalue(state, upvalue, false);
+        return -1;
+    }
+
+    private static int addUpvalue(FunctionState state, int index, boolean isLocal) {
+        for (int i = 0; i < state.upvalues.size(); i++) {
+            UpvalueRef upvalue = state.upvalues.get(i);
+            if (upvalue.index == index && upvalue.isLocal == isLocal) return i;
+        }
+        state.upvalues.add(new UpvalueRef(index, isLocal));
+        return state.upvalues.size() - 1;
+    }
+
+    private void emitGet(Token name) {
+        int slot = resolveLocal(current, name.lexeme);
+        if (slot != -1) {
+            emitOp(OpCode.GET_LOCAL, 1);
+            emitOperand(slot);
+            return;
+        }
+        int upvalue = resolveUpvalue(current, name.lexeme);
+        if (upvalue != -1) {
+            emitOp(OpCode.GET_UPVALUE, 1);
+            emitOperand(upvalue);
+            return;
+        }
+        emitOp(OpCode.GET_GLOBAL, 1);
+        emitOperand(makeConstant(name));
+    }
+
+    private void emitSet(Token name) {
+        int slot = resolveLocal(current, name.lexeme);
+        if (slot != -1) {
+            emitOp(OpCode.SET_LOCAL, 0);
+            emitOperand(slot);
+            return;
+        }
+        int upvalue = resolveUpvalue(current, name.lexeme);
+        if (upvalue != -1) {
+            emitOp(OpCode.SET_UPVALUE, 0);
+            emitOperand(upvalue);
+            return;
+        }
+        emitOp(OpCode.SET_GLOBAL, 0);
+        emitOperand(makeConstant(name));
+    }
+
+    // Leaves the value on the top of the stack in a new variable called name.
+    private void defineVariable(Token name, boolean constant) {
+        if (isGlobalScope()) {
+            emitOp(constant ? OpCode.DEFINE_CONST : OpCode.DEFINE_GLOBAL, -1);
+            emitOperand(makeConstant(name.lexeme));
+        } else {
+            addLocal(name.lexeme);
+        }
+    }
+
+    // Functions
+
+    private void function(String name, FunctionType type, List<Token> params, List<Stmt> body) {
+        FunctionState state = new FunctionState(current, type);
+        current = state;
+        boolean isMethod = type == FunctionType.METHOD || type == FunctionType.INITIALIZER;
+        addLocal(isMethod ? JLangClass.CLASS_INNER_INSTANCE_NAME : HIDDEN);
+        adjustStack(1);
+        beginScope();
+        for (Token param : params) {
+            addLocal(param.lexeme);
+            adjustStack(1);
+        }
+        for (Stmt statement : body) {
+            compile(statement);
+        }
+        emitReturn();
+        FunctionProto proto = new FunctionProto(name, type, params.size(),
+                                                state.upvalues.size(), state.maxStack, state.chunk);
+        current = state.enclosing;
+
+        emitOp(OpCode.CLOSURE, 1);
+        emitOperand(makeConstant(proto));
+        for (UpvalueRef upvalue : state.upvalues) {
+            emitOperand(upvalue.isLocal ? 1 : 0);
+            emitOperand(upvalue.index);
+        }
+    }
+
+    private void emitReturn() {
+        if (current.type == FunctionType.INITIALIZER) {
+            emitOp(OpCode.GET_LOCAL, 1);
+            emitOperand(0);
+        } else {
+            emitOp(OpCode.NIL, 1);
+        }
+        emitOp(OpCode.RETURN, -1);
+    }
+
+    // Runs the finally blocks between here and the try statement at depth
+    // tryDepth, closing their handlers, before control jumps out of them.
+    private void unwindTries(int tryDepth) {
+        List<TryState> tries = current.tries;
+        for (int i = tries.size() - 1; i >= tryDepth; i--) {
+            TryState tryState = tries.get(i);
+            if (tryState.handlerActive) emitOp(OpCode.TRY_END, 0);
+            if (tryState.finallyBlock == null) continue;
+
+            // The finally block can't see the try statements and loops it encloses.
+            List<TryState> hiddenTries = new ArrayList<>(tries.subList(i, tries.size()));
+            tries.subList(i, tries.size()).clear();
+            List<LoopState> loops = current.loops;
+            int firstHiddenLoop = loops.size();
+            while (firstHiddenLoop > 0 && loops.get(firstHiddenLoop - 1).tryDepth > i) firstHiddenLoop--;
+            List<LoopState> hiddenLoops = new ArrayList<>(loops.subList(firstHiddenLoop, loops.size()));
+            loops.subList(firstHiddenLoop, loops.size()).clear();
+
+            compile(tryState.finallyBlock);
+
+            loops.addAll(hiddenLoops);
+            tries.addAll(hiddenTries);
+        }
+    }
+
+    // Statements
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        beginScope();
+        for (Stmt statement : stmt.statements) {
+            compile(statement);
+        }
+        endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        line = stmt.name.line;
+        boolean global = isGlobalScope();
+        if (!global) addLocal(stmt.name.lexeme);
+        for (Expr.Variable parent : stmt.parents) {
+            compile(parent);
+        }
+        line = stmt.name.line;
+        emitOp(OpCode.CLASS, 1 - stmt.parents.size());
+        emitOperand(makeConstant(stmt.name.lexeme));
+        emitOperand(stmt.parents.size());
+        emitOperand(0);
+        if (global) addLocal(HIDDEN);
+
+        boolean hasSuperclass = !stmt.parents.isEmpty();
+        if (hasSuperclass) {
+            beginScope();
+            // the methods find super methods through the class
+            emitOp(OpCode.DUP, 1);
+            addLocal(JLangClass.CLASS_SUPER_INSTANCE_NAME);
+        }
+        for (Stmt.Function method : stmt.methods) {
+            FunctionType type = method.name.lexeme.equals(JLangClass.CLASS_INITIALIZATION_FUNCTION_NAME)
+                ? FunctionType.INITIALIZER : FunctionType.METHOD;
+            function(method.name.lexeme, type, method.params, method.body);
+            line = method.name.line;
+            emitOp(OpCode.METHOD, -1);
+            emitOperand(makeConstant(method.name.lexeme));
+            emitOperand(hasSuperclass ? 2 : 1);
+        }
+        if (hasSuperclass) endScope();
+
+        if (global) {
+            current.locals.remove(current.locals.size() - 1);
+            emitOp(OpCode.DEFINE_GLOBAL, -1);
+            emitOperand(makeConstant(stmt.name.lexeme));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        compile(stmt.expression);
+        emitOp(OpCode.POP, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        line = stmt.name.line;
+        if (isGlobalScope()) {
+            function(stmt.name.lexeme, FunctionType.FUNCTION, stmt.params, stmt.body);
+            defineVariable(stmt.name, false);
+        } else {
+            // declared first so the function can call itself
+            addLocal(stmt.name.lexeme);
+            function(stmt.name.lexeme, FunctionType.FUNCTION, stmt.params, stmt.body);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        compile(stmt.condition);
+        int elseJump = emitJump(OpCode.JUMP_IF_FALSE, -1);
+        compile(stmt.thenBranch);
+        if (stmt.elseBranch == null) {
+            patchJump(elseJump);
+            return null;
+        }
+        int endJump = emitJump(OpCode.JUMP, 0);
+        patchJump(elseJump);
+        compile(stmt.elseBranch);
+        patchJump(endJump);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        compile(stmt.expression);
+        emitOp(OpCode.PRINT, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        line = stmt.keyword.line;
+        int depth = current.stackDepth;
+        if (stmt.value == null) {
+            if (current.type == FunctionType.INITIALIZER) {
+                emitOp(OpCode.GET_LOCAL, 1);
+                emitOperand(0);
+            } else {
+                emitOp(OpCode.NIL, 1);
+            }
+        } else {
+            compile(stmt.value);
+        }
+        if (!current.tries.isEmpty()) {
+            // the value waits in a hidden slot while the finally blocks run
+            addLocal(HIDDEN);
+            unwindTries(0);
+            current.locals.remove(current.locals.size() - 1);
+        }
+        line = stmt.keyword.line;
+        emitOp(OpCode.RETURN, -1);
+        current.stackDepth = depth;
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        if (stmt.initializer != null) {
+            compile(stmt.initializer);
+        } else {
+            emitOp(OpCode.NIL, 1);
+        }
+        line = stmt.name.line;
+        defineVariable(stmt.name, false);
+        return null;
+    }
+
+    @Override
+    public Void visitConstStmt(Stmt.Const stmt) {
+        if (stmt.initializer != null) {
+            compile(stmt.initializer);
+        } else {
+            emitOp(OpCode.NIL, 1);
+        }
+        line = stmt.name.line;
+        defineVariable(stmt.name, true);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        int start = current.chunk.count();
+        compile(stmt.condition);
+        int exitJump = emitJump(OpCode.JUMP_IF_FALSE, -1);
+        LoopState loop = new LoopState(start, current.scopeDepth, current.tries.size());
+        current.loops.add(loop);
+        compile(stmt.body);
+        current.loops.remove(current.loops.size() - 1);
+        emitOp(OpCode.JUMP, 0);
+        emitOperand(start);
+        patchJump(exitJump);
+        for (int jump : loop.breakJumps) {
+            patchJump(jump);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        line = stmt.keyword.line;
+        if (current.loops.isEmpty()) {
+            error(stmt.keyword, "Break statement must be inside a loop.");
+            return null;
+        }
+        LoopState loop = current.loops.get(current.loops.size() - 1);
+        int depth = current.stackDepth;
+        unwindTries(loop.tryDepth);
+        emitPopsTo(loop.scopeDepth);
+        loop.breakJumps.add(emitJump(OpCode.JUMP, 0));
+        current.stackDepth = depth;
+        return null;
+    }
+
+    @Override
+    public Void visitContinueStmt(Stmt.Continue stmt) {
+        line = stmt.keyword.line;
+        if (current.loops.isEmpty()) {
+            error(stmt.keyword, "Continue statement must be inside a loop.");
+            return null;
+        }
+        LoopState loop = current.loops.get(current.loops.size() - 1);
+        int depth = current.stackDepth;
+        unwindTries(loop.tryDepth);
+        emitPopsTo(loop.scopeDepth);
+        emitOp(OpCode.JUMP, 0);
+        emitOperand(loop.start);
+        current.stackDepth = depth;
+        return null;
+    }
+
+    @Override
+    public Void visitTryCatchStmt(Stmt.TryCatch stmt) {
+        TryState tryState = new TryState(stmt.finallyBlock);
+        current.tries.add(tryState);
+        emitOp(OpCode.TRY_BEGIN, 0);
+        emitOperand(-1);
+        int handler = current.chunk.count() - 1;
+        compile(stmt.tryBlock);
+        emitOp(OpCode.TRY_END, 0);
+        tryState.handlerActive = false;
+        List<Integer> exitJumps = new ArrayList<>();
+        exitJumps.add(emitJump(OpCode.JUMP, 0));
+
+        // The handler starts with the exception pushed on the stack. While the
+        // catch blocks run, a second handler makes sure finally still runs.
+        patchJump(handler);
+        int depth = current.stackDepth;
+        adjustStack(1);
+        beginScope();
+        int exception = addLocal(HIDDEN);
+        int rethrowHandler = -1;
+        boolean hasFinally = stmt.finallyBlock != null;
+        if (hasFinally) {
+            emitOp(OpCode.TRY_BEGIN, 0);
+            emitOperand(-1);
+            rethrowHandler = current.chunk.count() - 1;
+            tryState.handlerActive = true;
+        }
+        for (Stmt.Catch catchBlock : stmt.catchBlocks) {
+            line = catchBlock.exceptionType.line;
+            emitOp(OpCode.CATCH_TEST, 0);
+            emitOperand(makeConstant(catchBlock.exceptionType.lexeme));
+            emitOperand(-1);
+            int nextCatch = current.chunk.count() - 1;
+
+            beginScope();
+            emitOp(OpCode.GET_LOCAL, 1);
+            emitOperand(exception);
+            addLocal(catchBlock.variable.lexeme);
+            compile(catchBlock.block);
+            endScope();
+            if (hasFinally) emitOp(OpCode.TRY_END, 0);
+            emitOp(OpCode.POP, -1);
+            exitJumps.add(emitJump(OpCode.JUMP, 0));
+            adjustStack(1);
+            patchJump(nextCatch);
+        }
+        // No catch clause matched: run finally and throw the exception again.
+        if (hasFinally) emitOp(OpCode.TRY_END, 0);
+        tryState.handlerActive = false;
+        current.tries.remove(current.tries.size() - 1);
+        if (hasFinally) compile(stmt.finallyBlock);
+        emitOp(OpCode.THROW, -1);
+
+        if (hasFinally) {
+            // A catch block threw: run finally and let the new exception go.
+            patchJump(rethrowHandler);
+            current.stackDepth = depth + 2;
+            addLocal(HIDDEN);
+            compile(stmt.finallyBlock);
+            emitOp(OpCode.THROW, -1);
+            current.locals.remove(current.locals.size() - 1);
+        }
+        current.locals.remove(current.locals.size() - 1);
+        current.scopeDepth--;
+        current.stackDepth = depth;
+
+        for (int jump : exitJumps) {
+            patchJump(jump);
+        }
+        if (hasFinally) compile(stmt.finallyBlock);
+        return null;
+    }
+
+    @Override
+    public Void visitCatchStmt(Stmt.Catch stmt) {
+        // Catch clauses are compiled as part of their try statement.
+        return null;
+    }
+
+    // Expressions
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        compile(expr.value);
+        line = expr.name.line;
+        if (expr.operator != null && expr.operator.type != TokenType.EQUAL) {
+            line = expr.operator.line;
+            // the current value is read after the right-hand side, like the Interpreter does
+            emitGet(expr.name);
+            emitOp(OpCode.SWAP, 0);
+            switch (expr.operator.type) {
+                case PLUS_EQUAL: emitOp(OpCode.ADD_NUMBERS, -1); break;
+                case MINUS_EQUAL: emitOp(OpCode.SUBTRACT, -1); break;
+                case STAR_EQUAL: emitOp(OpCode.MULTIPLY, -1); break;
+                case SLASH_EQUAL: emitOp(OpCode.DIVIDE_ASSIGN, -1); break;
+                case SHIFT_LEFT_EQUAL: emitOp(OpCode.SHIFT_LEFT, -1); break;
+                case SHIFT_RIGHT_EQUAL: emitOp(OpCode.SHIFT_RIGHT, -1); break;
+                default:
+                    error(expr.operator, "Invalid assignment operator.");
+            }
+        }
+        emitSet(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        compile(expr.left);
+        compile(expr.right);
+        line = expr.operator.line;
+        switch (expr.operator.type) {
+            case GREATER: emitOp(OpCode.GREATER, -1); break;
+            case GREATER_EQUAL: emitOp(OpCode.GREATER_EQUAL, -1); break;
+            case LESS: emitOp(OpCode.LESS, -1); break;
+            case LESS_EQUAL: emitOp(OpCode.LESS_EQUAL, -1); break;
+            case BANG_EQUAL: emitOp(OpCode.NOT_EQUAL, -1); break;
+            case EQUAL_EQUAL: emitOp(OpCode.EQUAL, -1); break;
+            case MINUS: emitOp(OpCode.SUBTRACT, -1); break;
+            case PLUS: emitOp(OpCode.ADD, -1); break;
+            case SLASH: emitOp(OpCode.DIVIDE, -1); break;
+            case STAR: emitOp(OpCode.MULTIPLY, -1); break;
+            case SHIFT_LEFT: emitOp(OpCode.SHIFT_LEFT, -1); break;
+            case SHIFT_RIGHT: emitOp(OpCode.SHIFT_RIGHT, -1); break;
+            case POWER: emitOp(OpCode.POWER, -1); break;
+            default:
+                // the Interpreter evaluates both sides and yields nil
+                emitOp(OpCode.POP, -1);
+                emitOp(OpCode.POP, -1);
+                emitOp(OpCode.NIL, 1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        compile(expr.object);
+        line = expr.name.line;
+        emitOp(OpCode.GET_PROPERTY, 0);
+        emitOperand(makeConstant(new PropertyCache(expr.name)));
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        if (expr.callee instanceof Expr.Get) {
+            // obj.name(...) leaves the receiver where the callee would go
+            Expr.Get get = (Expr.Get) expr.callee;
+            compile(get.object);
+            for (Expr argument : expr.arguments) {
+                compile(argument);
+            }
+            line = expr.paren.line;
+            emitOp(OpCode.INVOKE, -expr.arguments.size());
+            emitOperand(makeConstant(new PropertyCache(get.name)));
+            emitOperand(expr.arguments.size());
+            return null;
+        }
+        if (expr.callee instanceof Expr.Super) {
+            // super.name(...) too, with the class on top of the arguments
+            Expr.Super callee = (Expr.Super) expr.callee;
+            line = callee.keyword.line;
+            emitGet(new Token(TokenType.THIS, JLangClass.CLASS_INNER_INSTANCE_NAME, null, callee.keyword.line));
+            for (Expr argument : expr.arguments) {
+                compile(argument);
+            }
+            line = callee.keyword.line;
+            emitGet(callee.keyword);
+            line = expr.paren.line;
+            emitOp(OpCode.SUPER_INVOKE, -expr.arguments.size() - 1);
+            emitOperand(makeConstant(callee.method));
+            emitOperand(expr.arguments.size());
+            return null;
+        }
+        compile(expr.callee);
+        for (Expr argument : expr.arguments) {
+            compile(argument);
+        }
+        line = expr.paren.line;
+        emitOp(OpCode.CALL, -expr.arguments.size());
+        emitOperand(expr.arguments.size());
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value == null) {
+            emitOp(OpCode.NIL, 1);
+        } else if (expr.value.equals(true)) {
+            emitOp(OpCode.TRUE, 1);
+        } else if (expr.value.equals(false)) {
+            emitOp(OpCode.FALSE, 1);
+        } else {
+            emitOp(OpCode.CONSTANT, 1);
+            emitOperand(makeConstant(expr.value));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitArrayExpr(Expr.Array expr) {
+        for (Expr element : expr.elements) {
+            compile(element);
+        }
+        emitOp(OpCode.ARRAY, 1 - expr.elements.size());
+        emitOperand(expr.elements.size());
+        return null;
+    }
+
+    @Override
+    public Void visitJStringExpr(Expr.JString expr) {
+        emitOp(OpCode.STRING, 1);
+        // the constant is the value itself, strings and chars don't change
+        emitOperand(makeConstant(new JLangString(expr.value)));
+        return null;
+    }
+
+    @Override
+    public Void visitJCharExpr(Expr.JChar expr) {
+        emitOp(OpCode.CHAR, 1);
+        emitOperand(makeConstant(JLangChar.of(expr.value)));
+        return null;
+    }
+
+    @Override
+    public Void visitArrayAccessExpr(Expr.ArrayAccess expr) {
+        compile(expr.name);
+        compile(expr.index);
+        emitOp(OpCode.INDEX, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        compile(expr.left);
+        line = expr.operator.line;
+        int op = expr.operator.type == TokenType.OR ? OpCode.JUMP_IF_TRUE_KEEP : OpCode.JUMP_IF_FALSE_KEEP;
+        int endJump = emitJump(op, -1);
+        compile(expr.right);
+        patchJump(endJump);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        compile(expr.object);
+        compile(expr.value);
+        line = expr.name.line;
+        emitOp(OpCode.SET_PROPERTY, -1);
+        emitOperand(makeConstant(new PropertyCache(expr.name)));
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        line = expr.keyword.line;
+        emitGet(new Token(TokenType.THIS, JLangClass.CLASS_INNER_INSTANCE_NAME, null, expr.keyword.line));
+        emitGet(expr.keyword);
+        emitOp(OpCode.GET_SUPER, -1);
+        emitOperand(makeConstant(expr.method));
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        line = expr.keyword.line;
+        emitGet(expr.keyword);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        line = expr.operator.line;
+        switch (expr.operator.type) {
+            case BANG:
+                compile(expr.right);
+                emitOp(OpCode.NOT, 0);
+                break;
+            case MINUS:
+                compile(expr.right);
+                line = expr.operator.line;
+                emitOp(OpCode.NEGATE, 0);
+                break;
+            case INCREMENT:
+            case DECREMENT:
+                // like the Interpreter, both forms evaluate to the old value
+                emitUpdate(expr.right, expr.operator);
+                break;
+            default:
+                compile(expr.right);
+                emitOp(OpCode.POP, -1);
+                emitOp(OpCode.NIL, 1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitPostfixExpr(Expr.Postfix expr) {
+        emitUpdate(expr.left, expr.operator);
+        return null;
+    }
+
+    private void emitUpdate(Expr operand, Token operator) {
+        int op = operator.type == TokenType.INCREMENT ? OpCode.INCREMENT : OpCode.DECREMENT;
+        if (operand instanceof Expr.Variable) {
+            Token name = ((Expr.Variable) operand).name;
+            emitGet(name);
+            line = operator.line;
+            emitOp(OpCode.DUP, 1);
+            emitOp(op, 0);
+            emitSet(name);
+            emitOp(OpCode.POP, -1);
+            return;
+        }
+        compile(operand);
+        line = operator.line;
+        emitOp(op, 0);
+        emitOp(OpCode.NOT_ASSIGNABLE, 0);
+    }
+
+    @Override
+    public Void visitBlockExpr(Expr.Block expr) {
+        if (expr.statements.isEmpty()) {
+            emitOp(OpCode.NIL, 1);
+        }
+        for (int i = 0; i < expr.statements.size(); i++) {
+            if (i > 0) emitOp(OpCode.POP, -1);
+            compile(expr.statements.get(i));
+        }
+        emitOp(OpCode.PRINT_VALUE, 0);
+        return null;
+    }
+
+    @Override
+    public Void visitCommaExpr(Expr.Comma expr) {
+        compile(expr.left);
+        emitOp(OpCode.POP, -1);
+        compile(expr.right);
+        emitOp(OpCode.PRINT_VALUE, 0);
+        return null;
+    }
+
+    @Override
+    public Void visitTernaryExpr(Expr.Ternary expr) {
+        compile(expr.condition);
+        int elseJump = emitJump(OpCode.JUMP_IF_FALSE, -1);
+        compile(expr.thenExpr);
+        int endJump = emitJump(OpCode.JUMP, 0);
+        adjustStack(-1);
+        patchJump(elseJump);
+        compile(expr.elseExpr);
+        patchJump(endJump);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        line = expr.name.line;
+        emitGet(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitLambdaFunctionExpr(Expr.LambdaFunction expr) {
+        function(expr.name.lexeme, FunctionType.LAMBDA, expr.params, expr.body);
+        return null;
+    }
+
+    @Override
+    public Void visitAnonymousClassExpr(Expr.AnonymousClass expr) {
+        for (Expr.Variable parent : expr.parents) {
+            compile(parent);
+        }
+        emitOp(OpCode.CLASS, 1 - expr.parents.size());
+        emitOperand(makeConstant("AnonymousClass"));
+        emitOperand(expr.parents.size());
+        emitOperand(1);
+        for (Stmt.Function method : expr.methods) {
+            // anonymous classes don't treat init as an initializer
+            function(method.name.lexeme, FunctionType.METHOD, method.params, method.body);
+            line = method.name.line;
+            emitOp(OpCode.METHOD, -1);
+            emitOperand(makeConstant(method.name.lexeme));
+            emitOperand(1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitObjectLiteralExpr(Expr.ObjectLiteral expr) {
+        for (Expr value : expr.values) {
+            compile(value);
+        }
+        emitOp(OpCode.OBJECT, 1 - expr.values.size());
+        emitOperand(makeConstant(expr.keys.toArray(new Token[0])));
+        return null;
+    }
+}
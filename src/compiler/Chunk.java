@@ -0,0 +1,52 @@
+package compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class Chunk {
+    private int[] code = new int[64];
+    private int[] lines = new int[64];
+    private int count = 0;
+    private final List<Object> constants = new ArrayList<>();
+
+    public void write(int value, int line) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+        }
+        code[count] = value;
+        lines[count] = line;
+        count++;
+    }
+
+    public void patch(int offset, int value) {
+        code[offset] = value;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int addConstant(Object value) {
+        // numbers and names are shared, everything else gets its own entry
+        if (value instanceof Double || value instanceof String) {
+            int index = constants.indexOf(value);
+            if (index != -1) return index;
+        }
+        constants.add(value);
+        return constants.size() - 1;
+    }
+
+    public int[] code() {
+        return Arrays.copyOf(code, count);
+    }
+
+    public int[] lines() {
+        return Arrays.copyOf(lines, count);
+    }
+
+    public Object[] constants() {
+        return constants.toArray();
+    }
+}
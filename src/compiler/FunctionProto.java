@@ -0,0 +1,32 @@
+package compiler;
+
+import resolver.FunctionType;
+
+// The compiled, immutable part of a function. Closures created at runtime
+// share one FunctionProto and only differ by their captured upvalues.
+public class FunctionProto {
+    public final String name;
+    public final FunctionType type;
+    public final int arity;
+    public final int upvalueCount;
+    public final int maxStack;
+    public final int[] code;
+    public final int[] lines;
+    public final Object[] constants;
+
+    FunctionProto(String name, FunctionType type, int arity, int upvalueCount, int maxStack, Chunk chunk) {
+        this.name = name;
+        this.type = type;
+        this.arity = arity;
+        this.upvalueCount = upvalueCount;
+        this.maxStack = maxStack;
+        this.code = chunk.code();
+        this.lines = chunk.lines();
+        this.constants = chunk.constants();
+    }
+
+    @Override
+    public String toString() {
+        return "<fn " + name + ">";
+    }
+}
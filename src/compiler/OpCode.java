@@ -0,0 +1,84 @@
+package compiler;
+
+// Instruction set of the bytecode VM. Every instruction is one int opcode
+// followed by its int operands, all stored in the same int[] code array.
+public final class OpCode {
+    private OpCode() {}
+
+    // constants and the stack
+    public static final int CONSTANT = 0;        // index
+    public static final int NIL = 1;
+    public static final int TRUE = 2;
+    public static final int FALSE = 3;
+    public static final int POP = 4;
+    public static final int DUP = 5;
+    public static final int SWAP = 6;
+    public static final int STRING = 7;          // index of the raw java String
+    public static final int CHAR = 8;            // index of the Character
+
+    // variables
+    public static final int GET_LOCAL = 10;      // slot
+    public static final int SET_LOCAL = 11;      // slot
+    public static final int GET_UPVALUE = 12;    // index
+    public static final int SET_UPVALUE = 13;    // index
+    public static final int GET_GLOBAL = 14;     // index of the name Token
+    public static final int SET_GLOBAL = 15;     // index of the name Token
+    public static final int DEFINE_GLOBAL = 16;  // index of the name
+    public static final int DEFINE_CONST = 17;   // index of the name
+    public static final int CLOSE_UPVALUE = 18;
+
+    // properties
+    public static final int GET_PROPERTY = 20;   // index of the site's PropertyCache
+    public static final int SET_PROPERTY = 21;   // index of the site's PropertyCache
+    public static final int GET_SUPER = 22;      // index of the method Token
+    public static final int SUPER_INVOKE = 23;   // index of the method Token, argument count
+
+    // operators
+    public static final int EQUAL = 30;
+    public static final int NOT_EQUAL = 31;
+    public static final int GREATER = 32;
+    public static final int GREATER_EQUAL = 33;
+    public static final int LESS = 34;
+    public static final int LESS_EQUAL = 35;
+    public static final int ADD = 36;
+    public static final int SUBTRACT = 37;
+    public static final int MULTIPLY = 38;
+    public static final int DIVIDE = 39;
+    public static final int SHIFT_LEFT = 40;
+    public static final int SHIFT_RIGHT = 41;
+    public static final int POWER = 42;
+    public static final int NOT = 43;
+    public static final int NEGATE = 44;
+    public static final int INCREMENT = 45;
+    public static final int DECREMENT = 46;
+    public static final int ADD_NUMBERS = 47;    // '+=' only accepts numbers
+    public static final int DIVIDE_ASSIGN = 48;  // '/=' reports a plain RuntimeError
+    public static final int NOT_ASSIGNABLE = 49;
+
+    // control flow
+    public static final int JUMP = 50;           // target
+    public static final int JUMP_IF_FALSE = 51;  // target, pops the condition
+    public static final int JUMP_IF_FALSE_KEEP = 52; // target, keeps the operand when jumping
+    public static final int JUMP_IF_TRUE_KEEP = 53;  // target, keeps the operand when jumping
+    public static final int CALL = 54;           // argument count
+    public static final int CLOSURE = 55;        // index of the FunctionProto, then (isLocal, index) per upvalue
+    public static final int RETURN = 56;
+    public static final int INVOKE = 57;         // index of the site's PropertyCache, argument count
+
+    // classes
+    public static final int CLASS = 60;          // index of the name, parent count, anonymous flag
+    public static final int METHOD = 62;         // index of the name, distance of the class below the closure
+
+    // values
+    public static final int ARRAY = 70;          // element count
+    public static final int INDEX = 71;
+    public static final int OBJECT = 72;         // index of the Token[] keys
+    public static final int PRINT = 73;
+    public static final int PRINT_VALUE = 74;
+
+    // exceptions
+    public static final int TRY_BEGIN = 80;      // handler target
+    public static final int TRY_END = 81;
+    public static final int CATCH_TEST = 82;     // index of the exception type name, target when it doesn't match
+    public static final int THROW = 83;
+}
@@ -0,0 +1,14 @@
+package enivirement;
+
+// A global variable. Whether it is a constant is kept with the value, so a
+// lookup is a single probe of the globals table. Declaring the name again
+// reuses the binding.
+public final class Binding {
+    public Object value;
+    public boolean constant;
+
+    Binding(Object value, boolean constant) {
+        this.value = value;
+        this.constant = constant;
+    }
+}
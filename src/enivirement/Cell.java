@@ -0,0 +1,14 @@
+package enivirement;
+
+// Holds a local variable that a closure captures. The scope declaring the
+// variable and every closure capturing it share the cell, so a closure
+// keeps only the variables it uses alive, not the scopes around it.
+public final class Cell {
+    public Object value;
+
+    public Cell() {}
+
+    public Cell(Object value) {
+        this.value = value;
+    }
+}
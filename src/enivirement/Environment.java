@@ -10,26 +10,60 @@ import tokenizer.Token;
 public class Environment {
 
     public final Environment enclosing;
-    public final Map<String, Object> values = new HashMap<>();
-    public final Map<String, Object> constants = new HashMap<>();
-    
+    // The global scope is looked up by name, local scopes are arrays indexed
+    // by the slots the Resolver hands out. Local constants are checked by the
+    // Resolver, so only globals keep a flag for them.
+    private final Map<String, Binding> bindings;
+    public final Object[] slots;
+    // A slot holding UNBOXED keeps its value in numbers, so numeric locals
+    // can be updated without allocating a Double each time.
+    public static final Object UNBOXED = new Object();
+    public double[] numbers;
+
 
     public Environment() {
         enclosing = null;
+        bindings = new HashMap<>();
+        slots = null;
     }
-    public Environment(Environment enclosing) {
+    public Environment(Environment enclosing, int size) {
         this.enclosing = enclosing;
+        bindings = null;
+        slots = new Object[size];
+    }
+    // A scope whose captured variables, listed by the Resolver, get their
+    // cells up front so a closure made before the declaration runs shares
+    // them too.
+    public Environment(Environment enclosing, int size, int[] cells) {
+        this(enclosing, size);
+        if (cells != null) {
+            for (int slot : cells) slots[slot] = new Cell();
+        }
+    }
+
+    // The environment a closure keeps: the cells of the variables it
+    // captures and the values of 'this' and 'super', found at the given
+    // distances and slots from this scope.
+    public Environment capture(int[] depths, int[] slots) {
+        Environment captures = new Environment(null, depths.length);
+        for (int i = 0; i < depths.length; i++) {
+            captures.slots[i] = ancestor(depths[i]).slots[slots[i]];
+        }
+        return captures;
     }
 
-    public Boolean isConstant(String name){
-        return constants.containsKey(name);
+    // The global of that name, null when there is none.
+    public Binding binding(String name) {
+        return bindings.get(name);
     }
 
-    public Boolean isVariable(String name){
-        return values.containsKey(name);
+    // The value of a global, null when there is none.
+    public Object valueOf(String name) {
+        Binding binding = bindings.get(name);
+        return binding == null ? null : binding.value;
     }
-    
-    Environment ancestor(int distance) {
+
+    public Environment ancestor(int distance) {
         Environment environment = this;
         for (int i = 0; i < distance; i++) {
             environment = environment.enclosing;
@@ -37,20 +71,56 @@ public class Environment {
         return environment;
     }
 
-    public void assignAt(int distance, Token name, Object value) {
-        ancestor(distance).values.put(name.lexeme, value);
+    public void assignAt(int distance, int slot, Object value) {
+        ancestor(distance).slots[slot] = value;
+    }
+
+    public void assignNumberAt(int distance, int slot, double value) {
+        ancestor(distance).defineNumber(slot, value);
     }
-         
-    public Object getAt(int distance, String name) {
-        return ancestor(distance).values.get(name);
+
+    public Object getAt(int distance, int slot) {
+        Environment environment = ancestor(distance);
+        Object value = environment.slots[slot];
+        if (value == UNBOXED) return environment.numbers[slot];
+        return value;
     }
-        
-    public Object get(Token name) {
-        if (isConstant(name.lexeme)) {
-            return constants.get(name.lexeme);
+
+    public void define(int slot, Object value) {
+        slots[slot] = value;
+    }
+
+    public Object getCellAt(int distance, int slot) {
+        return ((Cell) ancestor(distance).slots[slot]).value;
+    }
+
+    public void assignCellAt(int distance, int slot, Object value) {
+        ((Cell) ancestor(distance).slots[slot]).value = value;
+    }
+
+    public void defineCell(int slot, Object value) {
+        ((Cell) slots[slot]).value = value;
+    }
+
+    // Binds a parameter, which is in a cell when a closure captures it.
+    public void defineArgument(int slot, Object value) {
+        if (slots[slot] instanceof Cell) {
+            ((Cell) slots[slot]).value = value;
+        } else {
+            slots[slot] = value;
         }
-        if (isVariable(name.lexeme)) {
-            return values.get(name.lexeme);
+    }
+
+    public void defineNumber(int slot, double value) {
+        if (numbers == null) numbers = new double[slots.length];
+        numbers[slot] = value;
+        slots[slot] = UNBOXED;
+    }
+
+    public Object get(Token name) {
+        if (bindings != null) {
+            Binding binding = bindings.get(name.lexeme);
+            if (binding != null) return binding.value;
         }
         if (enclosing != null) return enclosing.get(name);
 
@@ -59,29 +129,42 @@ public class Environment {
     }
 
     public void define(String name, Object value) {// this will only handle the variable definition
-        if (isConstant(name)) constants.remove(name); // this will change the constant 
-        values.put(name, value);
+        define(name, value, false);
     }
 
     public void assign(Token name, Object value) {
-        if (constants.containsKey(name.lexeme)){
-            throw new RuntimeError(name,
-                "'" + name.lexeme + "' is a Constant and can't be reassigned.");
-        }
-        if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
-            return;
+        if (bindings != null) {
+            Binding binding = bindings.get(name.lexeme);
+            if (binding != null) {
+                if (binding.constant) {
+                    throw new RuntimeError(name,
+                        "'" + name.lexeme + "' is a Constant and can't be reassigned.");
+                }
+                binding.value = value;
+                return;
+            }
         }
         if (enclosing != null) {
             enclosing.assign(name, value);
             return;
         }
-        
+
         throw new UndefinedVariableException(name,
         "Undefined variable '" + name.lexeme + "'.");
     }
     public void defineConst(String name, Object value) {
-        constants.put(name, value);
+        define(name, value, true);
     }
-        
-}
\ No newline at end of file
+
+    // A declaration again of a name replaces its value and its constness.
+    private void define(String name, Object value, boolean constant) {
+        Binding binding = bindings.get(name);
+        if (binding == null) {
+            bindings.put(name, new Binding(value, constant));
+        } else {
+            binding.value = value;
+            binding.constant = constant;
+        }
+    }
+
+}
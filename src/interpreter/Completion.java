@@ -0,0 +1,11 @@
+package interpreter;
+
+// How a statement finished. Break, continue and return travel back up
+// through the visit methods as one of these instead of as exceptions;
+// the value of a return waits in Interpreter until the call picks it up.
+public enum Completion {
+    NORMAL,
+    BREAK,
+    CONTINUE,
+    RETURN
+}
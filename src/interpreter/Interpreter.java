@@ -1,6 +1,7 @@
 package interpreter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +14,7 @@ import ast.Stmt;
 import ast.Stmt.Catch;
 import ast.Stmt.Print;
 import ast.Stmt.Return;
+import enivirement.Cell;
 import enivirement.Environment;
 import interpreter.array.JLangArray;
 import interpreter.builtins.ReverseFunc;
@@ -24,26 +26,33 @@ import interpreter.callable.JLangFunction;
 import interpreter.errors.DivisionByZeroException;
 import interpreter.errors.InvalidArgumentsException;
 import interpreter.errors.RuntimeError;
-import interpreter.exceptions.BreakException;
-import interpreter.exceptions.ContinueException;
-import interpreter.exceptions.ReturnException;
 import interpreter.jchar.JLangChar;
 import interpreter.klass.JLangBaseObject;
 import interpreter.klass.JLangClass;
 import interpreter.klass.JLangInstance;
-import interpreter.klass.JLangObject;
+import interpreter.klass.PropertyCache;
+import interpreter.range.JLangRange;
 import interpreter.string.JLangString;
+import jit.Tier2;
 import main.JLang;
 import tokenizer.Token;
 import tokenizer.TokenType;
 
 public class Interpreter implements Expr.Visitor<Object>,
-                                    Stmt.Visitor<Void> {
-    // TODO: All the object methods should be defined once, not each time an instance is created.
-    public final Environment globals = new Environment();
-    private Environment environment = globals;
-    private final Map<Expr, Integer> locals = new HashMap<>();
+                                    Stmt.Visitor<Completion> {
+    public final Environment globals;
+    private Environment environment;
+    // value of the return statement that is unwinding the current call
+    private Object returnValue = null;
+    // value of the last operand evaluateOperand() returned as Environment.UNBOXED
+    private double number;
+    // compiles hot functions to bytecode, null when the tier is turned off
+    public Tier2 tier2 = null;
+    // the function whose body is running, null at the top level and in lambdas
+    private Stmt.Function currentFunction = null;
     public Interpreter() {
+        globals = new Environment();
+        environment = globals;
         // utils
         globals.define("methods", new MethodsFunc());
         globals.define("clock", new ClockFun());
@@ -76,21 +85,39 @@ public class Interpreter implements Expr.Visitor<Object>,
         globals.define("map", new MapFunc());
         globals.define("filter", new FilterFunc());
         globals.define("reduce", new ReduceFunc());
+        globals.define("seq", new SeqFunc());
         globals.define("sort", new SortFunc());
         globals.define("reverse", new ReverseFunc());
+        globals.define("parMap", new ParMapFunc());
+        globals.define("parFilter", new ParFilterFunc());
+        globals.define("parReduce", new ParReduceFunc());
+        globals.define("parSum", new ParSumFunc());
+        globals.define("StringBuilder", new StringBuilderFunc());
+        globals.define("flush", new FlushFunc());
 
     }
 
+    private Interpreter(Environment globals) {
+        this.globals = globals;
+        this.environment = globals;
+    }
+
+    // An interpreter for another thread: it shares the globals but keeps
+    // its own frames and return value, and runs everything interpreted.
+    public Interpreter fork() {
+        return new Interpreter(globals);
+    }
+
 
     private Object evaluate(Expr expr) {
         return expr.accept(this);
     }
-    private boolean isTruthy(Object object) {
+    public static boolean isTruthy(Object object) {
         if (object == null) return false;
         if (object instanceof Boolean) return (boolean)object;
         return true;
     }
-    private boolean isEqual(Object a, Object b) {
+    public static boolean isEqual(Object a, Object b) {
         if (a == null && b == null) return true;
         if (a == null) return false;
         return a.equals(b);
@@ -104,31 +131,117 @@ public class Interpreter implements Expr.Visitor<Object>,
         if (left instanceof Double && right instanceof Double) return;
         throw new RuntimeError(operator, "Operands must be numbers.");
     }
+    private void checkNumberOperands(Token operator, boolean numbers) {
+        if (numbers) return;
+        throw new RuntimeError(operator, "Operands must be numbers.");
+    }
         
-    private Object lookUpVariable(Token name, Expr expr) {
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            return environment.getAt(distance, name.lexeme);
-        } else {
-            return globals.get(name);
-        }
+    private Object lookUpVariable(Expr.Variable expr) {
+        if (expr.captured) return environment.getCellAt(expr.depth, expr.slot);
+        if (expr.depth != -1) {
+            return environment.getAt(expr.depth, expr.slot);
+        }
+        return globals.get(expr.name);
+    }
+
+    // Evaluates an operand of an arithmetic expression. Numbers produced on
+    // the way come back as Environment.UNBOXED with the value left in
+    // `number`, so only the final result of an expression gets boxed.
+    private Object evaluateOperand(Expr expr) {
+        if (expr instanceof Expr.Variable) {
+            Expr.Variable variable = (Expr.Variable)expr;
+            if (variable.depth == -1) return globals.get(variable.name);
+            if (variable.captured) return environment.getCellAt(variable.depth, variable.slot);
+            return localOperand(variable.depth, variable.slot);
+        }
+        if (expr instanceof Expr.Binary) return binary((Expr.Binary)expr);
+        if (expr instanceof Expr.Unary) return unary((Expr.Unary)expr);
+        if (expr instanceof Expr.Postfix) return postfix((Expr.Postfix)expr);
+        if (expr instanceof Expr.Assign) return assign((Expr.Assign)expr);
+        if (expr instanceof Expr.Grouping) return evaluateOperand(((Expr.Grouping)expr).expression);
+        return evaluate(expr);
+    }
+
+    private Object localOperand(int depth, int slot) {
+        Environment scope = environment.ancestor(depth);
+        Object value = scope.slots[slot];
+        if (value == Environment.UNBOXED) number = scope.numbers[slot];
+        return value;
+    }
+
+    private Object box(Object operand, double value) {
+        return operand == Environment.UNBOXED ? (Object)value : operand;
     }
         
     private void updateVariable(Expr operand, double newValue) {
         if (operand instanceof Expr.Variable) {
             Expr.Variable var = (Expr.Variable)operand;
-            // Assuming you have an environment that keeps track of variable values
-            // The environment might be a simple map or a more complex structure
-            // that handles scoping
-            environment.assign(var.name, newValue);
+            if (var.captured) {
+                environment.assignCellAt(var.depth, var.slot, newValue);
+            } else if (var.depth != -1) {
+                environment.assignNumberAt(var.depth, var.slot, newValue);
+            } else {
+                globals.assign(var.name, newValue);
+            }
         } else {
             throw new RuntimeException("The operand is not a variable and cannot be assigned a new value.");
         }
     }
     @Override
     public Object visitBinaryExpr(Expr.Binary expr) {
-        Object left = evaluate(expr.left);
-        Object right = evaluate(expr.right);
+        Object result = binary(expr);
+        return result == Environment.UNBOXED ? (Object)number : result;
+    }
+
+    private Object binary(Expr.Binary expr) {
+        Object left = evaluateOperand(expr.left);
+        double leftNumber = number;
+        Object right = evaluateOperand(expr.right);
+        double rightNumber = number;
+        boolean numbers = true;
+        if (left instanceof Double) {
+            leftNumber = (double)left;
+        } else if (left != Environment.UNBOXED) {
+            numbers = false;
+        }
+        if (right instanceof Double) {
+            rightNumber = (double)right;
+        } else if (right != Environment.UNBOXED) {
+            numbers = false;
+        }
+        if (numbers) {
+            switch (expr.operator.type) {
+                case GREATER: return leftNumber > rightNumber;
+                case GREATER_EQUAL: return leftNumber >= rightNumber;
+                case LESS: return leftNumber < rightNumber;
+                case LESS_EQUAL: return leftNumber <= rightNumber;
+                // Double.equals() semantics, NaN equals itself and 0 differs from -0
+                case BANG_EQUAL: return Double.compare(leftNumber, rightNumber) != 0;
+                case EQUAL_EQUAL: return Double.compare(leftNumber, rightNumber) == 0;
+                case MINUS:
+                    number = leftNumber - rightNumber;
+                    return Environment.UNBOXED;
+                case PLUS:
+                    number = leftNumber + rightNumber;
+                    return Environment.UNBOXED;
+                case STAR:
+                    number = leftNumber * rightNumber;
+                    return Environment.UNBOXED;
+                case SLASH:
+                    if (rightNumber == 0.0) {
+                        throw new DivisionByZeroException(expr.operator, "Division by zero.");
+                    }
+                    number = leftNumber / rightNumber;
+                    return Environment.UNBOXED;
+                case POWER:
+                    number = Math.pow(leftNumber, rightNumber);
+                    return Environment.UNBOXED;
+                default:
+                    break;
+            }
+        }
+        left = box(left, leftNumber);
+        right = box(right, rightNumber);
         switch (expr.operator.type) {
             case GREATER:
                 checkNumberOperands(expr.operator, left, right);
@@ -154,17 +267,17 @@ public class Interpreter implements Expr.Visitor<Object>,
                     return (double)left + (double)right;
                 }
                 if (left instanceof JLangString && right instanceof JLangString) { // yess brother you can add strings
-                    return new JLangString(((JLangString) left).getContent() + ((JLangString) right).getContent());
+                    return JLangString.concat((JLangString) left, (JLangString) right);
                 }
                 if (left instanceof JLangChar && right instanceof JLangChar){
                     return new JLangString(String.valueOf(((JLangChar) left).getValue()) + ((JLangChar) right).getValue());
                 }
                 // This should add the adition for a string and a number like  "100" + 5 = "1005"
                 if (left instanceof JLangString) {
-                    return new JLangString(((JLangString)left).getContent() + stringify(right));
+                    return JLangString.concat((JLangString) left, new JLangString(stringify(right)));
                 }
                 if (right instanceof JLangString) {
-                    return new JLangString(stringify(left) + ((JLangString)right).getContent());
+                    return JLangString.concat(new JLangString(stringify(left)), (JLangString) right);
                 }
                 throw new RuntimeError(expr.operator, 
                 "Operands must be two numbers or at least one string.");
@@ -198,43 +311,60 @@ public class Interpreter implements Expr.Visitor<Object>,
     
     @Override
     public Object visitUnaryExpr(Expr.Unary expr) {
-        Object right = evaluate(expr.right);
+        Object result = unary(expr);
+        return result == Environment.UNBOXED ? (Object)number : result;
+    }
+
+    private Object unary(Expr.Unary expr) {
+        if (expr.operator.type == TokenType.BANG) {
+            return !isTruthy(evaluate(expr.right));
+        }
+        Object right = evaluateOperand(expr.right);
+        double value = number;
+        if (right != Environment.UNBOXED) {
+            checkNumberOperand(expr.operator, right);
+            value = (double)right;
+        }
         switch (expr.operator.type) {
-            case BANG:
-                return !isTruthy(right);
             case MINUS:
-                checkNumberOperand(expr.operator, right);
-                return -(double)right;
+                number = -value;
+                return Environment.UNBOXED;
             case INCREMENT:
-                checkNumberOperand(expr.operator, right);
-                double incrementedValue = (double)right + 1.0;
-                updateVariable(expr.right, incrementedValue);
-                return right; 
+                updateVariable(expr.right, value + 1.0);
+                number = value;
+                return Environment.UNBOXED;
             case DECREMENT:
-                checkNumberOperand(expr.operator, right);
-                double decrementedValue = (double)right - 1.0;
-                updateVariable(expr.right, decrementedValue);
-                return right; 
+                updateVariable(expr.right, value - 1.0);
+                number = value;
+                return Environment.UNBOXED;
         }
         // Unreachable.
         return null;
     }
     @Override
     public Object visitPostfixExpr(Expr.Postfix expr) {
-        Object operand = evaluate(expr.left);
+        Object result = postfix(expr);
+        return result == Environment.UNBOXED ? (Object)number : result;
+    }
+
+    private Object postfix(Expr.Postfix expr) {
+        Object operand = evaluateOperand(expr.left);
+        double value = number;
+        if (operand != Environment.UNBOXED) {
+            checkNumberOperand(expr.operator, operand);
+            value = (double)operand;
+        }
     
         switch (expr.operator.type) {
             case INCREMENT:
-                checkNumberOperand(expr.operator, operand);
-                double incrementedValue = (double)operand + 1.0;
-                updateVariable(expr.left, incrementedValue);
-                return operand;
+                updateVariable(expr.left, value + 1.0);
+                number = value;
+                return Environment.UNBOXED;
                 
             case DECREMENT:
-                checkNumberOperand(expr.operator, operand);
-                double decrementedValue = (double)operand - 1.0;
-                updateVariable(expr.left, decrementedValue);
-                return operand;
+                updateVariable(expr.left, value - 1.0);
+                number = value;
+                return Environment.UNBOXED;
     
             default:
                 throw new RuntimeException("Unexpected postfix operator: " + expr.operator.type);
@@ -246,11 +376,13 @@ public class Interpreter implements Expr.Visitor<Object>,
     }
     @Override
     public Object visitJStringExpr(Expr.JString expr) {
-        return new JLangString(expr.value);
+        if (expr.string == null) expr.string = new JLangString(expr.value);
+        return expr.string;
     }
     @Override
     public Object visitJCharExpr(Expr.JChar expr) {
-        return new JLangChar(expr.value);
+        if (expr.character == null) expr.character = JLangChar.of(expr.value);
+        return expr.character;
     }
 
     @Override
@@ -268,15 +400,16 @@ public class Interpreter implements Expr.Visitor<Object>,
         }
     }
     @Override
-    public Void visitExpressionStmt(Stmt.Expression stmt) {
-        evaluate(stmt.expression);
-        return null;
+    public Completion visitExpressionStmt(Stmt.Expression stmt) {
+        // the value is thrown away, so there is no point boxing it
+        evaluateOperand(stmt.expression);
+        return Completion.NORMAL;
     }
     @Override
-    public Void visitPrintStmt(Stmt.Print stmt) {
+    public Completion visitPrintStmt(Stmt.Print stmt) {
         Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
-        return null;
+        Output.println(stringify(value));
+        return Completion.NORMAL;
     }
     
     @Override
@@ -285,88 +418,115 @@ public class Interpreter implements Expr.Visitor<Object>,
         for (Expr expression : expr.statements) {
             result = evaluate(expression);
         }
-        System.out.println(stringify(result));
+        Output.println(stringify(result));
         return result;
     }
     @Override
     public Object visitCommaExpr(Expr.Comma expr) {
         evaluate(expr.left);
         Object result = evaluate(expr.right);
-        System.out.println(stringify(result)); 
+        Output.println(stringify(result));
         return result;
     }
 
     @Override
-    public Void visitVarStmt(Stmt.Var stmt) {
+    public Completion visitVarStmt(Stmt.Var stmt) {
         Object value = null;
         if (stmt.initializer != null) {
-            value = evaluate(stmt.initializer);
+            value = evaluateOperand(stmt.initializer);
         }
-        environment.define(stmt.name.lexeme, value);
-        return null;
+        if (stmt.captured) {
+            environment.defineCell(stmt.slot, box(value, number));
+        } else if (stmt.slot != -1) {
+            if (value == Environment.UNBOXED) {
+                environment.defineNumber(stmt.slot, number);
+            } else {
+                environment.define(stmt.slot, value);
+            }
+        } else {
+            environment.define(stmt.name.lexeme, box(value, number));
+        }
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitConstStmt(Stmt.Const stmt) {
+    public Completion visitConstStmt(Stmt.Const stmt) {
         Object value = null;
         if (stmt.initializer != null) {
             value = evaluate(stmt.initializer);
         }
-        environment.defineConst(stmt.name.lexeme, value);
-        return null;
+        if (stmt.captured) {
+            environment.defineCell(stmt.slot, value);
+        } else if (stmt.slot != -1) {
+            environment.define(stmt.slot, value);
+        } else {
+            environment.defineConst(stmt.name.lexeme, value);
+        }
+        return Completion.NORMAL;
     }
     @Override
     public Object visitVariableExpr(Expr.Variable expr) {
-        return lookUpVariable(expr.name, expr);
+        return lookUpVariable(expr);
     }
 
     @Override
     public Object visitAssignExpr(Expr.Assign expr) {
-        Object value = evaluate(expr.value);
+        Object result = assign(expr);
+        return result == Environment.UNBOXED ? (Object)number : result;
+    }
+
+    private Object assign(Expr.Assign expr) {
+        Object value = evaluateOperand(expr.value);
+        double valueNumber = number;
     
         // Check if it's a compound assignment and retrieve the current value.
-        if (expr.operator != null) {
+        if (expr.operator != null && expr.operator.type != TokenType.EQUAL) {
             Object currentValue = null;
-            Integer distance = locals.get(expr);
-            if (distance != null) {
-                currentValue = environment.getAt(distance, expr.name.lexeme);
+            if (expr.captured) {
+                currentValue = environment.getCellAt(expr.depth, expr.slot);
+            } else if (expr.depth != -1) {
+                currentValue = localOperand(expr.depth, expr.slot);
             } else {
                 currentValue = globals.get(expr.name);
             }
+            double currentNumber = number;
+            if (currentValue instanceof Double) currentNumber = (double)currentValue;
+            if (value instanceof Double) valueNumber = (double)value;
+            boolean numbers = (currentValue == Environment.UNBOXED || currentValue instanceof Double)
+                && (value == Environment.UNBOXED || value instanceof Double);
     
             switch (expr.operator.type) {
                 case PLUS_EQUAL:
-                    checkNumberOperands(expr.operator, currentValue, value);
-                    value = (double)currentValue + (double)value;
+                    checkNumberOperands(expr.operator, numbers);
+                    valueNumber = currentNumber + valueNumber;
+                    value = Environment.UNBOXED;
                     break;
                 case MINUS_EQUAL:
-                    checkNumberOperands(expr.operator, currentValue, value);
-                    value = (double)currentValue - (double)value;
+                    checkNumberOperands(expr.operator, numbers);
+                    valueNumber = currentNumber - valueNumber;
+                    value = Environment.UNBOXED;
                     break;
                 case STAR_EQUAL:
-                    checkNumberOperands(expr.operator, currentValue, value);
-                    value = (double)currentValue * (double)value;
+                    checkNumberOperands(expr.operator, numbers);
+                    valueNumber = currentNumber * valueNumber;
+                    value = Environment.UNBOXED;
                     break;
                 case SLASH_EQUAL:
-                    checkNumberOperands(expr.operator, currentValue, value);
-                    if ((double)value == 0) {
+                    checkNumberOperands(expr.operator, numbers);
+                    if (valueNumber == 0) {
                         throw new RuntimeError(expr.operator, "Division by zero.");
                     }
-                    value = (double)currentValue / (double)value;
+                    valueNumber = currentNumber / valueNumber;
+                    value = Environment.UNBOXED;
                     break;
                 case SHIFT_LEFT_EQUAL:
-                    checkNumberOperands(expr.operator, currentValue, value);
-                    int leftShiftValue = ((Number) currentValue).intValue();
-                    int rightShiftValue = ((Number) value).intValue();
-                    value = leftShiftValue << rightShiftValue;
+                    checkNumberOperands(expr.operator, numbers);
+                    value = (int)currentNumber << (int)valueNumber;
                     break;
                 case SHIFT_RIGHT_EQUAL:
-                    checkNumberOperands(expr.operator, currentValue, value);
-                    int rightShiftLeftValue = ((Number) currentValue).intValue();
-                    int rightShiftRightValue = ((Number) value).intValue();
-                    value = rightShiftLeftValue >> rightShiftRightValue;
+                    checkNumberOperands(expr.operator, numbers);
+                    value = (int)currentNumber >> (int)valueNumber;
                     break;
-                case EQUAL:break;
                 // Add cases for other operators if any
                 default:
                     throw new RuntimeError(expr.operator, "Invalid assignment operator.");
@@ -374,10 +534,18 @@ public class Interpreter implements Expr.Visitor<Object>,
         }
     
         // Now perform the assignment with the (possibly) modified value.
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            environment.assignAt(distance, expr.name, value);
+        if (expr.captured) {
+            value = box(value, valueNumber);
+            environment.assignCellAt(expr.depth, expr.slot, value);
+        } else if (expr.depth != -1) {
+            if (value == Environment.UNBOXED) {
+                environment.assignNumberAt(expr.depth, expr.slot, valueNumber);
+                number = valueNumber;
+                return value;
+            }
+            environment.assignAt(expr.depth, expr.slot, value);
         } else {
+            value = box(value, valueNumber);
             globals.assign(expr.name, value);
         }
     
@@ -385,9 +553,9 @@ public class Interpreter implements Expr.Visitor<Object>,
     }
     @Override
     public Object visitArrayExpr(Expr.Array expr) {
-        List<Object> elements = new ArrayList<>();
-        for (Expr element : expr.elements) {
-            elements.add(evaluate(element));
+        Object[] elements = new Object[expr.elements.size()];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = evaluate(expr.elements.get(i));
         }
         return new JLangArray(elements);
     }
@@ -412,25 +580,40 @@ public class Interpreter implements Expr.Visitor<Object>,
         if (array instanceof JLangString) {
             try{
                 return ((JLangString)array).getItem((int)index); 
-            } catch (java.lang.StringIndexOutOfBoundsException e){
-                throw new RuntimeException("String of length "+ ((String)array).length()+ " index "+index+" out of bounds");
+            } catch (IndexOutOfBoundsException e){
+                throw new RuntimeException("String of length "+ ((JLangString)array).length()+ " index "+index+" out of bounds");
+            }
+        }
+        if (array instanceof JLangRange) {
+            try {
+                return ((JLangRange) array).getItem((int) index);
+            } catch (IndexOutOfBoundsException e) {
+                throw new RuntimeException("Range of length " + ((JLangRange) array).length() + " index " + index + " out of bounds");
             }
         }
         throw new RuntimeException("Only arrays are accessible by index.");
     }
     @Override
-    public Void visitBlockStmt(Stmt.Block stmt) {
-        executeBlock(stmt.statements, new Environment(environment));
-        return null;
+    public Completion visitBlockStmt(Stmt.Block stmt) {
+        if (stmt.slotCount == 0) {
+            // nothing declared, the Resolver gave the block no scope of its own
+            // (indexed loops here and in executeBlock() save an iterator per run)
+            for (int i = 0; i < stmt.statements.size(); i++) {
+                Completion completion = execute(stmt.statements.get(i));
+                if (completion != Completion.NORMAL) return completion;
+            }
+            return Completion.NORMAL;
+        }
+        return executeBlock(stmt.statements, new Environment(environment, stmt.slotCount, stmt.cells));
     }
     @Override
-    public Void visitIfStmt(Stmt.If stmt) {
+    public Completion visitIfStmt(Stmt.If stmt) {
         if (isTruthy(evaluate(stmt.condition))) {
-            execute(stmt.thenBranch);
+            return execute(stmt.thenBranch);
         } else if (stmt.elseBranch != null) {
-            execute(stmt.elseBranch);
+            return execute(stmt.elseBranch);
         }
-        return null;
+        return Completion.NORMAL;
     }
     @Override
     public Object visitLogicalExpr(Expr.Logical expr) {
@@ -444,41 +627,39 @@ public class Interpreter implements Expr.Visitor<Object>,
     }
 
     @Override
-    public Void visitWhileStmt(Stmt.While stmt) {
+    public Completion visitWhileStmt(Stmt.While stmt) {
         while (isTruthy(evaluate(stmt.condition))) {
-            try {
-                execute(stmt.body);
-            } catch (ContinueException e) {
-                // ContinueException is used to skip the rest of the current iteration and proceed with loop
-                continue; // Explicitly continue to the next iteration
-            } catch (BreakException e) {
-                // BreakException is used to exit the loop early
-                break; // Break out of the while loop
-            }
+            if (tier2 != null && currentFunction != null) tier2.backEdge(currentFunction);
+            Completion completion = execute(stmt.body);
+            // CONTINUE just moves on to the next iteration
+            if (completion == Completion.BREAK) break;
+            if (completion == Completion.RETURN) return completion;
         }
-        return null;
+        return Completion.NORMAL;
     }
     @Override
-    public Void visitBreakStmt(Stmt.Break stmt) {
-        throw new BreakException();
+    public Completion visitBreakStmt(Stmt.Break stmt) {
+        return Completion.BREAK;
     }
     @Override
-    public Void visitContinueStmt(Stmt.Continue stmt) {
-        throw new ContinueException();
+    public Completion visitContinueStmt(Stmt.Continue stmt) {
+        return Completion.CONTINUE;
     }
     @Override
-    public Void visitTryCatchStmt(Stmt.TryCatch stmt) {
+    public Completion visitTryCatchStmt(Stmt.TryCatch stmt) {
         boolean caughtException = false;
+        Completion completion = Completion.NORMAL;
         try {
-            execute(stmt.tryBlock);
+            completion = execute(stmt.tryBlock);
         } catch (RuntimeException ex) {
             caughtException = true;
             for (Stmt.Catch catchBlock : stmt.catchBlocks) {
                 if (ex.getClass().getSimpleName().equals(catchBlock.exceptionType.lexeme)) {
-                    // Define the exception in the local environment
-                    // and execute the catch block
-                    environment.define(catchBlock.variable.lexeme, ex);
-                    execute(catchBlock.block);
+                    // The exception variable gets a scope of its own
+                    // for the catch block
+                    Environment catchEnvironment = new Environment(environment, 1);
+                    catchEnvironment.define(0, catchBlock.captured ? new Cell(ex) : ex);
+                    completion = executeBlock(Arrays.asList(catchBlock.block), catchEnvironment);
                     caughtException = false; // Exception handled
                     break; // Exit after the first matching catch block
                 }
@@ -489,19 +670,71 @@ public class Interpreter implements Expr.Visitor<Object>,
         } finally {
             // The finally block should be executed whether an exception was thrown or not.
             if (stmt.finallyBlock != null) {
-                execute(stmt.finallyBlock);
+                // calls made by the finally block must not lose a pending return value
+                Object pendingReturn = returnValue;
+                Completion finallyCompletion = execute(stmt.finallyBlock);
+                // a break, continue or return in the finally block wins over the try block,
+                // the same way a finally block that throws replaces the pending exception
+                if (finallyCompletion != Completion.NORMAL) return finallyCompletion;
+                returnValue = pendingReturn;
             }
             // If there was an exception that was not caught, it was re-thrown above.
             // The Java runtime will continue to propagate it after executing the finally block.
         }
-        return null;
+        return completion;
+    }
+    @Override
+    public Completion visitCatchStmt(Stmt.Catch stmt) {
+        // Catch clauses only run through visitTryCatchStmt.
+        return Completion.NORMAL;
     }
     @Override
     public Object visitCallExpr(Expr.Call expr) {
-        Object callee = evaluate(expr.callee);
-        List<Object> arguments = new ArrayList<>();
-        for (Expr argument : expr.arguments) {
-            arguments.add(evaluate(argument));
+        if (expr.callee instanceof Expr.Super) {
+            Expr.Super callee = (Expr.Super) expr.callee;
+            return callMethod(expr, superMethod(callee), environment.getAt(callee.thisDepth, callee.thisSlot));
+        }
+        if (!(expr.callee instanceof Expr.Get)) return call(expr, evaluate(expr.callee));
+        // obj.name(...) calls a method it finds on an instance with the
+        // receiver passed along, a bound method is only made for the others
+        Expr.Get get = (Expr.Get) expr.callee;
+        Object object = evaluate(get.object);
+        if (get.cache == null) get.cache = new PropertyCache(get.name);
+        JLangFunction method = get.cache.method(object);
+        if (method != null) return callMethod(expr, method, object);
+        return call(expr, get.cache.get(object));
+    }
+
+    // super.name(...) and obj.name(...) for a method: it runs in a frame that
+    // gets the receiver, a bound method is only made for the others.
+    private Object callMethod(Expr.Call expr, JLangFunction method, Object receiver) {
+        int count = expr.arguments.size();
+        if (method.isInterpreted() && method.arity() == count) {
+            Environment frame = method.newFrame(receiver);
+            for (int i = 0; i < count; i++) {
+                frame.defineArgument(i, evaluate(expr.arguments.get(i)));
+            }
+            return method.invoke(this, frame);
+        }
+        return call(expr, method.bind((JLangInstance) receiver));
+    }
+
+    private Object call(Expr.Call expr, Object callee) {
+        int count = expr.arguments.size();
+        if (callee instanceof JLangFunction) {
+            JLangFunction function = (JLangFunction) callee;
+            if (function.isInterpreted() && function.arity() == count) {
+                // the arguments go straight into the parameter slots of the new frame
+                Environment frame = function.newFrame();
+                for (int i = 0; i < count; i++) {
+                    frame.defineArgument(i, evaluate(expr.arguments.get(i)));
+                }
+                return function.invoke(this, frame);
+            }
+        }
+        Object[] arguments = new Object[count];
+        for (int i = 0; i < count; i++) {
+            arguments[i] = evaluate(expr.arguments.get(i));
         }
         if (!(callee instanceof JLangCallable)) { // if something that's not a function calls something
             throw new RuntimeError(expr.paren,
@@ -510,10 +743,10 @@ public class Interpreter implements Expr.Visitor<Object>,
         
         JLangCallable function = (JLangCallable)callee;
 
-        if (arguments.size() != function.arity() && function.arity() != -1) { // if the number of arguments is bigger than it should be, the -1 is for dynamic arguments
+        if (count != function.arity() && function.arity() != -1) { // if the number of arguments is bigger than it should be, the -1 is for dynamic arguments
             throw new RuntimeError(expr.paren, "Expected " +
             function.arity() + " arguments but got " +
-            arguments.size() + ".");
+            count + ".");
         } 
             
         try {
@@ -523,60 +756,75 @@ public class Interpreter implements Expr.Visitor<Object>,
         }
     }
     @Override
-    public Void visitFunctionStmt(Stmt.Function stmt) {
-        JLangFunction function = new JLangFunction(stmt, environment, false);
-        environment.define(stmt.name.lexeme, function);
-        return null;
+    public Completion visitFunctionStmt(Stmt.Function stmt) {
+        JLangFunction function = new JLangFunction(stmt,
+            environment.capture(stmt.captureDepths, stmt.captureSlots), false);
+        if (stmt.captured) {
+            environment.defineCell(stmt.slot, function);
+        } else if (stmt.slot != -1) {
+            environment.define(stmt.slot, function);
+        } else {
+            environment.define(stmt.name.lexeme, function);
+        }
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitReturnStmt(Stmt.Return stmt) {
+    public Completion visitReturnStmt(Stmt.Return stmt) {
         Object value = null;
         if (stmt.value != null) value = evaluate(stmt.value);
-        throw new ReturnException(value);
+        returnValue = value;
+        return Completion.RETURN;
     }
     @Override
     public Object visitLambdaFunctionExpr(Expr.LambdaFunction expr) {
-        // Create a new function object, capturing the current environment
-        JLangAnonymousFunction function = new JLangAnonymousFunction(expr , environment);
+        // Create a new function object, capturing the variables it uses
+        JLangAnonymousFunction function = new JLangAnonymousFunction(expr,
+            environment.capture(expr.captureDepths, expr.captureSlots));
         return function;
     }
 
     @Override
-    public Void visitClassStmt(Stmt.Class stmt) {
+    public Completion visitClassStmt(Stmt.Class stmt) {
         List<JLangClass> superclasses = new ArrayList<>();
         Environment originalEnvironment = environment;
 
-        // Collect superclasses and prepare environments
+        // Define the class in the original environment
+        if (stmt.slot == -1) originalEnvironment.define(stmt.name.lexeme, null);
+
+        // Collect superclasses
         for (Expr.Variable superclass : stmt.parents) {
             Object superclassObject = evaluate(superclass);
             if (!(superclassObject instanceof JLangClass)) {
                 throw new RuntimeError(superclass.name, "Superclass must be a class.");
             }
             superclasses.add((JLangClass)superclassObject);
-
-            // Create a new environment chain for each superclass
-            environment = new Environment(environment);
-            environment.define(superclass.name.lexeme, superclassObject);
         }
-        environment.define("superclasses", superclasses);
-
-        // Define the class in the original environment
-        originalEnvironment.define(stmt.name.lexeme, null);
+        JLangClass klass = new JLangClass(stmt.name.lexeme, superclasses, new HashMap<>());
+        // The methods capture the class for their super lookups from one scope holding it
+        if (!stmt.parents.isEmpty()) {
+            environment = new Environment(environment, 1);
+            environment.define(0, klass);
+        }
 
-        Map<String, JLangFunction> methods = new HashMap<>();
         for (Stmt.Function method : stmt.methods) {
-            JLangFunction function = new JLangFunction(method, environment, method.name.lexeme.equals(JLangClass.CLASS_INITIALIZATION_FUNCTION_NAME));
-            methods.put(method.name.lexeme, function);
+            JLangFunction function = new JLangFunction(method,
+                environment.capture(method.captureDepths, method.captureSlots),
+                method.name.lexeme.equals(JLangClass.CLASS_INITIALIZATION_FUNCTION_NAME));
+            klass.defineMethod(method.name.lexeme, function);
         }
 
-        JLangClass klass = new JLangClass(stmt.name.lexeme, superclasses, methods);
-
         // Revert back to the original environment
         environment = originalEnvironment;
         // Assign the new class to the name in the environment
-        environment.assign(stmt.name, klass);
-        return null;
+        if (stmt.captured) {
+            environment.defineCell(stmt.slot, klass);
+        } else if (stmt.slot != -1) {
+            environment.define(stmt.slot, klass);
+        } else {
+            environment.assign(stmt.name, klass);
+        }
+        return Completion.NORMAL;
     }
 
     @Override
@@ -594,7 +842,8 @@ public class Interpreter implements Expr.Visitor<Object>,
         // Define methods
         Map<String, JLangFunction> methods = new HashMap<>();
         for (Stmt.Function method : expr.methods) {
-            JLangFunction function = new JLangFunction(method, environment, false);
+            JLangFunction function = new JLangFunction(method,
+                environment.capture(method.captureDepths, method.captureSlots), false);
             methods.put(method.name.lexeme, function);
         }
 
@@ -615,7 +864,7 @@ public class Interpreter implements Expr.Visitor<Object>,
     @Override
     public Object visitObjectLiteralExpr(Expr.ObjectLiteral expr) {
         // You need to get a reference to the "Object" class, which should be predefined in your environment.
-        JLangClass objectClass = (JLangClass)environment.getAt(0, "Object");
+        JLangClass objectClass = (JLangClass)globals.valueOf("Object");
 
         // Create a new instance of the base object class.
         JLangBaseObject objectInstance = new JLangBaseObject(objectClass);
@@ -631,10 +880,8 @@ public class Interpreter implements Expr.Visitor<Object>,
     @Override
     public Object visitGetExpr(Expr.Get expr) {
         Object object = evaluate(expr.object);
-        if (object instanceof JLangObject) {
-            return ((JLangObject) object).get(expr.name);
-        } 
-        throw new RuntimeError(expr.name, "Only instances have properties.");
+        if (expr.cache == null) expr.cache = new PropertyCache(expr.name);
+        return expr.cache.get(object);
     }
 
     @Override
@@ -644,50 +891,73 @@ public class Interpreter implements Expr.Visitor<Object>,
             throw new RuntimeError(expr.name, "Only instances have fields.");
         }
         Object value = evaluate(expr.value);
-        ((JLangInstance)object).set(expr.name, value);
+        if (expr.cache == null) expr.cache = new PropertyCache(expr.name);
+        expr.cache.set(object, value);
         return value;
     }
     @Override
     public Object visitSuperExpr(Expr.Super expr) {
-        int distance = locals.get(expr);
+        JLangInstance object = (JLangInstance)environment.getAt(expr.thisDepth, expr.thisSlot);
+        return superMethod(expr).bind(object);
+    }
+    private JLangFunction superMethod(Expr.Super expr) {
+        int distance = expr.depth;
         
-        // The superclasses should have been stored when the subclass entered its scope
-        List<JLangClass> superclasses = (List<JLangClass>)environment.getAt(distance, "superclasses");
+        // The class should have been stored when the subclass entered its scope
+        JLangClass klass = (JLangClass)environment.getAt(distance, expr.slot);
 
-        JLangInstance object = (JLangInstance)environment.getAt(distance - 1, JLangClass.CLASS_INNER_INSTANCE_NAME);
-
-        JLangFunction method = null;
-        for (JLangClass superclass : superclasses) {
-            method = superclass.findMethod(expr.method.lexeme);
-            if (method != null) {
-                break;
-            }
-        }
+        JLangFunction method = klass.findSuperMethod(expr.method.lexeme);
         if (method == null) {
             throw new RuntimeError(expr.method, "Undefined method '" + expr.method.lexeme + "' for superclass.");
         }
-        return method.bind(object);
+        return method;
     }
     @Override
     public Object visitThisExpr(Expr.This expr) {
-        return lookUpVariable(expr.keyword, expr);
+        // 'this' is the only slot of the scope bind() creates, or a slot
+        // of the closure
+        if (expr.depth != -1) {
+            return environment.getAt(expr.depth, expr.slot);
+        }
+        return globals.get(expr.keyword);
     }
 
 
-    public void executeBlock(List<Stmt> statements,
+    public Completion executeBlock(List<Stmt> statements,
         Environment environment) {
         Environment previous = this.environment;
         try {
             this.environment = environment;
-            for (Stmt statement : statements) {
-                execute(statement);
+            for (int i = 0; i < statements.size(); i++) {
+                Completion completion = execute(statements.get(i));
+                if (completion != Completion.NORMAL) return completion;
             }
+            return Completion.NORMAL;
         } finally {
             this.environment = previous;
         }
     }
+
+    // Runs the body of a call; function is null for lambdas.
+    public Completion executeBody(Stmt.Function function, List<Stmt> body,
+        Environment environment) {
+        Stmt.Function previous = currentFunction;
+        try {
+            currentFunction = function;
+            return executeBlock(body, environment);
+        } finally {
+            currentFunction = previous;
+        }
+    }
+
+    // Hands the value of the last return statement to the call that finished.
+    public Object takeReturnValue() {
+        Object value = returnValue;
+        returnValue = null;
+        return value;
+    }
     
-    private String stringify(Object object) {
+    public static String stringify(Object object) {
         if (object == null) return "nil";
         if (object instanceof Double) {
             String text = object.toString();
@@ -698,9 +968,8 @@ public class Interpreter implements Expr.Visitor<Object>,
         }
         return object.toString();
     }
-    private void execute(Stmt stmt) {
-        stmt.accept(this);
-        // stmt.accept(this);
+    private Completion execute(Stmt stmt) {
+        return stmt.accept(this);
     }
     public void interpret(List<Stmt> statements) {
         try {
@@ -711,10 +980,6 @@ public class Interpreter implements Expr.Visitor<Object>,
             JLang.runtimeError(error);
         }
     }
-    
-    public void resolve(Expr expr, int depth) {
-        locals.put(expr, depth);
-    }
 
 }
  
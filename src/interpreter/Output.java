@@ -0,0 +1,109 @@
+package interpreter;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+
+// Standard output of every engine. print, shw and the block expressions
+// write into one large buffer that goes out in batches, not a write call
+// per line: when it fills up, every flushLines lines, every flushMillis
+// while there's text waiting, before input() prompts, on flush(), before
+// an error is reported on stderr and at exit.
+public final class Output {
+    private static final PrintWriter out = new PrintWriter(new BufferedWriter(
+        new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), Charset.defaultCharset()), 1 << 16), false);
+    private static final Object lock = new Object();
+
+    // 0 turns the line count off, the buffer size still bounds the batches
+    private static int flushLines = 0;
+    // 0 turns the timer off
+    private static long flushMillis = 100;
+    private static int pendingLines;
+    private static boolean pending;
+    private static Thread timer;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(Output::flush));
+    }
+
+    private Output() {
+    }
+
+    public static void setFlushLines(int lines) {
+        synchronized (lock) {
+            flushLines = lines;
+        }
+    }
+
+    public static void setFlushMillis(long millis) {
+        synchronized (lock) {
+            flushMillis = millis;
+            lock.notifyAll();
+        }
+    }
+
+    public static void println(String line) {
+        synchronized (lock) {
+            out.println(line);
+            pendingLines++;
+            if (flushLines > 0 && pendingLines >= flushLines) {
+                flush();
+            } else {
+                waiting();
+            }
+        }
+    }
+
+    public static void print(String text) {
+        synchronized (lock) {
+            out.print(text);
+            waiting();
+        }
+    }
+
+    public static void flush() {
+        synchronized (lock) {
+            out.flush();
+            pendingLines = 0;
+            pending = false;
+        }
+    }
+
+    // Called with the lock held when the buffer has text in it.
+    private static void waiting() {
+        if (!pending) {
+            pending = true;
+            lock.notifyAll();
+        }
+        if (timer == null && flushMillis > 0) {
+            // a script that prints and then computes for a while still
+            // shows what it printed
+            timer = new Thread(Output::flushPeriodically, "jlang-output");
+            timer.setDaemon(true);
+            timer.start();
+        }
+    }
+
+    // Sleeps on the lock while there's nothing to flush, so a program that
+    // stopped printing doesn't wake it; waiting() notifies when text comes.
+    private static void flushPeriodically() {
+        try {
+            for (;;) {
+                long millis;
+                synchronized (lock) {
+                    while (!pending || flushMillis <= 0) lock.wait();
+                    millis = flushMillis;
+                }
+                Thread.sleep(millis);
+                synchronized (lock) {
+                    if (pending) flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            // the process is going away
+        }
+    }
+}
@@ -0,0 +1,507 @@
+package interpreter.array;
+
+import java.util.Arrays;
+
+import interpreter.errors.InvalidArgumentsException;
+import interpreter.jchar.JLangChar;
+
+// How a JLangArray keeps its elements: unboxed while they're all numbers,
+// all chars or all booleans, in an Object[] otherwise. Storing a value the
+// storage can't hold moves the array to Boxed for good.
+abstract class ArrayStorage {
+    int size;
+
+    // The storage for the first size values, it may keep the array itself.
+    static ArrayStorage of(Object[] values, int size) {
+        if (size == 0) return new Doubles(new double[4], 0);
+        Class<?> kind = values[0] == null ? null : values[0].getClass();
+        for (int i = 1; i < size; i++) {
+            if (values[i] == null || values[i].getClass() != kind) return new Boxed(values, size);
+        }
+        if (kind == Double.class) {
+            double[] doubles = new double[size];
+            for (int i = 0; i < size; i++) doubles[i] = (Double) values[i];
+            return new Doubles(doubles, size);
+        }
+        if (kind == JLangChar.class) {
+            char[] chars = new char[size];
+            for (int i = 0; i < size; i++) chars[i] = ((JLangChar) values[i]).getValue();
+            return new Chars(chars, size);
+        }
+        if (kind == Boolean.class) {
+            boolean[] booleans = new boolean[size];
+            for (int i = 0; i < size; i++) booleans[i] = (Boolean) values[i];
+            return new Booleans(booleans, size);
+        }
+        return new Boxed(values, size);
+    }
+
+    // The storage an empty array moves to when the value is added.
+    static ArrayStorage forValue(Object value) {
+        if (value instanceof Double) return new Doubles(new double[4], 0);
+        if (value instanceof JLangChar) return new Chars(new char[4], 0);
+        if (value instanceof Boolean) return new Booleans(new boolean[4], 0);
+        return new Boxed(new Object[4], 0);
+    }
+
+    abstract boolean accepts(Object value);
+
+    abstract Object get(int index);
+
+    abstract void set(int index, Object value);
+
+    // Inserts at index, size appends.
+    abstract void add(int index, Object value);
+
+    abstract void remove(int index);
+
+    abstract ArrayStorage copy();
+
+    abstract void sort();
+
+    abstract void reverse();
+
+    Boxed generalize() {
+        Object[] values = new Object[Math.max(4, size)];
+        for (int i = 0; i < size; i++) values[i] = get(i);
+        return new Boxed(values, size);
+    }
+
+    int indexOf(Object value) {
+        for (int i = 0; i < size; i++) {
+            if (java.util.Objects.equals(get(i), value)) return i;
+        }
+        return -1;
+    }
+
+    // Whether both hold equal elements in the same order, whatever the storages.
+    boolean sameElements(ArrayStorage other) {
+        if (size != other.size) return false;
+        for (int i = 0; i < size; i++) {
+            if (!java.util.Objects.equals(get(i), other.get(i))) return false;
+        }
+        return true;
+    }
+
+    // The hash List.hashCode() would give the boxed elements, so storages
+    // holding equal elements hash the same.
+    int hash() {
+        int hash = 1;
+        for (int i = 0; i < size; i++) hash = 31 * hash + elementHash(i);
+        return hash;
+    }
+
+    int elementHash(int index) {
+        return java.util.Objects.hashCode(get(index));
+    }
+
+    // The sum of the elements from from up to to, not included.
+    double sum(int from, int to) {
+        throw new InvalidArgumentsException("Non-number element in sum function.");
+    }
+
+    // The smallest element for sign -1, the largest for 1.
+    Object extreme(int sign) {
+        throw new InvalidArgumentsException("Array elements are not comparable.");
+    }
+
+    Object[] toArray() {
+        Object[] values = new Object[size];
+        for (int i = 0; i < size; i++) values[i] = get(i);
+        return values;
+    }
+
+    // The capacity to grow to for one more element.
+    int grown(int capacity) {
+        return Math.max(4, capacity * 2);
+    }
+
+    // The backing array can be longer than size, past it are stale slots.
+    void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    void checkInsert(int index) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    static void checkNotEmpty(int size) {
+        if (size == 0) throw new InvalidArgumentsException("Array is empty.");
+    }
+
+    static final class Doubles extends ArrayStorage {
+        private double[] values;
+
+        Doubles(double[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Double;
+        }
+
+        @Override
+        Object get(int index) {
+            checkIndex(index);
+            return values[index];
+        }
+
+        @Override
+        void set(int index, Object value) {
+            checkIndex(index);
+            values[index] = (Double) value;
+        }
+
+        @Override
+        void add(int index, Object value) {
+            checkInsert(index);
+            if (size == values.length) values = Arrays.copyOf(values, grown(values.length));
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = (Double) value;
+            size++;
+        }
+
+        @Override
+        void remove(int index) {
+            checkIndex(index);
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+        }
+
+        @Override
+        ArrayStorage copy() {
+            return new Doubles(Arrays.copyOf(values, Math.max(4, size)), size);
+        }
+
+        @Override
+        void sort() {
+            Arrays.sort(values, 0, size);
+        }
+
+        @Override
+        void reverse() {
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                double value = values[i];
+                values[i] = values[j];
+                values[j] = value;
+            }
+        }
+
+        @Override
+        int indexOf(Object value) {
+            if (!(value instanceof Double)) return -1;
+            // Double.equals() tells NaN and the zeros apart by their bits
+            long bits = Double.doubleToLongBits((Double) value);
+            for (int i = 0; i < size; i++) {
+                if (Double.doubleToLongBits(values[i]) == bits) return i;
+            }
+            return -1;
+        }
+
+        @Override
+        boolean sameElements(ArrayStorage other) {
+            if (!(other instanceof Doubles)) return super.sameElements(other);
+            double[] others = ((Doubles) other).values;
+            if (size != other.size) return false;
+            for (int i = 0; i < size; i++) {
+                if (Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(others[i])) return false;
+            }
+            return true;
+        }
+
+        @Override
+        int elementHash(int index) {
+            return Double.hashCode(values[index]);
+        }
+
+        @Override
+        double sum(int from, int to) {
+            double sum = 0.0;
+            for (int i = from; i < to; i++) sum += values[i];
+            return sum;
+        }
+
+        @Override
+        Object extreme(int sign) {
+            checkNotEmpty(size);
+            double best = values[0];
+            for (int i = 1; i < size; i++) {
+                if (Double.compare(values[i], best) * sign > 0) best = values[i];
+            }
+            return best;
+        }
+    }
+
+    static final class Chars extends ArrayStorage {
+        private char[] values;
+
+        Chars(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof JLangChar;
+        }
+
+        @Override
+        Object get(int index) {
+            checkIndex(index);
+            return JLangChar.of(values[index]);
+        }
+
+        @Override
+        void set(int index, Object value) {
+            checkIndex(index);
+            values[index] = ((JLangChar) value).getValue();
+        }
+
+        @Override
+        void add(int index, Object value) {
+            checkInsert(index);
+            if (size == values.length) values = Arrays.copyOf(values, grown(values.length));
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = ((JLangChar) value).getValue();
+            size++;
+        }
+
+        @Override
+        void remove(int index) {
+            checkIndex(index);
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+        }
+
+        @Override
+        ArrayStorage copy() {
+            return new Chars(Arrays.copyOf(values, Math.max(4, size)), size);
+        }
+
+        @Override
+        void sort() {
+            Arrays.sort(values, 0, size);
+        }
+
+        @Override
+        void reverse() {
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                char value = values[i];
+                values[i] = values[j];
+                values[j] = value;
+            }
+        }
+
+        @Override
+        int indexOf(Object value) {
+            if (!(value instanceof JLangChar)) return -1;
+            char c = ((JLangChar) value).getValue();
+            for (int i = 0; i < size; i++) {
+                if (values[i] == c) return i;
+            }
+            return -1;
+        }
+
+        @Override
+        boolean sameElements(ArrayStorage other) {
+            if (!(other instanceof Chars)) return super.sameElements(other);
+            return size == other.size && Arrays.equals(values, 0, size, ((Chars) other).values, 0, size);
+        }
+
+        @Override
+        int elementHash(int index) {
+            return values[index];
+        }
+
+        @Override
+        Object extreme(int sign) {
+            checkNotEmpty(size);
+            char best = values[0];
+            for (int i = 1; i < size; i++) {
+                if ((values[i] - best) * sign > 0) best = values[i];
+            }
+            return JLangChar.of(best);
+        }
+    }
+
+    static final class Booleans extends ArrayStorage {
+        private boolean[] values;
+
+        Booleans(boolean[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Boolean;
+        }
+
+        @Override
+        Object get(int index) {
+            checkIndex(index);
+            return values[index];
+        }
+
+        @Override
+        void set(int index, Object value) {
+            checkIndex(index);
+            values[index] = (Boolean) value;
+        }
+
+        @Override
+        void add(int index, Object value) {
+            checkInsert(index);
+            if (size == values.length) values = Arrays.copyOf(values, grown(values.length));
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = (Boolean) value;
+            size++;
+        }
+
+        @Override
+        void remove(int index) {
+            checkIndex(index);
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+        }
+
+        @Override
+        ArrayStorage copy() {
+            return new Booleans(Arrays.copyOf(values, Math.max(4, size)), size);
+        }
+
+        @Override
+        void sort() {
+            // false comes first, like Boolean.compareTo()
+            int falses = 0;
+            for (int i = 0; i < size; i++) {
+                if (!values[i]) falses++;
+            }
+            Arrays.fill(values, 0, falses, false);
+            Arrays.fill(values, falses, size, true);
+        }
+
+        @Override
+        void reverse() {
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                boolean value = values[i];
+                values[i] = values[j];
+                values[j] = value;
+            }
+        }
+
+        @Override
+        int elementHash(int index) {
+            return Boolean.hashCode(values[index]);
+        }
+
+        @Override
+        Object extreme(int sign) {
+            checkNotEmpty(size);
+            // the smallest is false if there's one, the largest true
+            boolean wanted = sign > 0;
+            for (int i = 0; i < size; i++) {
+                if (values[i] == wanted) return wanted;
+            }
+            return !wanted;
+        }
+    }
+
+    static final class Boxed extends ArrayStorage {
+        private Object[] values;
+
+        Boxed(Object[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return true;
+        }
+
+        @Override
+        Object get(int index) {
+            checkIndex(index);
+            return values[index];
+        }
+
+        @Override
+        void set(int index, Object value) {
+            checkIndex(index);
+            values[index] = value;
+        }
+
+        @Override
+        void add(int index, Object value) {
+            checkInsert(index);
+            if (size == values.length) values = Arrays.copyOf(values, grown(values.length));
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+        }
+
+        @Override
+        void remove(int index) {
+            checkIndex(index);
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            values[--size] = null;
+        }
+
+        @Override
+        ArrayStorage copy() {
+            return new Boxed(Arrays.copyOf(values, Math.max(4, size)), size);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void sort() {
+            Arrays.sort(values, 0, size, (a, b) -> ((Comparable<Object>) a).compareTo(b));
+        }
+
+        @Override
+        void reverse() {
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                Object value = values[i];
+                values[i] = values[j];
+                values[j] = value;
+            }
+        }
+
+        @Override
+        double sum(int from, int to) {
+            double sum = 0.0;
+            for (int i = from; i < to; i++) {
+                if (!(values[i] instanceof Number)) return super.sum(from, to);
+                sum += ((Number) values[i]).doubleValue();
+            }
+            return sum;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object extreme(int sign) {
+            checkNotEmpty(size);
+            Object best = values[0];
+            try {
+                for (int i = 1; i < size; i++) {
+                    if (((Comparable<Object>) values[i]).compareTo(best) * sign > 0) best = values[i];
+                }
+            } catch (ClassCastException | NullPointerException e) {
+                return super.extreme(sign);
+            }
+            return best;
+        }
+
+        @Override
+        Object[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -1,26 +1,40 @@
 package interpreter.array;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
-import interpreter.Interpreter;
 import interpreter.callable.JLangCallable;
-import interpreter.callable.JLangFunction;
+import interpreter.callable.JLangNativeMethod;
 import interpreter.errors.RuntimeError;
 import interpreter.indexible.JLangIndexible;
-import interpreter.klass.JLangClass;
-import interpreter.klass.JLangObject;
+import interpreter.klass.JLangBuiltInObject;
+import interpreter.seq.JLangSeq;
 import tokenizer.Token;
-import tokenizer.TokenType;
 
-public class JLangArray extends JLangClass  implements JLangObject, JLangIndexible{
-    private final List<Object> elements;
+public class JLangArray implements JLangBuiltInObject, JLangIndexible{
+    // replaced by a Boxed storage when a value of another kind comes in
+    private ArrayStorage storage;
 
     public JLangArray(List<Object> elements) {
-        super("JLangArray");
-        this.elements = elements;
+        Object[] values = elements.toArray();
+        this.storage = ArrayStorage.of(values, values.length);
+    }
+
+    // An array of the values, which it may keep instead of copying them.
+    public JLangArray(Object[] values) {
+        this.storage = ArrayStorage.of(values, values.length);
+    }
+
+    // An array of the numbers, which it keeps without boxing them.
+    public JLangArray(double[] numbers) {
+        this.storage = new ArrayStorage.Doubles(numbers, numbers.length);
+    }
+
+    private JLangArray(ArrayStorage storage) {
+        this.storage = storage;
     }
 
     @Override
@@ -28,9 +42,9 @@ public class JLangArray extends JLangClass  implements JLangObject, JLangIndexib
         StringBuilder sb = new StringBuilder();
         sb.append("[");
         
-        for (int i = 0; i < elements.size(); i++) {
-            sb.append(elements.get(i));
-            if (i < elements.size() - 1) {
+        for (int i = 0; i < storage.size; i++) {
+            sb.append(storage.get(i));
+            if (i < storage.size - 1) {
                 sb.append(", ");
             }
         }
@@ -39,345 +53,254 @@ public class JLangArray extends JLangClass  implements JLangObject, JLangIndexib
         return sb.toString();
     }
 
+    // Arrays are equal when their elements are, in the same order; the hash
+    // isn't kept since the elements can change.
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof JLangArray)) return false;
+        return storage.sameElements(((JLangArray) other).storage);
+    }
+
+    @Override
+    public int hashCode() {
+        return storage.hash();
+    }
+
+    // A view of the elements, boxing them as they're read.
     public List<Object> getElements(){
-        return elements;
+        return new AbstractList<Object>() {
+            @Override
+            public Object get(int index) {
+                return storage.get(index);
+            }
+
+            @Override
+            public Object set(int index, Object value) {
+                Object old = get(index);
+                setItem(index, value);
+                return old;
+            }
+
+            @Override
+            public int size() {
+                return storage.size;
+            }
+        };
     }
 
     // Add methods for working with the array, such as get, set, length, etc.
     public int size() {
-        return elements.size();
+        return storage.size;
     }
         
     public void setItem(int index, Object value) {
         // Ensure the index is within the array bounds
-        if (index >= 0 && index < elements.size()) {
-            elements.set(index, value);
+        if (index >= 0 && index < storage.size) {
+            if (!storage.accepts(value)) storage = storage.generalize();
+            storage.set(index, value);
         } else {
-            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + elements.size());
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + storage.size);
         }
     }
 
-    @Override
-    public void sort() {
-        if(elements != null && !elements.isEmpty() && elements.get(0) instanceof Comparable) {
-            Collections.sort((List)elements);
-        } else {
-            throw new IllegalStateException("Array elements are not comparable and cannot be sorted.");
+    public void insert(int index, Object value) {
+        if (!storage.accepts(value)) {
+            storage = storage.size == 0 ? ArrayStorage.forValue(value) : storage.generalize();
         }
+        storage.add(index, value);
     }
-    @Override
-    public void reverse() {
-        if(elements != null) {
-            Collections.reverse(elements);
-        } else {
-            throw new IllegalStateException("Array is null and cannot be reversed.");
-        }
+
+    public Object removeAt(int index) {
+        Object element = storage.get(index);
+        storage.remove(index);
+        return element;
     }
 
-    
-    @Override
-    protected void defineBuiltInMethods() {
-        System.out.println("Defined array built-ins");
-        methods.put("size", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() {
-                return 0; // size doesn't take any parameters
-            }
+    public int indexOf(Object value) {
+        return storage.indexOf(value);
+    }
 
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return size();
-            }
-        });
+    // The sum of the elements, which must all be numbers.
+    public double sum() {
+        return storage.sum(0, storage.size);
+    }
 
-        methods.put("get", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() {
-                return 1; // get takes one parameter
-            }
+    // The sum of the elements from from up to to, not included.
+    public double sum(int from, int to) {
+        return storage.sum(from, to);
+    }
 
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                // You would also need to check that arguments are of the correct type and handle any errors
-                int index = ((Double) arguments.get(0)).intValue();
-                return getItem(index);
-            }
-        });
+    public Object min() {
+        return storage.extreme(-1);
+    }
 
-        methods.put("set", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() {
-                return 2; // set takes two parameters
-            }
+    public Object max() {
+        return storage.extreme(1);
+    }
 
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                // Again, validate argument types and handle errors
-                int index = ((Double) arguments.get(0)).intValue();
-                Object value = arguments.get(1);
-                setItem(index, value);
-                return null; // set doesn't return anything
-            }
-        });
+    @Override
+    public void sort() {
+        boolean comparable = storage.size > 0 && (!(storage instanceof ArrayStorage.Boxed) || storage.get(0) instanceof Comparable);
+        if (comparable) {
+            storage.sort();
+        } else {
+            throw new IllegalStateException("Array elements are not comparable and cannot be sorted.");
+        }
+    }
+    @Override
+    public void reverse() {
+        storage.reverse();
+    }
 
-        methods.put("add", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 1; }
-    
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                elements.add(arguments.get(0));
-                return null; // This method does not return anything.
+    // The methods every array shares, each gets the array it's called on.
+    private static final Map<String, JLangNativeMethod<JLangArray>> METHODS = new JLangNativeMethod.Table<JLangArray>()
+        .define("size", 0, (interpreter, array, arguments) -> array.size())
+        .define("get", 1, (interpreter, array, arguments) -> {
+            // You would also need to check that arguments are of the correct type and handle any errors
+            int index = ((Double) arguments.get(0)).intValue();
+            return array.getItem(index);
+        })
+        .define("set", 2, (interpreter, array, arguments) -> {
+            // Again, validate argument types and handle errors
+            int index = ((Double) arguments.get(0)).intValue();
+            array.setItem(index, arguments.get(1));
+            return null; // set doesn't return anything
+        })
+        .define("add", 1, (interpreter, array, arguments) -> {
+            array.insert(array.size(), arguments.get(0));
+            return null;
+        })
+        .define("insert", 2, (interpreter, array, arguments) -> {
+            int index = ((Double) arguments.get(0)).intValue();
+            array.insert(index, arguments.get(1));
+            return null;
+        })
+        .define("removeAt", 1, (interpreter, array, arguments) -> {
+            int index = ((Double) arguments.get(0)).intValue();
+            if (index >= 0 && index < array.size()) {
+                return array.removeAt(index);
+            } else {
+                throw new RuntimeError("Index out of bounds for removal.");
             }
-        });
-    
-        methods.put("insert", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 2; }
-    
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                int index = ((Double) arguments.get(0)).intValue();
-                Object element = arguments.get(1);
-                elements.add(index, element);
-                return null; // This method does not return anything.
+        })
+        .define("contains", 1, (interpreter, array, arguments) -> array.indexOf(arguments.get(0)) != -1)
+        .define("indexOf", 1, (interpreter, array, arguments) -> (double) array.indexOf(arguments.get(0)))
+        .define("clear", 0, (interpreter, array, arguments) -> {
+            array.storage = ArrayStorage.of(new Object[0], 0);
+            return null;
+        })
+        .define("isEmpty", 0, (interpreter, array, arguments) -> array.size() == 0)
+        .define("toArray", 0, (interpreter, array, arguments) -> array.storage.toArray())
+        .define("forEach", 1, (interpreter, array, arguments) -> {
+            JLangCallable action = (JLangCallable) arguments.get(0);
+            for (int i = 0; i < array.size(); i++) {
+                Object element = array.storage.get(i);
+                action.call(interpreter, List.of(element));
             }
-        });
-        
-        methods.put("removeAt", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 1; }
-
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                int index = ((Double) arguments.get(0)).intValue();
-                if (index >= 0 && index < elements.size()) {
-                    return elements.remove(index);
+            return null;
+        })
+        .define("filter", 1, (interpreter, array, arguments) -> {
+            JLangCallable predicate = (JLangCallable) arguments.get(0);
+            List<Object> filteredElements = new ArrayList<>();
+            for (int i = 0; i < array.size(); i++) {
+                Object element = array.storage.get(i);
+                boolean result;
+                // Check the number of parameters the function expects
+                if (predicate.arity() == 1) {
+                    // If the function expects one parameter, pass only the element
+                    result = (boolean) predicate.call(interpreter, List.of(element));
+                } else if (predicate.arity() == 2) {
+                    // If the function expects two parameters, pass the index and the element
+                    result = (boolean) predicate.call(interpreter, List.of((double)i, element));
                 } else {
-                    throw new RuntimeError("Index out of bounds for removal.");
+                    throw new IllegalArgumentException("Function passed to 'map' must accept either 1 or 2 parameters.");
                 }
-            }
-        });
-
-        methods.put("contains", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 1; }
-    
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return elements.contains(arguments.get(0));
-            }
-        });
-
-        methods.put("indexOf", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 1; }
-    
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return (double) elements.indexOf(arguments.get(0));
-            }
-        });
-
-        methods.put("clear", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 0; }
-    
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                elements.clear();
-                return null;
-            }
-        });
-
-        methods.put("isEmpty", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 0; }
-    
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return elements.isEmpty();
-            }
-        });
-
-        methods.put("toArray", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 0; }
-    
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return elements.toArray();
-            }
-        });
-
-        methods.put("forEach", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 1; }
-        
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                JLangCallable action = (JLangCallable) arguments.get(0);
-                
-                for (Object element : elements) {
-                    action.call(interpreter, List.of(element));
+                if (result) {
+                    filteredElements.add(element);
                 }
-                return null;
             }
-        });
-
-        methods.put("filter", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 1; } // filter takes a single function as an argument
-        
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                JLangCallable predicate = (JLangCallable) arguments.get(0);
-                List<Object> filteredElements = new ArrayList<>();
-                
-                for (int i = 0; i < elements.size(); i++) {
-                    Object element = elements.get(i);
-                    boolean result;
-                    // Check the number of parameters the function expects
-                    if (predicate.arity() == 1) {
-                        // If the function expects one parameter, pass only the element
-                        result = (boolean) predicate.call(interpreter, List.of(element));
-                    } else if (predicate.arity() == 2) {
-                        // If the function expects two parameters, pass the index and the element
-                        result = (boolean) predicate.call(interpreter, List.of((double)i, element));
-                    } else {
-                        throw new IllegalArgumentException("Function passed to 'map' must accept either 1 or 2 parameters.");
-                    }
-                    if (result) {
-                        filteredElements.add(element);
-                    }
+            return new JLangArray(filteredElements);
+        })
+        .define("map", 1, (interpreter, array, arguments) -> {
+            JLangCallable transform = (JLangCallable) arguments.get(0);
+            List<Object> mappedElements = new ArrayList<>();
+            for (int i = 0; i < array.size(); i++) {
+                Object element = array.storage.get(i);
+                Object result;
+                // Check the number of parameters the function expects
+                if (transform.arity() == 1) {
+                    // If the function expects one parameter, pass only the element
+                    result = transform.call(interpreter, List.of(element));
+                } else if (transform.arity() == 2) {
+                    // If the function expects two parameters, pass the index and the element
+                    result = transform.call(interpreter, List.of((double)i, element));
+                } else {
+                    throw new IllegalArgumentException("Function passed to 'map' must accept either 1 or 2 parameters.");
                 }
-                return new JLangArray(filteredElements);
+                mappedElements.add(result);
             }
-        });
-
-        methods.put("map", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 1; } // map takes a single function as an argument
-        
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                JLangCallable transform = (JLangCallable) arguments.get(0);
-                List<Object> mappedElements = new ArrayList<>();
-                
-                for (int i = 0; i < elements.size(); i++) {
-                    Object element = elements.get(i);
-                    Object result;
-                    // Check the number of parameters the function expects
-                    if (transform.arity() == 1) {
-                        // If the function expects one parameter, pass only the element
-                        result = transform.call(interpreter, List.of(element));
-                    } else if (transform.arity() == 2) {
-                        // If the function expects two parameters, pass the index and the element
-                        result = transform.call(interpreter, List.of((double)i, element));
-                    } else {
-                        throw new IllegalArgumentException("Function passed to 'map' must accept either 1 or 2 parameters.");
-                    }
-                    mappedElements.add(result);
+            return new JLangArray(mappedElements);
+        })
+        .define("sort", 0, (interpreter, array, arguments) -> {
+            // sorts a copy, numbers, chars and booleans without boxing them
+            ArrayStorage sorted = array.storage.copy();
+            sorted.sort();
+            return new JLangArray(sorted);
+        })
+        .define("sortWithComparator", 1, (interpreter, array, arguments) -> {
+            JLangCallable comparator = (JLangCallable) arguments.get(0);
+            List<Object> sortedElements = array.asList();
+            sortedElements.sort((a, b) -> {
+                Object result = comparator.call(interpreter, List.of(a, b));
+                // Handle the case where the result is a Double
+                if (result instanceof Double) {
+                    // Convert the Double to an int for comparison
+                    // assuming the double value is actually within int range and intended for comparison
+                    return (int)((Double) result).doubleValue();
+                } else if (result instanceof Integer) {
+                    return (Integer) result;
+                } else {
+                    // Throw an error or handle the case where the result is not a number
+                    throw new ClassCastException("Comparator must return an Integer or a Double.");
                 }
-                return new JLangArray(mappedElements);
+            });
+            return new JLangArray(sortedElements);
+        })
+        .define("reverse", 0, (interpreter, array, arguments) -> {
+            ArrayStorage reversed = array.storage.copy();
+            reversed.reverse();
+            return new JLangArray(reversed);
+        })
+        .define("reduce", 2, (interpreter, array, arguments) -> {
+            // the reducer function and the initial value
+            JLangCallable reducer = (JLangCallable) arguments.get(0);
+            Object accumulator = arguments.get(1);
+            for (int i = 0; i < array.size(); i++) {
+                Object element = array.storage.get(i);
+                accumulator = reducer.call(interpreter, List.of(accumulator, element));
             }
-        });
+            return accumulator;
+        })
+        .define("seq", 0, (interpreter, array, arguments) -> JLangSeq.of(array))
+        .define("sum", 0, (interpreter, array, arguments) -> array.sum())
+        .define("min", 0, (interpreter, array, arguments) -> array.min())
+        .define("max", 0, (interpreter, array, arguments) -> array.max())
+        .build();
 
-        methods.put("sort", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() {
-                return 0; // 'sort' can be called without a comparator for default behavior
-            }
-        
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                // Make a copy of the elements list to sort
-                List<Object> sortedElements = new ArrayList<>(elements);
-                sortedElements.sort((a, b) -> {
-                    // Casting or type checking should be added based on your language's capabilities
-                    Comparable comparableA = (Comparable) a;
-                    Comparable comparableB = (Comparable) b;
-                    return comparableA.compareTo(comparableB);
-                });
-                return new JLangArray(sortedElements);
-            }
-        });
-        
-        methods.put("sortWithComparator", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() {
-                return 1; // 'sortWithComparator' takes one parameter
-            }
-        
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                JLangCallable comparator = (JLangCallable) arguments.get(0);
-                List<Object> sortedElements = new ArrayList<>(elements);
-        
-                sortedElements.sort((a, b) -> {
-                    Object result = comparator.call(interpreter, List.of(a, b));
-                    // Handle the case where the result is a Double
-                    if (result instanceof Double) {
-                        // Convert the Double to an int for comparison
-                        // assuming the double value is actually within int range and intended for comparison
-                        return (int)((Double) result).doubleValue();
-                    } else if (result instanceof Integer) {
-                        return (Integer) result;
-                    } else {
-                        // Throw an error or handle the case where the result is not a number
-                        throw new ClassCastException("Comparator must return an Integer or a Double.");
-                    }
-                });
-        
-                return new JLangArray(sortedElements);
-            }
-        });
-        
-        methods.put("reverse", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() {
-                return 0; // 'reverse' does not take any parameters
-            }
-        
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                List<Object> reversedElements = new ArrayList<>(elements);
-                java.util.Collections.reverse(reversedElements);
-                return new JLangArray(reversedElements);
-            }
-        });
-        methods.put("reduce", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() {
-                return 2; // reduce takes two parameters: the reducer function and the initial value
-            }
-        
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                JLangCallable reducer = (JLangCallable) arguments.get(0);
-                Object accumulator = arguments.get(1);
-                
-                for (Object element : elements) {
-                    accumulator = reducer.call(interpreter, List.of(accumulator, element));
-                }
-                
-                return accumulator;
-            }
-        });
-        // Add more methods as needed
-    }
     // Instance
     @Override
     public Object get(Token name) {
-        if (methods.containsKey(name.lexeme)) {
-            return methods.get(name.lexeme);
-        }
-
-        JLangFunction method = this.findMethod(name.lexeme);
+        JLangNativeMethod<JLangArray> method = METHODS.get(name.lexeme);
         if (method != null) return method.bind(this);
 
         throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
     }
+
+    @Override
+    public Map<String, JLangCallable> getMethods() {
+        return JLangNativeMethod.bindAll(METHODS, this);
+    }
     // Indexible
     @Override
     public int length() {
@@ -385,15 +308,19 @@ public class JLangArray extends JLangClass  implements JLangObject, JLangIndexib
     }
     @Override
     public Object getItem(int index) {
-        if (index < 0) index = elements.size() + index;
-        if (index >= 0 && index < elements.size()) {
-            return elements.get(index);
+        if (index < 0) index = storage.size + index;
+        if (index >= 0 && index < storage.size) {
+            return storage.get(index);
         } else {
-            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + elements.size());
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + storage.size);
         }
     }
     @Override
+    public List<Object> elements() {
+        return getElements();
+    }
+    @Override
     public List<Object> asList() {
-        return new ArrayList<>(elements); // Return a new list to avoid external modifications
+        return new ArrayList<>(Arrays.asList(storage.toArray())); // Return a new list to avoid external modifications
     }
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import interpreter.Interpreter;
 import interpreter.callable.JLangCallable;
 import interpreter.errors.InvalidArgumentsException;
 import interpreter.indexible.JLangIndexible;
+import interpreter.string.JLangString;
 
 public class ReverseFunc implements JLangCallable {
     @Override
@@ -16,11 +17,13 @@ public class ReverseFunc implements JLangCallable {
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
         Object arg = arguments.get(0);
+        // a string gives a reversed copy, an array is reversed in place
+        if (arg instanceof JLangString) return ((JLangString) arg).reversed();
         if (arg instanceof JLangIndexible) {
             ((JLangIndexible) arg).reverse();
         } else {
             throw new InvalidArgumentsException("Argument must be a JLangArray or JLangString.");
         }
-        return null; // since we're modifying in place, we don't need to return anything
+        return arg;
     }
 }
\ No newline at end of file
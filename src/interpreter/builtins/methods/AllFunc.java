@@ -7,6 +7,8 @@ import interpreter.Interpreter;
 import interpreter.array.JLangArray;
 import interpreter.callable.JLangCallable;
 import interpreter.errors.InvalidArgumentsException;
+import interpreter.indexible.JLangIndexible;
+import interpreter.range.JLangRange;
 
 public class AllFunc implements JLangCallable {
     @Override
@@ -19,8 +21,8 @@ public class AllFunc implements JLangCallable {
         Object arg = arguments.get(0);
         JLangCallable predicateFunction = (JLangCallable) arguments.get(1);
 
-        if (arg instanceof JLangArray) {
-            for (Object element : ((JLangArray)arg).getElements()) {
+        if (arg instanceof JLangArray || arg instanceof JLangRange) {
+            for (Object element : ((JLangIndexible)arg).elements()) {
                 Object result = predicateFunction.call(interpreter, List.of(element));
                 if (!(result instanceof Boolean)) {
                     throw new InvalidArgumentsException("Predicate function must return a boolean value.");
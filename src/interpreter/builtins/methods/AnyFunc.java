@@ -7,6 +7,8 @@ import interpreter.Interpreter;
 import interpreter.array.JLangArray;
 import interpreter.callable.JLangCallable;
 import interpreter.errors.InvalidArgumentsException;
+import interpreter.indexible.JLangIndexible;
+import interpreter.range.JLangRange;
 
 public class AnyFunc implements JLangCallable {
     @Override
@@ -32,8 +34,8 @@ public class AnyFunc implements JLangCallable {
         JLangCallable predicate = (JLangCallable) maybePredicate;
 
         // Assuming a list is passed as the first argument
-        if (arg instanceof JLangArray) {
-            List<?> listArg = ((JLangArray)arg).getElements();
+        if (arg instanceof JLangArray || arg instanceof JLangRange) {
+            List<?> listArg = ((JLangIndexible)arg).elements();
             
             // Use Java's stream API to match any element that fulfills the predicate
             // The predicate test is executed by calling the JLangCallable's call method
@@ -8,6 +8,7 @@ import interpreter.array.JLangArray;
 import interpreter.callable.JLangCallable;
 import interpreter.errors.InvalidArgumentsException;
 import interpreter.indexible.JLangIndexible;
+import interpreter.range.JLangRange;
 
 public class ArrayFunc implements JLangCallable {
         @Override
@@ -18,6 +19,9 @@ public class ArrayFunc implements JLangCallable {
         @Override
         public Object call(Interpreter interpreter, List<Object> arguments) {
             Object arg = arguments.get(0);
+            if (arg instanceof JLangRange) {
+                return ((JLangRange) arg).toArray();
+            }
             if (arg instanceof JLangIndexible) {
                 return new JLangArray(((JLangIndexible) arg).asList());
             }
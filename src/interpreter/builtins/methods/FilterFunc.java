@@ -9,6 +9,8 @@ import interpreter.Interpreter;
 import interpreter.array.JLangArray;
 import interpreter.callable.JLangCallable;
 import interpreter.errors.InvalidArgumentsException;
+import interpreter.indexible.JLangIndexible;
+import interpreter.range.JLangRange;
 
 // Additional utility function: filter() which filters elements based on a predicate
 public class FilterFunc implements JLangCallable {
@@ -22,9 +24,9 @@ public class FilterFunc implements JLangCallable {
         Object arg = arguments.get(0);
         Object rawPredicate = arguments.get(1);
 
-        if (arg instanceof JLangArray && rawPredicate instanceof JLangCallable) {
+        if ((arg instanceof JLangArray || arg instanceof JLangRange) && rawPredicate instanceof JLangCallable) {
             JLangCallable callable = (JLangCallable) rawPredicate;
-            List<Object> array = ((JLangArray) arg).getElements();
+            List<Object> array = ((JLangIndexible) arg).elements();
             
             // Use a lambda to adapt the JLangCallable to the Predicate interface
             Predicate<Object> predicate = item -> {
@@ -0,0 +1,21 @@
+package interpreter.builtins.methods;
+
+import java.util.List;
+
+import interpreter.Interpreter;
+import interpreter.Output;
+import interpreter.callable.JLangCallable;
+
+// flush(): writes out everything printed so far.
+public class FlushFunc implements JLangCallable {
+    @Override
+    public int arity() {
+        return 0;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        Output.flush();
+        return null;
+    }
+}
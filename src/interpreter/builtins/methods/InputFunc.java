@@ -3,6 +3,7 @@ package interpreter.builtins.methods;
 import java.util.List;
 
 import interpreter.Interpreter;
+import interpreter.Output;
 import interpreter.callable.JLangCallable;
 import java.util.List;
 import java.util.Scanner;
@@ -26,8 +27,9 @@ public class InputFunc implements JLangCallable {
             throw new RuntimeException("Input function expects a string as the prompt.");
         }
 
-        // Print the prompt
-        System.out.print(arguments.get(0));
+        // Print the prompt, with everything printed before it
+        Output.print(String.valueOf(arguments.get(0)));
+        Output.flush();
         
         // Read and return the input from the user
         return scanner.nextLine();
@@ -4,6 +4,7 @@ import java.util.List;
 import interpreter.Interpreter;
 import interpreter.callable.JLangCallable;
 import interpreter.errors.InvalidArgumentsException;
+import interpreter.indexible.JLangIndexible;
 import interpreter.string.JLangString;
 
 public class LenFunc implements JLangCallable {
@@ -19,6 +20,8 @@ public class LenFunc implements JLangCallable {
             return ((JLangString) arg).getContent().length();
         } else if (arg instanceof List<?>) {
             return ((List<?>) arg).size();
+        } else if (arg instanceof JLangIndexible) {
+            return ((JLangIndexible) arg).length();
         }
         throw new InvalidArgumentsException("Invalid argument type for function len.");
     }
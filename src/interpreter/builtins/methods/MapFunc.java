@@ -7,6 +7,8 @@ import interpreter.Interpreter;
 import interpreter.array.JLangArray;
 import interpreter.callable.JLangCallable;
 import interpreter.errors.InvalidArgumentsException;
+import interpreter.indexible.JLangIndexible;
+import interpreter.range.JLangRange;
 
 public class MapFunc implements JLangCallable {
         @Override
@@ -18,8 +20,8 @@ public class MapFunc implements JLangCallable {
         public Object call(Interpreter interpreter, List<Object> arguments) {
             Object arg = arguments.get(0);
             JLangCallable function = (JLangCallable) arguments.get(1);
-            if (arg instanceof JLangArray) {
-                List<?> listArg = ((JLangArray) arg).getElements();
+            if (arg instanceof JLangArray || arg instanceof JLangRange) {
+                List<?> listArg = ((JLangIndexible) arg).elements();
                 return listArg.stream().map(element -> function.call(interpreter, List.of(element)))
                         .collect(Collectors.toList());
             }
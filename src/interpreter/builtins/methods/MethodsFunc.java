@@ -6,6 +6,7 @@ import interpreter.Interpreter;
 import interpreter.array.JLangArray;
 import interpreter.callable.JLangCallable;
 import interpreter.errors.InvalidArgumentsException;
+import interpreter.klass.JLangBuiltInObject;
 import interpreter.klass.JLangClass;
 
 public class MethodsFunc implements JLangCallable{
@@ -19,6 +20,9 @@ public class MethodsFunc implements JLangCallable{
         if (arg instanceof JLangClass){
             return ((JLangClass)arg).getMethods();
         }
-        throw new InvalidArgumentsException("methods function should take a class");
+        if (arg instanceof JLangBuiltInObject){
+            return ((JLangBuiltInObject)arg).getMethods();
+        }
+        throw new InvalidArgumentsException("methods function should take a class or a built-in value");
     }
 }
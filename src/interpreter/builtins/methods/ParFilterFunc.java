@@ -0,0 +1,35 @@
+package interpreter.builtins.methods;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import interpreter.Interpreter;
+import interpreter.array.JLangArray;
+import interpreter.callable.JLangCallable;
+
+// parFilter(array, predicate): filter() with the calls spread over several
+// threads, the elements kept stay in their order.
+public class ParFilterFunc implements JLangCallable {
+    @Override
+    public int arity() {
+        return 2;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        List<Object> elements = Parallel.elements(arguments.get(0), "parFilter").elements();
+        JLangCallable predicate = Parallel.function(arguments.get(1), 1, "parFilter");
+        List<Object> kept = Parallel.run(interpreter, elements.size(), Parallel.canRunInParallel(predicate), (chunk, from, to) -> {
+            List<Object> part = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                Object element = elements.get(i);
+                if (Interpreter.isTruthy(predicate.call(chunk, new Object[] { element }))) part.add(element);
+            }
+            return part;
+        }, (left, right) -> {
+            left.addAll(right);
+            return left;
+        });
+        return new JLangArray(kept);
+    }
+}
@@ -0,0 +1,30 @@
+package interpreter.builtins.methods;
+
+import java.util.List;
+
+import interpreter.Interpreter;
+import interpreter.array.JLangArray;
+import interpreter.callable.JLangCallable;
+
+// parMap(array, f): map() with the calls spread over several threads.
+public class ParMapFunc implements JLangCallable {
+    @Override
+    public int arity() {
+        return 2;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        List<Object> elements = Parallel.elements(arguments.get(0), "parMap").elements();
+        JLangCallable function = Parallel.function(arguments.get(1), 1, "parMap");
+        Object[] results = new Object[elements.size()];
+        // every chunk fills its own part of results
+        Parallel.run(interpreter, results.length, Parallel.canRunInParallel(function), (chunk, from, to) -> {
+            for (int i = from; i < to; i++) {
+                results[i] = function.call(chunk, new Object[] { elements.get(i) });
+            }
+            return null;
+        }, (left, right) -> null);
+        return new JLangArray(results);
+    }
+}
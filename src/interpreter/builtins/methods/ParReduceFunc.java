@@ -0,0 +1,31 @@
+package interpreter.builtins.methods;
+
+import java.util.List;
+
+import interpreter.Interpreter;
+import interpreter.callable.JLangCallable;
+
+// parReduce(array, f, initial): every chunk is reduced from initial, then
+// the chunk results are reduced with f in order. That gives what reduce()
+// does only when f is associative and initial changes nothing, like 0 for
+// adding or 1 for multiplying.
+public class ParReduceFunc implements JLangCallable {
+    @Override
+    public int arity() {
+        return 3;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        List<Object> elements = Parallel.elements(arguments.get(0), "parReduce").elements();
+        JLangCallable function = Parallel.function(arguments.get(1), 2, "parReduce");
+        Object initial = arguments.get(2);
+        return Parallel.run(interpreter, elements.size(), Parallel.canRunInParallel(function), (chunk, from, to) -> {
+            Object result = initial;
+            for (int i = from; i < to; i++) {
+                result = function.call(chunk, new Object[] { result, elements.get(i) });
+            }
+            return result;
+        }, (left, right) -> function.call(interpreter.fork(), new Object[] { left, right }));
+    }
+}
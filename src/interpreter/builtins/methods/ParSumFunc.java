@@ -0,0 +1,27 @@
+package interpreter.builtins.methods;
+
+import java.util.List;
+
+import interpreter.Interpreter;
+import interpreter.array.JLangArray;
+import interpreter.callable.JLangCallable;
+import interpreter.indexible.JLangIndexible;
+import interpreter.range.JLangRange;
+
+// parSum(array): sum() over several threads. The numbers are added in
+// another order, so with fractions the last digits can differ from sum().
+public class ParSumFunc implements JLangCallable {
+    @Override
+    public int arity() {
+        return 1;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        JLangIndexible elements = Parallel.elements(arguments.get(0), "parSum");
+        return Parallel.run(interpreter, elements.length(), true, (chunk, from, to) -> {
+            if (elements instanceof JLangRange) return ((JLangRange) elements).sum(from, to);
+            return ((JLangArray) elements).sum(from, to);
+        }, Double::sum);
+    }
+}
@@ -0,0 +1,104 @@
+package interpreter.builtins.methods;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+import interpreter.Interpreter;
+import interpreter.array.JLangArray;
+import interpreter.callable.JLangAnonymousFunction;
+import interpreter.callable.JLangCallable;
+import interpreter.callable.JLangFunction;
+import interpreter.errors.InvalidArgumentsException;
+import interpreter.indexible.JLangIndexible;
+import interpreter.klass.JLangClass;
+import interpreter.range.JLangRange;
+
+// The fork-join work behind parMap, parFilter, parReduce and parSum. The
+// indexes of the elements are halved down to chunks, each chunk runs on
+// the common pool with an interpreter of its own, and the chunk results
+// are put back together left to right, so they come out in order.
+//
+// The callbacks should be pure: they can read globals and the variables
+// they close over, but two chunks assigning to the same variable or field
+// race.
+final class Parallel {
+    // below this many elements a chunk isn't worth a task
+    private static final int MIN_CHUNK = 1024;
+
+    private Parallel() {
+    }
+
+    interface Chunk<R> {
+        R run(Interpreter interpreter, int from, int to);
+    }
+
+    static JLangIndexible elements(Object value, String function) {
+        if (value instanceof JLangArray || value instanceof JLangRange) return (JLangIndexible) value;
+        throw new InvalidArgumentsException("Invalid argument type for function " + function + ".");
+    }
+
+    // The callback is called with arity arguments, so it has to take that
+    // many, like call() expects of whoever calls it.
+    static JLangCallable function(Object value, int arity, String function) {
+        if (!(value instanceof JLangCallable)) {
+            throw new InvalidArgumentsException("The second argument of " + function + " must be a function.");
+        }
+        JLangCallable callable = (JLangCallable) value;
+        if (callable.arity() != arity && callable.arity() != -1) {
+            throw new InvalidArgumentsException("The function passed to " + function + " must take " + arity + " arguments.");
+        }
+        return callable;
+    }
+
+    // Only what the Interpreter runs goes to other threads. The functions of
+    // the nodes, closures and vm engines return through their engine, which
+    // only one thread can run, and so does a class whose init is one of them;
+    // anything else isn't known to be safe, so it stays on this thread too.
+    static boolean canRunInParallel(JLangCallable function) {
+        if (function instanceof JLangAnonymousFunction) return true;
+        if (function instanceof JLangFunction) return ((JLangFunction) function).isInterpreted();
+        if (function instanceof JLangClass) {
+            JLangFunction initializer = ((JLangClass) function).findMethod(JLangClass.CLASS_INITIALIZATION_FUNCTION_NAME);
+            return initializer == null || initializer.isInterpreted();
+        }
+        return false;
+    }
+
+    // Runs chunk over [0, length) and combines what the chunks give.
+    static <R> R run(Interpreter interpreter, int length, boolean parallel, Chunk<R> chunk, BinaryOperator<R> combine) {
+        int size = Math.max(MIN_CHUNK, length / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        if (!parallel || length <= size) return chunk.run(interpreter, 0, length);
+        return ForkJoinPool.commonPool().invoke(new Task<>(interpreter, 0, length, size, chunk, combine));
+    }
+
+    private static final class Task<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final Interpreter interpreter;
+        private final int from;
+        private final int to;
+        private final int size;
+        private final Chunk<R> chunk;
+        private final BinaryOperator<R> combine;
+
+        Task(Interpreter interpreter, int from, int to, int size, Chunk<R> chunk, BinaryOperator<R> combine) {
+            this.interpreter = interpreter;
+            this.from = from;
+            this.to = to;
+            this.size = size;
+            this.chunk = chunk;
+            this.combine = combine;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= size) return chunk.run(interpreter.fork(), from, to);
+            int middle = (from + to) >>> 1;
+            Task<R> left = new Task<>(interpreter, from, middle, size, chunk, combine);
+            left.fork();
+            R right = new Task<>(interpreter, middle, to, size, chunk, combine).compute();
+            return combine.apply(left.join(), right);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package interpreter.builtins.methods;
 
 import java.util.List;
 import interpreter.Interpreter;
+import interpreter.Output;
 import interpreter.callable.JLangCallable;
 import parser.Parser;
 
@@ -13,8 +14,9 @@ public class PrintFunc implements JLangCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
-        arguments.forEach(arg -> System.out.print(arg + " "));
-        System.out.println();
+        StringBuilder line = new StringBuilder();
+        arguments.forEach(arg -> line.append(arg).append(' '));
+        Output.println(line.toString());
         return null;
     }
 }
\ No newline at end of file
@@ -1,28 +1,30 @@
 package interpreter.builtins.methods;
 
-import java.util.ArrayList;
 import java.util.List;
 import interpreter.Interpreter;
 import interpreter.callable.JLangCallable;
 import interpreter.errors.InvalidArgumentsException;
+import interpreter.range.JLangRange;
 
 public class RangeFunc implements JLangCallable {
     @Override
     public int arity() {
-        return 2;
+        return -1; // range(start, end) or range(start, end, step)
     }
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
-        if (arguments.get(0) instanceof Double && arguments.get(1) instanceof Double) {
-            int start = (int) ((Double) arguments.get(0)).doubleValue();
-            int end = (int) ((Double) arguments.get(1)).doubleValue();
-            List<Integer> range = new ArrayList<>();
-            for (int i = start; i < end; i++) {
-                range.add(i);
+        if (arguments.size() != 2 && arguments.size() != 3) {
+            throw new InvalidArgumentsException("range takes a start, an end and an optional step.");
+        }
+        for (Object argument : arguments) {
+            if (!(argument instanceof Double)) {
+                throw new InvalidArgumentsException("Invalid argument types for function range.");
             }
-            return range;
         }
-        throw new InvalidArgumentsException("Invalid argument types for function range.");
+        int start = (int) ((Double) arguments.get(0)).doubleValue();
+        int end = (int) ((Double) arguments.get(1)).doubleValue();
+        int step = arguments.size() == 3 ? (int) ((Double) arguments.get(2)).doubleValue() : 1;
+        return new JLangRange(start, end, step);
     }
-}
\ No newline at end of file
+}
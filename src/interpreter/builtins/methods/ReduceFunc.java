@@ -6,6 +6,8 @@ import interpreter.Interpreter;
 import interpreter.array.JLangArray;
 import interpreter.callable.JLangCallable;
 import interpreter.errors.InvalidArgumentsException;
+import interpreter.indexible.JLangIndexible;
+import interpreter.range.JLangRange;
 
 // Additional utility function: reduce() which reduces a list to a single value based on a binary function
 public class ReduceFunc implements JLangCallable {
@@ -19,9 +21,9 @@ public class ReduceFunc implements JLangCallable {
         Object arg = arguments.get(0);
         JLangCallable binaryFunction = (JLangCallable) arguments.get(1);
         Object initialValue = arguments.get(2);
-        if (arg instanceof JLangArray) {
+        if (arg instanceof JLangArray || arg instanceof JLangRange) {
             Object result = initialValue;
-            for (Object item : ((JLangArray)arg).getElements()) {
+            for (Object item : ((JLangIndexible)arg).elements()) {
                 result = binaryFunction.call(interpreter, List.of(result, item));
             }
             return result;
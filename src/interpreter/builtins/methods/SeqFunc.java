@@ -0,0 +1,21 @@
+package interpreter.builtins.methods;
+
+import java.util.List;
+
+import interpreter.Interpreter;
+import interpreter.callable.JLangCallable;
+import interpreter.seq.JLangSeq;
+
+// seq(x): a lazy sequence over an array, a string or a range, whose
+// map/filter/... stages run together in one pass.
+public class SeqFunc implements JLangCallable {
+    @Override
+    public int arity() {
+        return 1;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return JLangSeq.from(arguments.get(0));
+    }
+}
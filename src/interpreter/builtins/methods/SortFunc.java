@@ -7,6 +7,7 @@ import interpreter.array.JLangArray;
 import interpreter.callable.JLangCallable;
 import interpreter.errors.InvalidArgumentsException;
 import interpreter.indexible.JLangIndexible;
+import interpreter.string.JLangString;
 
 public class SortFunc implements JLangCallable {
     @Override
@@ -17,11 +18,13 @@ public class SortFunc implements JLangCallable {
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
         Object arg = arguments.get(0);
+        // strings don't change, the sorted copy is what the call gives
+        if (arg instanceof JLangString) return ((JLangString) arg).sorted();
         if (arg instanceof JLangIndexible) {
             ((JLangIndexible) arg).sort();
         } else {
             throw new InvalidArgumentsException("Argument must be a JLangArray or JLangString.");
         }
-        return null; // since we're modifying in place, we don't need to return anything
+        return arg;
     }
 }
\ No newline at end of file
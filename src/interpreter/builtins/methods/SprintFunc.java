@@ -30,11 +30,8 @@ public class SprintFunc implements JLangCallable {
         // Extract the format string
         String format = ((JLangString)arguments.get(0)).getContent();
         
-        // Remove the first argument (format string) so that we are left with just the values to format
-        arguments.remove(0);
-
-        // Prepare an array for the values to format, which will be passed to the String.format method
-        Object[] formatValues = arguments.toArray(new Object[0]);
+        // Prepare an array for the values to format (everything after the format string), which will be passed to the String.format method
+        Object[] formatValues = arguments.subList(1, arguments.size()).toArray();
         
         // Return the formatted string
         try {
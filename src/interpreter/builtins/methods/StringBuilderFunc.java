@@ -0,0 +1,25 @@
+package interpreter.builtins.methods;
+
+import java.util.List;
+
+import interpreter.Interpreter;
+import interpreter.callable.JLangCallable;
+import interpreter.errors.InvalidArgumentsException;
+import interpreter.string.JLangStringBuilder;
+
+public class StringBuilderFunc implements JLangCallable {
+    @Override
+    public int arity() {
+        return -1; // StringBuilder() or StringBuilder(initial)
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        if (arguments.size() > 1) {
+            throw new InvalidArgumentsException("StringBuilder takes an optional initial value.");
+        }
+        JLangStringBuilder builder = new JLangStringBuilder("");
+        if (arguments.size() == 1) builder.append(arguments.get(0));
+        return builder;
+    }
+}
@@ -2,8 +2,10 @@ package interpreter.builtins.methods;
 
 import java.util.List;
 import interpreter.Interpreter;
+import interpreter.array.JLangArray;
 import interpreter.callable.JLangCallable;
 import interpreter.errors.InvalidArgumentsException;
+import interpreter.range.JLangRange;
 
 public class SumFunc implements JLangCallable {
     @Override
@@ -14,6 +16,13 @@ public class SumFunc implements JLangCallable {
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
         Object arg = arguments.get(0);
+        if (arg instanceof JLangArray) {
+            // an array of numbers adds them up without unboxing each one
+            return ((JLangArray) arg).sum();
+        }
+        if (arg instanceof JLangRange) {
+            return ((JLangRange) arg).sum();
+        }
         if (arg instanceof List) {
             double sum = 0.0;
             for (Object item : (List<?>) arg) {
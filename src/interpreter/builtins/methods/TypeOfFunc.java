@@ -3,6 +3,7 @@ package interpreter.builtins.methods;
 import java.util.List;
 import interpreter.Interpreter;
 import interpreter.callable.JLangCallable;
+import interpreter.callable.JLangFunction;
 
 public class TypeOfFunc implements JLangCallable {
     @Override
@@ -13,6 +14,7 @@ public class TypeOfFunc implements JLangCallable {
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
         Object arg = arguments.get(0);
+        if (arg instanceof JLangFunction) return ((JLangFunction) arg).typeName();
         return arg.getClass().getSimpleName();
     }
 }
\ No newline at end of file
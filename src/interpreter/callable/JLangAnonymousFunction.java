@@ -6,8 +6,8 @@ import ast.Expr;
 import ast.Stmt;
 import ast.Stmt.Return;
 import enivirement.Environment;
+import interpreter.Completion;
 import interpreter.Interpreter;
-import interpreter.exceptions.ReturnException;
 
 public class JLangAnonymousFunction implements JLangCallable{
     
@@ -32,16 +32,26 @@ public class JLangAnonymousFunction implements JLangCallable{
     public Object call(Interpreter interpreter,
         List<Object> arguments) {
 
-        Environment environment = new Environment(closure);
+        Environment environment = new Environment(closure, declaration.slotCount, declaration.cells);
         for (int i = 0; i < declaration.params.size(); i++) {
-            environment.define(declaration.params.get(i).lexeme,
-            arguments.get(i));
+            environment.defineArgument(i, arguments.get(i));
         }
-        try {
-            interpreter.executeBlock(declaration.body, environment);
-        } catch (ReturnException returnValue) { // if a return statement exists we quite the function right away
-            return returnValue.value;
+        return invoke(interpreter, environment);
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments) {
+        Environment environment = new Environment(closure, declaration.slotCount, declaration.cells);
+        for (int i = 0; i < arguments.length; i++) {
+            environment.defineArgument(i, arguments[i]);
         }
+        return invoke(interpreter, environment);
+    }
+
+    private Object invoke(Interpreter interpreter, Environment environment) {
+        Completion completion = interpreter.executeBody(null, declaration.body, environment);
+        // a return statement stops the body right away and leaves its value behind
+        if (completion == Completion.RETURN) return interpreter.takeReturnValue();
         return null;
     }
 }
@@ -1,9 +1,16 @@
 package interpreter.callable;
+import java.util.Arrays;
 import java.util.List;
 import interpreter.Interpreter;
 
 public interface JLangCallable {
     int arity();
     Object call(Interpreter interpreter, List<Object> arguments);
-}
 
+    // The fixed-arity convention: the caller has checked arity() and hands
+    // over an array the callee may keep. Built-ins get a list view of it,
+    // none of them change their argument list.
+    default Object call(Interpreter interpreter, Object[] arguments) {
+        return call(interpreter, Arrays.asList(arguments));
+    }
+}
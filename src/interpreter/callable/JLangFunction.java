@@ -5,11 +5,12 @@ import java.util.List;
 import ast.Stmt;
 import ast.Stmt.Return;
 import enivirement.Environment;
+import interpreter.Completion;
 import interpreter.Interpreter;
-import interpreter.exceptions.ReturnException;
 import interpreter.klass.JLangClass;
 import interpreter.klass.JLangInstance;
 import interpreter.klass.JLangObject;
+import jit.CompiledCode;
 
 public class JLangFunction implements JLangCallable{
     
@@ -25,14 +26,18 @@ public class JLangFunction implements JLangCallable{
         this.isInitializer = isInitializer;
     }
     public JLangFunction bind(JLangObject instance) {
-        Environment environment = new Environment(closure);
-        environment.define(JLangClass.CLASS_INNER_INSTANCE_NAME, instance); 
+        Environment environment = new Environment(closure, 1);
+        environment.define(0, instance); // the only slot holds JLangClass.CLASS_INNER_INSTANCE_NAME
         return new JLangFunction(declaration, environment, isInitializer);
     }
     @Override
     public int arity() {
         return this.declaration == null ? 0 :declaration.params.size();
     }
+    // The name type() reports.
+    public String typeName() {
+        return "JLangFunction";
+    }
     @Override
     public String toString() {
         return "<fn " + declaration.name.lexeme + ">";
@@ -41,19 +46,93 @@ public class JLangFunction implements JLangCallable{
     @Override
     public Object call(Interpreter interpreter,
         List<Object> arguments) {
-
-        Environment environment = new Environment(closure);
+        Environment frame = newFrame();
         for (int i = 0; i < declaration.params.size(); i++) {
-            environment.define(declaration.params.get(i).lexeme,
-            arguments.get(i));
+            frame.defineArgument(i, arguments.get(i));
+        }
+        return invoke(interpreter, frame);
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments) {
+        // the other engines' functions override this
+        if (declaration == null) return JLangCallable.super.call(interpreter, arguments);
+        if (!isInitializer && interpreter.tier2 != null) {
+            CompiledCode compiled = interpreter.tier2.profile(declaration);
+            if (compiled != null) {
+                // compiled code takes the arguments as they are, so calls from
+                // compiled code into compiled code make no frame
+                Object result = compiled.invoke(interpreter, closure, arguments);
+                if (result != CompiledCode.GUARD_FAILED) return result;
+                interpreter.tier2.guardFailed(declaration);
+            }
         }
-        try {
-            interpreter.executeBlock(declaration.body, environment);
-        } catch (ReturnException returnValue) { // if a return statement exists we quite the function right away
-            if (isInitializer) return closure.getAt(0, JLangClass.CLASS_INNER_INSTANCE_NAME);
-            return returnValue.value;
+        Environment frame = newFrame();
+        for (int i = 0; i < arguments.length; i++) {
+            frame.defineArgument(i, arguments[i]);
+        }
+        return execute(interpreter, frame);
+    }
+
+    // Whether the Interpreter runs this function, so a call can go through
+    // newFrame() and invoke().
+    public boolean isInterpreted() {
+        return declaration != null;
+    }
+
+    // The frame of a new call, the caller puts the arguments in with
+    // defineArgument().
+    public Environment newFrame() {
+        return new Environment(closure, declaration.slotCount, declaration.cells);
+    }
+
+    // The frame of a call of this method on the receiver, which gets the
+    // scope bind() would add without a bound function being made.
+    public Environment newFrame(Object receiver) {
+        Environment environment = new Environment(closure, 1);
+        environment.define(0, receiver);
+        return new Environment(environment, declaration.slotCount, declaration.cells);
+    }
+
+    // Calls this method on the receiver without binding it: the receiver goes
+    // into the frame the way newFrame(receiver) puts it there.
+    public Object callOn(Interpreter interpreter, Object receiver, Object[] arguments) {
+        // the other engines' functions override this
+        if (declaration == null) return bind((JLangObject) receiver).call(interpreter, arguments);
+        Environment frame = newFrame(receiver);
+        for (int i = 0; i < arguments.length; i++) {
+            frame.defineArgument(i, arguments[i]);
+        }
+        return invoke(interpreter, frame);
+    }
+
+    // Runs a call whose arguments are already in the frame.
+    public Object invoke(Interpreter interpreter, Environment frame) {
+        // the closure, or the scope holding 'this' for a method called on a receiver
+        Environment closure = frame.enclosing;
+        if (!isInitializer && interpreter.tier2 != null) {
+            CompiledCode compiled = interpreter.tier2.profile(declaration);
+            if (compiled != null) {
+                // compiled functions capture nothing, so the parameter slots hold the arguments themselves
+                Object result = compiled.invoke(interpreter, closure, frame.slots);
+                if (result != CompiledCode.GUARD_FAILED) return result;
+                // an argument the code wasn't compiled for, run this call interpreted
+                interpreter.tier2.guardFailed(declaration);
+            }
+        }
+        return execute(interpreter, frame);
+    }
+
+    // Runs the body in the Interpreter, once the compiled code is ruled out.
+    private Object execute(Interpreter interpreter, Environment frame) {
+        Environment closure = frame.enclosing;
+        Completion completion = interpreter.executeBody(declaration, declaration.body, frame);
+        if (isInitializer) {
+            interpreter.takeReturnValue();
+            return closure.getAt(0, 0);
         }
-        if (isInitializer) return closure.getAt(0, JLangClass.CLASS_INNER_INSTANCE_NAME);
+        // a return statement stops the body right away and leaves its value behind
+        if (completion == Completion.RETURN) return interpreter.takeReturnValue();
         return null;
     }
 }
@@ -0,0 +1,98 @@
+package interpreter.callable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import interpreter.Interpreter;
+
+// A method of a built-in type. One of them serves every value of the
+// type: the receiver is passed in with the arguments rather than kept in
+// a closure, so a value doesn't need methods of its own.
+public final class JLangNativeMethod<T> {
+    public interface Body<T> {
+        Object call(Interpreter interpreter, T receiver, List<Object> arguments);
+    }
+
+    private final String name;
+    private final int arity;
+    private final Body<T> body;
+
+    private JLangNativeMethod(String name, int arity, Body<T> body) {
+        this.name = name;
+        this.arity = arity;
+        this.body = body;
+    }
+
+    public int arity() {
+        return arity;
+    }
+
+    public Object call(Interpreter interpreter, T receiver, List<Object> arguments) {
+        return body.call(interpreter, receiver, arguments);
+    }
+
+    // The value obj.name gives, made only when a method is looked up.
+    public JLangCallable bind(T receiver) {
+        return new Bound<>(this, receiver);
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn " + name + ">";
+    }
+
+    // Every method of a table bound to one receiver, for methods().
+    public static <T> Map<String, JLangCallable> bindAll(Map<String, JLangNativeMethod<T>> methods, T receiver) {
+        Map<String, JLangCallable> bound = new HashMap<>();
+        for (JLangNativeMethod<T> method : methods.values()) bound.put(method.name, method.bind(receiver));
+        return bound;
+    }
+
+    // Collects the methods of one built-in type into the table its values share.
+    public static final class Table<T> {
+        private final Map<String, JLangNativeMethod<T>> methods = new HashMap<>();
+
+        public Table<T> define(String name, int arity, Body<T> body) {
+            methods.put(name, new JLangNativeMethod<>(name, arity, body));
+            return this;
+        }
+
+        public Map<String, JLangNativeMethod<T>> build() {
+            return Collections.unmodifiableMap(methods);
+        }
+    }
+
+    private static final class Bound<T> implements JLangCallable {
+        private final JLangNativeMethod<T> method;
+        private final T receiver;
+
+        Bound(JLangNativeMethod<T> method, T receiver) {
+            this.method = method;
+            this.receiver = receiver;
+        }
+
+        @Override
+        public int arity() {
+            return method.arity;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            return method.call(interpreter, receiver, arguments);
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, Object[] arguments) {
+            // none of the built-in methods change their argument list
+            return method.call(interpreter, receiver, Arrays.asList(arguments));
+        }
+
+        @Override
+        public String toString() {
+            return method.toString();
+        }
+    }
+}
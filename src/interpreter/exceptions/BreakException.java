@@ -1,3 +0,0 @@
-package interpreter.exceptions;
-
-public class BreakException extends RuntimeException {}
\ No newline at end of file
@@ -1,3 +0,0 @@
-package interpreter.exceptions;
-
-public class ContinueException extends RuntimeException {}
@@ -1,9 +0,0 @@
-package interpreter.exceptions;
-
-public class ReturnException extends RuntimeException {
-    public final Object value;
-    public ReturnException(Object value) {
-        super(null, null, false, false);
-        this.value = value;
-    }
-}
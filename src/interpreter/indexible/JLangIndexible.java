@@ -6,6 +6,11 @@ public interface JLangIndexible {
     Object getItem(int index);
     int length();
     List<Object> asList();
+    // The elements for going over them once, without a copy where the
+    // value can hand them out one at a time.
+    default List<Object> elements() {
+        return asList();
+    }
     void sort();
     void reverse();
 }
\ No newline at end of file
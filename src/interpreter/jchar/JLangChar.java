@@ -1,78 +1,70 @@
 package interpreter.jchar;
 
-import interpreter.Interpreter;
-import interpreter.callable.JLangFunction;
+import interpreter.callable.JLangCallable;
+import interpreter.callable.JLangNativeMethod;
 import interpreter.errors.RuntimeError;
-import interpreter.klass.JLangClass;
-import interpreter.klass.JLangObject;
+import interpreter.klass.JLangBuiltInObject;
 import tokenizer.Token;
 
-import java.util.HashMap;
-import java.util.List;
+import java.util.Map;
 
-public class JLangChar extends JLangClass implements JLangObject {
+public class JLangChar implements JLangBuiltInObject {
 
     private final char value;
 
-    public JLangChar(char value) {
-        super("JLangChar");
+    // shared by every char
+    private static final Map<String, JLangNativeMethod<JLangChar>> METHODS = new JLangNativeMethod.Table<JLangChar>()
+        .define("isDigit", 0, (interpreter, c, arguments) -> Character.isDigit(c.value))
+        .define("toUpperCase", 0, (interpreter, c, arguments) -> Character.toUpperCase(c.value))
+        // Add other char-specific methods similarly
+        .build();
+
+    // one value for each Latin-1 char, so going over ordinary text makes none
+    private static final JLangChar[] LATIN_1 = new JLangChar[256];
+
+    static {
+        for (int i = 0; i < LATIN_1.length; i++) LATIN_1[i] = new JLangChar((char) i);
+    }
+
+    private JLangChar(char value) {
         this.value = value;
-        defineBuiltInMethods();
     }
-    
-    @Override
-    protected void defineBuiltInMethods() {
-        // Define JLangChar-specific methods
-
-        methods.put("isDigit", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() {
-                return 0;
-            }
-        
-            @Override
-            public String toString() {
-                return "<native fn isDigit>";
-            }
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return Character.isDigit(JLangChar.this.value);
-            }
-        });
-
-        methods.put("toUpperCase", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() {
-                return 0;
-            }
-            @Override
-            public String toString() {
-                return "<native fn toUpperCase>";
-            }
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return Character.toUpperCase(JLangChar.this.value);
-            }
-        });
 
-        // Add other char-specific methods similarly
+    // The char value for c, shared when c is Latin-1.
+    public static JLangChar of(char c) {
+        return c < LATIN_1.length ? LATIN_1[c] : new JLangChar(c);
     }
 
     @Override
     public Object get(Token name) {
-        JLangFunction method = this.findMethod(name.lexeme);
+        JLangNativeMethod<JLangChar> method = METHODS.get(name.lexeme);
         if (method != null) {
             return method.bind(this);
         }
         throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
     }
 
+    @Override
+    public Map<String, JLangCallable> getMethods() {
+        return JLangNativeMethod.bindAll(METHODS, this);
+    }
+
     // Add other JLangChar specific methods here.
 
     public char getValue() {
         return value;
     }
 
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof JLangChar && ((JLangChar) other).value == value;
+    }
+
+    @Override
+    public int hashCode() {
+        return value;
+    }
+
     @Override
     public String toString() {
         return '\'' + Character.toString(value) + '\'';
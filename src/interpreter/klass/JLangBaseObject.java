@@ -1,41 +1,39 @@
 package interpreter.klass;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import interpreter.errors.RuntimeError;
 import tokenizer.Token;
 
+// The object an object literal makes. Its fields live in the same shaped
+// storage as an instance's, but it has no methods to fall back on.
 public class JLangBaseObject extends JLangInstance {
-    public final Map<String, Object> fields;
+    // object literals have no class of their own, they all start here
+    private static final Shape ROOT = new Shape();
 
     public JLangBaseObject(JLangClass klass) {
-        super(klass); // Pass the class this instance belongs to.
-        this.fields = new HashMap<>();
+        super(klass, ROOT); // Pass the class this instance belongs to.
     }
+    // A copy of the fields, by name in the order they were added.
     public Map<String, Object> getFields(){
-        return this.fields;
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (String name : shape.names()) fields.put(name, values[shape.indexOf(name)]);
+        return fields;
     }
     // Method to define a property on the object.
     public void defineProperty(String name, Object value) {
-        fields.put(name, value);
+        setField(name, value);
     }
 
     // Method to access a property of the object. This could return null if the property doesn't exist.
     public Object getProperty(String name) {
-        return fields.get(name);
+        return getField(name);
     }
 
-    public Object get(Token propertyName) {
-        if (this.fields.containsKey(propertyName.lexeme)) {
-            return this.fields.get(propertyName.lexeme);
-        }
+    @Override
+    Object getMissing(Token propertyName) {
         throw new RuntimeError(propertyName, "Undefined property '" + propertyName.lexeme + "'.");
     }
 
-    // Method to set a property on the object. This would be called when a property is assigned a new value.
-    public void set(Token propertyName, Object value) {
-        fields.put(propertyName.lexeme, value);
-    }
-
 }
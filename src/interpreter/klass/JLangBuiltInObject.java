@@ -0,0 +1,11 @@
+package interpreter.klass;
+
+import java.util.Map;
+
+import interpreter.callable.JLangCallable;
+
+// A value of a built-in type, whose methods come from a table shared by
+// every value of the type rather than from a class.
+public interface JLangBuiltInObject extends JLangObject {
+    Map<String, JLangCallable> getMethods();
+}
@@ -1,5 +1,6 @@
 package interpreter.klass;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -10,8 +11,24 @@ import interpreter.callable.JLangCallable;
 import interpreter.callable.JLangFunction;
 public class JLangClass implements JLangCallable {
     final String name;
+    // a class's own methods; changes after creation go through defineMethod()
     public final Map<String, JLangFunction> methods;
     private final List<JLangClass> superclasses;
+    // the classes whose superclasses include this one, kept weakly so
+    // classes made at runtime can still be collected; null for none.
+    // Guarded by the class, like the tables: a parallel callback can
+    // declare a subclass or define a method while others look one up
+    private List<WeakReference<JLangClass>> subclasses;
+    // the C3 linearization: this class, then its ancestors in lookup order;
+    // the lazy fields are volatile so parallel callbacks see them whole
+    private volatile List<JLangClass> linearization;
+    // every method reachable from this class, or from its ancestors for
+    // super lookups, flattened along the linearization; made on first use
+    // and dropped when a method is defined anywhere up the hierarchy
+    private volatile Map<String, JLangFunction> methodTable;
+    private volatile Map<String, JLangFunction> superMethodTable;
+    // the shape instances start with, made when the first one is
+    private volatile Shape instanceShape;
     public static final String CLASS_INITIALIZATION_FUNCTION_NAME = "init";
     public static final String CLASS_INNER_INSTANCE_NAME = "this";
     public static final String CLASS_SUPER_INSTANCE_NAME = "super";
@@ -27,24 +44,156 @@ public class JLangClass implements JLangCallable {
         this.name = name;
         this.methods = methods;
         this.superclasses = superclasses; // Now stores a list of superclasses
+        for (JLangClass superclass : superclasses) superclass.addSubclass(this);
         defineBuiltInMethods();
     }
 
     public JLangFunction findMethod(String name) {
-        JLangFunction method = methods.get(name);
-        if (method != null) {
-            return method;
+        return methodTable().get(name);
+    }
+
+    // The method super.name runs in this class's methods: the first one
+    // after this class in its linearization.
+    public JLangFunction findSuperMethod(String name) {
+        Map<String, JLangFunction> table = superMethodTable;
+        if (table == null) {
+            synchronized (this) {
+                table = superMethodTable;
+                if (table == null) superMethodTable = table = flatten(1);
+            }
+        }
+        return table.get(name);
+    }
+
+    // Adds or replaces a method, the tables of this class and of every
+    // class below it are built again on their next lookup.
+    public void defineMethod(String name, JLangFunction method) {
+        synchronized (this) {
+            methods.put(name, method);
+        }
+        invalidate();
+    }
+
+    private Map<String, JLangFunction> methodTable() {
+        Map<String, JLangFunction> table = methodTable;
+        if (table == null) {
+            // built under the lock invalidate() takes, so a table made from
+            // the methods before a change can't be published after it
+            synchronized (this) {
+                table = methodTable;
+                // a copy even without superclasses, defineMethod() changes
+                // the methods themselves
+                if (table == null) methodTable = table = flatten(0);
+            }
+        }
+        return table;
+    }
+
+    // The methods of the linearization from the given position on, the
+    // earliest class defining a name wins.
+    private Map<String, JLangFunction> flatten(int from) {
+        List<JLangClass> classes = linearization();
+        Map<String, JLangFunction> table = new HashMap<>();
+        for (int i = classes.size() - 1; i >= from; i--) {
+            JLangClass klass = classes.get(i);
+            synchronized (klass) {
+                table.putAll(klass.methods);
+            }
+        }
+        return table;
+    }
+
+    // Locks one class at a time: flatten() holds a class while it locks the
+    // ones above it, so holding one here while locking those below could
+    // deadlock.
+    private void invalidate() {
+        List<WeakReference<JLangClass>> below;
+        synchronized (this) {
+            methodTable = null;
+            superMethodTable = null;
+            if (subclasses == null) return;
+            below = new ArrayList<>(subclasses);
+        }
+        for (WeakReference<JLangClass> reference : below) {
+            JLangClass subclass = reference.get();
+            if (subclass != null) subclass.invalidate();
+        }
+    }
+
+    private synchronized void addSubclass(JLangClass subclass) {
+        if (subclasses == null) subclasses = new ArrayList<>();
+        // drop the classes that are gone before the list doubles
+        if (subclasses.size() >= 8 && Integer.bitCount(subclasses.size()) == 1) {
+            subclasses.removeIf(reference -> reference.get() == null);
+        }
+        subclasses.add(new WeakReference<>(subclass));
+    }
+
+    public List<JLangClass> linearization() {
+        List<JLangClass> order = linearization;
+        if (order == null) {
+            order = merge(this);
+            // superclasses C3 can't order keep the depth-first order of
+            // the walk findMethod() used to do
+            if (order == null) order = depthFirst(this, new ArrayList<>());
+            linearization = order;
+        }
+        return order;
+    }
+
+    // C3: the class, then the merge of its superclasses' linearizations
+    // and the list of superclasses itself. Null when they can't be merged.
+    private static List<JLangClass> merge(JLangClass klass) {
+        List<List<JLangClass>> sequences = new ArrayList<>();
+        for (JLangClass superclass : klass.superclasses) {
+            sequences.add(new ArrayList<>(superclass.linearization()));
         }
-        // Check each superclass for the method
-        if (superclasses != null) {
-            for (JLangClass superclass : superclasses) {
-                method = superclass.findMethod(name);
-                if (method != null) {
-                    return method;
+        sequences.add(new ArrayList<>(klass.superclasses));
+        List<JLangClass> result = new ArrayList<>();
+        result.add(klass);
+        while (true) {
+            sequences.removeIf(List::isEmpty);
+            if (sequences.isEmpty()) return result;
+            JLangClass next = null;
+            for (List<JLangClass> sequence : sequences) {
+                JLangClass candidate = sequence.get(0);
+                if (!inTail(sequences, candidate)) {
+                    next = candidate;
+                    break;
                 }
             }
+            if (next == null) return null;
+            result.add(next);
+            for (List<JLangClass> sequence : sequences) {
+                if (sequence.get(0) == next) sequence.remove(0);
+            }
+        }
+    }
+
+    private static boolean inTail(List<List<JLangClass>> sequences, JLangClass klass) {
+        for (List<JLangClass> sequence : sequences) {
+            if (sequence.indexOf(klass) > 0) return true;
+        }
+        return false;
+    }
+
+    private static List<JLangClass> depthFirst(JLangClass klass, List<JLangClass> order) {
+        if (order.contains(klass)) return order;
+        order.add(klass);
+        for (JLangClass superclass : klass.superclasses) depthFirst(superclass, order);
+        return order;
+    }
+
+    Shape instanceShape() {
+        Shape shape = instanceShape;
+        if (shape == null) {
+            // two roots would give instances of one class different shapes
+            synchronized (this) {
+                shape = instanceShape;
+                if (shape == null) instanceShape = shape = new Shape();
+            }
         }
-        return null;
+        return shape;
     }
     @Override
     public String toString() {
@@ -53,10 +202,15 @@ public class JLangClass implements JLangCallable {
     @Override
     public Object call(Interpreter interpreter,
         List<Object> arguments) {
+        return call(interpreter, arguments.toArray());
+    }
+    // init runs on the new instance without a bound copy of it being made
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments) {
         JLangInstance instance = new JLangInstance(this);
         JLangFunction initializer = findMethod(CLASS_INITIALIZATION_FUNCTION_NAME);
         if (initializer != null) {
-            initializer.bind(instance).call(interpreter, arguments);
+            initializer.callOn(interpreter, instance, arguments);
         }
         return instance;
     }
@@ -68,6 +222,8 @@ public class JLangClass implements JLangCallable {
     }
     
     public Map<String, JLangFunction> getMethods() { return methods; }
+
+    public List<JLangClass> getSuperclasses() { return superclasses; }
     
     protected void defineBuiltInMethods() {
         // Define common methods for all JLangClasses here, if any
@@ -1,22 +1,26 @@
 package interpreter.klass;
 
-import java.util.List;
+import java.util.Arrays;
 
-import interpreter.Interpreter;
 import interpreter.callable.JLangFunction;
 import interpreter.errors.RuntimeError;
 import tokenizer.Token;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public class JLangInstance implements JLangObject {
+    private static final Object[] NO_FIELDS = new Object[0];
 
     public JLangClass klass;
-    private final Map<String, Object> fields = new HashMap<>();
+    // the layout of the fields, values holds them at the indexes it gives
+    Shape shape;
+    Object[] values = NO_FIELDS;
 
     public JLangInstance(JLangClass klass) {
+        this(klass, klass.instanceShape());
+    }
+
+    JLangInstance(JLangClass klass, Shape shape) {
         this.klass = klass;
+        this.shape = shape;
     }
     @Override
     public String toString() {
@@ -25,18 +29,57 @@ public class JLangInstance implements JLangObject {
 
 
     public Object get(Token name) {
-        if (fields.containsKey(name.lexeme)) {
-            return fields.get(name.lexeme);
-        }
+        int index = shape.indexOf(name.lexeme);
+        if (index != -1) return values[index];
+        return getMissing(name);
+    }
 
+    // What get() returns for a name that isn't a field.
+    Object getMissing(Token name) {
         JLangFunction method = klass.findMethod(name.lexeme);
         if (method != null) return method.bind(this);
 
         throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
     }
     
+    // Field lookups for callers that have already found the method elsewhere.
+    public boolean hasField(String name) {
+        return shape.indexOf(name) != -1;
+    }
+
+    public Object getField(String name) {
+        int index = shape.indexOf(name);
+        return index == -1 ? null : values[index];
+    }
+
     public void set(Token name, Object value) {
-        fields.put(name.lexeme, value);
+        setField(name.lexeme, value);
+    }
+
+    public void setField(String name, Object value) {
+        int index = shape.indexOf(name);
+        if (index != -1) {
+            values[index] = value;
+        } else {
+            addField(shape.with(name), value);
+        }
+    }
+
+    public Shape shape() {
+        return shape;
+    }
+
+    // The field at an index the shape gave out.
+    public Object fieldAt(int index) {
+        return values[index];
+    }
+
+    // Moves to the shape with one more field, whose value goes in its last slot.
+    void addField(Shape next, Object value) {
+        int index = next.size() - 1;
+        if (index >= values.length) values = Arrays.copyOf(values, Math.max(4, values.length * 2));
+        values[index] = value;
+        shape = next;
     }
 
 }
@@ -0,0 +1,115 @@
+package interpreter.klass;
+
+import interpreter.callable.JLangFunction;
+import interpreter.errors.RuntimeError;
+import tokenizer.Token;
+
+// The inline cache of one obj.name site. It remembers up to LIMIT shapes
+// seen there, each with the index of the field; a set site also remembers
+// the shape an instance moves to when the assignment adds the field. A site
+// that sees more shapes than that stops caching and looks names up.
+public final class PropertyCache {
+    private static final int LIMIT = 4;
+
+    public final Token name;
+    // filled in from the front; an entry is written whole, so a site that
+    // code on several threads runs through never pairs a shape with the
+    // index of another
+    private final Entry[] entries = new Entry[LIMIT];
+    // set once the site has seen too many shapes
+    private boolean megamorphic;
+
+    public PropertyCache(Token name) {
+        this.name = name;
+    }
+
+    public Object get(Object object) {
+        if (!(object instanceof JLangInstance)) {
+            if (object instanceof JLangObject) return ((JLangObject) object).get(name);
+            throw new RuntimeError(name, "Only instances have properties.");
+        }
+        JLangInstance instance = (JLangInstance) object;
+        int index = fieldIndex(instance.shape);
+        return index != -1 ? instance.values[index] : instance.getMissing(name);
+    }
+
+    // The method an obj.name(...) site calls, found without binding it to
+    // the receiver. Null when the receiver isn't a class instance or has a
+    // field of that name; get() then gives the value to call.
+    public JLangFunction method(Object object) {
+        if (object == null || object.getClass() != JLangInstance.class) return null;
+        JLangInstance instance = (JLangInstance) object;
+        if (fieldIndex(instance.shape) != -1) return null;
+        return instance.klass.findMethod(name.lexeme);
+    }
+
+    private int fieldIndex(Shape shape) {
+        Entry entry = find(shape);
+        if (entry != null) return entry.index;
+        int index = shape.indexOf(name.lexeme);
+        remember(new Entry(shape, index, null));
+        return index;
+    }
+
+    private Entry find(Shape shape) {
+        for (Entry entry : entries) {
+            if (entry == null) return null;
+            if (entry.shape == shape) return entry;
+        }
+        return null;
+    }
+
+    public void set(Object object, Object value) {
+        if (!(object instanceof JLangInstance)) {
+            throw new RuntimeError(name, "Only instances have fields.");
+        }
+        JLangInstance instance = (JLangInstance) object;
+        Shape shape = instance.shape;
+        Entry entry = find(shape);
+        if (entry != null) {
+            if (entry.transition == null) {
+                instance.values[entry.index] = value;
+            } else {
+                instance.addField(entry.transition, value);
+            }
+            return;
+        }
+        int index = shape.indexOf(name.lexeme);
+        if (index != -1) {
+            instance.values[index] = value;
+            remember(new Entry(shape, index, null));
+        } else {
+            Shape next = shape.with(name.lexeme);
+            instance.addField(next, value);
+            remember(new Entry(shape, next.size() - 1, next));
+        }
+    }
+
+    private synchronized void remember(Entry entry) {
+        if (megamorphic) return;
+        for (int i = 0; i < LIMIT; i++) {
+            if (entries[i] == null) {
+                entries[i] = entry;
+                return;
+            }
+            // another thread got here first
+            if (entries[i].shape == entry.shape) return;
+        }
+        // the site stops caching, the lookups it already does stay valid
+        megamorphic = true;
+    }
+
+    private static final class Entry {
+        final Shape shape;
+        // the field's index, -1 at a get site when the shape has no such field
+        final int index;
+        // at a set site the shape after adding the field, null when it's already there
+        final Shape transition;
+
+        Entry(Shape shape, int index, Shape transition) {
+            this.shape = shape;
+            this.index = index;
+            this.transition = transition;
+        }
+    }
+}
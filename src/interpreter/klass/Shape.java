@@ -0,0 +1,105 @@
+package interpreter.klass;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The layout of an instance's fields: which names it has and where each
+// value sits in the instance's array. Instances that got the same fields
+// in the same order share one shape, so a property site can remember the
+// shape it saw and the index it found, and skip the name lookup while it
+// keeps seeing that shape. Every class has its own root, so the shape of a
+// class instance also tells which class it belongs to; object literals
+// start from a root of their own.
+//
+// A shape only knows the field it added on top of its parent. Small shapes
+// find a name by walking up to the root; past SMALL fields they look it up
+// in a table shared along the chain, which the last shape of the chain
+// extends in place, so n fields make n entries and not n * n.
+public final class Shape {
+    // the most fields found by walking the chain
+    private static final int SMALL = 8;
+
+    // null for a root
+    private final Shape parent;
+    // the field this shape adds to its parent, null for a root
+    private final String name;
+    private final int size;
+    // the index of every field of a shape this big, shared with the shapes
+    // below and above it on the chain, null for small shapes; a shape only
+    // sees the entries below its size
+    private final Map<String, Integer> table;
+    // the shapes reached by adding one more field, made on first use
+    private Map<String, Shape> transitions;
+
+    public Shape() {
+        parent = null;
+        name = null;
+        size = 0;
+        table = null;
+    }
+
+    private Shape(Shape parent, String name) {
+        this.parent = parent;
+        this.name = name;
+        this.size = parent.size + 1;
+        this.table = size > SMALL ? table(parent, name, size - 1) : null;
+    }
+
+    private static Map<String, Integer> table(Shape parent, String name, int index) {
+        Map<String, Integer> table = parent.table;
+        if (table != null) {
+            synchronized (table) {
+                // the parent is still the last shape of its chain, so the
+                // table can grow under the new one
+                if (table.size() == parent.size) {
+                    table.put(name, index);
+                    return table;
+                }
+            }
+        }
+        // the parent already has another child on its table, or has none
+        table = new ConcurrentHashMap<>();
+        for (Shape shape = parent; shape.parent != null; shape = shape.parent) {
+            table.put(shape.name, shape.size - 1);
+        }
+        table.put(name, index);
+        return table;
+    }
+
+    // Index of the field, -1 when instances of this shape don't have it.
+    public int indexOf(String name) {
+        if (table != null) {
+            Integer index = table.get(name);
+            return index != null && index < size ? index : -1;
+        }
+        for (Shape shape = this; shape.parent != null; shape = shape.parent) {
+            if (shape.name.equals(name)) return shape.size - 1;
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    Iterable<String> names() {
+        String[] names = new String[size];
+        for (Shape shape = this; shape.parent != null; shape = shape.parent) {
+            names[shape.size - 1] = shape.name;
+        }
+        return Arrays.asList(names);
+    }
+
+    // The shape of an instance of this shape once the field is added.
+    public synchronized Shape with(String name) {
+        if (transitions == null) transitions = new HashMap<>();
+        Shape next = transitions.get(name);
+        if (next == null) {
+            next = new Shape(this, name);
+            transitions.put(name, next);
+        }
+        return next;
+    }
+}
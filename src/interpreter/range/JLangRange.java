@@ -0,0 +1,144 @@
+package interpreter.range;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import interpreter.array.JLangArray;
+import interpreter.callable.JLangCallable;
+import interpreter.callable.JLangNativeMethod;
+import interpreter.errors.InvalidArgumentsException;
+import interpreter.errors.RuntimeError;
+import interpreter.indexible.JLangIndexible;
+import interpreter.klass.JLangBuiltInObject;
+import interpreter.seq.JLangSeq;
+import tokenizer.Token;
+
+// The numbers from start up to end, not included, step apart. Only the
+// three bounds are kept; the numbers are worked out when they're read and
+// array() is what turns a range into an array holding all of them.
+public class JLangRange implements JLangBuiltInObject, JLangIndexible {
+    private final int start;
+    private final int end;
+    private final int step;
+    private final int length;
+
+    public JLangRange(int start, int end, int step) {
+        if (step == 0) throw new InvalidArgumentsException("The step of a range can't be 0.");
+        this.start = start;
+        this.end = end;
+        this.step = step;
+        long span = step > 0 ? (long) end - start : (long) start - end;
+        long count = span <= 0 ? 0 : (span + Math.abs((long) step) - 1) / Math.abs((long) step);
+        if (count > Integer.MAX_VALUE) throw new InvalidArgumentsException("Range is too long.");
+        this.length = (int) count;
+    }
+
+    private double number(int index) {
+        return start + (double) index * step;
+    }
+
+    public double sum() {
+        return sum(0, length);
+    }
+
+    // The sum of the numbers from index from up to to, not included.
+    public double sum(int from, int to) {
+        double sum = 0.0;
+        for (int i = from; i < to; i++) sum += number(i);
+        return sum;
+    }
+
+    public boolean contains(Object value) {
+        if (!(value instanceof Double)) return false;
+        double number = (Double) value;
+        double offset = (number - start) / step;
+        return offset == Math.floor(offset) && offset >= 0 && offset < length;
+    }
+
+    public JLangArray toArray() {
+        double[] numbers = new double[length];
+        for (int i = 0; i < length; i++) numbers[i] = number(i);
+        return new JLangArray(numbers);
+    }
+
+    private static final Map<String, JLangNativeMethod<JLangRange>> METHODS = new JLangNativeMethod.Table<JLangRange>()
+        .define("size", 0, (interpreter, range, arguments) -> range.length())
+        .define("get", 1, (interpreter, range, arguments) -> range.getItem(((Double) arguments.get(0)).intValue()))
+        .define("contains", 1, (interpreter, range, arguments) -> range.contains(arguments.get(0)))
+        .define("sum", 0, (interpreter, range, arguments) -> range.sum())
+        .define("seq", 0, (interpreter, range, arguments) -> JLangSeq.of(range))
+        .build();
+
+    @Override
+    public Object get(Token name) {
+        JLangNativeMethod<JLangRange> method = METHODS.get(name.lexeme);
+        if (method != null) return method.bind(this);
+
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    public Map<String, JLangCallable> getMethods() {
+        return JLangNativeMethod.bindAll(METHODS, this);
+    }
+
+    // Indexible
+    @Override
+    public Object getItem(int index) {
+        if (index < 0) index = length + index;
+        if (index >= 0 && index < length) {
+            return number(index);
+        } else {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + length);
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public List<Object> asList() {
+        List<Object> numbers = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) numbers.add(number(i));
+        return numbers;
+    }
+
+    // Numbers are made one at a time as the list is read.
+    @Override
+    public List<Object> elements() {
+        return new AbstractList<Object>() {
+            @Override
+            public Object get(int index) {
+                if (index < 0 || index >= length) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + length);
+                }
+                return number(index);
+            }
+
+            @Override
+            public int size() {
+                return length;
+            }
+        };
+    }
+
+    @Override
+    public void sort() {
+        throw new IllegalStateException("A range can't be changed, make it an array with array() first.");
+    }
+
+    @Override
+    public void reverse() {
+        throw new IllegalStateException("A range can't be changed, make it an array with array() first.");
+    }
+
+    @Override
+    public String toString() {
+        if (step == 1) return "range(" + start + ", " + end + ")";
+        return "range(" + start + ", " + end + ", " + step + ")";
+    }
+}
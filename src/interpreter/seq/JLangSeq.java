@@ -0,0 +1,253 @@
+package interpreter.seq;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+import interpreter.Interpreter;
+import interpreter.array.JLangArray;
+import interpreter.callable.JLangCallable;
+import interpreter.callable.JLangNativeMethod;
+import interpreter.errors.InvalidArgumentsException;
+import interpreter.errors.RuntimeError;
+import interpreter.indexible.JLangIndexible;
+import interpreter.klass.JLangBuiltInObject;
+import tokenizer.Token;
+
+// A lazy sequence. map, filter, take, drop, zip and flatMap only stack a
+// stage on top of the one before; reduce and toArray then pull every
+// element through all the stages in one pass, so nothing in between is
+// kept. Each of those runs starts over from the source.
+public class JLangSeq implements JLangBuiltInObject {
+    private final Supplier<Iterator<Object>> source;
+
+    private JLangSeq(Supplier<Iterator<Object>> source) {
+        this.source = source;
+    }
+
+    // A sequence of the elements the value has when it's run.
+    public static JLangSeq of(JLangIndexible indexible) {
+        return new JLangSeq(() -> new Iterator<Object>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < indexible.length();
+            }
+
+            @Override
+            public Object next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return indexible.getItem(index++);
+            }
+        });
+    }
+
+    // What seq(), zip() and flatMap() accept: a sequence, or anything indexable.
+    public static JLangSeq from(Object value) {
+        if (value instanceof JLangSeq) return (JLangSeq) value;
+        if (value instanceof JLangIndexible) return of((JLangIndexible) value);
+        throw new InvalidArgumentsException("Only sequences, arrays, strings and ranges can be made a sequence.");
+    }
+
+    private static JLangCallable function(Object value, int arity, String operation) {
+        if (!(value instanceof JLangCallable)) {
+            throw new InvalidArgumentsException("The argument of " + operation + " must be a function.");
+        }
+        JLangCallable function = (JLangCallable) value;
+        if (function.arity() != arity && function.arity() != -1) {
+            throw new InvalidArgumentsException("The function passed to " + operation + " must take " + arity + " arguments.");
+        }
+        return function;
+    }
+
+    private static int count(Object value, String operation) {
+        if (!(value instanceof Double)) {
+            throw new InvalidArgumentsException("The argument of " + operation + " must be a number.");
+        }
+        return Math.max(0, ((Double) value).intValue());
+    }
+
+    public JLangSeq map(Interpreter interpreter, JLangCallable function) {
+        return new JLangSeq(() -> {
+            Iterator<Object> elements = source.get();
+            return new Iterator<Object>() {
+                @Override
+                public boolean hasNext() {
+                    return elements.hasNext();
+                }
+
+                @Override
+                public Object next() {
+                    return function.call(interpreter, new Object[] { elements.next() });
+                }
+            };
+        });
+    }
+
+    public JLangSeq filter(Interpreter interpreter, JLangCallable predicate) {
+        return new JLangSeq(() -> {
+            Iterator<Object> elements = source.get();
+            return new Lookahead() {
+                @Override
+                boolean advance() {
+                    while (elements.hasNext()) {
+                        Object element = elements.next();
+                        if (Interpreter.isTruthy(predicate.call(interpreter, new Object[] { element }))) {
+                            found(element);
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            };
+        });
+    }
+
+    public JLangSeq take(int count) {
+        return new JLangSeq(() -> {
+            Iterator<Object> elements = source.get();
+            return new Iterator<Object>() {
+                private int taken;
+
+                @Override
+                public boolean hasNext() {
+                    // stops without asking for the element after the last one
+                    return taken < count && elements.hasNext();
+                }
+
+                @Override
+                public Object next() {
+                    if (taken >= count) throw new NoSuchElementException();
+                    taken++;
+                    return elements.next();
+                }
+            };
+        });
+    }
+
+    public JLangSeq drop(int count) {
+        return new JLangSeq(() -> {
+            Iterator<Object> elements = source.get();
+            for (int i = 0; i < count && elements.hasNext(); i++) elements.next();
+            return elements;
+        });
+    }
+
+    // Pairs of elements at the same position, as long as both sequences last.
+    public JLangSeq zip(JLangSeq other) {
+        return new JLangSeq(() -> {
+            Iterator<Object> left = source.get();
+            Iterator<Object> right = other.source.get();
+            return new Iterator<Object>() {
+                @Override
+                public boolean hasNext() {
+                    return left.hasNext() && right.hasNext();
+                }
+
+                @Override
+                public Object next() {
+                    return new JLangArray(new Object[] { left.next(), right.next() });
+                }
+            };
+        });
+    }
+
+    // The function gives a sequence or an indexable value for each element,
+    // their elements follow one another.
+    public JLangSeq flatMap(Interpreter interpreter, JLangCallable function) {
+        return new JLangSeq(() -> {
+            Iterator<Object> elements = source.get();
+            return new Lookahead() {
+                private Iterator<Object> inner = Collections.emptyIterator();
+
+                @Override
+                boolean advance() {
+                    while (!inner.hasNext()) {
+                        if (!elements.hasNext()) return false;
+                        inner = from(function.call(interpreter, new Object[] { elements.next() })).source.get();
+                    }
+                    found(inner.next());
+                    return true;
+                }
+            };
+        });
+    }
+
+    public Object reduce(Interpreter interpreter, JLangCallable function, Object initial) {
+        Object accumulator = initial;
+        Iterator<Object> elements = source.get();
+        while (elements.hasNext()) {
+            accumulator = function.call(interpreter, new Object[] { accumulator, elements.next() });
+        }
+        return accumulator;
+    }
+
+    public JLangArray toArray() {
+        List<Object> elements = new ArrayList<>();
+        source.get().forEachRemaining(elements::add);
+        return new JLangArray(elements);
+    }
+
+    private static final Map<String, JLangNativeMethod<JLangSeq>> METHODS = new JLangNativeMethod.Table<JLangSeq>()
+        .define("map", 1, (interpreter, seq, arguments) -> seq.map(interpreter, function(arguments.get(0), 1, "map")))
+        .define("filter", 1, (interpreter, seq, arguments) -> seq.filter(interpreter, function(arguments.get(0), 1, "filter")))
+        .define("take", 1, (interpreter, seq, arguments) -> seq.take(count(arguments.get(0), "take")))
+        .define("drop", 1, (interpreter, seq, arguments) -> seq.drop(count(arguments.get(0), "drop")))
+        .define("zip", 1, (interpreter, seq, arguments) -> seq.zip(from(arguments.get(0))))
+        .define("flatMap", 1, (interpreter, seq, arguments) -> seq.flatMap(interpreter, function(arguments.get(0), 1, "flatMap")))
+        .define("reduce", 2, (interpreter, seq, arguments) -> seq.reduce(interpreter, function(arguments.get(0), 2, "reduce"), arguments.get(1)))
+        .define("toArray", 0, (interpreter, seq, arguments) -> seq.toArray())
+        .build();
+
+    @Override
+    public Object get(Token name) {
+        JLangNativeMethod<JLangSeq> method = METHODS.get(name.lexeme);
+        if (method != null) return method.bind(this);
+
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    public Map<String, JLangCallable> getMethods() {
+        return JLangNativeMethod.bindAll(METHODS, this);
+    }
+
+    @Override
+    public String toString() {
+        return "<seq>";
+    }
+
+    // An iterator that has to look for its next element before it can say
+    // whether there is one.
+    private abstract static class Lookahead implements Iterator<Object> {
+        private Object next;
+        private boolean ready;
+
+        // Finds the next element and hands it to found(), false at the end.
+        abstract boolean advance();
+
+        void found(Object element) {
+            next = element;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!ready) ready = advance();
+            return ready;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            ready = false;
+            Object element = next;
+            next = null;
+            return element;
+        }
+    }
+}
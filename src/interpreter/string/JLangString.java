@@ -1,235 +1,240 @@
 package interpreter.string;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
-import interpreter.Interpreter;
-import interpreter.callable.JLangFunction;
+import interpreter.callable.JLangCallable;
+import interpreter.callable.JLangNativeMethod;
 import interpreter.errors.RuntimeError;
 import interpreter.indexible.JLangIndexible;
 import interpreter.jchar.JLangChar;
-import interpreter.klass.JLangClass;
-import interpreter.klass.JLangObject;
+import interpreter.klass.JLangBuiltInObject;
+import interpreter.seq.JLangSeq;
 import tokenizer.Token;
 
-public class JLangString extends JLangClass  implements JLangObject, JLangIndexible {
-    private String content;
+// A string value. It never changes once made, so the value of a literal
+// is made once and shared by every evaluation of it, on any thread; sort
+// and reverse give new strings, and a StringBuilder is the kind that can
+// be changed.
+//
+// A string that + makes can be a rope: it only points at the two strings
+// it was made of, and they're copied into one when the text is first
+// needed, for indexing, comparing or output. Building a string up with
+// s = s + x then copies each piece once instead of all of s every time.
+public class JLangString implements JLangBuiltInObject, JLangIndexible {
+    // a concatenation this short is copied right away
+    private static final int SHORT = 64;
+
+    // null while the string is a rope that hasn't been flattened
+    private volatile String content;
+    // the halves of a rope, dropped once it's flattened
+    private JLangString left;
+    private JLangString right;
+    private final int length;
+    // the hash of the text, 0 until it's first asked for
+    private int hash;
     
     public JLangString(String content) {
-        super("JLangString");
         this.content = content; 
+        this.length = content.length();
     }
 
-    @Override
-    public String toString() {
-        // TODO Auto-generated method stub
-        return '"'+ getContent() + '"';
+    private JLangString(JLangString left, JLangString right) {
+        this.left = left;
+        this.right = right;
+        this.length = left.length + right.length;
     }
 
+    // left + right, without copying either when the result is long.
+    public static JLangString concat(JLangString left, JLangString right) {
+        if (left.length + right.length <= SHORT) return new JLangString(left.getContent() + right.getContent());
+        // a short piece joins the short end of a rope, so a rope grown one
+        // piece at a time has a node for every SHORT characters, not one
+        // for every piece; a rope's halves are short only when flat
+        if (right.length < SHORT) {
+            JLangString[] halves = left.halves();
+            if (halves != null && halves[1].length + right.length <= SHORT) {
+                return new JLangString(halves[0], new JLangString(halves[1].getContent() + right.getContent()));
+            }
+        } else if (left.length < SHORT) {
+            JLangString[] halves = right.halves();
+            if (halves != null && left.length + halves[0].length <= SHORT) {
+                return new JLangString(new JLangString(left.getContent() + halves[0].getContent()), halves[1]);
+            }
+        }
+        return new JLangString(left, right);
+    }
 
-    public String getContent() {
-        return this.content;
+    // The two halves of a rope, null once the string is flat.
+    private synchronized JLangString[] halves() {
+        return content == null ? new JLangString[] { left, right } : null;
     }
-    
-    // Method to sort the characters of the string
+
+    // Strings with the same text are equal, whether they're ropes or not.
     @Override
-    public void sort() {
-        char[] contentArray = this.content.toCharArray();
-        Arrays.sort(contentArray);
-        this.content = new String(contentArray);
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof JLangString)) return false;
+        JLangString string = (JLangString) other;
+        if (length != string.length) return false;
+        int known = hash;
+        int otherKnown = string.hash;
+        if (known != 0 && otherKnown != 0 && known != otherKnown) return false;
+        return getContent().equals(string.getContent());
     }
 
-    // Method to reverse the characters of the string
     @Override
-    public void reverse() {
-        this.content = new StringBuilder(this.content).reverse().toString();
+    public int hashCode() {
+        // two threads may both work it out, they get the same number
+        int h = hash;
+        if (h == 0) hash = h = getContent().hashCode();
+        return h;
     }
 
     @Override
-    protected void defineBuiltInMethods() {
-        methods.put("size", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() {
-                return 0; // size doesn't take any parameters
-            }
+    public String toString() {
+        // TODO Auto-generated method stub
+        return '"'+ getContent() + '"';
+    }
 
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return length();
-            }
-        });
 
-        methods.put("get", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() {
-                return 1; // get takes one parameter
-            }
+    public String getContent() {
+        String text = content;
+        return text != null ? text : flatten();
+    }
 
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                // You would also need to check that arguments are of the correct type and handle any errors
-                int index = ((Double) arguments.get(0)).intValue();
-                return getItem(index);
+    private synchronized String flatten() {
+        if (content != null) return content;
+        char[] chars = new char[length];
+        int end = length;
+        // right to left with a stack of its own, a rope built in a loop is
+        // as deep as the loop was long
+        Deque<JLangString> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            JLangString piece = pending.pop();
+            String text = piece.content;
+            JLangString[] halves = text == null ? piece.halves() : null;
+            if (halves == null) {
+                // flattened in the meantime, by another thread
+                text = piece.content;
+                end -= text.length();
+                text.getChars(0, text.length(), chars, end);
+            } else {
+                pending.push(halves[0]);
+                pending.push(halves[1]);
             }
-        });
-
-         // Check if the string contains a certain substring
-        methods.put("contains", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 1; }
+        }
+        content = new String(chars);
+        left = null;
+        right = null;
+        return content;
+    }
+    
+    // The characters of the string in order
+    public JLangString sorted() {
+        char[] contentArray = getContent().toCharArray();
+        Arrays.sort(contentArray);
+        return new JLangString(new String(contentArray));
+    }
 
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                String substring = arguments.get(0).toString();
-                return content.contains(substring);
-            }
-        });
+    // The characters of the string backwards
+    public JLangString reversed() {
+        return new JLangString(new StringBuilder(getContent()).reverse().toString());
+    }
 
-        // Convert the string to uppercase
-        methods.put("toUpperCase", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 0; }
+    @Override
+    public void sort() {
+        throw new IllegalStateException("A string can't be changed, use sort(s) for a sorted copy or a StringBuilder.");
+    }
 
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return content.toUpperCase();
-            }
-        });
+    @Override
+    public void reverse() {
+        throw new IllegalStateException("A string can't be changed, use reverse(s) for a reversed copy or a StringBuilder.");
+    }
 
+    // One table for all strings, the receiver comes in with each call.
+    private static final Map<String, JLangNativeMethod<JLangString>> METHODS = new JLangNativeMethod.Table<JLangString>()
+        .define("size", 0, (interpreter, string, arguments) -> string.length())
+        .define("get", 1, (interpreter, string, arguments) -> {
+            // You would also need to check that arguments are of the correct type and handle any errors
+            int index = ((Double) arguments.get(0)).intValue();
+            return string.getItem(index);
+        })
+        // Check if the string contains a certain substring
+        .define("contains", 1, (interpreter, string, arguments) -> string.getContent().contains(arguments.get(0).toString()))
+        // Convert the string to uppercase
+        .define("toUpperCase", 0, (interpreter, string, arguments) -> string.getContent().toUpperCase())
         // Convert the string to lowercase
-        methods.put("toLowerCase", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 0; }
-
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return content.toLowerCase();
-            }
-        });
-
+        .define("toLowerCase", 0, (interpreter, string, arguments) -> string.getContent().toLowerCase())
         // Check if the string starts with a certain substring
-        methods.put("startsWith", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 1; }
-
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                String prefix = arguments.get(0).toString();
-                return content.startsWith(prefix);
-            }
-        });
-
+        .define("startsWith", 1, (interpreter, string, arguments) -> string.getContent().startsWith(arguments.get(0).toString()))
         // Check if the string ends with a certain substring
-        methods.put("endsWith", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 1; }
-
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                String suffix = arguments.get(0).toString();
-                return content.endsWith(suffix);
-            }
-        });
-
+        .define("endsWith", 1, (interpreter, string, arguments) -> string.getContent().endsWith(arguments.get(0).toString()))
         // Replace a part of the string with another string
-        methods.put("replace", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 2; }
-
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                String search = arguments.get(0).toString();
-                String replacement = arguments.get(1).toString();
-                return content.replace(search, replacement);
-            }
-        });
-
+        .define("replace", 2, (interpreter, string, arguments) -> {
+            String search = arguments.get(0).toString();
+            String replacement = arguments.get(1).toString();
+            return string.getContent().replace(search, replacement);
+        })
         // Trim whitespace from the beginning and end of the string
-        methods.put("trim", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 0; }
-
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return content.trim();
-            }
-        });
-
+        .define("trim", 0, (interpreter, string, arguments) -> string.getContent().trim())
         // Substring between two indices
-        methods.put("substring", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 2; }
-
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                int start = ((Double) arguments.get(0)).intValue();
-                int end = ((Double) arguments.get(1)).intValue();
-                return content.substring(start, end);
-            }
-        });
-
+        .define("substring", 2, (interpreter, string, arguments) -> {
+            int start = ((Double) arguments.get(0)).intValue();
+            int end = ((Double) arguments.get(1)).intValue();
+            return string.getContent().substring(start, end);
+        })
         // Return the index of the first occurrence of a specified substring
-        methods.put("indexOf", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 1; }
-
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                String substring = arguments.get(0).toString();
-                return (double) content.indexOf(substring);
-            }
-        });
-
+        .define("indexOf", 1, (interpreter, string, arguments) -> (double) string.getContent().indexOf(arguments.get(0).toString()))
         // Return a string repeated a certain number of times
-        methods.put("repeat", new JLangFunction(null, null, false) {
-            @Override
-            public int arity() { return 1; }
-
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                int count = ((Double) arguments.get(0)).intValue();
-                return content.repeat(count);
-            }
-        });
-    }
+        .define("repeat", 1, (interpreter, string, arguments) -> {
+            int count = ((Double) arguments.get(0)).intValue();
+            return string.getContent().repeat(count);
+        })
+        // A lazy sequence of the chars
+        .define("seq", 0, (interpreter, string, arguments) -> JLangSeq.of(string))
+        .build();
 
     // Instance
     @Override
     public Object get(Token name) {
-        if (methods.containsKey(name.lexeme)) {
-            return methods.get(name.lexeme);
-        }
-
-        JLangFunction method = this.findMethod(name.lexeme);
+        JLangNativeMethod<JLangString> method = METHODS.get(name.lexeme);
         if (method != null) return method.bind(this);
 
         throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
     }
+
+    @Override
+    public Map<String, JLangCallable> getMethods() {
+        return JLangNativeMethod.bindAll(METHODS, this);
+    }
     // ... potentially other string methods ...
 
     // Indexible
     @Override
     public Object getItem(int index) {
-        if (index < 0) index = content.length() + index;
-        if (index >= 0 && index < content.length()) {
-            return new JLangChar(content.charAt(index));
+        if (index < 0) index = length + index;
+        if (index >= 0 && index < length) {
+            return JLangChar.of(getContent().charAt(index));
         } else {
-            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + content.length());
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + length);
         }
     }
 
     @Override
     public int length() {
-        return this.content.length();
+        return length;
     }
 
         @Override
     public List<Object> asList() {
         // Return a list of Characters or JChar objects
-        return content.chars().mapToObj(c -> new JLangChar((char)c)) // This creates a stream of Character
+        return getContent().chars().mapToObj(c -> JLangChar.of((char)c)) // This creates a stream of Character
                      .collect(Collectors.toList()); // Collects into a List of Character
     }
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+package interpreter.string;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import interpreter.Interpreter;
+import interpreter.callable.JLangCallable;
+import interpreter.callable.JLangNativeMethod;
+import interpreter.errors.RuntimeError;
+import interpreter.indexible.JLangIndexible;
+import interpreter.jchar.JLangChar;
+import interpreter.klass.JLangBuiltInObject;
+import interpreter.seq.JLangSeq;
+import tokenizer.Token;
+
+// The mutable counterpart of JLangString: append, sort and reverse change
+// it in place, and toString() takes the string it holds at that point.
+public class JLangStringBuilder implements JLangBuiltInObject, JLangIndexible {
+    private final StringBuilder content;
+
+    public JLangStringBuilder(String content) {
+        this.content = new StringBuilder(content);
+    }
+
+    // Strings and chars go in as their text, anything else the way print shows it.
+    public JLangStringBuilder append(Object value) {
+        if (value instanceof JLangString) {
+            content.append(((JLangString) value).getContent());
+        } else if (value instanceof JLangChar) {
+            content.append(((JLangChar) value).getValue());
+        } else {
+            content.append(Interpreter.stringify(value));
+        }
+        return this;
+    }
+
+    private static final Map<String, JLangNativeMethod<JLangStringBuilder>> METHODS = new JLangNativeMethod.Table<JLangStringBuilder>()
+        // gives the builder back, so appends can be chained
+        .define("append", 1, (interpreter, builder, arguments) -> builder.append(arguments.get(0)))
+        .define("toString", 0, (interpreter, builder, arguments) -> new JLangString(builder.content.toString()))
+        .define("size", 0, (interpreter, builder, arguments) -> builder.length())
+        .define("get", 1, (interpreter, builder, arguments) -> builder.getItem(((Double) arguments.get(0)).intValue()))
+        .define("clear", 0, (interpreter, builder, arguments) -> {
+            builder.content.setLength(0);
+            return builder;
+        })
+        .define("seq", 0, (interpreter, builder, arguments) -> JLangSeq.of(builder))
+        .build();
+
+    @Override
+    public Object get(Token name) {
+        JLangNativeMethod<JLangStringBuilder> method = METHODS.get(name.lexeme);
+        if (method != null) return method.bind(this);
+
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    public Map<String, JLangCallable> getMethods() {
+        return JLangNativeMethod.bindAll(METHODS, this);
+    }
+
+    // Indexible
+    @Override
+    public Object getItem(int index) {
+        if (index < 0) index = content.length() + index;
+        if (index >= 0 && index < content.length()) {
+            return JLangChar.of(content.charAt(index));
+        } else {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + content.length());
+        }
+    }
+
+    @Override
+    public int length() {
+        return content.length();
+    }
+
+    @Override
+    public List<Object> asList() {
+        List<Object> chars = new ArrayList<>(content.length());
+        for (int i = 0; i < content.length(); i++) chars.add(JLangChar.of(content.charAt(i)));
+        return chars;
+    }
+
+    @Override
+    public void sort() {
+        char[] chars = new char[content.length()];
+        content.getChars(0, chars.length, chars, 0);
+        Arrays.sort(chars);
+        content.setLength(0);
+        content.append(chars);
+    }
+
+    @Override
+    public void reverse() {
+        content.reverse();
+    }
+
+    @Override
+    public String toString() {
+        return "<StringBuilder \"" + content + "\">";
+    }
+}
@@ -0,0 +1,166 @@
+package jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Just enough of a class file writer for JitCompiler: one class with a
+// constant pool and a few methods whose code comes from Code. The class is
+// written as version 49, so the JVM infers the stack frames itself and no
+// StackMapTable has to be computed.
+final class ClassFile {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int VERSION = 49;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int poolCount = 1;
+    private final int thisClass;
+    private final int superClass;
+    private final List<byte[]> methods = new ArrayList<>();
+
+    ClassFile(String name, String superName) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+    }
+
+    int utf8(String value) {
+        Integer index = entries.get("U" + value);
+        if (index != null) return index;
+        try {
+            pool.writeByte(1);
+            pool.writeUTF(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return add("U" + value, 1);
+    }
+
+    int classRef(String internalName) {
+        return entry("C" + internalName, 7, utf8(internalName), -1);
+    }
+
+    int string(String value) {
+        return entry("S" + value, 8, utf8(value), -1);
+    }
+
+    int integer(int value) {
+        Integer index = entries.get("I" + value);
+        if (index != null) return index;
+        try {
+            pool.writeByte(3);
+            pool.writeInt(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return add("I" + value, 1);
+    }
+
+    int doubleConstant(double value) {
+        String key = "D" + Double.doubleToRawLongBits(value);
+        Integer index = entries.get(key);
+        if (index != null) return index;
+        try {
+            pool.writeByte(6);
+            pool.writeDouble(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        // doubles take up two entries
+        return add(key, 2);
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(10, owner, name, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return memberRef(11, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int nameAndType = entry("N" + name + ":" + descriptor, 12, utf8(name), utf8(descriptor));
+        return entry(tag + owner + "." + name + ":" + descriptor, tag, classRef(owner), nameAndType);
+    }
+
+    // Entries made of one or two references to other entries.
+    private int entry(String key, int tag, int first, int second) {
+        Integer index = entries.get(key);
+        if (index != null) return index;
+        try {
+            pool.writeByte(tag);
+            pool.writeShort(first);
+            if (second != -1) pool.writeShort(second);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return add(key, 1);
+    }
+
+    private int add(String key, int size) {
+        int index = poolCount;
+        poolCount += size;
+        if (poolCount > 0xFFFF) throw new IllegalStateException("Constant pool too large.");
+        entries.put(key, index);
+        return index;
+    }
+
+    void addMethod(int access, String name, String descriptor, Code code) {
+        byte[] bytecode = code.toByteArray();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+            // the Code attribute
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + bytecode.length);
+            out.writeShort(code.maxStack());
+            out.writeShort(code.maxLocals());
+            out.writeInt(bytecode.length);
+            out.write(bytecode);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // attributes
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            out.write(poolBytes.toByteArray());
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(methods.size());
+            for (byte[] method : methods) out.write(method);
+            out.writeShort(0); // attributes
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,244 @@
+package jit;
+
+import java.util.Arrays;
+
+// The bytecode of one method. It keeps track of the stack depth as
+// instructions are added, so max_stack comes out right without a separate
+// analysis; at a label the depth is the one recorded by the jumps to it.
+final class Code {
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int DCONST_0 = 0x0e;
+    static final int DCONST_1 = 0x0f;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int DLOAD = 0x18;
+    static final int ALOAD = 0x19;
+    static final int AALOAD = 0x32;
+    static final int DSTORE = 0x39;
+    static final int ASTORE = 0x3a;
+    static final int AASTORE = 0x53;
+    static final int POP = 0x57;
+    static final int POP2 = 0x58;
+    static final int DUP = 0x59;
+    static final int DUP2 = 0x5c;
+    static final int DADD = 0x63;
+    static final int DSUB = 0x67;
+    static final int DMUL = 0x6b;
+    static final int DNEG = 0x77;
+    static final int IXOR = 0x82;
+    static final int DCMPL = 0x97;
+    static final int DCMPG = 0x98;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int GOTO = 0xa7;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int INVOKEINTERFACE = 0xb9;
+    static final int ANEWARRAY = 0xbd;
+    static final int CHECKCAST = 0xc0;
+    static final int INSTANCEOF = 0xc1;
+
+    static final class Label {
+        private int position = -1;
+        private int stack = -1;
+        // positions of the jump instructions waiting for this label
+        private int[] jumps = new int[4];
+        private int jumpCount = 0;
+    }
+
+    private final ClassFile classFile;
+    private byte[] code = new byte[256];
+    private int length = 0;
+    private int stack = 0;
+    private int maxStack = 0;
+    private int maxLocals;
+
+    Code(ClassFile classFile, int arguments) {
+        this.classFile = classFile;
+        this.maxLocals = arguments;
+    }
+
+    ClassFile classFile() {
+        return classFile;
+    }
+
+    int maxStack() {
+        return maxStack;
+    }
+
+    int maxLocals() {
+        return maxLocals;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(code, length);
+    }
+
+    void op(int opcode, int stackChange) {
+        u1(opcode);
+        adjust(stackChange);
+    }
+
+    void loadConstant(double value) {
+        if (value == 0.0 && Double.doubleToRawLongBits(value) == 0L) {
+            op(DCONST_0, 2);
+        } else if (value == 1.0) {
+            op(DCONST_1, 2);
+        } else {
+            u1(LDC2_W);
+            u2(classFile.doubleConstant(value));
+            adjust(2);
+        }
+    }
+
+    void loadConstant(int value) {
+        if (value >= -128 && value <= 127) {
+            u1(BIPUSH);
+            u1(value);
+        } else if (value >= -32768 && value <= 32767) {
+            u1(SIPUSH);
+            u2(value);
+        } else {
+            u1(LDC_W);
+            u2(classFile.integer(value));
+        }
+        adjust(1);
+    }
+
+    void loadConstant(String value) {
+        u1(LDC_W);
+        u2(classFile.string(value));
+        adjust(1);
+    }
+
+    void local(int opcode, int index) {
+        if (index > 255) throw new IllegalStateException("Too many locals.");
+        u1(opcode);
+        u1(index);
+        boolean wide = opcode == DLOAD || opcode == DSTORE;
+        boolean load = opcode == DLOAD || opcode == ALOAD;
+        adjust((wide ? 2 : 1) * (load ? 1 : -1));
+        maxLocals = Math.max(maxLocals, index + (wide ? 2 : 1));
+    }
+
+    void type(int opcode, String internalName) {
+        u1(opcode);
+        u2(classFile.classRef(internalName));
+        // checkcast and instanceof leave one value, anewarray swaps the length for the array
+    }
+
+    void getStatic(String owner, String name, String descriptor) {
+        u1(GETSTATIC);
+        u2(classFile.fieldRef(owner, name, descriptor));
+        adjust(size(descriptor));
+    }
+
+    void invoke(int opcode, String owner, String name, String descriptor) {
+        int index = opcode == INVOKEINTERFACE
+            ? classFile.interfaceMethodRef(owner, name, descriptor)
+            : classFile.methodRef(owner, name, descriptor);
+        u1(opcode);
+        u2(index);
+        int arguments = argumentsSize(descriptor);
+        if (opcode == INVOKEINTERFACE) {
+            u1(arguments + 1);
+            u1(0);
+        }
+        adjust(-arguments - (opcode == INVOKESTATIC ? 0 : 1)
+            + size(descriptor.substring(descriptor.indexOf(')') + 1)));
+    }
+
+    Label label() {
+        return new Label();
+    }
+
+    void jump(int opcode, Label label) {
+        int position = length;
+        u1(opcode);
+        u2(0);
+        // the conditional jumps pop the int they test
+        if (opcode != GOTO) adjust(-1);
+        if (label.stack == -1) label.stack = stack;
+        if (label.position != -1) {
+            patch(position, label.position);
+        } else {
+            if (label.jumpCount == label.jumps.length) {
+                label.jumps = Arrays.copyOf(label.jumps, label.jumpCount * 2);
+            }
+            label.jumps[label.jumpCount++] = position;
+        }
+    }
+
+    void mark(Label label) {
+        label.position = length;
+        if (label.stack != -1) stack = label.stack;
+        label.stack = stack;
+        for (int i = 0; i < label.jumpCount; i++) {
+            patch(label.jumps[i], label.position);
+        }
+        label.jumpCount = 0;
+    }
+
+    private void patch(int jump, int target) {
+        int offset = target - jump;
+        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+            throw new IllegalStateException("Method too large.");
+        }
+        code[jump + 1] = (byte) (offset >> 8);
+        code[jump + 2] = (byte) offset;
+    }
+
+    private void adjust(int change) {
+        stack += change;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private void u1(int value) {
+        if (length + 3 > code.length) code = Arrays.copyOf(code, code.length * 2);
+        code[length++] = (byte) value;
+    }
+
+    private void u2(int value) {
+        u1(value >> 8);
+        u1(value);
+    }
+
+    private static int size(String type) {
+        switch (type.charAt(0)) {
+            case 'V': return 0;
+            case 'D':
+            case 'J': return 2;
+            default: return 1;
+        }
+    }
+
+    private static int argumentsSize(String descriptor) {
+        int total = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            if (c == 'D' || c == 'J') {
+                total += 2;
+                i++;
+                continue;
+            }
+            total += 1;
+            while (descriptor.charAt(i) == '[') i++;
+            if (descriptor.charAt(i) == 'L') i = descriptor.indexOf(';', i);
+            i++;
+        }
+        return total;
+    }
+}
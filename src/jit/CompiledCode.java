@@ -0,0 +1,27 @@
+package jit;
+
+import enivirement.Environment;
+import interpreter.Interpreter;
+
+// What JitCompiler turns a function into. The generated class extends this
+// and implements invoke() with the function's body. The arguments come in
+// the first slots of the array, which may be longer than the arity.
+public abstract class CompiledCode {
+    // Returned instead of a result when an argument does not have the type
+    // the code was compiled for; the caller runs the function interpreted.
+    public static final Object GUARD_FAILED = new Object();
+
+    // the values of the string literals in the body; final, so another
+    // thread that finds this code on the function sees them too
+    private final Object[] constants;
+
+    protected CompiledCode(Object[] constants) {
+        this.constants = constants;
+    }
+
+    protected final Object constant(int index) {
+        return constants[index];
+    }
+
+    public abstract Object invoke(Interpreter interpreter, Environment closure, Object[] arguments);
+}
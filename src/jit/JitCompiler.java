@@ -0,0 +1,866 @@
+package jit;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ast.Expr;
+import ast.Stmt;
+import interpreter.string.JLangString;
+import jit.Code.Label;
+import tokenizer.TokenType;
+
+// Compiles one JLang function into a JVM class extending CompiledCode.
+//
+// Locals live in JVM locals instead of an Environment. A local that is only
+// ever given numbers is kept as a double; the compiler starts out assuming
+// that for every local and parameter and recompiles with the local widened
+// to Object whenever the code stores something else in it. Parameters kept
+// as doubles are checked on entry, and invoke() hands back GUARD_FAILED so
+// the caller can run the function interpreted instead; Tier2 then compiles
+// it again with the parameters as objects.
+//
+// Functions that create closures or classes, or use try, super or the
+// printing block and comma expressions, are not compiled: their locals
+// would have to live in an Environment after all.
+final class JitCompiler implements Expr.Visitor<JitCompiler.Type>, Stmt.Visitor<Void> {
+    enum Type { NUM, BOOL, OBJ }
+
+    // thrown for anything this compiler leaves to the interpreter
+    private static final class Unsupported extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class Scope {
+        final boolean[] numeric;
+        final int[] locals;
+        // first JVM local of the scope, freed again when it ends
+        final int base;
+
+        Scope(boolean[] numeric, int base) {
+            this.numeric = numeric;
+            this.locals = new int[numeric.length];
+            this.base = base;
+        }
+    }
+
+    private static final String RUNTIME = "jit/JitRuntime";
+    private static final String OBJECT = "Ljava/lang/Object;";
+    private static final String INTERPRETER = "Linterpreter/Interpreter;";
+    private static final String ENVIRONMENT = "Lenivirement/Environment;";
+    private static final String STRING = "Ljava/lang/String;";
+    private static final String INVOKE = "(" + INTERPRETER + ENVIRONMENT + "[" + OBJECT + ")" + OBJECT;
+    // JVM locals of invoke(): this, interpreter, closure, arguments
+    private static final int INTERPRETER_LOCAL = 1;
+    private static final int CLOSURE_LOCAL = 2;
+    private static final int ARGUMENTS_LOCAL = 3;
+
+    private final Stmt.Function function;
+    // what each scope's slots are kept as, by Stmt.Function or Stmt.Block
+    private final Map<Object, boolean[]> numericSlots = new IdentityHashMap<>();
+    // the type each ternary's branches are joined to
+    private final Map<Expr, Type> joins = new IdentityHashMap<>();
+    private final List<Scope> scopes = new ArrayList<>();
+    private final Deque<Label> breakLabels = new ArrayDeque<>();
+    private final Deque<Label> continueLabels = new ArrayDeque<>();
+    private Code code;
+    private int nextLocal;
+    // the string values the code reads from CompiledCode.constants
+    private final List<Object> constants = new ArrayList<>();
+    // set when a pass had to give up one of its assumptions
+    private boolean widened;
+
+    private JitCompiler(Stmt.Function function, boolean numericParameters) {
+        this.function = function;
+        if (!numericParameters) {
+            boolean[] numeric = new boolean[function.slotCount];
+            Arrays.fill(numeric, function.params.size(), numeric.length, true);
+            numericSlots.put(function, numeric);
+        }
+    }
+
+    // Returns null when the function uses something the compiler leaves to
+    // the interpreter. Without numericParameters the parameters are kept as
+    // objects and the code never hands back GUARD_FAILED.
+    static CompiledCode compile(Stmt.Function function, boolean numericParameters) {
+        try {
+            JitCompiler compiler = new JitCompiler(function, numericParameters);
+            byte[] bytes = compiler.generate();
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return (CompiledCode) lookup.findConstructor(lookup.lookupClass(),
+                MethodType.methodType(void.class, Object[].class)).invoke(compiler.constants.toArray());
+        } catch (Throwable e) {
+            // neither Unsupported nor a class the JVM refuses stops the program
+            return null;
+        }
+    }
+
+    private byte[] generate() {
+        byte[] bytes;
+        do {
+            widened = false;
+            constants.clear();
+            ClassFile classFile = new ClassFile("jit/JLang$" + function.name.lexeme, "jit/CompiledCode");
+
+            Code constructor = new Code(classFile, 2);
+            constructor.local(Code.ALOAD, 0);
+            constructor.local(Code.ALOAD, 1);
+            constructor.invoke(Code.INVOKESPECIAL, "jit/CompiledCode", "<init>", "([" + OBJECT + ")V");
+            constructor.op(Code.RETURN, 0);
+            classFile.addMethod(ClassFile.ACC_PUBLIC, "<init>", "([" + OBJECT + ")V", constructor);
+
+            code = new Code(classFile, 4);
+            nextLocal = 4;
+            body();
+            classFile.addMethod(ClassFile.ACC_PUBLIC, "invoke", INVOKE, code);
+            bytes = classFile.toByteArray();
+        } while (widened);
+        return bytes;
+    }
+
+    private void body() {
+        Scope scope = beginScope(function, function.slotCount, false);
+        for (int i = 0; i < function.params.size(); i++) {
+            code.local(Code.ALOAD, ARGUMENTS_LOCAL);
+            code.loadConstant(i);
+            code.op(Code.AALOAD, -1);
+            if (scope.numeric[i]) {
+                Label number = code.label();
+                code.op(Code.DUP, 1);
+                code.type(Code.INSTANCEOF, "java/lang/Double");
+                code.jump(Code.IFNE, number);
+                code.op(Code.POP, -1);
+                code.getStatic("jit/CompiledCode", "GUARD_FAILED", OBJECT);
+                code.op(Code.ARETURN, -1);
+                code.mark(number);
+                unbox();
+                code.local(Code.DSTORE, scope.locals[i]);
+            } else {
+                code.local(Code.ASTORE, scope.locals[i]);
+            }
+        }
+        // the other locals need a value the verifier can see
+        for (int i = function.params.size(); i < scope.locals.length; i++) {
+            clear(scope, i);
+        }
+        for (Stmt statement : function.body) {
+            emit(statement);
+        }
+        code.op(Code.ACONST_NULL, 1);
+        code.op(Code.ARETURN, -1);
+        endScope();
+    }
+
+    private Scope beginScope(Object key, int size, boolean clear) {
+        boolean[] numeric = numericSlots.get(key);
+        if (numeric == null) {
+            numeric = new boolean[size];
+            Arrays.fill(numeric, true);
+            numericSlots.put(key, numeric);
+        }
+        Scope scope = new Scope(numeric, nextLocal);
+        for (int i = 0; i < size; i++) {
+            scope.locals[i] = nextLocal;
+            nextLocal += numeric[i] ? 2 : 1;
+        }
+        scopes.add(scope);
+        if (clear) {
+            for (int i = 0; i < size; i++) clear(scope, i);
+        }
+        return scope;
+    }
+
+    private void endScope() {
+        nextLocal = scopes.remove(scopes.size() - 1).base;
+    }
+
+    private void clear(Scope scope, int slot) {
+        if (scope.numeric[slot]) {
+            code.op(Code.DCONST_0, 2);
+            code.local(Code.DSTORE, scope.locals[slot]);
+        } else {
+            code.op(Code.ACONST_NULL, 1);
+            code.local(Code.ASTORE, scope.locals[slot]);
+        }
+    }
+
+    // The scope of a local of this function, or null for a variable the
+    // function closes over.
+    private Scope local(int depth) {
+        if (depth >= scopes.size()) return null;
+        return scopes.get(scopes.size() - 1 - depth);
+    }
+
+    private int closureDepth(int depth) {
+        return depth - scopes.size();
+    }
+
+    private void emit(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private Type emit(Expr expr) {
+        return expr.accept(this);
+    }
+
+    private void emit(Expr expr, Type type) {
+        coerce(emit(expr), type);
+    }
+
+    private void coerce(Type from, Type to) {
+        if (from == to) return;
+        if (to == Type.OBJ) {
+            if (from == Type.NUM) {
+                code.invoke(Code.INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;");
+            } else {
+                code.invoke(Code.INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
+            }
+        } else if (to == Type.BOOL) {
+            if (from == Type.NUM) {
+                // numbers are always truthy
+                code.op(Code.POP2, -2);
+                code.op(Code.ICONST_1, 1);
+            } else {
+                code.invoke(Code.INVOKESTATIC, RUNTIME, "truthy", "(" + OBJECT + ")Z");
+            }
+        } else {
+            throw new IllegalStateException("Can't coerce " + from + " to a number.");
+        }
+    }
+
+    private void unbox() {
+        code.type(Code.CHECKCAST, "java/lang/Double");
+        code.invoke(Code.INVOKEVIRTUAL, "java/lang/Double", "doubleValue", "()D");
+    }
+
+    private void pop(Type type) {
+        code.op(type == Type.NUM ? Code.POP2 : Code.POP, type == Type.NUM ? -2 : -1);
+    }
+
+    private void runtime(String name, String descriptor) {
+        code.invoke(Code.INVOKESTATIC, RUNTIME, name, descriptor);
+    }
+
+    private Type load(Scope scope, int slot) {
+        if (scope.numeric[slot]) {
+            code.local(Code.DLOAD, scope.locals[slot]);
+            return Type.NUM;
+        }
+        code.local(Code.ALOAD, scope.locals[slot]);
+        return Type.OBJ;
+    }
+
+    // Stores the value on top of the stack, leaving a copy behind when keep is set.
+    private Type store(Scope scope, int slot, Type type, boolean keep) {
+        if (scope.numeric[slot] && type != Type.NUM) {
+            scope.numeric[slot] = false;
+            widened = true;
+        }
+        if (scope.numeric[slot]) {
+            if (keep) code.op(Code.DUP2, 2);
+            code.local(Code.DSTORE, scope.locals[slot]);
+            return Type.NUM;
+        }
+        coerce(type, Type.OBJ);
+        if (keep) code.op(Code.DUP, 1);
+        code.local(Code.ASTORE, scope.locals[slot]);
+        return Type.OBJ;
+    }
+
+    // Jumps to target when the condition's truthiness equals jumpWhen.
+    private void branch(Expr condition, boolean jumpWhen, Label target) {
+        if (condition instanceof Expr.Grouping) {
+            branch(((Expr.Grouping) condition).expression, jumpWhen, target);
+            return;
+        }
+        if (condition instanceof Expr.Unary && ((Expr.Unary) condition).operator.type == TokenType.BANG) {
+            branch(((Expr.Unary) condition).right, !jumpWhen, target);
+            return;
+        }
+        if (condition instanceof Expr.Logical) {
+            Expr.Logical logical = (Expr.Logical) condition;
+            boolean isOr = logical.operator.type == TokenType.OR;
+            if (isOr == jumpWhen) {
+                // either side decides on its own
+                branch(logical.left, jumpWhen, target);
+                branch(logical.right, jumpWhen, target);
+            } else {
+                Label skip = code.label();
+                branch(logical.left, !jumpWhen, skip);
+                branch(logical.right, jumpWhen, target);
+                code.mark(skip);
+            }
+            return;
+        }
+        emit(condition, Type.BOOL);
+        code.jump(jumpWhen ? Code.IFNE : Code.IFEQ, target);
+    }
+
+    // Turns the int a comparison left on the stack into a boolean: the
+    // jump is taken when the comparison is false.
+    private Type compare(int jumpWhenFalse) {
+        Label isFalse = code.label();
+        Label end = code.label();
+        code.jump(jumpWhenFalse, isFalse);
+        code.op(Code.ICONST_1, 1);
+        code.jump(Code.GOTO, end);
+        code.mark(isFalse);
+        code.op(Code.ICONST_0, 1);
+        code.mark(end);
+        return Type.BOOL;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        if (stmt.slotCount != 0) beginScope(stmt, stmt.slotCount, true);
+        for (Stmt statement : stmt.statements) {
+            emit(statement);
+        }
+        if (stmt.slotCount != 0) endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        pop(emit(stmt.expression));
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        Label elseBranch = code.label();
+        branch(stmt.condition, false, elseBranch);
+        emit(stmt.thenBranch);
+        if (stmt.elseBranch != null) {
+            Label end = code.label();
+            code.jump(Code.GOTO, end);
+            code.mark(elseBranch);
+            emit(stmt.elseBranch);
+            code.mark(end);
+        } else {
+            code.mark(elseBranch);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        emit(stmt.expression, Type.OBJ);
+        runtime("print", "(" + OBJECT + ")V");
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.value != null) {
+            emit(stmt.value, Type.OBJ);
+        } else {
+            code.op(Code.ACONST_NULL, 1);
+        }
+        code.op(Code.ARETURN, -1);
+        return null;
+    }
+
+    private void declare(int slot, Expr initializer) {
+        if (slot == -1) throw new Unsupported();
+        Scope scope = local(0);
+        if (initializer == null) {
+            code.op(Code.ACONST_NULL, 1);
+            store(scope, slot, Type.OBJ, false);
+        } else {
+            store(scope, slot, emit(initializer), false);
+        }
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        declare(stmt.slot, stmt.initializer);
+        return null;
+    }
+
+    @Override
+    public Void visitConstStmt(Stmt.Const stmt) {
+        declare(stmt.slot, stmt.initializer);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        Label top = code.label();
+        Label end = code.label();
+        code.mark(top);
+        branch(stmt.condition, false, end);
+        breakLabels.push(end);
+        continueLabels.push(top);
+        emit(stmt.body);
+        breakLabels.pop();
+        continueLabels.pop();
+        code.jump(Code.GOTO, top);
+        code.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        if (breakLabels.isEmpty()) throw new Unsupported();
+        code.jump(Code.GOTO, breakLabels.peek());
+        return null;
+    }
+
+    @Override
+    public Void visitContinueStmt(Stmt.Continue stmt) {
+        if (continueLabels.isEmpty()) throw new Unsupported();
+        code.jump(Code.GOTO, continueLabels.peek());
+        return null;
+    }
+
+    @Override
+    public Void visitTryCatchStmt(Stmt.TryCatch stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitCatchStmt(Stmt.Catch stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Type visitAssignExpr(Expr.Assign expr) {
+        Scope scope = expr.depth == -1 ? null : local(expr.depth);
+        int line = expr.name.line;
+        if (expr.operator == null || expr.operator.type == TokenType.EQUAL) {
+            Type type = emit(expr.value);
+            if (scope != null) return store(scope, expr.slot, type, true);
+            coerce(type, Type.OBJ);
+            return storeOutside(expr);
+        }
+
+        TokenType operator = expr.operator.type;
+        boolean arithmetic = operator == TokenType.PLUS_EQUAL || operator == TokenType.MINUS_EQUAL
+            || operator == TokenType.STAR_EQUAL || operator == TokenType.SLASH_EQUAL;
+        Type type = emit(expr.value);
+        if (scope != null && scope.numeric[expr.slot] && arithmetic && type == Type.NUM) {
+            // the value goes first, as it does in the Interpreter
+            int value = nextLocal;
+            code.local(Code.DSTORE, value);
+            code.local(Code.DLOAD, scope.locals[expr.slot]);
+            code.local(Code.DLOAD, value);
+            switch (operator) {
+                case PLUS_EQUAL: code.op(Code.DADD, -2); break;
+                case MINUS_EQUAL: code.op(Code.DSUB, -2); break;
+                case STAR_EQUAL: code.op(Code.DMUL, -2); break;
+                default:
+                    code.loadConstant(expr.operator.line);
+                    runtime("divideAssign", "(DDI)D");
+                    break;
+            }
+            return store(scope, expr.slot, Type.NUM, true);
+        }
+        coerce(type, Type.OBJ);
+        if (scope != null) {
+            coerce(load(scope, expr.slot), Type.OBJ);
+        } else {
+            loadOutside(expr.name.lexeme, expr.depth, expr.slot, line);
+        }
+        code.loadConstant(operator.ordinal());
+        code.loadConstant(expr.operator.line);
+        runtime("compound", "(" + OBJECT + OBJECT + "II)" + OBJECT);
+        if (scope != null) return store(scope, expr.slot, Type.OBJ, true);
+        return storeOutside(expr);
+    }
+
+    // Loads a global or a variable the function closes over.
+    private void loadOutside(String name, int depth, int slot, int line) {
+        if (depth == -1) {
+            code.local(Code.ALOAD, INTERPRETER_LOCAL);
+            code.loadConstant(name);
+            code.loadConstant(line);
+            runtime("global", "(" + INTERPRETER + STRING + "I)" + OBJECT);
+        } else {
+            code.local(Code.ALOAD, CLOSURE_LOCAL);
+            code.loadConstant(closureDepth(depth));
+            code.loadConstant(slot);
+            runtime("captured", "(" + ENVIRONMENT + "II)" + OBJECT);
+        }
+    }
+
+    // Stores the value on top of the stack in a global or a captured
+    // variable, leaving it on the stack.
+    private Type storeOutside(Expr.Assign expr) {
+        if (expr.depth == -1) {
+            code.local(Code.ALOAD, INTERPRETER_LOCAL);
+            code.loadConstant(expr.name.lexeme);
+            code.loadConstant(expr.name.line);
+            runtime("setGlobal", "(" + OBJECT + INTERPRETER + STRING + "I)" + OBJECT);
+        } else {
+            code.local(Code.ALOAD, CLOSURE_LOCAL);
+            code.loadConstant(closureDepth(expr.depth));
+            code.loadConstant(expr.slot);
+            runtime("setCaptured", "(" + OBJECT + ENVIRONMENT + "II)" + OBJECT);
+        }
+        return Type.OBJ;
+    }
+
+    @Override
+    public Type visitBinaryExpr(Expr.Binary expr) {
+        TokenType operator = expr.operator.type;
+        boolean shift = operator == TokenType.SHIFT_LEFT || operator == TokenType.SHIFT_RIGHT;
+        Type left = emit(expr.left);
+        if (left != Type.NUM || shift) {
+            coerce(left, Type.OBJ);
+            left = Type.OBJ;
+        }
+        Type right = emit(expr.right);
+        int line = expr.operator.line;
+        if (left == Type.NUM && right == Type.NUM) {
+            switch (operator) {
+                case PLUS: code.op(Code.DADD, -2); return Type.NUM;
+                case MINUS: code.op(Code.DSUB, -2); return Type.NUM;
+                case STAR: code.op(Code.DMUL, -2); return Type.NUM;
+                case SLASH:
+                    code.loadConstant(line);
+                    runtime("divide", "(DDI)D");
+                    return Type.NUM;
+                case POWER:
+                    code.invoke(Code.INVOKESTATIC, "java/lang/Math", "pow", "(DD)D");
+                    return Type.NUM;
+                case LESS:
+                    code.op(Code.DCMPG, -3);
+                    return compare(Code.IFGE);
+                case LESS_EQUAL:
+                    code.op(Code.DCMPG, -3);
+                    return compare(Code.IFGT);
+                case GREATER:
+                    code.op(Code.DCMPL, -3);
+                    return compare(Code.IFLE);
+                case GREATER_EQUAL:
+                    code.op(Code.DCMPL, -3);
+                    return compare(Code.IFLT);
+                // Double.equals() semantics, NaN equals itself and 0 differs from -0
+                case EQUAL_EQUAL:
+                    code.invoke(Code.INVOKESTATIC, "java/lang/Double", "compare", "(DD)I");
+                    return compare(Code.IFNE);
+                case BANG_EQUAL:
+                    code.invoke(Code.INVOKESTATIC, "java/lang/Double", "compare", "(DD)I");
+                    return compare(Code.IFEQ);
+                default:
+                    break;
+            }
+        }
+        coerce(right, Type.OBJ);
+        if (left == Type.NUM) {
+            // box the left operand from under the right one
+            int temp = nextLocal;
+            code.local(Code.ASTORE, temp);
+            coerce(Type.NUM, Type.OBJ);
+            code.local(Code.ALOAD, temp);
+        }
+        String operands = "(" + OBJECT + OBJECT + "I)";
+        switch (operator) {
+            case EQUAL_EQUAL:
+                runtime("equal", "(" + OBJECT + OBJECT + ")Z");
+                return Type.BOOL;
+            case BANG_EQUAL:
+                runtime("equal", "(" + OBJECT + OBJECT + ")Z");
+                code.op(Code.ICONST_1, 1);
+                code.op(Code.IXOR, -1);
+                return Type.BOOL;
+            default:
+                break;
+        }
+        code.loadConstant(line);
+        switch (operator) {
+            case PLUS: runtime("add", operands + OBJECT); return Type.OBJ;
+            case MINUS: runtime("subtract", operands + "D"); return Type.NUM;
+            case STAR: runtime("multiply", operands + "D"); return Type.NUM;
+            case SLASH: runtime("divide", operands + "D"); return Type.NUM;
+            case POWER: runtime("power", operands + "D"); return Type.NUM;
+            case LESS: runtime("less", operands + "Z"); return Type.BOOL;
+            case LESS_EQUAL: runtime("lessEqual", operands + "Z"); return Type.BOOL;
+            case GREATER: runtime("greater", operands + "Z"); return Type.BOOL;
+            case GREATER_EQUAL: runtime("greaterEqual", operands + "Z"); return Type.BOOL;
+            case SHIFT_LEFT: runtime("shiftLeft", operands + OBJECT); return Type.OBJ;
+            case SHIFT_RIGHT: runtime("shiftRight", operands + OBJECT); return Type.OBJ;
+            default: throw new Unsupported();
+        }
+    }
+
+    @Override
+    public Type visitGroupingExpr(Expr.Grouping expr) {
+        return emit(expr.expression);
+    }
+
+    @Override
+    public Type visitGetExpr(Expr.Get expr) {
+        emit(expr.object, Type.OBJ);
+        code.loadConstant(expr.name.lexeme);
+        code.loadConstant(expr.name.line);
+        runtime("get", "(" + OBJECT + STRING + "I)" + OBJECT);
+        return Type.OBJ;
+    }
+
+    @Override
+    public Type visitCallExpr(Expr.Call expr) {
+        emit(expr.callee, Type.OBJ);
+        elements(expr.arguments);
+        code.local(Code.ALOAD, INTERPRETER_LOCAL);
+        code.loadConstant(expr.paren.line);
+        runtime("call", "(" + OBJECT + "[" + OBJECT + INTERPRETER + "I)" + OBJECT);
+        return Type.OBJ;
+    }
+
+    // Leaves an Object[] holding the values of the expressions.
+    private void elements(List<Expr> expressions) {
+        code.loadConstant(expressions.size());
+        code.type(Code.ANEWARRAY, "java/lang/Object");
+        for (int i = 0; i < expressions.size(); i++) {
+            code.op(Code.DUP, 1);
+            code.loadConstant(i);
+            emit(expressions.get(i), Type.OBJ);
+            code.op(Code.AASTORE, -3);
+        }
+    }
+
+    @Override
+    public Type visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value instanceof Double) {
+            code.loadConstant((double) expr.value);
+            return Type.NUM;
+        }
+        if (expr.value instanceof Boolean) {
+            code.op((boolean) expr.value ? Code.ICONST_1 : Code.ICONST_0, 1);
+            return Type.BOOL;
+        }
+        if (expr.value == null) {
+            code.op(Code.ACONST_NULL, 1);
+            return Type.OBJ;
+        }
+        throw new Unsupported();
+    }
+
+    @Override
+    public Type visitArrayExpr(Expr.Array expr) {
+        elements(expr.elements);
+        runtime("array", "([" + OBJECT + ")" + OBJECT);
+        return Type.OBJ;
+    }
+
+    @Override
+    public Type visitJStringExpr(Expr.JString expr) {
+        // the same value the interpreter gives for this literal
+        if (expr.string == null) expr.string = new JLangString(expr.value);
+        code.local(Code.ALOAD, 0);
+        code.loadConstant(constants.size());
+        constants.add(expr.string);
+        code.invoke(Code.INVOKEVIRTUAL, "jit/CompiledCode", "constant", "(I)" + OBJECT);
+        return Type.OBJ;
+    }
+
+    @Override
+    public Type visitJCharExpr(Expr.JChar expr) {
+        code.loadConstant((int) expr.value);
+        runtime("character", "(I)" + OBJECT);
+        return Type.OBJ;
+    }
+
+    @Override
+    public Type visitArrayAccessExpr(Expr.ArrayAccess expr) {
+        emit(expr.name, Type.OBJ);
+        emit(expr.index, Type.OBJ);
+        runtime("index", "(" + OBJECT + OBJECT + ")" + OBJECT);
+        return Type.OBJ;
+    }
+
+    @Override
+    public Type visitLogicalExpr(Expr.Logical expr) {
+        // the value is whichever operand decided it, so it stays an Object
+        Label end = code.label();
+        emit(expr.left, Type.OBJ);
+        code.op(Code.DUP, 1);
+        coerce(Type.OBJ, Type.BOOL);
+        code.jump(expr.operator.type == TokenType.OR ? Code.IFNE : Code.IFEQ, end);
+        code.op(Code.POP, -1);
+        emit(expr.right, Type.OBJ);
+        code.mark(end);
+        return Type.OBJ;
+    }
+
+    @Override
+    public Type visitSetExpr(Expr.Set expr) {
+        emit(expr.object, Type.OBJ);
+        code.loadConstant(expr.name.line);
+        runtime("checkInstance", "(" + OBJECT + "I)" + OBJECT);
+        emit(expr.value, Type.OBJ);
+        code.loadConstant(expr.name.lexeme);
+        code.loadConstant(expr.name.line);
+        runtime("set", "(" + OBJECT + OBJECT + STRING + "I)" + OBJECT);
+        return Type.OBJ;
+    }
+
+    @Override
+    public Type visitSuperExpr(Expr.Super expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Type visitThisExpr(Expr.This expr) {
+        if (expr.depth != -1 && local(expr.depth) != null) throw new Unsupported();
+        loadOutside(expr.keyword.lexeme, expr.depth, expr.slot, expr.keyword.line);
+        return Type.OBJ;
+    }
+
+    @Override
+    public Type visitUnaryExpr(Expr.Unary expr) {
+        switch (expr.operator.type) {
+            case BANG:
+                emit(expr.right, Type.BOOL);
+                code.op(Code.ICONST_1, 1);
+                code.op(Code.IXOR, -1);
+                return Type.BOOL;
+            case MINUS: {
+                Type type = emit(expr.right);
+                if (type == Type.NUM) {
+                    code.op(Code.DNEG, 0);
+                    return Type.NUM;
+                }
+                coerce(type, Type.OBJ);
+                code.loadConstant(expr.operator.line);
+                runtime("negate", "(" + OBJECT + "I)D");
+                return Type.NUM;
+            }
+            default:
+                return increment(expr.right, expr.operator.type == TokenType.INCREMENT ? 1.0 : -1.0,
+                    expr.operator.line);
+        }
+    }
+
+    @Override
+    public Type visitPostfixExpr(Expr.Postfix expr) {
+        return increment(expr.left, expr.operator.type == TokenType.INCREMENT ? 1.0 : -1.0,
+            expr.operator.line);
+    }
+
+    // Prefix and postfix ++/-- both leave the old value behind, as they do
+    // in the Interpreter.
+    private Type increment(Expr operand, double delta, int line) {
+        if (!(operand instanceof Expr.Variable)) {
+            emit(operand, Type.OBJ);
+            code.loadConstant(line);
+            runtime("invalidIncrement", "(" + OBJECT + "I)D");
+            return Type.NUM;
+        }
+        Expr.Variable variable = (Expr.Variable) operand;
+        Scope scope = variable.depth == -1 ? null : local(variable.depth);
+        if (scope == null) {
+            if (variable.depth == -1) {
+                code.local(Code.ALOAD, INTERPRETER_LOCAL);
+                code.loadConstant(variable.name.lexeme);
+                code.loadConstant(delta);
+                code.loadConstant(line);
+                runtime("incrementGlobal", "(" + INTERPRETER + STRING + "DI)D");
+            } else {
+                code.local(Code.ALOAD, CLOSURE_LOCAL);
+                code.loadConstant(closureDepth(variable.depth));
+                code.loadConstant(variable.slot);
+                code.loadConstant(delta);
+                code.loadConstant(line);
+                runtime("incrementCaptured", "(" + ENVIRONMENT + "IIDI)D");
+            }
+            return Type.NUM;
+        }
+        if (load(scope, variable.slot) == Type.OBJ) {
+            code.loadConstant(line);
+            runtime("number", "(" + OBJECT + "I)D");
+        }
+        code.op(Code.DUP2, 2);
+        code.loadConstant(delta);
+        code.op(Code.DADD, -2);
+        store(scope, variable.slot, Type.NUM, false);
+        return Type.NUM;
+    }
+
+    @Override
+    public Type visitBlockExpr(Expr.Block expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Type visitCommaExpr(Expr.Comma expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Type visitTernaryExpr(Expr.Ternary expr) {
+        Label elseBranch = code.label();
+        Label end = code.label();
+        branch(expr.condition, false, elseBranch);
+        Type thenType = emit(expr.thenExpr);
+        Type joined = joins.get(expr);
+        if (joined == null) {
+            joined = thenType;
+            joins.put(expr, joined);
+        }
+        coerceJoin(expr, thenType, joined);
+        code.jump(Code.GOTO, end);
+        code.mark(elseBranch);
+        Type elseType = emit(expr.elseExpr);
+        coerceJoin(expr, elseType, joined);
+        code.mark(end);
+        return joined;
+    }
+
+    private void coerceJoin(Expr expr, Type type, Type joined) {
+        if (type != joined && joined != Type.OBJ) {
+            // the branches disagree; compile again with both as objects
+            joins.put(expr, Type.OBJ);
+            widened = true;
+            pop(type);
+            code.op(Code.ACONST_NULL, 1);
+            return;
+        }
+        coerce(type, joined);
+    }
+
+    @Override
+    public Type visitVariableExpr(Expr.Variable expr) {
+        Scope scope = expr.depth == -1 ? null : local(expr.depth);
+        if (scope != null) return load(scope, expr.slot);
+        loadOutside(expr.name.lexeme, expr.depth, expr.slot, expr.name.line);
+        return Type.OBJ;
+    }
+
+    @Override
+    public Type visitLambdaFunctionExpr(Expr.LambdaFunction expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Type visitAnonymousClassExpr(Expr.AnonymousClass expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Type visitObjectLiteralExpr(Expr.ObjectLiteral expr) {
+        throw new Unsupported();
+    }
+}
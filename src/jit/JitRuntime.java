@@ -0,0 +1,268 @@
+package jit;
+
+
+import enivirement.Cell;
+import enivirement.Binding;
+import enivirement.Environment;
+import interpreter.Interpreter;
+import interpreter.Output;
+import interpreter.array.JLangArray;
+import interpreter.callable.JLangCallable;
+import interpreter.errors.DivisionByZeroException;
+import interpreter.errors.InvalidArgumentsException;
+import interpreter.errors.RuntimeError;
+import interpreter.errors.UndefinedVariableException;
+import interpreter.jchar.JLangChar;
+import interpreter.klass.JLangInstance;
+import interpreter.klass.JLangObject;
+import interpreter.range.JLangRange;
+import interpreter.string.JLangString;
+import tokenizer.Token;
+import tokenizer.TokenType;
+
+// Operations compiled code calls instead of inlining them: everything on
+// values whose type is only known at runtime, and everything that touches
+// the interpreter's objects. They behave like the matching Interpreter
+// visit methods, down to the error messages. Errors only keep the line,
+// which is all JLang.runtimeError() prints.
+public final class JitRuntime {
+    private JitRuntime() {}
+
+    private static Token token(int line) {
+        return new Token(TokenType.IDENTIFIER, "", null, line);
+    }
+
+    public static Object global(Interpreter interpreter, String name, int line) {
+        Binding binding = interpreter.globals.binding(name);
+        if (binding != null) return binding.value;
+        throw new UndefinedVariableException(new Token(TokenType.IDENTIFIER, name, null, line),
+                "Undefined variable '" + name + "'.");
+    }
+
+    public static Object setGlobal(Object value, Interpreter interpreter, String name, int line) {
+        interpreter.globals.assign(new Token(TokenType.IDENTIFIER, name, null, line), value);
+        return value;
+    }
+
+    // Variables outside the compiled function are in cells of its closure;
+    // 'this' is kept there as it is.
+    public static Object captured(Environment closure, int depth, int slot) {
+        Object value = closure.getAt(depth, slot);
+        return value instanceof Cell ? ((Cell) value).value : value;
+    }
+
+    public static Object setCaptured(Object value, Environment closure, int depth, int slot) {
+        closure.assignCellAt(depth, slot, value);
+        return value;
+    }
+
+    public static double incrementCaptured(Environment closure, int depth, int slot, double delta, int line) {
+        double value = number(closure.getCellAt(depth, slot), line);
+        closure.assignCellAt(depth, slot, value + delta);
+        return value;
+    }
+
+    public static double incrementGlobal(Interpreter interpreter, String name, double delta, int line) {
+        double value = number(global(interpreter, name, line), line);
+        setGlobal(value + delta, interpreter, name, line);
+        return value;
+    }
+
+    public static double invalidIncrement(Object operand, int line) {
+        number(operand, line);
+        throw new RuntimeException("The operand is not a variable and cannot be assigned a new value.");
+    }
+
+    public static Object call(Object callee, Object[] arguments, Interpreter interpreter, int line) {
+        if (!(callee instanceof JLangCallable)) {
+            throw new RuntimeError(token(line), "Can only call functions and classes.");
+        }
+        JLangCallable function = (JLangCallable) callee;
+        if (arguments.length != function.arity() && function.arity() != -1) {
+            throw new RuntimeError(token(line), "Expected " +
+            function.arity() + " arguments but got " + arguments.length + ".");
+        }
+        try {
+            return function.call(interpreter, arguments);
+        } catch (InvalidArgumentsException e) {
+            throw new RuntimeError(new Token(TokenType.FUN, "", null, 1), e.getMessage());
+        }
+    }
+
+    public static boolean truthy(Object value) {
+        return Interpreter.isTruthy(value);
+    }
+
+    public static double number(Object operand, int line) {
+        if (operand instanceof Double) return (double) operand;
+        throw new RuntimeError(token(line), "Operand must be a number.");
+    }
+
+    public static double negate(Object operand, int line) {
+        return -number(operand, line);
+    }
+
+    private static void checkNumbers(Object left, Object right, int line) {
+        if (left instanceof Double && right instanceof Double) return;
+        throw new RuntimeError(token(line), "Operands must be numbers.");
+    }
+
+    public static Object add(Object left, Object right, int line) {
+        if (left instanceof Double && right instanceof Double) {
+            return (double) left + (double) right;
+        }
+        if (left instanceof JLangString && right instanceof JLangString) {
+            return JLangString.concat((JLangString) left, (JLangString) right);
+        }
+        if (left instanceof JLangChar && right instanceof JLangChar) {
+            return new JLangString(String.valueOf(((JLangChar) left).getValue()) + ((JLangChar) right).getValue());
+        }
+        if (left instanceof JLangString) {
+            return JLangString.concat((JLangString) left, new JLangString(Interpreter.stringify(right)));
+        }
+        if (right instanceof JLangString) {
+            return JLangString.concat(new JLangString(Interpreter.stringify(left)), (JLangString) right);
+        }
+        throw new RuntimeError(token(line), "Operands must be two numbers or at least one string.");
+    }
+
+    public static double subtract(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return (double) left - (double) right;
+    }
+
+    public static double multiply(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return (double) left * (double) right;
+    }
+
+    public static double divide(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return divide((double) left, (double) right, line);
+    }
+
+    public static double divide(double left, double right, int line) {
+        if (right == 0.0) throw new DivisionByZeroException(token(line), "Division by zero.");
+        return left / right;
+    }
+
+    public static double power(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return Math.pow((double) left, (double) right);
+    }
+
+    public static boolean less(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return (double) left < (double) right;
+    }
+
+    public static boolean lessEqual(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return (double) left <= (double) right;
+    }
+
+    public static boolean greater(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return (double) left > (double) right;
+    }
+
+    public static boolean greaterEqual(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return (double) left >= (double) right;
+    }
+
+    public static boolean equal(Object left, Object right) {
+        return Interpreter.isEqual(left, right);
+    }
+
+    public static Object shiftLeft(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return ((Double) left).intValue() << ((Double) right).intValue();
+    }
+
+    public static Object shiftRight(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return ((Double) left).intValue() >> ((Double) right).intValue();
+    }
+
+    // /= reports a plain RuntimeError, unlike /
+    public static double divideAssign(double left, double right, int line) {
+        if (right == 0) throw new RuntimeError(token(line), "Division by zero.");
+        return left / right;
+    }
+
+    // Compound assignment on values of unknown type; operator is the
+    // ordinal of the operator's TokenType.
+    public static Object compound(Object value, Object current, int operator, int line) {
+        checkNumbers(current, value, line);
+        double left = (double) current;
+        double right = (double) value;
+        switch (TokenType.values()[operator]) {
+            case PLUS_EQUAL: return left + right;
+            case MINUS_EQUAL: return left - right;
+            case STAR_EQUAL: return left * right;
+            case SLASH_EQUAL: return divideAssign(left, right, line);
+            case SHIFT_LEFT_EQUAL: return (int) left << (int) right;
+            case SHIFT_RIGHT_EQUAL: return (int) left >> (int) right;
+            default: throw new RuntimeError(token(line), "Invalid assignment operator.");
+        }
+    }
+
+    public static Object get(Object object, String name, int line) {
+        if (object instanceof JLangObject) {
+            return ((JLangObject) object).get(new Token(TokenType.IDENTIFIER, name, null, line));
+        }
+        throw new RuntimeError(token(line), "Only instances have properties.");
+    }
+
+    public static Object checkInstance(Object object, int line) {
+        if (object instanceof JLangInstance) return object;
+        throw new RuntimeError(token(line), "Only instances have fields.");
+    }
+
+    public static Object set(Object object, Object value, String name, int line) {
+        ((JLangInstance) object).set(new Token(TokenType.IDENTIFIER, name, null, line), value);
+        return value;
+    }
+
+    public static Object index(Object array, Object index) {
+        if (!(index instanceof Double)) {
+            throw new RuntimeException("Array index must be an integer.");
+        }
+        int position = ((Double) index).intValue();
+        if (array instanceof JLangArray) {
+            try {
+                return ((JLangArray) array).getItem(position);
+            } catch (IndexOutOfBoundsException e) {
+                throw new RuntimeException("Array of length " + ((JLangArray) array).size() + " index " + position + " out of bounds");
+            }
+        }
+        if (array instanceof JLangString) {
+            try {
+                return ((JLangString) array).getItem(position);
+            } catch (IndexOutOfBoundsException e) {
+                throw new RuntimeException("String of length " + ((JLangString) array).length() + " index " + position + " out of bounds");
+            }
+        }
+        if (array instanceof JLangRange) {
+            try {
+                return ((JLangRange) array).getItem(position);
+            } catch (IndexOutOfBoundsException e) {
+                throw new RuntimeException("Range of length " + ((JLangRange) array).length() + " index " + position + " out of bounds");
+            }
+        }
+        throw new RuntimeException("Only arrays are accessible by index.");
+    }
+
+    public static Object array(Object[] elements) {
+        return new JLangArray(elements);
+    }
+
+    public static Object character(int value) {
+        return JLangChar.of((char) value);
+    }
+
+    public static void print(Object value) {
+        Output.println(Interpreter.stringify(value));
+    }
+}
@@ -0,0 +1,42 @@
+package jit;
+
+import ast.Stmt;
+
+// Decides when a function has run often enough to be compiled. Calls and
+// loop iterations both count; compiled code is kept on the declaration so
+// every closure of the function shares it.
+public class Tier2 {
+    public static final int DEFAULT_THRESHOLD = 1000;
+
+    private final int threshold;
+
+    public Tier2(int threshold) {
+        this.threshold = threshold;
+    }
+
+    // Counts a call and returns the compiled code, or null while the
+    // function is still interpreted.
+    public CompiledCode profile(Stmt.Function function) {
+        if (function.compiled != null) return function.compiled;
+        // the compiler already gave up on this one
+        if (function.hotness < 0) return null;
+        if (++function.hotness >= threshold) {
+            function.compiled = JitCompiler.compile(function, true);
+            if (function.compiled == null) function.hotness = -1;
+        }
+        return function.compiled;
+    }
+
+    // The compiled code turned down its arguments: compile it again for
+    // arguments of any type.
+    public void guardFailed(Stmt.Function function) {
+        function.compiled = JitCompiler.compile(function, false);
+        if (function.compiled == null) function.hotness = -1;
+    }
+
+    // A loop iteration; there is no on-stack replacement, so it only makes
+    // the next call more likely to run compiled.
+    public void backEdge(Stmt.Function function) {
+        if (function.hotness >= 0) function.hotness++;
+    }
+}
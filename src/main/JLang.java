@@ -5,26 +5,44 @@ import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
 
 import ast.*;
+import closures.ClosureEngine;
 import interpreter.Interpreter;
+import interpreter.Output;
 import interpreter.errors.RuntimeError;
+import jit.Tier2;
+import nodes.NodeEngine;
+import optimizer.Optimizer;
 import parser.Parser;
 import resolver.Resolver;
 import scanner.*;
 import tokenizer.*;
+import vm.VM;
 
 
 public class JLang {
 
     private static final Interpreter interpreter = new Interpreter();
+    // set by --engine=vm, null when the tree-walking interpreter runs the code;
+    // the tree engine is as fast or faster on res/examples/bench_loops
+    private static VM vm = null;
+    // set by --engine=nodes
+    private static NodeEngine nodes = null;
+    // set by --engine=closures
+    private static ClosureEngine closures = null;
+    // set while reading lines from the prompt, where a later line can
+    // redeclare a global constant
+    private static boolean interactive = false;
     static boolean hadError = false;
     static boolean hadRuntimeError = false;
 
     private static void runFile(String path) throws IOException {
         byte[] bytes = Files.readAllBytes(Paths.get(path));
         run(new String(bytes, Charset.defaultCharset()));
+        Output.flush();
         // Indicate an error in the exit code.
         if (hadError) System.exit(65);
         if (hadRuntimeError) System.exit(70);
@@ -32,8 +50,10 @@ public class JLang {
     private static void runPrompt() throws IOException {
         InputStreamReader input = new InputStreamReader(System.in);
         BufferedReader reader = new BufferedReader(input);
+        interactive = true;
         for (;;) {
-            System.out.print("> ");
+            Output.print("> ");
+            Output.flush();
             String line = reader.readLine();
             if (line == null) break;
             run(line);
@@ -51,10 +71,19 @@ public class JLang {
         // Stop if there was a syntax error.
         if (hadError) return;
         // System.out.println(new AstPrinter().print(expression));
-        Resolver resolver = new Resolver(interpreter);
+        Resolver resolver = new Resolver();
         resolver.resolve(statements);
         if (hadError) return;
-        interpreter.interpret(statements);
+        statements = new Optimizer(!interactive).optimize(statements);
+        if (vm != null) {
+            vm.interpret(statements);
+        } else if (nodes != null) {
+            nodes.interpret(statements);
+        } else if (closures != null) {
+            closures.interpret(statements);
+        } else {
+            interpreter.interpret(statements);
+        }
     }
     public static void error(Token token, String message) {
         if (token.type == TokenType.EOF) {
@@ -67,29 +96,79 @@ public class JLang {
         report(line, "", message);
     }
     private static void report(int line, String where, String message) {
-        if (line != -1)System.out.print("[line " + line + "] ");
+        if (line != -1) Output.print("[line " + line + "] ");
+        // what was printed before the error shows up before it
+        Output.flush();
         System.err.println("Error" + where + ": " + message);
         hadError = true;
     }
     public static void runtimeError(RuntimeError error) {
+        Output.flush();
         System.err.println(error.getMessage() +
             "\n[line " + error.token.line + "]");
         hadRuntimeError = true;
     }
 
     public static void main(String[] args) throws IOException {
-        String filePath = "F:\\Pro Documents\\Low Level Code\\repos\\jlang\\src\\res\\examples\\test";
-        if (filePath != ""){
-            runFile(filePath);
-            System.exit(64);
+        interpreter.tier2 = new Tier2(Tier2.DEFAULT_THRESHOLD);
+        while (args.length > 0 && args[0].startsWith("--")) {
+            String option = args[0];
+            if (option.startsWith("--engine=")) {
+                String engine = option.substring("--engine=".length());
+                if (engine.equals("vm")) {
+                    vm = new VM(interpreter);
+                } else if (engine.equals("nodes")) {
+                    nodes = new NodeEngine(interpreter);
+                } else if (engine.equals("closures")) {
+                    closures = new ClosureEngine(interpreter);
+                } else if (!engine.equals("tree")) {
+                    System.out.println("Unknown engine '" + engine + "'.");
+                    System.exit(64);
+                }
+            } else if (option.startsWith("--flush-lines=") || option.startsWith("--flush-ms=")) {
+                // how many lines, or milliseconds, printed text may wait in the buffer; 0 for no limit
+                String value = option.substring(option.indexOf('=') + 1);
+                try {
+                    if (option.startsWith("--flush-lines=")) {
+                        Output.setFlushLines(Integer.parseInt(value));
+                    } else {
+                        Output.setFlushMillis(Long.parseLong(value));
+                    }
+                } catch (NumberFormatException e) {
+                    System.out.println("Expected a number, got '" + value + "'.");
+                    System.exit(64);
+                }
+            } else if (option.startsWith("--jit=")) {
+                // only the tree-walking interpreter tiers up
+                String jit = option.substring("--jit=".length());
+                if (jit.equals("off")) {
+                    interpreter.tier2 = null;
+                } else {
+                    try {
+                        interpreter.tier2 = new Tier2(Integer.parseInt(jit));
+                    } catch (NumberFormatException e) {
+                        System.out.println("Expected 'off' or a call count, got '" + jit + "'.");
+                        System.exit(64);
+                    }
+                }
+            } else {
+                break;
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
         }
         if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
+            System.out.println("Usage: jlang [--engine=tree|vm|nodes|closures] [--jit=off|<calls>] [--flush-lines=<n>] [--flush-ms=<n>] [script]");
             System.exit(64);
-        } else if (args.length == 1 ) {
-            runFile(args[0]);
-        } else {
-            runPrompt();
+        }
+        try {
+            if (args.length == 1) {
+                runFile(args[0]);
+            } else {
+                runPrompt();
+            }
+        } finally {
+            // before the JVM reports an exception that got out of the script
+            Output.flush();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,381 @@
+package nodes;
+
+import enivirement.Environment;
+import interpreter.Interpreter;
+import interpreter.errors.DivisionByZeroException;
+import interpreter.errors.RuntimeError;
+import interpreter.jchar.JLangChar;
+import interpreter.string.JLangString;
+import tokenizer.Token;
+
+// Binary operators. Every one starts out uninitialized; its first execution
+// looks at the operands and rewrites it into a node for two numbers or two
+// strings, or into the generic node that does what Interpreter.binary()
+// does. A specialized node that meets other operands falls back to the
+// generic node for good.
+final class BinaryNodes {
+    private BinaryNodes() {}
+
+    abstract static class BinaryNode extends ExprNode {
+        final Token operator;
+        ExprNode left;
+        ExprNode right;
+
+        BinaryNode(Token operator, ExprNode left, ExprNode right) {
+            this.operator = operator;
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (left == child) left = (ExprNode) replacement;
+            if (right == child) right = (ExprNode) replacement;
+        }
+
+        // Both operands have already been evaluated, the generic node only
+        // finishes the operation.
+        protected Object deoptimize(Object left, Object right) {
+            replace(new GenericBinaryNode(operator, this.left, this.right));
+            return GenericBinaryNode.compute(operator, left, right);
+        }
+
+        // An operand that isn't a number finishes the whole operation in the
+        // generic node; its result comes out in the exception, for the node
+        // to return as it is rather than use as an operand.
+        protected double leftDouble(Environment frame) throws UnexpectedResultException {
+            try {
+                return left.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(deoptimize(e.getResult(), right.execute(frame)));
+            }
+        }
+
+        protected double rightDouble(Environment frame, double leftValue) throws UnexpectedResultException {
+            try {
+                return right.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(deoptimize(leftValue, e.getResult()));
+            }
+        }
+    }
+
+    static final class UninitializedBinaryNode extends BinaryNode {
+        UninitializedBinaryNode(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object leftValue = left.execute(frame);
+            Object rightValue = right.execute(frame);
+            replace(specialize(leftValue, rightValue));
+            return GenericBinaryNode.compute(operator, leftValue, rightValue);
+        }
+
+        private BinaryNode specialize(Object leftValue, Object rightValue) {
+            if (leftValue instanceof Double && rightValue instanceof Double) {
+                switch (operator.type) {
+                    case PLUS: return new DoubleAddNode(operator, left, right);
+                    case MINUS: return new DoubleSubtractNode(operator, left, right);
+                    case STAR: return new DoubleMultiplyNode(operator, left, right);
+                    case SLASH: return new DoubleDivideNode(operator, left, right);
+                    case POWER: return new DoublePowerNode(operator, left, right);
+                    case LESS: return new DoubleLessNode(operator, left, right);
+                    case LESS_EQUAL: return new DoubleLessEqualNode(operator, left, right);
+                    case GREATER: return new DoubleGreaterNode(operator, left, right);
+                    case GREATER_EQUAL: return new DoubleGreaterEqualNode(operator, left, right);
+                    case EQUAL_EQUAL: return new DoubleEqualNode(operator, left, right);
+                    case BANG_EQUAL: return new DoubleNotEqualNode(operator, left, right);
+                    default: break;
+                }
+            }
+            switch (operator.type) {
+                case PLUS:
+                    if (leftValue instanceof JLangString && rightValue instanceof JLangString) {
+                        return new StringConcatNode(operator, left, right);
+                    }
+                    break;
+                default: break;
+            }
+            return new GenericBinaryNode(operator, left, right);
+        }
+    }
+
+    abstract static class DoubleArithmeticNode extends BinaryNode {
+        DoubleArithmeticNode(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            try {
+                return executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return e.getResult();
+            }
+        }
+    }
+
+    static final class DoubleAddNode extends DoubleArithmeticNode {
+        DoubleAddNode(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double executeDouble(Environment frame) throws UnexpectedResultException {
+            double leftValue = leftDouble(frame);
+            return leftValue + rightDouble(frame, leftValue);
+        }
+    }
+
+    static final class DoubleSubtractNode extends DoubleArithmeticNode {
+        DoubleSubtractNode(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double executeDouble(Environment frame) throws UnexpectedResultException {
+            double leftValue = leftDouble(frame);
+            return leftValue - rightDouble(frame, leftValue);
+        }
+    }
+
+    static final class DoubleMultiplyNode extends DoubleArithmeticNode {
+        DoubleMultiplyNode(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double executeDouble(Environment frame) throws UnexpectedResultException {
+            double leftValue = leftDouble(frame);
+            return leftValue * rightDouble(frame, leftValue);
+        }
+    }
+
+    static final class DoubleDivideNode extends DoubleArithmeticNode {
+        DoubleDivideNode(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double executeDouble(Environment frame) throws UnexpectedResultException {
+            double leftValue = leftDouble(frame);
+            double rightValue = rightDouble(frame, leftValue);
+            if (rightValue == 0.0) {
+                throw new DivisionByZeroException(operator, "Division by zero.");
+            }
+            return leftValue / rightValue;
+        }
+    }
+
+    static final class DoublePowerNode extends DoubleArithmeticNode {
+        DoublePowerNode(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double executeDouble(Environment frame) throws UnexpectedResultException {
+            double leftValue = leftDouble(frame);
+            return Math.pow(leftValue, rightDouble(frame, leftValue));
+        }
+    }
+
+    static final class DoubleLessNode extends BinaryNode {
+        DoubleLessNode(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            try {
+                double leftValue = leftDouble(frame);
+                return leftValue < rightDouble(frame, leftValue);
+            } catch (UnexpectedResultException e) {
+                return e.getResult();
+            }
+        }
+    }
+
+    static final class DoubleLessEqualNode extends BinaryNode {
+        DoubleLessEqualNode(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            try {
+                double leftValue = leftDouble(frame);
+                return leftValue <= rightDouble(frame, leftValue);
+            } catch (UnexpectedResultException e) {
+                return e.getResult();
+            }
+        }
+    }
+
+    static final class DoubleGreaterNode extends BinaryNode {
+        DoubleGreaterNode(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            try {
+                double leftValue = leftDouble(frame);
+                return leftValue > rightDouble(frame, leftValue);
+            } catch (UnexpectedResultException e) {
+                return e.getResult();
+            }
+        }
+    }
+
+    static final class DoubleGreaterEqualNode extends BinaryNode {
+        DoubleGreaterEqualNode(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            try {
+                double leftValue = leftDouble(frame);
+                return leftValue >= rightDouble(frame, leftValue);
+            } catch (UnexpectedResultException e) {
+                return e.getResult();
+            }
+        }
+    }
+
+    // Double.equals() semantics, NaN equals itself and 0 differs from -0
+    static final class DoubleEqualNode extends BinaryNode {
+        DoubleEqualNode(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            try {
+                double leftValue = leftDouble(frame);
+                return Double.compare(leftValue, rightDouble(frame, leftValue)) == 0;
+            } catch (UnexpectedResultException e) {
+                return e.getResult();
+            }
+        }
+    }
+
+    static final class DoubleNotEqualNode extends BinaryNode {
+        DoubleNotEqualNode(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            try {
+                double leftValue = leftDouble(frame);
+                return Double.compare(leftValue, rightDouble(frame, leftValue)) != 0;
+            } catch (UnexpectedResultException e) {
+                return e.getResult();
+            }
+        }
+    }
+
+    static final class StringConcatNode extends BinaryNode {
+        StringConcatNode(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object leftValue = left.execute(frame);
+            Object rightValue = right.execute(frame);
+            if (leftValue instanceof JLangString && rightValue instanceof JLangString) {
+                return JLangString.concat((JLangString) leftValue, (JLangString) rightValue);
+            }
+            return deoptimize(leftValue, rightValue);
+        }
+    }
+
+    static final class GenericBinaryNode extends BinaryNode {
+        GenericBinaryNode(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object leftValue = left.execute(frame);
+            return compute(operator, leftValue, right.execute(frame));
+        }
+
+        static Object compute(Token operator, Object left, Object right) {
+            switch (operator.type) {
+                case GREATER:
+                    checkNumberOperands(operator, left, right);
+                    return (double)left > (double)right;
+                case GREATER_EQUAL:
+                    checkNumberOperands(operator, left, right);
+                    return (double)left >= (double)right;
+                case LESS:
+                    checkNumberOperands(operator, left, right);
+                    return (double)left < (double)right;
+                case LESS_EQUAL:
+                    checkNumberOperands(operator, left, right);
+                    return (double)left <= (double)right;
+                case BANG_EQUAL:
+                    return !Interpreter.isEqual(left, right);
+                case EQUAL_EQUAL:
+                    return Interpreter.isEqual(left, right);
+                case MINUS:
+                    checkNumberOperands(operator, left, right);
+                    return (double)left - (double)right;
+                case PLUS:
+                    if (left instanceof Double && right instanceof Double) {
+                        return (double)left + (double)right;
+                    }
+                    if (left instanceof JLangString && right instanceof JLangString) {
+                        return JLangString.concat((JLangString) left, (JLangString) right);
+                    }
+                    if (left instanceof JLangChar && right instanceof JLangChar) {
+                        return new JLangString(String.valueOf(((JLangChar) left).getValue()) + ((JLangChar) right).getValue());
+                    }
+                    if (left instanceof JLangString) {
+                        return JLangString.concat((JLangString) left, new JLangString(Interpreter.stringify(right)));
+                    }
+                    if (right instanceof JLangString) {
+                        return JLangString.concat(new JLangString(Interpreter.stringify(left)), (JLangString) right);
+                    }
+                    throw new RuntimeError(operator,
+                    "Operands must be two numbers or at least one string.");
+                case SLASH:
+                    checkNumberOperands(operator, left, right);
+                    if ((double) right == 0.0) {
+                        throw new DivisionByZeroException(operator, "Division by zero.");
+                    }
+                    return (double)left / (double)right;
+                case STAR:
+                    checkNumberOperands(operator, left, right);
+                    return (double)left * (double)right;
+                case SHIFT_LEFT:
+                    checkNumberOperands(operator, left, right);
+                    return ((Double) left).intValue() << ((Double) right).intValue();
+                case SHIFT_RIGHT:
+                    checkNumberOperands(operator, left, right);
+                    return ((Double) left).intValue() >> ((Double) right).intValue();
+                case POWER:
+                    checkNumberOperands(operator, left, right);
+                    return Math.pow((Double) left, (Double) right);
+                default:
+                    // Unreachable.
+                    return null;
+            }
+        }
+    }
+
+    static void checkNumberOperand(Token operator, Object operand) {
+        if (operand instanceof Double) return;
+        throw new RuntimeError(operator, "Operand must be a number.");
+    }
+
+    static void checkNumberOperands(Token operator, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) return;
+        throw new RuntimeError(operator, "Operands must be numbers.");
+    }
+}
@@ -0,0 +1,193 @@
+package nodes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import enivirement.Environment;
+import interpreter.Completion;
+import interpreter.callable.JLangFunction;
+import interpreter.errors.RuntimeError;
+import interpreter.klass.JLangBaseObject;
+import interpreter.klass.JLangClass;
+import interpreter.klass.JLangInstance;
+import tokenizer.Token;
+import tokenizer.TokenType;
+
+// Classes and the expressions that only make sense inside them. The
+// environments are laid out the way the Resolver expects: methods capture
+// the class for super lookups from one scope holding it (when it has
+// superclasses), bind() adds the scope holding 'this'.
+final class ClassNodes {
+    private ClassNodes() {}
+
+    static final class ClassNode extends StmtNode {
+        final Token name;
+        // -1 for a global class
+        final int slot;
+        final boolean captured;
+        final Token[] parentNames;
+        final ExprNode[] parents;
+        final FunctionRoot[] methods;
+
+        ClassNode(Token name, int slot, boolean captured, Token[] parentNames, ExprNode[] parents,
+                  FunctionRoot[] methods) {
+            this.name = name;
+            this.slot = slot;
+            this.captured = captured;
+            this.parentNames = parentNames;
+            this.parents = parents;
+            this.methods = methods;
+            for (ExprNode parent : parents) adopt(parent);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            replaceIn(parents, child, replacement);
+        }
+
+        @Override
+        Completion execute(Environment frame) {
+            if (slot == -1) frame.define(name.lexeme, null);
+            List<JLangClass> superclasses = superclasses(parentNames, parents, frame);
+
+            JLangClass klass = new JLangClass(name.lexeme, superclasses, new HashMap<>());
+            Environment environment = frame;
+            if (!superclasses.isEmpty()) {
+                environment = new Environment(frame, 1);
+                environment.define(0, klass);
+            }
+            for (FunctionRoot method : methods) {
+                klass.defineMethod(method.name, method.close(environment));
+            }
+
+            if (captured) {
+                frame.defineCell(slot, klass);
+            } else if (slot != -1) {
+                frame.define(slot, klass);
+            } else {
+                frame.assign(name, klass);
+            }
+            return Completion.NORMAL;
+        }
+    }
+
+    static final class AnonymousClassNode extends ExprNode {
+        final Token[] parentNames;
+        final ExprNode[] parents;
+        final FunctionRoot[] methods;
+
+        AnonymousClassNode(Token[] parentNames, ExprNode[] parents, FunctionRoot[] methods) {
+            this.parentNames = parentNames;
+            this.parents = parents;
+            this.methods = methods;
+            for (ExprNode parent : parents) adopt(parent);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            replaceIn(parents, child, replacement);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            List<JLangClass> superclasses = superclasses(parentNames, parents, frame);
+            Map<String, JLangFunction> table = new HashMap<>();
+            for (FunctionRoot method : methods) {
+                table.put(method.name, method.close(frame));
+            }
+            for (JLangClass superclass : superclasses) {
+                for (Map.Entry<String, JLangFunction> method : superclass.methods.entrySet()) {
+                    table.putIfAbsent(method.getKey(), method.getValue());
+                }
+            }
+            return new JLangClass("AnonymousClass", superclasses, table);
+        }
+    }
+
+    private static List<JLangClass> superclasses(Token[] names, ExprNode[] parents, Environment frame) {
+        List<JLangClass> superclasses = new ArrayList<>();
+        for (int i = 0; i < parents.length; i++) {
+            Object superclass = parents[i].execute(frame);
+            if (!(superclass instanceof JLangClass)) {
+                throw new RuntimeError(names[i], "Superclass must be a class.");
+            }
+            superclasses.add((JLangClass) superclass);
+        }
+        return superclasses;
+    }
+
+    static final class ThisNode extends ExprNode {
+        final Token keyword;
+        final int depth;
+        final int slot;
+        final Environment globals;
+
+        ThisNode(Token keyword, int depth, int slot, Environment globals) {
+            this.keyword = keyword;
+            this.depth = depth;
+            this.slot = slot;
+            this.globals = globals;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            if (depth != -1) return frame.getAt(depth, slot);
+            return globals.get(keyword);
+        }
+    }
+
+    static final class SuperNode extends ExprNode {
+        final Token method;
+        final int depth;
+        final int slot;
+        final int thisDepth;
+        final int thisSlot;
+
+        SuperNode(Token method, int depth, int slot, int thisDepth, int thisSlot) {
+            this.method = method;
+            this.depth = depth;
+            this.slot = slot;
+            this.thisDepth = thisDepth;
+            this.thisSlot = thisSlot;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            JLangClass klass = (JLangClass) frame.getAt(depth, slot);
+            JLangInstance object = (JLangInstance) frame.getAt(thisDepth, thisSlot);
+            JLangFunction found = klass.findSuperMethod(method.lexeme);
+            if (found != null) return found.bind(object);
+            throw new RuntimeError(method, "Undefined method '" + method.lexeme + "' for superclass.");
+        }
+    }
+
+    static final class ObjectLiteralNode extends ExprNode {
+        final Token[] keys;
+        final ExprNode[] values;
+        final Environment globals;
+
+        ObjectLiteralNode(Token[] keys, ExprNode[] values, Environment globals) {
+            this.keys = keys;
+            this.values = values;
+            this.globals = globals;
+            for (ExprNode value : values) adopt(value);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            replaceIn(values, child, replacement);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            JLangBaseObject object = new JLangBaseObject((JLangClass) globals.valueOf("Object"));
+            for (int i = 0; i < keys.length; i++) {
+                Object value = values[i].execute(frame);
+                object.set(new Token(TokenType.IDENTIFIER, keys[i].lexeme, null, keys[i].line), value);
+            }
+            return object;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package nodes;
+
+import enivirement.Environment;
+
+abstract class ExprNode extends Node {
+    abstract Object execute(Environment frame);
+
+    // Nodes that can produce a number without boxing it override this. The
+    // default boxes and checks, so callers expecting a number only need one
+    // code path; any other value comes back inside the exception.
+    double executeDouble(Environment frame) throws UnexpectedResultException {
+        Object value = execute(frame);
+        if (value instanceof Double) return (double) value;
+        throw new UnexpectedResultException(value);
+    }
+
+    // Used where the value is thrown away, so the result need not be boxed.
+    void executeVoid(Environment frame) {
+        execute(frame);
+    }
+}
@@ -0,0 +1,351 @@
+package nodes;
+
+import java.util.List;
+
+import enivirement.Environment;
+import interpreter.Interpreter;
+import interpreter.Output;
+import interpreter.array.JLangArray;
+import interpreter.callable.JLangCallable;
+import interpreter.errors.InvalidArgumentsException;
+import interpreter.errors.RuntimeError;
+import interpreter.jchar.JLangChar;
+import interpreter.range.JLangRange;
+import interpreter.string.JLangString;
+import tokenizer.Token;
+import tokenizer.TokenType;
+
+final class ExpressionNodes {
+    private ExpressionNodes() {}
+
+    static final class LiteralNode extends ExprNode {
+        final Object value;
+
+        LiteralNode(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return value;
+        }
+    }
+
+    static final class NumberLiteralNode extends ExprNode {
+        final double value;
+        // the Double handed out when a boxed value is needed
+        final Object boxed;
+
+        NumberLiteralNode(double value) {
+            this.value = value;
+            this.boxed = value;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return boxed;
+        }
+
+        @Override
+        double executeDouble(Environment frame) {
+            return value;
+        }
+    }
+
+    static final class StringNode extends ExprNode {
+        final JLangString value;
+
+        StringNode(String value) {
+            this.value = new JLangString(value);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return value;
+        }
+    }
+
+    static final class CharNode extends ExprNode {
+        final JLangChar value;
+
+        CharNode(char value) {
+            this.value = JLangChar.of(value);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return value;
+        }
+    }
+
+    static final class NegateNode extends ExprNode {
+        final Token operator;
+        ExprNode operand;
+
+        NegateNode(Token operator, ExprNode operand) {
+            this.operator = operator;
+            this.operand = adopt(operand);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (operand == child) operand = (ExprNode) replacement;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return executeDouble(frame);
+        }
+
+        @Override
+        double executeDouble(Environment frame) {
+            try {
+                return -operand.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                BinaryNodes.checkNumberOperand(operator, e.getResult());
+                // Unreachable, the check always throws.
+                return 0;
+            }
+        }
+    }
+
+    static final class NotNode extends ExprNode {
+        ExprNode operand;
+
+        NotNode(ExprNode operand) {
+            this.operand = adopt(operand);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (operand == child) operand = (ExprNode) replacement;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return !Interpreter.isTruthy(operand.execute(frame));
+        }
+    }
+
+    static final class LogicalNode extends ExprNode {
+        final boolean isOr;
+        ExprNode left;
+        ExprNode right;
+
+        LogicalNode(boolean isOr, ExprNode left, ExprNode right) {
+            this.isOr = isOr;
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (left == child) left = (ExprNode) replacement;
+            if (right == child) right = (ExprNode) replacement;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object value = left.execute(frame);
+            if (Interpreter.isTruthy(value) == isOr) return value;
+            return right.execute(frame);
+        }
+    }
+
+    static final class TernaryNode extends ExprNode {
+        ExprNode condition;
+        ExprNode thenExpr;
+        ExprNode elseExpr;
+
+        TernaryNode(ExprNode condition, ExprNode thenExpr, ExprNode elseExpr) {
+            this.condition = adopt(condition);
+            this.thenExpr = adopt(thenExpr);
+            this.elseExpr = adopt(elseExpr);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (condition == child) condition = (ExprNode) replacement;
+            if (thenExpr == child) thenExpr = (ExprNode) replacement;
+            if (elseExpr == child) elseExpr = (ExprNode) replacement;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            if (Interpreter.isTruthy(condition.execute(frame))) {
+                return thenExpr.execute(frame);
+            }
+            return elseExpr.execute(frame);
+        }
+    }
+
+    static final class CallNode extends ExprNode {
+        final Token paren;
+        final NodeEngine engine;
+        ExprNode callee;
+        final ExprNode[] arguments;
+
+        CallNode(Token paren, NodeEngine engine, ExprNode callee, ExprNode[] arguments) {
+            this.paren = paren;
+            this.engine = engine;
+            this.callee = adopt(callee);
+            this.arguments = arguments;
+            for (ExprNode argument : arguments) adopt(argument);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (callee == child) callee = (ExprNode) replacement;
+            replaceIn(arguments, child, replacement);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return call(paren, engine, callee.execute(frame), arguments, frame);
+        }
+
+        static Object call(Token paren, NodeEngine engine, Object function, ExprNode[] arguments,
+                           Environment frame) {
+            if (function instanceof NodeFunction) {
+                NodeFunction target = (NodeFunction) function;
+                if (target.root.arity == arguments.length) {
+                    // the arguments go straight into the parameter slots of the new frame
+                    Environment callFrame = new Environment(target.closure, target.root.slotCount,
+                        target.root.cells);
+                    for (int i = 0; i < arguments.length; i++) {
+                        callFrame.defineArgument(i, arguments[i].execute(frame));
+                    }
+                    return target.invoke(callFrame);
+                }
+            }
+            Object[] values = new Object[arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                values[i] = arguments[i].execute(frame);
+            }
+            if (!(function instanceof JLangCallable)) {
+                throw new RuntimeError(paren, "Can only call functions and classes.");
+            }
+            JLangCallable callable = (JLangCallable) function;
+            if (values.length != callable.arity() && callable.arity() != -1) {
+                throw new RuntimeError(paren, "Expected " +
+                callable.arity() + " arguments but got " +
+                values.length + ".");
+            }
+            try {
+                return callable.call(engine.interpreter, values);
+            } catch (InvalidArgumentsException e) {
+                throw new RuntimeError(new Token(TokenType.FUN, "", null, 1), e.getMessage());
+            }
+        }
+    }
+
+    static final class LambdaNode extends ExprNode {
+        final FunctionRoot function;
+
+        LambdaNode(FunctionRoot function) {
+            this.function = function;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return function.close(frame);
+        }
+    }
+
+    static final class ArrayNode extends ExprNode {
+        final ExprNode[] elements;
+
+        ArrayNode(ExprNode[] elements) {
+            this.elements = elements;
+            for (ExprNode element : elements) adopt(element);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            replaceIn(elements, child, replacement);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object[] values = new Object[elements.length];
+            for (int i = 0; i < elements.length; i++) {
+                values[i] = elements[i].execute(frame);
+            }
+            return new JLangArray(values);
+        }
+    }
+
+    static final class IndexNode extends ExprNode {
+        ExprNode array;
+        ExprNode index;
+
+        IndexNode(ExprNode array, ExprNode index) {
+            this.array = adopt(array);
+            this.index = adopt(index);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (array == child) array = (ExprNode) replacement;
+            if (index == child) index = (ExprNode) replacement;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object target = array.execute(frame);
+            int position;
+            try {
+                position = (int) index.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                throw new RuntimeException("Array index must be an integer.");
+            }
+            if (target instanceof JLangArray) {
+                try {
+                    return ((JLangArray) target).getItem(position);
+                } catch (IndexOutOfBoundsException e) {
+                    throw new RuntimeException("Array of length " + ((JLangArray) target).size() + " index " + position + " out of bounds");
+                }
+            }
+            if (target instanceof JLangString) {
+                try {
+                    return ((JLangString) target).getItem(position);
+                } catch (IndexOutOfBoundsException e) {
+                    throw new RuntimeException("String of length " + ((JLangString) target).length() + " index " + position + " out of bounds");
+                }
+            }
+            if (target instanceof JLangRange) {
+                try {
+                    return ((JLangRange) target).getItem(position);
+                } catch (IndexOutOfBoundsException e) {
+                    throw new RuntimeException("Range of length " + ((JLangRange) target).length() + " index " + position + " out of bounds");
+                }
+            }
+            throw new RuntimeException("Only arrays are accessible by index.");
+        }
+    }
+
+    // Block and comma expressions print their value, as they do in the Interpreter.
+    static final class SequenceNode extends ExprNode {
+        final ExprNode[] expressions;
+
+        SequenceNode(ExprNode[] expressions) {
+            this.expressions = expressions;
+            for (ExprNode expression : expressions) adopt(expression);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            replaceIn(expressions, child, replacement);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object result = null;
+            for (int i = 0; i < expressions.length; i++) {
+                result = expressions[i].execute(frame);
+            }
+            Output.println(Interpreter.stringify(result));
+            return result;
+        }
+    }
+}
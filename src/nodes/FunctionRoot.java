@@ -0,0 +1,49 @@
+package nodes;
+
+import enivirement.Environment;
+import interpreter.Completion;
+
+// The body of a function or lambda. It is built once per declaration and
+// shared by every closure made from it, so what one closure's calls teach
+// the nodes is kept for all of them.
+final class FunctionRoot extends Node {
+    // null for lambdas
+    final String name;
+    final int arity;
+    final int slotCount;
+    // slots holding cells, null for none
+    final int[] cells;
+    // where the closure finds the variables it captures
+    final int[] captureDepths;
+    final int[] captureSlots;
+    final boolean isInitializer;
+    final NodeEngine engine;
+    final StmtNode[] body;
+
+    FunctionRoot(String name, int arity, int slotCount, int[] cells, int[] captureDepths,
+                 int[] captureSlots, boolean isInitializer, NodeEngine engine, StmtNode[] body) {
+        this.name = name;
+        this.arity = arity;
+        this.slotCount = slotCount;
+        this.cells = cells;
+        this.captureDepths = captureDepths;
+        this.captureSlots = captureSlots;
+        this.isInitializer = isInitializer;
+        this.engine = engine;
+        this.body = body;
+        for (StmtNode statement : body) adopt(statement);
+    }
+
+    // A closure of this function created in the given frame.
+    NodeFunction close(Environment frame) {
+        return new NodeFunction(this, frame.capture(captureDepths, captureSlots));
+    }
+
+    Completion execute(Environment frame) {
+        for (int i = 0; i < body.length; i++) {
+            Completion completion = body[i].execute(frame);
+            if (completion != Completion.NORMAL) return completion;
+        }
+        return Completion.NORMAL;
+    }
+}
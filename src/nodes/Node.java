@@ -0,0 +1,33 @@
+package nodes;
+
+// Base of the executable tree NodeBuilder makes out of the resolved AST.
+// Nodes that have seen what kind of values flow through them replace
+// themselves in their parent with a node specialized for those values, and
+// a specialized node that meets anything else replaces itself again with
+// the generic version.
+abstract class Node {
+    Node parent;
+
+    protected <T extends Node> T adopt(T child) {
+        if (child != null) child.parent = this;
+        return child;
+    }
+
+    protected <T extends Node> T replace(T replacement) {
+        parent.replaceChild(this, replacement);
+        replacement.parent = parent;
+        return replacement;
+    }
+
+    // Every node that holds expression nodes has to be able to swap one of
+    // them for its rewritten version.
+    protected void replaceChild(Node child, Node replacement) {
+        throw new IllegalStateException(getClass().getSimpleName() + " has no child to replace.");
+    }
+
+    protected static void replaceIn(ExprNode[] nodes, Node child, Node replacement) {
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i] == child) nodes[i] = (ExprNode) replacement;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package nodes;
+
+import java.util.List;
+
+import ast.Expr;
+import ast.Stmt;
+import interpreter.Completion;
+import interpreter.klass.JLangClass;
+import nodes.BinaryNodes.UninitializedBinaryNode;
+import nodes.ClassNodes.*;
+import nodes.ExpressionNodes.*;
+import nodes.PropertyNodes.*;
+import nodes.StatementNodes.*;
+import nodes.VariableNodes.*;
+import tokenizer.Token;
+import tokenizer.TokenType;
+
+// Turns the resolved AST into nodes. It runs once per program; from then on
+// the nodes only rewrite themselves.
+class NodeBuilder implements Expr.Visitor<ExprNode>, Stmt.Visitor<StmtNode> {
+    private final NodeEngine engine;
+
+    NodeBuilder(NodeEngine engine) {
+        this.engine = engine;
+    }
+
+    StmtNode[] build(List<Stmt> statements) {
+        StmtNode[] nodes = new StmtNode[statements.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = build(statements.get(i));
+        }
+        return nodes;
+    }
+
+    private StmtNode build(Stmt stmt) {
+        return stmt == null ? null : stmt.accept(this);
+    }
+
+    private ExprNode build(Expr expr) {
+        return expr == null ? null : expr.accept(this);
+    }
+
+    private ExprNode[] buildAll(List<? extends Expr> expressions) {
+        ExprNode[] nodes = new ExprNode[expressions.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = build(expressions.get(i));
+        }
+        return nodes;
+    }
+
+    private FunctionRoot function(Stmt.Function function, boolean isInitializer) {
+        return new FunctionRoot(function.name.lexeme, function.params.size(),
+            function.slotCount, function.cells, function.captureDepths, function.captureSlots,
+            isInitializer, engine, build(function.body));
+    }
+
+    private FunctionRoot[] methods(List<Stmt.Function> methods, boolean initializers) {
+        FunctionRoot[] roots = new FunctionRoot[methods.size()];
+        for (int i = 0; i < roots.length; i++) {
+            Stmt.Function method = methods.get(i);
+            roots[i] = function(method, initializers
+                && method.name.lexeme.equals(JLangClass.CLASS_INITIALIZATION_FUNCTION_NAME));
+        }
+        return roots;
+    }
+
+    private static Token[] names(List<Expr.Variable> variables) {
+        Token[] names = new Token[variables.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = variables.get(i).name;
+        }
+        return names;
+    }
+
+    private ExprNode increment(Token operator, Expr operand) {
+        double delta = operator.type == TokenType.INCREMENT ? 1.0 : -1.0;
+        if (operand instanceof Expr.Variable) {
+            Expr.Variable variable = (Expr.Variable) operand;
+            if (variable.captured) {
+                return new CellIncrementNode(operator, variable.depth, variable.slot, delta);
+            }
+            if (variable.depth != -1) {
+                return new LocalIncrementNode(operator, variable.depth, variable.slot, delta);
+            }
+            return new GlobalIncrementNode(operator, variable.name, engine.globals, delta);
+        }
+        return new InvalidIncrementNode(operator, build(operand));
+    }
+
+    @Override
+    public ExprNode visitAssignExpr(Expr.Assign expr) {
+        ExprNode value = build(expr.value);
+        if (expr.operator != null && expr.operator.type != TokenType.EQUAL) {
+            return new CompoundAssignNode(expr.operator, expr.name, expr.depth, expr.slot,
+                expr.captured, engine.globals, value);
+        }
+        if (expr.captured) return new CellWriteNode(expr.depth, expr.slot, value);
+        if (expr.depth != -1) return new LocalWriteNode(expr.depth, expr.slot, value);
+        return new GlobalWriteNode(expr.name, engine.globals, value);
+    }
+
+    @Override
+    public ExprNode visitBinaryExpr(Expr.Binary expr) {
+        return new UninitializedBinaryNode(expr.operator, build(expr.left), build(expr.right));
+    }
+
+    @Override
+    public ExprNode visitGroupingExpr(Expr.Grouping expr) {
+        return build(expr.expression);
+    }
+
+    @Override
+    public ExprNode visitGetExpr(Expr.Get expr) {
+        return new GetNode(expr.name, build(expr.object));
+    }
+
+    @Override
+    public ExprNode visitCallExpr(Expr.Call expr) {
+        if (expr.callee instanceof Expr.Get) {
+            Expr.Get get = (Expr.Get) expr.callee;
+            return new InvokeNode(expr.paren, engine, get.name, build(get.object), buildAll(expr.arguments));
+        }
+        return new CallNode(expr.paren, engine, build(expr.callee), buildAll(expr.arguments));
+    }
+
+    @Override
+    public ExprNode visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value instanceof Double) return new NumberLiteralNode((double) expr.value);
+        return new LiteralNode(expr.value);
+    }
+
+    @Override
+    public ExprNode visitArrayExpr(Expr.Array expr) {
+        return new ArrayNode(buildAll(expr.elements));
+    }
+
+    @Override
+    public ExprNode visitJStringExpr(Expr.JString expr) {
+        return new StringNode(expr.value);
+    }
+
+    @Override
+    public ExprNode visitJCharExpr(Expr.JChar expr) {
+        return new CharNode(expr.value);
+    }
+
+    @Override
+    public ExprNode visitArrayAccessExpr(Expr.ArrayAccess expr) {
+        return new IndexNode(build(expr.name), build(expr.index));
+    }
+
+    @Override
+    public ExprNode visitLogicalExpr(Expr.Logical expr) {
+        return new LogicalNode(expr.operator.type == TokenType.OR, build(expr.left), build(expr.right));
+    }
+
+    @Override
+    public ExprNode visitSetExpr(Expr.Set expr) {
+        return new SetNode(expr.name, build(expr.object), build(expr.value));
+    }
+
+    @Override
+    public ExprNode visitSuperExpr(Expr.Super expr) {
+        return new SuperNode(expr.method, expr.depth, expr.slot, expr.thisDepth, expr.thisSlot);
+    }
+
+    @Override
+    public ExprNode visitThisExpr(Expr.This expr) {
+        return new ThisNode(expr.keyword, expr.depth, expr.slot, engine.globals);
+    }
+
+    @Override
+    public ExprNode visitUnaryExpr(Expr.Unary expr) {
+        switch (expr.operator.type) {
+            case BANG: return new NotNode(build(expr.right));
+            case MINUS: return new NegateNode(expr.operator, build(expr.right));
+            default: return increment(expr.operator, expr.right);
+        }
+    }
+
+    @Override
+    public ExprNode visitPostfixExpr(Expr.Postfix expr) {
+        return increment(expr.operator, expr.left);
+    }
+
+    @Override
+    public ExprNode visitBlockExpr(Expr.Block expr) {
+        return new SequenceNode(buildAll(expr.statements));
+    }
+
+    @Override
+    public ExprNode visitCommaExpr(Expr.Comma expr) {
+        return new SequenceNode(new ExprNode[] { build(expr.left), build(expr.right) });
+    }
+
+    @Override
+    public ExprNode visitTernaryExpr(Expr.Ternary expr) {
+        return new TernaryNode(build(expr.condition), build(expr.thenExpr), build(expr.elseExpr));
+    }
+
+    @Override
+    public ExprNode visitVariableExpr(Expr.Variable expr) {
+        if (expr.captured) return new CellReadNode(expr.depth, expr.slot);
+        if (expr.depth != -1) return new LocalReadNode(expr.depth, expr.slot);
+        return new GlobalReadNode(expr.name, engine.globals);
+    }
+
+    @Override
+    public ExprNode visitLambdaFunctionExpr(Expr.LambdaFunction expr) {
+        return new LambdaNode(new FunctionRoot(null, expr.params.size(), expr.slotCount,
+            expr.cells, expr.captureDepths, expr.captureSlots, false, engine, build(expr.body)));
+    }
+
+    @Override
+    public ExprNode visitAnonymousClassExpr(Expr.AnonymousClass expr) {
+        return new AnonymousClassNode(names(expr.parents), buildAll(expr.parents),
+            methods(expr.methods, false));
+    }
+
+    @Override
+    public ExprNode visitObjectLiteralExpr(Expr.ObjectLiteral expr) {
+        return new ObjectLiteralNode(expr.keys.toArray(new Token[0]), buildAll(expr.values),
+            engine.globals);
+    }
+
+    @Override
+    public StmtNode visitBlockStmt(Stmt.Block stmt) {
+        return new BlockNode(stmt.slotCount, stmt.cells, build(stmt.statements));
+    }
+
+    @Override
+    public StmtNode visitClassStmt(Stmt.Class stmt) {
+        return new ClassNode(stmt.name, stmt.slot, stmt.captured, names(stmt.parents), buildAll(stmt.parents),
+            methods(stmt.methods, true));
+    }
+
+    @Override
+    public StmtNode visitExpressionStmt(Stmt.Expression stmt) {
+        return new ExpressionNode(build(stmt.expression));
+    }
+
+    @Override
+    public StmtNode visitFunctionStmt(Stmt.Function stmt) {
+        return new FunctionNode(stmt.name, stmt.slot, stmt.captured, function(stmt, false));
+    }
+
+    @Override
+    public StmtNode visitIfStmt(Stmt.If stmt) {
+        return new IfNode(build(stmt.condition), build(stmt.thenBranch), build(stmt.elseBranch));
+    }
+
+    @Override
+    public StmtNode visitPrintStmt(Stmt.Print stmt) {
+        return new PrintNode(build(stmt.expression));
+    }
+
+    @Override
+    public StmtNode visitReturnStmt(Stmt.Return stmt) {
+        return new ReturnNode(engine, build(stmt.value));
+    }
+
+    @Override
+    public StmtNode visitVarStmt(Stmt.Var stmt) {
+        return new DeclarationNode(stmt.name, stmt.slot, stmt.captured, false, build(stmt.initializer));
+    }
+
+    @Override
+    public StmtNode visitConstStmt(Stmt.Const stmt) {
+        return new DeclarationNode(stmt.name, stmt.slot, stmt.captured, true, build(stmt.initializer));
+    }
+
+    @Override
+    public StmtNode visitWhileStmt(Stmt.While stmt) {
+        return new WhileNode(build(stmt.condition), build(stmt.body));
+    }
+
+    @Override
+    public StmtNode visitBreakStmt(Stmt.Break stmt) {
+        return new JumpNode(Completion.BREAK);
+    }
+
+    @Override
+    public StmtNode visitContinueStmt(Stmt.Continue stmt) {
+        return new JumpNode(Completion.CONTINUE);
+    }
+
+    @Override
+    public StmtNode visitTryCatchStmt(Stmt.TryCatch stmt) {
+        String[] types = new String[stmt.catchBlocks.size()];
+        StmtNode[] blocks = new StmtNode[types.length];
+        boolean[] captured = new boolean[types.length];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = stmt.catchBlocks.get(i).exceptionType.lexeme;
+            blocks[i] = build(stmt.catchBlocks.get(i).block);
+            captured[i] = stmt.catchBlocks.get(i).captured;
+        }
+        return new TryCatchNode(engine, build(stmt.tryBlock), types, blocks, captured,
+            build(stmt.finallyBlock));
+    }
+
+    @Override
+    public StmtNode visitCatchStmt(Stmt.Catch stmt) {
+        // Catch clauses are built by visitTryCatchStmt.
+        return null;
+    }
+}
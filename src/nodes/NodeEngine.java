@@ -0,0 +1,41 @@
+package nodes;
+
+import java.util.List;
+
+import ast.Stmt;
+import enivirement.Environment;
+import interpreter.Interpreter;
+import interpreter.errors.RuntimeError;
+import main.JLang;
+
+// Runs programs as a tree of self-specializing nodes built by NodeBuilder.
+// Like vm.VM it shares the globals and the built-ins of the Interpreter it
+// is created from.
+public class NodeEngine {
+    final Interpreter interpreter;
+    final Environment globals;
+    // value of the return statement that is unwinding the current call
+    Object returnValue = null;
+
+    public NodeEngine(Interpreter interpreter) {
+        this.interpreter = interpreter;
+        this.globals = interpreter.globals;
+    }
+
+    public void interpret(List<Stmt> statements) {
+        StmtNode[] program = new NodeBuilder(this).build(statements);
+        try {
+            for (StmtNode statement : program) {
+                statement.execute(globals);
+            }
+        } catch (RuntimeError error) {
+            JLang.runtimeError(error);
+        }
+    }
+
+    Object takeReturnValue() {
+        Object value = returnValue;
+        returnValue = null;
+        return value;
+    }
+}
@@ -0,0 +1,91 @@
+package nodes;
+
+import java.util.List;
+
+import enivirement.Environment;
+import interpreter.Completion;
+import interpreter.Interpreter;
+import interpreter.callable.JLangFunction;
+import interpreter.klass.JLangObject;
+
+// A function of the node engine together with the variables it captures. Like vm.VMClosure it extends JLangFunction so methods fit in the
+// usual JLangClass method tables and built-ins can call back into it.
+public class NodeFunction extends JLangFunction {
+    final FunctionRoot root;
+    final Environment closure;
+
+    NodeFunction(FunctionRoot root, Environment closure) {
+        super(null, closure, root.isInitializer);
+        this.root = root;
+        this.closure = closure;
+    }
+
+    @Override
+    public NodeFunction bind(JLangObject instance) {
+        Environment environment = new Environment(closure, 1);
+        environment.define(0, instance);
+        return new NodeFunction(root, environment);
+    }
+
+    @Override
+    public int arity() {
+        return root.arity;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        Environment frame = new Environment(closure, root.slotCount, root.cells);
+        for (int i = 0; i < root.arity; i++) {
+            frame.defineArgument(i, arguments.get(i));
+        }
+        return invoke(frame);
+    }
+
+    @Override
+    public Environment newFrame(Object receiver) {
+        Environment environment = new Environment(closure, 1);
+        environment.define(0, receiver);
+        return new Environment(environment, root.slotCount, root.cells);
+    }
+
+    @Override
+    public Object callOn(Interpreter interpreter, Object receiver, Object[] arguments) {
+        Environment frame = newFrame(receiver);
+        for (int i = 0; i < arguments.length; i++) {
+            frame.defineArgument(i, arguments[i]);
+        }
+        return invoke(frame);
+    }
+
+    // Runs the body in a frame whose parameter slots are already filled in.
+    Object invoke(Environment frame) {
+        Completion completion = root.execute(frame);
+        if (root.isInitializer) {
+            root.engine.takeReturnValue();
+            // 'this', from the closure of a bound method or the scope newFrame() added
+            return frame.enclosing.getAt(0, 0);
+        }
+        if (completion == Completion.RETURN) return root.engine.takeReturnValue();
+        return null;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments) {
+        Environment frame = new Environment(closure, root.slotCount, root.cells);
+        for (int i = 0; i < arguments.length; i++) {
+            frame.defineArgument(i, arguments[i]);
+        }
+        return invoke(frame);
+    }
+
+    @Override
+    public String typeName() {
+        return root.name == null ? "JLangAnonymousFunction" : "JLangFunction";
+    }
+
+    @Override
+    public String toString() {
+        if (root.name == null) return "<fn anonymous >";
+        return "<fn " + root.name + ">";
+    }
+}
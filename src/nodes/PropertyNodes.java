@@ -0,0 +1,205 @@
+package nodes;
+
+import enivirement.Environment;
+import interpreter.callable.JLangFunction;
+import interpreter.errors.RuntimeError;
+import interpreter.klass.JLangInstance;
+import interpreter.klass.JLangObject;
+import interpreter.klass.PropertyCache;
+import interpreter.klass.Shape;
+import tokenizer.Token;
+
+// Property access. A get site keeps a short chain of caches keyed by the
+// shape of the instances it has seen, each holding the index of the field
+// or, when the shape has none, the method findMethod() found for the name,
+// so a warmed-up site neither hashes the name nor walks the superclasses.
+// Sites that see more shapes than the chain allows, or receivers that are
+// not plain instances, go back to the generic lookup. Set sites use the
+// PropertyCache the other engines share.
+final class PropertyNodes {
+    private static final int CACHE_LIMIT = 4;
+
+    private PropertyNodes() {}
+
+    static final class GetNode extends ExprNode {
+        final Token name;
+        ExprNode object;
+        GetCacheNode cache;
+
+        GetNode(Token name, ExprNode object) {
+            this.name = name;
+            this.object = adopt(object);
+            this.cache = adopt(new UninitializedGetCache(name, 0));
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (object == child) object = (ExprNode) replacement;
+            if (cache == child) cache = (GetCacheNode) replacement;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return cache.get(object.execute(frame));
+        }
+    }
+
+    abstract static class GetCacheNode extends Node {
+        final Token name;
+
+        GetCacheNode(Token name) {
+            this.name = name;
+        }
+
+        abstract Object get(Object receiver);
+    }
+
+    static final class UninitializedGetCache extends GetCacheNode {
+        final int depth;
+
+        UninitializedGetCache(Token name, int depth) {
+            super(name);
+            this.depth = depth;
+        }
+
+        @Override
+        Object get(Object receiver) {
+            if (receiver != null && receiver.getClass() == JLangInstance.class && depth < CACHE_LIMIT) {
+                JLangInstance instance = (JLangInstance) receiver;
+                Shape shape = instance.shape();
+                int index = shape.indexOf(name.lexeme);
+                JLangFunction method = index == -1 ? instance.klass.findMethod(name.lexeme) : null;
+                return replace(new CachedGetCache(name, shape, index, method,
+                    new UninitializedGetCache(name, depth + 1))).get(receiver);
+            }
+            // Too many shapes, or not something a class lookup can be
+            // cached for: the whole chain becomes the generic lookup.
+            GetCacheNode head = this;
+            while (head.parent instanceof GetCacheNode) head = (GetCacheNode) head.parent;
+            return head.replace(new GenericGetCache(name)).get(receiver);
+        }
+    }
+
+    static final class CachedGetCache extends GetCacheNode {
+        final Shape shape;
+        // -1 when the shape has no such field
+        final int index;
+        // null when there is a field or the class has no such method
+        final JLangFunction method;
+        GetCacheNode next;
+
+        CachedGetCache(Token name, Shape shape, int index, JLangFunction method, GetCacheNode next) {
+            super(name);
+            this.shape = shape;
+            this.index = index;
+            this.method = method;
+            this.next = adopt(next);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (next == child) next = (GetCacheNode) replacement;
+        }
+
+        @Override
+        Object get(Object receiver) {
+            if (receiver != null && receiver.getClass() == JLangInstance.class
+                    && ((JLangInstance) receiver).shape() == shape) {
+                JLangInstance instance = (JLangInstance) receiver;
+                // fields shadow methods
+                if (index != -1) return instance.fieldAt(index);
+                if (method != null) return method.bind(instance);
+                throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+            }
+            return next.get(receiver);
+        }
+    }
+
+    static final class GenericGetCache extends GetCacheNode {
+        GenericGetCache(Token name) {
+            super(name);
+        }
+
+        @Override
+        Object get(Object receiver) {
+            if (receiver instanceof JLangObject) {
+                return ((JLangObject) receiver).get(name);
+            }
+            throw new RuntimeError(name, "Only instances have properties.");
+        }
+    }
+
+    // obj.name(...): a method found on an instance runs in a frame that gets
+    // the receiver directly, other callees are called the way CallNode does.
+    static final class InvokeNode extends ExprNode {
+        final Token paren;
+        final NodeEngine engine;
+        final PropertyCache cache;
+        ExprNode object;
+        final ExprNode[] arguments;
+
+        InvokeNode(Token paren, NodeEngine engine, Token name, ExprNode object, ExprNode[] arguments) {
+            this.paren = paren;
+            this.engine = engine;
+            this.cache = new PropertyCache(name);
+            this.object = adopt(object);
+            this.arguments = arguments;
+            for (ExprNode argument : arguments) adopt(argument);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (object == child) object = (ExprNode) replacement;
+            replaceIn(arguments, child, replacement);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object receiver = object.execute(frame);
+            JLangFunction method = cache.method(receiver);
+            if (method instanceof NodeFunction) {
+                NodeFunction target = (NodeFunction) method;
+                if (target.root.arity == arguments.length) {
+                    Environment callFrame = target.newFrame(receiver);
+                    for (int i = 0; i < arguments.length; i++) {
+                        callFrame.defineArgument(i, arguments[i].execute(frame));
+                    }
+                    return target.invoke(callFrame);
+                }
+            }
+            Object callee = method != null ? method.bind((JLangInstance) receiver) : cache.get(receiver);
+            return ExpressionNodes.CallNode.call(paren, engine, callee, arguments, frame);
+        }
+    }
+
+    static final class SetNode extends ExprNode {
+        final Token name;
+        final PropertyCache cache;
+        ExprNode object;
+        ExprNode value;
+
+        SetNode(Token name, ExprNode object, ExprNode value) {
+            this.name = name;
+            this.cache = new PropertyCache(name);
+            this.object = adopt(object);
+            this.value = adopt(value);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (object == child) object = (ExprNode) replacement;
+            if (value == child) value = (ExprNode) replacement;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object target = object.execute(frame);
+            if (!(target instanceof JLangInstance)) {
+                throw new RuntimeError(name, "Only instances have fields.");
+            }
+            Object result = value.execute(frame);
+            cache.set(target, result);
+            return result;
+        }
+    }
+}
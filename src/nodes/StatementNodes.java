@@ -0,0 +1,298 @@
+package nodes;
+
+import enivirement.Cell;
+import enivirement.Environment;
+import interpreter.Completion;
+import interpreter.Interpreter;
+import interpreter.Output;
+import tokenizer.Token;
+
+final class StatementNodes {
+    private StatementNodes() {}
+
+    static final class ExpressionNode extends StmtNode {
+        ExprNode expression;
+
+        ExpressionNode(ExprNode expression) {
+            this.expression = adopt(expression);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (expression == child) expression = (ExprNode) replacement;
+        }
+
+        @Override
+        Completion execute(Environment frame) {
+            expression.executeVoid(frame);
+            return Completion.NORMAL;
+        }
+    }
+
+    static final class PrintNode extends StmtNode {
+        ExprNode expression;
+
+        PrintNode(ExprNode expression) {
+            this.expression = adopt(expression);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (expression == child) expression = (ExprNode) replacement;
+        }
+
+        @Override
+        Completion execute(Environment frame) {
+            Output.println(Interpreter.stringify(expression.execute(frame)));
+            return Completion.NORMAL;
+        }
+    }
+
+    // var and const declarations. Locals go to their slot in the current
+    // frame, globals are defined by name.
+    static final class DeclarationNode extends StmtNode {
+        final Token name;
+        // -1 for a global
+        final int slot;
+        // set when a closure captures the local, which then lives in a cell
+        final boolean captured;
+        final boolean isConstant;
+        // null when there is no initializer
+        ExprNode initializer;
+        boolean numeric = true;
+
+        DeclarationNode(Token name, int slot, boolean captured, boolean isConstant, ExprNode initializer) {
+            this.name = name;
+            this.slot = slot;
+            this.captured = captured;
+            this.isConstant = isConstant;
+            this.initializer = adopt(initializer);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (initializer == child) initializer = (ExprNode) replacement;
+        }
+
+        @Override
+        Completion execute(Environment frame) {
+            if (slot == -1) {
+                Object value = initializer == null ? null : initializer.execute(frame);
+                if (isConstant) {
+                    frame.defineConst(name.lexeme, value);
+                } else {
+                    frame.define(name.lexeme, value);
+                }
+            } else if (captured) {
+                frame.defineCell(slot, initializer == null ? null : initializer.execute(frame));
+            } else if (initializer == null) {
+                frame.define(slot, null);
+            } else if (numeric) {
+                try {
+                    frame.defineNumber(slot, initializer.executeDouble(frame));
+                } catch (UnexpectedResultException e) {
+                    numeric = false;
+                    frame.define(slot, e.getResult());
+                }
+            } else {
+                frame.define(slot, initializer.execute(frame));
+            }
+            return Completion.NORMAL;
+        }
+    }
+
+    static final class BlockNode extends StmtNode {
+        // 0 when the block declares nothing and runs in the enclosing frame
+        final int slotCount;
+        // slots holding cells, null for none
+        final int[] cells;
+        final StmtNode[] statements;
+
+        BlockNode(int slotCount, int[] cells, StmtNode[] statements) {
+            this.slotCount = slotCount;
+            this.cells = cells;
+            this.statements = statements;
+            for (StmtNode statement : statements) adopt(statement);
+        }
+
+        @Override
+        Completion execute(Environment frame) {
+            if (slotCount != 0) frame = new Environment(frame, slotCount, cells);
+            for (int i = 0; i < statements.length; i++) {
+                Completion completion = statements[i].execute(frame);
+                if (completion != Completion.NORMAL) return completion;
+            }
+            return Completion.NORMAL;
+        }
+    }
+
+    static final class IfNode extends StmtNode {
+        ExprNode condition;
+        final StmtNode thenBranch;
+        // null when there is no else branch
+        final StmtNode elseBranch;
+
+        IfNode(ExprNode condition, StmtNode thenBranch, StmtNode elseBranch) {
+            this.condition = adopt(condition);
+            this.thenBranch = adopt(thenBranch);
+            this.elseBranch = adopt(elseBranch);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (condition == child) condition = (ExprNode) replacement;
+        }
+
+        @Override
+        Completion execute(Environment frame) {
+            if (Interpreter.isTruthy(condition.execute(frame))) {
+                return thenBranch.execute(frame);
+            } else if (elseBranch != null) {
+                return elseBranch.execute(frame);
+            }
+            return Completion.NORMAL;
+        }
+    }
+
+    static final class WhileNode extends StmtNode {
+        ExprNode condition;
+        final StmtNode body;
+
+        WhileNode(ExprNode condition, StmtNode body) {
+            this.condition = adopt(condition);
+            this.body = adopt(body);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (condition == child) condition = (ExprNode) replacement;
+        }
+
+        @Override
+        Completion execute(Environment frame) {
+            while (Interpreter.isTruthy(condition.execute(frame))) {
+                Completion completion = body.execute(frame);
+                // CONTINUE just moves on to the next iteration
+                if (completion == Completion.BREAK) break;
+                if (completion == Completion.RETURN) return completion;
+            }
+            return Completion.NORMAL;
+        }
+    }
+
+    static final class JumpNode extends StmtNode {
+        final Completion completion;
+
+        JumpNode(Completion completion) {
+            this.completion = completion;
+        }
+
+        @Override
+        Completion execute(Environment frame) {
+            return completion;
+        }
+    }
+
+    static final class ReturnNode extends StmtNode {
+        final NodeEngine engine;
+        // null for a bare return
+        ExprNode value;
+
+        ReturnNode(NodeEngine engine, ExprNode value) {
+            this.engine = engine;
+            this.value = adopt(value);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (value == child) value = (ExprNode) replacement;
+        }
+
+        @Override
+        Completion execute(Environment frame) {
+            engine.returnValue = value == null ? null : value.execute(frame);
+            return Completion.RETURN;
+        }
+    }
+
+    static final class FunctionNode extends StmtNode {
+        final Token name;
+        // -1 for a global function
+        final int slot;
+        final boolean captured;
+        final FunctionRoot function;
+
+        FunctionNode(Token name, int slot, boolean captured, FunctionRoot function) {
+            this.name = name;
+            this.slot = slot;
+            this.captured = captured;
+            this.function = function;
+        }
+
+        @Override
+        Completion execute(Environment frame) {
+            NodeFunction closure = function.close(frame);
+            if (captured) {
+                frame.defineCell(slot, closure);
+            } else if (slot != -1) {
+                frame.define(slot, closure);
+            } else {
+                frame.define(name.lexeme, closure);
+            }
+            return Completion.NORMAL;
+        }
+    }
+
+    static final class TryCatchNode extends StmtNode {
+        final NodeEngine engine;
+        final StmtNode tryBlock;
+        // simple class names of the exceptions each catch block handles
+        final String[] exceptionTypes;
+        final StmtNode[] catchBlocks;
+        // whether a closure captures each catch block's exception variable
+        final boolean[] captured;
+        // null when there is no finally block
+        final StmtNode finallyBlock;
+
+        TryCatchNode(NodeEngine engine, StmtNode tryBlock, String[] exceptionTypes,
+                     StmtNode[] catchBlocks, boolean[] captured, StmtNode finallyBlock) {
+            this.engine = engine;
+            this.tryBlock = adopt(tryBlock);
+            this.exceptionTypes = exceptionTypes;
+            this.catchBlocks = catchBlocks;
+            this.captured = captured;
+            this.finallyBlock = adopt(finallyBlock);
+            for (StmtNode block : catchBlocks) adopt(block);
+        }
+
+        @Override
+        Completion execute(Environment frame) {
+            Completion completion = Completion.NORMAL;
+            try {
+                completion = tryBlock.execute(frame);
+            } catch (RuntimeException ex) {
+                int handler = -1;
+                for (int i = 0; i < exceptionTypes.length; i++) {
+                    if (ex.getClass().getSimpleName().equals(exceptionTypes[i])) {
+                        handler = i;
+                        break;
+                    }
+                }
+                if (handler == -1) throw ex;
+                // the exception variable gets a scope of its own
+                Environment catchFrame = new Environment(frame, 1);
+                catchFrame.define(0, captured[handler] ? new Cell(ex) : ex);
+                completion = catchBlocks[handler].execute(catchFrame);
+            } finally {
+                if (finallyBlock != null) {
+                    Object pendingReturn = engine.returnValue;
+                    Completion finallyCompletion = finallyBlock.execute(frame);
+                    // an abrupt finally block wins over the try block
+                    if (finallyCompletion != Completion.NORMAL) return finallyCompletion;
+                    engine.returnValue = pendingReturn;
+                }
+            }
+            return completion;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package nodes;
+
+import enivirement.Environment;
+import interpreter.Completion;
+
+abstract class StmtNode extends Node {
+    abstract Completion execute(Environment frame);
+}
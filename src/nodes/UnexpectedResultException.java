@@ -0,0 +1,19 @@
+package nodes;
+
+// Thrown by ExprNode.executeDouble when the value turns out not to be a
+// number. It carries the value that was produced so nothing is evaluated
+// twice, and skips the stack trace since it is part of normal control flow.
+final class UnexpectedResultException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final Object result;
+
+    UnexpectedResultException(Object result) {
+        super(null, null, false, false);
+        this.result = result;
+    }
+
+    Object getResult() {
+        return result;
+    }
+}
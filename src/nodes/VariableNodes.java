@@ -0,0 +1,391 @@
+package nodes;
+
+import enivirement.Cell;
+import enivirement.Environment;
+import interpreter.errors.RuntimeError;
+import tokenizer.Token;
+
+// Reads and writes of variables. Locals use the depth and slot the Resolver
+// left on the AST, globals are looked up by name. Numbers are kept in the
+// frame's numbers array the same way the Interpreter keeps them; captured
+// variables stay boxed in their cells.
+final class VariableNodes {
+    private VariableNodes() {}
+
+    static final class LocalReadNode extends ExprNode {
+        final int depth;
+        final int slot;
+
+        LocalReadNode(int depth, int slot) {
+            this.depth = depth;
+            this.slot = slot;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return frame.getAt(depth, slot);
+        }
+
+        @Override
+        double executeDouble(Environment frame) throws UnexpectedResultException {
+            Environment scope = frame.ancestor(depth);
+            Object value = scope.slots[slot];
+            if (value == Environment.UNBOXED) return scope.numbers[slot];
+            if (value instanceof Double) return (double) value;
+            throw new UnexpectedResultException(value);
+        }
+    }
+
+    static final class CellReadNode extends ExprNode {
+        final int depth;
+        final int slot;
+
+        CellReadNode(int depth, int slot) {
+            this.depth = depth;
+            this.slot = slot;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return frame.getCellAt(depth, slot);
+        }
+    }
+
+    static final class GlobalReadNode extends ExprNode {
+        final Token name;
+        final Environment globals;
+
+        GlobalReadNode(Token name, Environment globals) {
+            this.name = name;
+            this.globals = globals;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return globals.get(name);
+        }
+    }
+
+    static final class LocalWriteNode extends ExprNode {
+        final int depth;
+        final int slot;
+        ExprNode value;
+        // cleared the first time a value other than a number is stored,
+        // after that the value is always evaluated boxed
+        boolean numeric = true;
+
+        LocalWriteNode(int depth, int slot, ExprNode value) {
+            this.depth = depth;
+            this.slot = slot;
+            this.value = adopt(value);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (value == child) value = (ExprNode) replacement;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            if (numeric) {
+                try {
+                    double number = value.executeDouble(frame);
+                    frame.assignNumberAt(depth, slot, number);
+                    return number;
+                } catch (UnexpectedResultException e) {
+                    numeric = false;
+                    frame.assignAt(depth, slot, e.getResult());
+                    return e.getResult();
+                }
+            }
+            Object result = value.execute(frame);
+            frame.assignAt(depth, slot, result);
+            return result;
+        }
+
+        @Override
+        void executeVoid(Environment frame) {
+            if (numeric) {
+                try {
+                    frame.assignNumberAt(depth, slot, value.executeDouble(frame));
+                    return;
+                } catch (UnexpectedResultException e) {
+                    numeric = false;
+                    frame.assignAt(depth, slot, e.getResult());
+                    return;
+                }
+            }
+            frame.assignAt(depth, slot, value.execute(frame));
+        }
+    }
+
+    static final class CellWriteNode extends ExprNode {
+        final int depth;
+        final int slot;
+        ExprNode value;
+
+        CellWriteNode(int depth, int slot, ExprNode value) {
+            this.depth = depth;
+            this.slot = slot;
+            this.value = adopt(value);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (value == child) value = (ExprNode) replacement;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object result = value.execute(frame);
+            frame.assignCellAt(depth, slot, result);
+            return result;
+        }
+    }
+
+    static final class GlobalWriteNode extends ExprNode {
+        final Token name;
+        final Environment globals;
+        ExprNode value;
+
+        GlobalWriteNode(Token name, Environment globals, ExprNode value) {
+            this.name = name;
+            this.globals = globals;
+            this.value = adopt(value);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (value == child) value = (ExprNode) replacement;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object result = value.execute(frame);
+            globals.assign(name, result);
+            return result;
+        }
+    }
+
+    // +=, -=, *=, /=, <<= and >>= on a local (depth != -1) or a global.
+    // The arithmetic ones produce a number; the shifts produce an Integer,
+    // which comes back inside an UnexpectedResultException.
+    static final class CompoundAssignNode extends ExprNode {
+        final Token operator;
+        final Token name;
+        final int depth;
+        final int slot;
+        final boolean captured;
+        final Environment globals;
+        ExprNode value;
+
+        CompoundAssignNode(Token operator, Token name, int depth, int slot, boolean captured,
+                           Environment globals, ExprNode value) {
+            this.operator = operator;
+            this.name = name;
+            this.depth = depth;
+            this.slot = slot;
+            this.captured = captured;
+            this.globals = globals;
+            this.value = adopt(value);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (value == child) value = (ExprNode) replacement;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            try {
+                return executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return e.getResult();
+            }
+        }
+
+        @Override
+        void executeVoid(Environment frame) {
+            try {
+                executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                // the shifts store an Integer, nothing to do with it here
+            }
+        }
+
+        @Override
+        double executeDouble(Environment frame) throws UnexpectedResultException {
+            double operand = 0;
+            boolean numbers = true;
+            try {
+                operand = value.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                numbers = false;
+            }
+            Environment scope = depth != -1 ? frame.ancestor(depth) : null;
+            Object current = scope != null ? scope.slots[slot] : globals.get(name);
+            if (captured) current = ((Cell) current).value;
+            double currentNumber = 0;
+            if (current == Environment.UNBOXED) {
+                currentNumber = scope.numbers[slot];
+            } else if (current instanceof Double) {
+                currentNumber = (double) current;
+            } else {
+                numbers = false;
+            }
+            if (!numbers) throw new RuntimeError(operator, "Operands must be numbers.");
+
+            double result;
+            switch (operator.type) {
+                case PLUS_EQUAL:
+                    result = currentNumber + operand;
+                    break;
+                case MINUS_EQUAL:
+                    result = currentNumber - operand;
+                    break;
+                case STAR_EQUAL:
+                    result = currentNumber * operand;
+                    break;
+                case SLASH_EQUAL:
+                    if (operand == 0) {
+                        throw new RuntimeError(operator, "Division by zero.");
+                    }
+                    result = currentNumber / operand;
+                    break;
+                case SHIFT_LEFT_EQUAL:
+                    throw new UnexpectedResultException(store(scope, (int) currentNumber << (int) operand));
+                case SHIFT_RIGHT_EQUAL:
+                    throw new UnexpectedResultException(store(scope, (int) currentNumber >> (int) operand));
+                default:
+                    throw new RuntimeError(operator, "Invalid assignment operator.");
+            }
+            if (captured) {
+                ((Cell) scope.slots[slot]).value = result;
+            } else if (scope != null) {
+                scope.defineNumber(slot, result);
+            } else {
+                globals.assign(name, result);
+            }
+            return result;
+        }
+
+        private Object store(Environment scope, Object result) {
+            if (captured) {
+                ((Cell) scope.slots[slot]).value = result;
+            } else if (scope != null) {
+                scope.define(slot, result);
+            } else {
+                globals.assign(name, result);
+            }
+            return result;
+        }
+    }
+
+    // Prefix and postfix ++/-- both leave the old value behind, as they
+    // do in the Interpreter.
+    static final class LocalIncrementNode extends ExprNode {
+        final Token operator;
+        final int depth;
+        final int slot;
+        final double delta;
+
+        LocalIncrementNode(Token operator, int depth, int slot, double delta) {
+            this.operator = operator;
+            this.depth = depth;
+            this.slot = slot;
+            this.delta = delta;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return executeDouble(frame);
+        }
+
+        @Override
+        void executeVoid(Environment frame) {
+            executeDouble(frame);
+        }
+
+        @Override
+        double executeDouble(Environment frame) {
+            Environment scope = frame.ancestor(depth);
+            Object current = scope.slots[slot];
+            double value;
+            if (current == Environment.UNBOXED) {
+                value = scope.numbers[slot];
+            } else {
+                BinaryNodes.checkNumberOperand(operator, current);
+                value = (double) current;
+            }
+            scope.defineNumber(slot, value + delta);
+            return value;
+        }
+    }
+
+    static final class CellIncrementNode extends ExprNode {
+        final Token operator;
+        final int depth;
+        final int slot;
+        final double delta;
+
+        CellIncrementNode(Token operator, int depth, int slot, double delta) {
+            this.operator = operator;
+            this.depth = depth;
+            this.slot = slot;
+            this.delta = delta;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Cell cell = (Cell) frame.ancestor(depth).slots[slot];
+            BinaryNodes.checkNumberOperand(operator, cell.value);
+            double value = (double) cell.value;
+            cell.value = value + delta;
+            return value;
+        }
+    }
+
+    static final class GlobalIncrementNode extends ExprNode {
+        final Token operator;
+        final Token name;
+        final Environment globals;
+        final double delta;
+
+        GlobalIncrementNode(Token operator, Token name, Environment globals, double delta) {
+            this.operator = operator;
+            this.name = name;
+            this.globals = globals;
+            this.delta = delta;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object current = globals.get(name);
+            BinaryNodes.checkNumberOperand(operator, current);
+            globals.assign(name, (double) current + delta);
+            return current;
+        }
+    }
+
+    // ++ or -- on something that is not a variable, such as a property.
+    static final class InvalidIncrementNode extends ExprNode {
+        final Token operator;
+        ExprNode operand;
+
+        InvalidIncrementNode(Token operator, ExprNode operand) {
+            this.operator = operator;
+            this.operand = adopt(operand);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (operand == child) operand = (ExprNode) replacement;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            BinaryNodes.checkNumberOperand(operator, operand.execute(frame));
+            throw new RuntimeException("The operand is not a variable and cannot be assigned a new value.");
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ast.Expr;
+import ast.Stmt;
+import tokenizer.TokenType;
+
+// Finds out which variables the program ever writes to after declaring
+// them, so the Optimizer knows which constants it may inline. Scopes are
+// tracked the way the Resolver creates them; a local is identified by the
+// node that owns its scope (a function, a lambda or a block) and its slot.
+class AssignmentScanner implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    // the owners of the scopes around the current node, innermost last;
+    // scopes that hold no constants get a placeholder
+    private final List<Object> scopes = new ArrayList<>();
+    private final Map<Object, BitSet> assignedLocals = new IdentityHashMap<>();
+    private final Set<String> assignedGlobals = new HashSet<>();
+    // how often each global name is declared
+    private final Map<String, Integer> globalDeclarations = new HashMap<>();
+
+    void scan(List<Stmt> statements) {
+        for (Stmt statement : statements) scan(statement);
+    }
+
+    boolean isAssigned(Object owner, int slot) {
+        BitSet slots = assignedLocals.get(owner);
+        return slots != null && slots.get(slot);
+    }
+
+    // A global constant can be inlined when it's the only declaration of
+    // its name and nothing tries to assign to it.
+    boolean isFixedGlobal(String name) {
+        return globalDeclarations.getOrDefault(name, 0) == 1 && !assignedGlobals.contains(name);
+    }
+
+    private void scan(Stmt stmt) {
+        if (stmt != null) stmt.accept(this);
+    }
+
+    private void scan(Expr expr) {
+        if (expr != null) expr.accept(this);
+    }
+
+    private void scanAll(List<? extends Expr> expressions) {
+        for (Expr expression : expressions) scan(expression);
+    }
+
+    private void assigned(String name, int depth, int slot, boolean captured) {
+        // captured variables are never inlined
+        if (captured) return;
+        if (depth == -1) {
+            assignedGlobals.add(name);
+            return;
+        }
+        Object owner = scopes.get(scopes.size() - 1 - depth);
+        assignedLocals.computeIfAbsent(owner, key -> new BitSet()).set(slot);
+    }
+
+    private void declared(String name, int slot) {
+        if (slot == -1) globalDeclarations.merge(name, 1, Integer::sum);
+    }
+
+    private void function(Object owner, List<Stmt> body) {
+        scopes.add(owner);
+        scan(body);
+        scopes.remove(scopes.size() - 1);
+    }
+
+    private void increment(Expr operand) {
+        if (operand instanceof Expr.Variable) {
+            Expr.Variable variable = (Expr.Variable) operand;
+            assigned(variable.name.lexeme, variable.depth, variable.slot, variable.captured);
+        } else {
+            scan(operand);
+        }
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        scan(expr.value);
+        assigned(expr.name.lexeme, expr.depth, expr.slot, expr.captured);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        scan(expr.left);
+        scan(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        scan(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        scan(expr.object);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        scan(expr.callee);
+        scanAll(expr.arguments);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitArrayExpr(Expr.Array expr) {
+        scanAll(expr.elements);
+        return null;
+    }
+
+    @Override
+    public Void visitJStringExpr(Expr.JString expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitJCharExpr(Expr.JChar expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitArrayAccessExpr(Expr.ArrayAccess expr) {
+        scan(expr.name);
+        scan(expr.index);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        scan(expr.left);
+        scan(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        scan(expr.object);
+        scan(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        if (expr.operator.type == TokenType.INCREMENT || expr.operator.type == TokenType.DECREMENT) {
+            increment(expr.right);
+        } else {
+            scan(expr.right);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitPostfixExpr(Expr.Postfix expr) {
+        increment(expr.left);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockExpr(Expr.Block expr) {
+        scanAll(expr.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitCommaExpr(Expr.Comma expr) {
+        scan(expr.left);
+        scan(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitTernaryExpr(Expr.Ternary expr) {
+        scan(expr.condition);
+        scan(expr.thenExpr);
+        scan(expr.elseExpr);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitLambdaFunctionExpr(Expr.LambdaFunction expr) {
+        function(expr, expr.body);
+        return null;
+    }
+
+    @Override
+    public Void visitAnonymousClassExpr(Expr.AnonymousClass expr) {
+        scanAll(expr.parents);
+        // the scope bind() adds for 'this'
+        scopes.add(new Object());
+        for (Stmt.Function method : expr.methods) function(method, method.body);
+        scopes.remove(scopes.size() - 1);
+        return null;
+    }
+
+    @Override
+    public Void visitObjectLiteralExpr(Expr.ObjectLiteral expr) {
+        scanAll(expr.values);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        if (stmt.slotCount == 0) {
+            scan(stmt.statements);
+        } else {
+            function(stmt, stmt.statements);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        declared(stmt.name.lexeme, stmt.slot);
+        scanAll(stmt.parents);
+        // the scopes holding the class for super and 'this'
+        if (!stmt.parents.isEmpty()) scopes.add(new Object());
+        scopes.add(new Object());
+        for (Stmt.Function method : stmt.methods) function(method, method.body);
+        scopes.remove(scopes.size() - 1);
+        if (!stmt.parents.isEmpty()) scopes.remove(scopes.size() - 1);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        scan(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        declared(stmt.name.lexeme, stmt.slot);
+        function(stmt, stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        scan(stmt.condition);
+        scan(stmt.thenBranch);
+        scan(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        scan(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        scan(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        declared(stmt.name.lexeme, stmt.slot);
+        scan(stmt.initializer);
+        return null;
+    }
+
+    @Override
+    public Void visitConstStmt(Stmt.Const stmt) {
+        declared(stmt.name.lexeme, stmt.slot);
+        scan(stmt.initializer);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        scan(stmt.condition);
+        scan(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitContinueStmt(Stmt.Continue stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitTryCatchStmt(Stmt.TryCatch stmt) {
+        scan(stmt.tryBlock);
+        for (Stmt.Catch catchBlock : stmt.catchBlocks) {
+            // the scope holding the exception
+            scopes.add(new Object());
+            scan(catchBlock.block);
+            scopes.remove(scopes.size() - 1);
+        }
+        scan(stmt.finallyBlock);
+        return null;
+    }
+
+    @Override
+    public Void visitCatchStmt(Stmt.Catch stmt) {
+        // Catch clauses are scanned by visitTryCatchStmt.
+        return null;
+    }
+}
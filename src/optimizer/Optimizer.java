@@ -0,0 +1,497 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ast.Expr;
+import ast.Stmt;
+import interpreter.Interpreter;
+import tokenizer.TokenType;
+
+// Rewrites the resolved AST before it runs: arithmetic, comparisons and
+// string concatenation over literals are folded, ternaries, and/or and ifs
+// with a literal condition keep only the branch that can run, whiles that
+// can't run are dropped, and constants initialized to a number, a boolean
+// or nil are replaced by their value.
+//
+// Only expressions that can't fail are folded, so every error is still
+// raised by a node that carries its line. Nodes whose children change are
+// rebuilt with the Resolver's fields copied over; statement lists are
+// updated in place.
+public class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+    private final AssignmentScanner assignments = new AssignmentScanner();
+    // the owners of the scopes around the current node, innermost last, as
+    // in the AssignmentScanner
+    private final List<Object> scopes = new ArrayList<>();
+    // values of the constants that can be inlined, by scope owner and slot;
+    // a string or char constant is kept as its literal node, see inlined()
+    private final Map<Object, Map<Integer, Object>> localConstants = new IdentityHashMap<>();
+    private final Map<String, Object> globalConstants = new HashMap<>();
+    // false when more code may be run later, in the same globals
+    private final boolean wholeProgram;
+
+    public Optimizer(boolean wholeProgram) {
+        this.wholeProgram = wholeProgram;
+    }
+
+    public List<Stmt> optimize(List<Stmt> statements) {
+        assignments.scan(statements);
+        for (int i = 0; i < statements.size(); i++) {
+            Stmt statement = optimize(statements.get(i));
+            statements.set(i, statement);
+            // Only a global declared at the top level is known to have its
+            // value in everything that comes after it.
+            if (statement instanceof Stmt.Const) {
+                Stmt.Const constant = (Stmt.Const) statement;
+                if (wholeProgram && constant.slot == -1 && isLiteral(constant.initializer)
+                        && assignments.isFixedGlobal(constant.name.lexeme)) {
+                    globalConstants.put(constant.name.lexeme, constantValue(constant.initializer));
+                }
+            }
+        }
+        return statements;
+    }
+
+    private Stmt optimize(Stmt stmt) {
+        return stmt == null ? null : stmt.accept(this);
+    }
+
+    private Expr optimize(Expr expr) {
+        return expr == null ? null : expr.accept(this);
+    }
+
+    private void optimizeAll(List<Stmt> statements) {
+        for (int i = 0; i < statements.size(); i++) {
+            statements.set(i, optimize(statements.get(i)));
+        }
+    }
+
+    private <E extends Expr> void optimizeExprs(List<E> expressions) {
+        for (int i = 0; i < expressions.size(); i++) {
+            @SuppressWarnings("unchecked")
+            E expression = (E) optimize(expressions.get(i));
+            expressions.set(i, expression);
+        }
+    }
+
+    private void scoped(Object owner, List<Stmt> body) {
+        scopes.add(owner);
+        optimizeAll(body);
+        scopes.remove(scopes.size() - 1);
+        localConstants.remove(owner);
+    }
+
+    // A statement that does nothing, in place of a branch that never runs.
+    private static Stmt nothing() {
+        Stmt.Block block = new Stmt.Block(new ArrayList<>());
+        block.slotCount = 0;
+        return block;
+    }
+
+    // Literals, and the strings and characters, which are always truthy.
+    private static boolean hasTruthiness(Expr expr) {
+        return expr instanceof Expr.Literal || expr instanceof Expr.JString || expr instanceof Expr.JChar;
+    }
+
+    // Whether a constant with this initializer can be inlined.
+    private static boolean isLiteral(Expr expr) {
+        return expr instanceof Expr.Literal || expr instanceof Expr.JString || expr instanceof Expr.JChar;
+    }
+
+    // What's kept of a constant's initializer: the value of a literal, the
+    // node itself for a string or char.
+    private static Object constantValue(Expr initializer) {
+        if (initializer instanceof Expr.Literal) return ((Expr.Literal) initializer).value;
+        return initializer;
+    }
+
+    // The expression a use of the constant becomes. Strings and chars get
+    // a node of their own, their literal values are shared and never
+    // change, so every use still sees the same value.
+    private static Expr inlined(Object value) {
+        if (value instanceof Expr.JString) return new Expr.JString(((Expr.JString) value).value);
+        if (value instanceof Expr.JChar) return new Expr.JChar(((Expr.JChar) value).value);
+        return new Expr.Literal(value);
+    }
+
+    private static boolean isTruthy(Expr expr) {
+        if (expr instanceof Expr.Literal) return Interpreter.isTruthy(((Expr.Literal) expr).value);
+        return true;
+    }
+
+    private static boolean isNumber(Expr expr) {
+        return expr instanceof Expr.Literal && ((Expr.Literal) expr).value instanceof Double;
+    }
+
+    private static double number(Expr expr) {
+        return (double) ((Expr.Literal) expr).value;
+    }
+
+    // The text a literal or a string adds to a string it's concatenated with.
+    private static String text(Expr expr) {
+        if (expr instanceof Expr.JString) return ((Expr.JString) expr).value;
+        return Interpreter.stringify(((Expr.Literal) expr).value);
+    }
+
+    private Expr fold(Expr.Binary expr, Expr left, Expr right) {
+        TokenType operator = expr.operator.type;
+        if (isNumber(left) && isNumber(right)) {
+            double a = number(left);
+            double b = number(right);
+            switch (operator) {
+                case PLUS: return new Expr.Literal(a + b);
+                case MINUS: return new Expr.Literal(a - b);
+                case STAR: return new Expr.Literal(a * b);
+                // division by zero is left to throw at runtime
+                case SLASH: if (b != 0.0) return new Expr.Literal(a / b); break;
+                case POWER: return new Expr.Literal(Math.pow(a, b));
+                case LESS: return new Expr.Literal(a < b);
+                case LESS_EQUAL: return new Expr.Literal(a <= b);
+                case GREATER: return new Expr.Literal(a > b);
+                case GREATER_EQUAL: return new Expr.Literal(a >= b);
+                default: break;
+            }
+        }
+        if (left instanceof Expr.Literal && right instanceof Expr.Literal) {
+            Object a = ((Expr.Literal) left).value;
+            Object b = ((Expr.Literal) right).value;
+            if (operator == TokenType.EQUAL_EQUAL) return new Expr.Literal(Interpreter.isEqual(a, b));
+            if (operator == TokenType.BANG_EQUAL) return new Expr.Literal(!Interpreter.isEqual(a, b));
+        }
+        if (operator == TokenType.PLUS
+                && (left instanceof Expr.JString || right instanceof Expr.JString)
+                && (left instanceof Expr.JString || left instanceof Expr.Literal)
+                && (right instanceof Expr.JString || right instanceof Expr.Literal)) {
+            return new Expr.JString(text(left) + text(right));
+        }
+        if (left == expr.left && right == expr.right) return expr;
+        return new Expr.Binary(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visitAssignExpr(Expr.Assign expr) {
+        Expr value = optimize(expr.value);
+        if (value == expr.value) return expr;
+        Expr.Assign assign = new Expr.Assign(expr.name, value, expr.operator);
+        assign.depth = expr.depth;
+        assign.slot = expr.slot;
+        assign.captured = expr.captured;
+        return assign;
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        return fold(expr, optimize(expr.left), optimize(expr.right));
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        Expr inner = optimize(expr.expression);
+        if (inner instanceof Expr.Literal || inner instanceof Expr.JString) return inner;
+        if (inner == expr.expression) return expr;
+        return new Expr.Grouping(inner);
+    }
+
+    @Override
+    public Expr visitGetExpr(Expr.Get expr) {
+        Expr object = optimize(expr.object);
+        if (object == expr.object) return expr;
+        return new Expr.Get(object, expr.name);
+    }
+
+    @Override
+    public Expr visitCallExpr(Expr.Call expr) {
+        Expr callee = optimize(expr.callee);
+        optimizeExprs(expr.arguments);
+        if (callee == expr.callee) return expr;
+        return new Expr.Call(callee, expr.paren, expr.arguments);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitArrayExpr(Expr.Array expr) {
+        optimizeExprs(expr.elements);
+        return expr;
+    }
+
+    @Override
+    public Expr visitJStringExpr(Expr.JString expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitJCharExpr(Expr.JChar expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitArrayAccessExpr(Expr.ArrayAccess expr) {
+        Expr name = optimize(expr.name);
+        Expr index = optimize(expr.index);
+        if (name == expr.name && index == expr.index) return expr;
+        return new Expr.ArrayAccess(name, index);
+    }
+
+    @Override
+    public Expr visitLogicalExpr(Expr.Logical expr) {
+        Expr left = optimize(expr.left);
+        Expr right = optimize(expr.right);
+        // the value is whichever operand decides it
+        if (hasTruthiness(left)) {
+            return isTruthy(left) == (expr.operator.type == TokenType.OR) ? left : right;
+        }
+        if (left == expr.left && right == expr.right) return expr;
+        return new Expr.Logical(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visitSetExpr(Expr.Set expr) {
+        Expr object = optimize(expr.object);
+        Expr value = optimize(expr.value);
+        if (object == expr.object && value == expr.value) return expr;
+        return new Expr.Set(object, expr.name, value);
+    }
+
+    @Override
+    public Expr visitSuperExpr(Expr.Super expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitThisExpr(Expr.This expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        // ++ and -- need their variable
+        if (expr.operator.type != TokenType.MINUS && expr.operator.type != TokenType.BANG) return expr;
+        Expr right = optimize(expr.right);
+        if (expr.operator.type == TokenType.MINUS && isNumber(right)) {
+            return new Expr.Literal(-number(right));
+        }
+        if (expr.operator.type == TokenType.BANG && hasTruthiness(right)) {
+            return new Expr.Literal(!isTruthy(right));
+        }
+        if (right == expr.right) return expr;
+        return new Expr.Unary(expr.operator, right);
+    }
+
+    @Override
+    public Expr visitPostfixExpr(Expr.Postfix expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitBlockExpr(Expr.Block expr) {
+        optimizeExprs(expr.statements);
+        return expr;
+    }
+
+    @Override
+    public Expr visitCommaExpr(Expr.Comma expr) {
+        Expr left = optimize(expr.left);
+        Expr right = optimize(expr.right);
+        if (left == expr.left && right == expr.right) return expr;
+        return new Expr.Comma(left, right);
+    }
+
+    @Override
+    public Expr visitTernaryExpr(Expr.Ternary expr) {
+        Expr condition = optimize(expr.condition);
+        if (hasTruthiness(condition)) {
+            return optimize(isTruthy(condition) ? expr.thenExpr : expr.elseExpr);
+        }
+        Expr thenExpr = optimize(expr.thenExpr);
+        Expr elseExpr = optimize(expr.elseExpr);
+        if (condition == expr.condition && thenExpr == expr.thenExpr && elseExpr == expr.elseExpr) return expr;
+        return new Expr.Ternary(condition, thenExpr, elseExpr);
+    }
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        if (expr.depth == -1) {
+            if (globalConstants.containsKey(expr.name.lexeme)) {
+                return inlined(globalConstants.get(expr.name.lexeme));
+            }
+            return expr;
+        }
+        if (expr.captured) return expr;
+        Map<Integer, Object> constants = localConstants.get(scopes.get(scopes.size() - 1 - expr.depth));
+        if (constants != null && constants.containsKey(expr.slot)) {
+            return inlined(constants.get(expr.slot));
+        }
+        return expr;
+    }
+
+    @Override
+    public Expr visitLambdaFunctionExpr(Expr.LambdaFunction expr) {
+        scoped(expr, expr.body);
+        return expr;
+    }
+
+    @Override
+    public Expr visitAnonymousClassExpr(Expr.AnonymousClass expr) {
+        // the scope bind() adds for 'this'
+        scopes.add(new Object());
+        for (Stmt.Function method : expr.methods) scoped(method, method.body);
+        scopes.remove(scopes.size() - 1);
+        return expr;
+    }
+
+    @Override
+    public Expr visitObjectLiteralExpr(Expr.ObjectLiteral expr) {
+        optimizeExprs(expr.values);
+        return expr;
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Stmt.Block stmt) {
+        if (stmt.slotCount == 0) {
+            optimizeAll(stmt.statements);
+        } else {
+            scoped(stmt, stmt.statements);
+        }
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitClassStmt(Stmt.Class stmt) {
+        // the scopes holding the class for super and 'this'
+        if (!stmt.parents.isEmpty()) scopes.add(new Object());
+        scopes.add(new Object());
+        for (Stmt.Function method : stmt.methods) scoped(method, method.body);
+        scopes.remove(scopes.size() - 1);
+        if (!stmt.parents.isEmpty()) scopes.remove(scopes.size() - 1);
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+        Expr expression = optimize(stmt.expression);
+        if (expression == stmt.expression) return stmt;
+        return new Stmt.Expression(expression);
+    }
+
+    @Override
+    public Stmt visitFunctionStmt(Stmt.Function stmt) {
+        scoped(stmt, stmt.body);
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitIfStmt(Stmt.If stmt) {
+        Expr condition = optimize(stmt.condition);
+        if (hasTruthiness(condition)) {
+            Stmt branch = isTruthy(condition) ? stmt.thenBranch : stmt.elseBranch;
+            return branch == null ? nothing() : optimize(branch);
+        }
+        Stmt thenBranch = optimize(stmt.thenBranch);
+        Stmt elseBranch = optimize(stmt.elseBranch);
+        if (condition == stmt.condition && thenBranch == stmt.thenBranch && elseBranch == stmt.elseBranch) {
+            return stmt;
+        }
+        return new Stmt.If(condition, thenBranch, elseBranch);
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Stmt.Print stmt) {
+        Expr expression = optimize(stmt.expression);
+        if (expression == stmt.expression) return stmt;
+        return new Stmt.Print(expression);
+    }
+
+    @Override
+    public Stmt visitReturnStmt(Stmt.Return stmt) {
+        Expr value = optimize(stmt.value);
+        if (value == stmt.value) return stmt;
+        return new Stmt.Return(stmt.keyword, value);
+    }
+
+    @Override
+    public Stmt visitVarStmt(Stmt.Var stmt) {
+        Expr initializer = optimize(stmt.initializer);
+        if (initializer == stmt.initializer) return stmt;
+        Stmt.Var var = new Stmt.Var(stmt.name, initializer);
+        var.slot = stmt.slot;
+        var.captured = stmt.captured;
+        return var;
+    }
+
+    @Override
+    public Stmt visitConstStmt(Stmt.Const stmt) {
+        Expr initializer = optimize(stmt.initializer);
+        Stmt.Const constant = stmt;
+        if (initializer != stmt.initializer) {
+            constant = new Stmt.Const(stmt.name, initializer);
+            constant.slot = stmt.slot;
+            constant.captured = stmt.captured;
+        }
+        // Closures reach captured constants through their cells, which only
+        // the scope they're declared in knows.
+        if (stmt.slot != -1 && !stmt.captured && isLiteral(initializer)) {
+            Object owner = scopes.get(scopes.size() - 1);
+            if (!assignments.isAssigned(owner, stmt.slot)) {
+                localConstants.computeIfAbsent(owner, key -> new HashMap<>())
+                    .put(stmt.slot, constantValue(initializer));
+            }
+        }
+        return constant;
+    }
+
+    @Override
+    public Stmt visitWhileStmt(Stmt.While stmt) {
+        Expr condition = optimize(stmt.condition);
+        if (hasTruthiness(condition) && !isTruthy(condition)) return nothing();
+        Stmt body = optimize(stmt.body);
+        if (condition == stmt.condition && body == stmt.body) return stmt;
+        return new Stmt.While(condition, body);
+    }
+
+    @Override
+    public Stmt visitBreakStmt(Stmt.Break stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitContinueStmt(Stmt.Continue stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitTryCatchStmt(Stmt.TryCatch stmt) {
+        Stmt tryBlock = optimize(stmt.tryBlock);
+        List<Stmt.Catch> catchBlocks = new ArrayList<>();
+        boolean changed = tryBlock != stmt.tryBlock;
+        for (Stmt.Catch catchBlock : stmt.catchBlocks) {
+            // the scope holding the exception
+            scopes.add(new Object());
+            Stmt block = optimize(catchBlock.block);
+            scopes.remove(scopes.size() - 1);
+            changed |= block != catchBlock.block;
+            if (block == catchBlock.block) {
+                catchBlocks.add(catchBlock);
+            } else {
+                Stmt.Catch rebuilt = new Stmt.Catch(catchBlock.exceptionType, catchBlock.variable, block);
+                rebuilt.captured = catchBlock.captured;
+                catchBlocks.add(rebuilt);
+            }
+        }
+        Stmt finallyBlock = optimize(stmt.finallyBlock);
+        if (!changed && finallyBlock == stmt.finallyBlock) return stmt;
+        return new Stmt.TryCatch(tryBlock, catchBlocks, finallyBlock);
+    }
+
+    @Override
+    public Stmt visitCatchStmt(Stmt.Catch stmt) {
+        // Catch clauses are optimized by visitTryCatchStmt.
+        return stmt;
+    }
+}
@@ -0,0 +1,59 @@
+#!/bin/sh
+# Runs the test script on every engine and compares what it prints with
+# test.expected. The timing line changes from run to run, so it's left out.
+cd "$(dirname "$0")" || exit 1
+src=../..
+out=$(mktemp -d) || exit 1
+trap 'rm -rf "$out"' EXIT
+javac -nowarn -d "$out" $(find "$src" -name '*.java') || exit 1
+status=0
+# error_case name message script: the script has to stop every engine with
+# message, whether it's a compile error or a runtime one.
+error_case() {
+    printf '%s\n' "$3" > "$out/$1"
+    for engine in tree vm nodes closures; do
+        got=$(java -cp "$out" main.JLang --engine=$engine "$out/$1" 2>&1 >/dev/null | head -n 1)
+        if [ "$got" = "$2" ]; then
+            echo "ok $engine $1"
+        else
+            echo "FAIL $engine $1"
+            echo "expected: $2"
+            echo "got:      $got"
+            status=1
+        fi
+    done
+}
+for engine in tree vm nodes closures; do
+    if java -cp "$out" main.JLang --engine=$engine test | grep -v '^"It took ' | diff -u test.expected - > "$out/diff"; then
+        echo "ok $engine"
+    else
+        echo "FAIL $engine"
+        cat "$out/diff"
+        status=1
+    fi
+done
+
+error_case parMap-too-many "The function passed to parMap must take 1 arguments." \
+    'print parMap([1, 2, 3], fun (i, x) { return x; });'
+error_case parMap-too-few "The function passed to parMap must take 1 arguments." \
+    'print parMap([1, 2, 3], fun () { return 1; });'
+error_case parFilter-arity "The function passed to parFilter must take 1 arguments." \
+    'print parFilter([1, 2, 3], fun (a, b) { return true; });'
+error_case parReduce-arity "The function passed to parReduce must take 2 arguments." \
+    'print parReduce([1, 2, 3], fun (a) { return a; }, 0);'
+error_case break-in-lambda "Error at 'break': Break statement must be inside a loop." \
+    'var i = 0; while (i < 3) { i = i + 1; var f = fun () { break; }; f(); print i; } print "done";'
+error_case continue-in-function "Error at 'continue': Continue statement must be inside a loop." \
+    'while (true) { fun f() { continue; } f(); }'
+
+# an operator that saw numbers first and a string after: on the left, then
+# on the right
+for case in minus:- times:'*' divide:/ power:'**' less:'<' less-equal:'<=' \
+        greater:'>' greater-equal:'>='; do
+    op=${case#*:}
+    error_case "mixed-left-${case%%:*}" "Operands must be numbers." \
+        "fun f(a, b) { return a $op b; } print f(2, 1); print f(\"a\", 1);"
+    error_case "mixed-right-${case%%:*}" "Operands must be numbers." \
+        "fun f(a, b) { return a $op b; } print f(2, 1); print f(2, \"b\");"
+done
+exit $status
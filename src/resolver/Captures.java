@@ -0,0 +1,46 @@
+package resolver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The variables a function or a lambda uses from the scopes around it. Its
+// closure holds them in this order, found at depths[i] and slots[i] from
+// the scope the function is created in.
+class Captures {
+    final Captures enclosing;
+    // index of the function's outermost scope, its own or, for a method,
+    // the one holding 'this'
+    final int base;
+    final List<Integer> depths = new ArrayList<>();
+    final List<Integer> slots = new ArrayList<>();
+    // index in the closure of each captured variable, by scope and slot
+    private final Map<Long, Integer> indexes = new HashMap<>();
+
+    Captures(Captures enclosing, int base) {
+        this.enclosing = enclosing;
+        this.base = base;
+    }
+
+    Integer indexOf(int scope, int slot) {
+        return indexes.get(key(scope, slot));
+    }
+
+    int add(int scope, int slot, int depth, int from) {
+        depths.add(depth);
+        slots.add(from);
+        indexes.put(key(scope, slot), depths.size() - 1);
+        return depths.size() - 1;
+    }
+
+    private static long key(int scope, int slot) {
+        return ((long) scope << 32) | slot;
+    }
+
+    static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) array[i] = values.get(i);
+        return array;
+    }
+}
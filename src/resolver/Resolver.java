@@ -1,10 +1,11 @@
 package resolver;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 
-import interpreter.Interpreter;
 import interpreter.klass.JLangClass;
 import main.JLang;
 import tokenizer.Token;
@@ -14,17 +15,19 @@ import ast.Stmt;
 
 public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     // TODO: Fix the variable instanciation in the for loop 
-    // TODO: Fix anonymous functions not declared when in the local scope
-    private final Interpreter interpreter;
     private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+    // slot of every name declared in the matching scope, in declaration order
+    private final Stack<Map<String, Integer>> slots = new Stack<>();
+    // names declared const in the matching scope
+    private final Stack<Set<String>> constants = new Stack<>();
+    // the captured variables of every scope
+    private final Stack<ScopeCells> cells = new Stack<>();
+    // what the innermost function captures, null at the top level
+    private Captures captures = null;
     private FunctionType currentFunction = FunctionType.NONE;
     private int loopDepth = 0;
     private ClassType currentClass = ClassType.NONE;
 
-    public Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
-    }
-    
     private void resolve(Stmt stmt) {
         stmt.accept(this);
     }
@@ -41,39 +44,74 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     
     private void beginScope() {
         scopes.push(new HashMap<String, Boolean>());
+        slots.push(new HashMap<String, Integer>());
+        constants.push(new HashSet<String>());
+        cells.push(new ScopeCells());
     }
 
-    private void endScope() {
+    // Returns the number of slots the scope needs at runtime.
+    private int endScope() {
         scopes.pop();
+        constants.pop();
+        cells.pop();
+        return slots.pop().size();
     }
 
-    private void declare(Token name) {
-        if (scopes.isEmpty()) return;
+    // The slots of the innermost scope that hold a cell, null for none.
+    private int[] cells() {
+        return cells.peek().close();
+    }
+
+    // Returns the slot of the new variable, or -1 for a global.
+    private int declare(Token name) {
+        if (scopes.isEmpty()) return -1;
         Map<String, Boolean> scope = scopes.peek();
         if (scope.containsKey(name.lexeme)) {
             JLang.error(name,
             "Already a variable with this name in this scope.");
+            return slots.peek().get(name.lexeme);
         }
             
         scope.put(name.lexeme, false);
+        slots.peek().put(name.lexeme, slots.peek().size());
+        return slots.peek().size() - 1;
+    }
+
+    // Hidden names such as 'this' and 'super' are always the first slot of their scope.
+    private void declareHidden(String name) {
+        scopes.peek().put(name, true);
+        slots.peek().put(name, 0);
     }
     private void resolveFunction(
     Stmt.Function function, FunctionType type) {
         FunctionType enclosingFunction = currentFunction;
         currentFunction = type;
+        Captures enclosingCaptures = captures;
+        // a method's closure goes under the scope bind() adds for 'this'
+        boolean method = type == FunctionType.METHOD || type == FunctionType.INITIALIZER;
+        captures = new Captures(enclosingCaptures, method ? scopes.size() - 1 : scopes.size());
+        // a break in the body can't reach a loop around the function
+        int enclosingLoopDepth = loopDepth;
+        loopDepth = 0;
         beginScope();
         for (Token param : function.params) {
             declare(param);
             define(param);
         }
         resolve(function.body);
-        endScope();
+        function.cells = cells();
+        function.slotCount = endScope();
+        function.captureDepths = Captures.toArray(captures.depths);
+        function.captureSlots = Captures.toArray(captures.slots);
+        captures = enclosingCaptures;
         currentFunction = enclosingFunction;
+        loopDepth = enclosingLoopDepth;
     }
 
     @Override
     public Void visitVarStmt(Stmt.Var stmt) {
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name);
+        if (stmt.slot != -1) cells.peek().use(stmt.slot, stmt);
         if (stmt.initializer != null) {
             resolve(stmt.initializer);
         }
@@ -83,7 +121,11 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitConstStmt(Stmt.Const stmt) {
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name);
+        if (stmt.slot != -1) {
+            cells.peek().use(stmt.slot, stmt);
+            constants.peek().add(stmt.name.lexeme);
+        }
         if (stmt.initializer != null) {
             resolve(stmt.initializer);
         }
@@ -96,42 +138,131 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         scopes.peek().put(name.lexeme, true);
     }
 
-    private void resolveLocal(Expr expr, Token name) {
+    // Local constants can't be assigned, globals are checked when the
+    // assignment runs since a later declaration may redefine them.
+    private void checkAssignable(Token name, int scope) {
+        if (constants.get(scope).contains(name.lexeme)) {
+            JLang.error(name, "'" + name.lexeme + "' is a Constant and can't be reassigned.");
+        }
+    }
+
+    // Index of the innermost scope that declares the name, -1 for a global.
+    private int scopeOf(Token name) {
+        return scopeOf(name.lexeme);
+    }
+
+    private int scopeOf(String name) {
         for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size() - 1 - i);
-                return;
-            }
+            if (scopes.get(i).containsKey(name)) return i;
+        }
+        return -1;
+    }
+
+    // Whether a variable of the given scope is reached through the closure
+    // of the current function rather than through its own scopes.
+    private boolean isCaptured(int scope) {
+        return captures != null && scope < captures.base;
+    }
+
+    // Distance from the innermost scope to the one holding a variable, or
+    // to the closure when the variable is captured.
+    private int depthOf(int scope) {
+        if (!isCaptured(scope)) return scopes.size() - 1 - scope;
+        return scopes.size() - captures.base;
+    }
+
+    // Slot of a variable in its scope, or in the closure when it's captured.
+    private int slotOf(int scope, int slot) {
+        if (!isCaptured(scope)) return slot;
+        return capture(captures, scope, slot);
+    }
+
+    // Index of a variable in the closure of a function, adding it to the
+    // closures of the functions in between when it's new.
+    private int capture(Captures function, int scope, int slot) {
+        Integer index = function.indexOf(scope, slot);
+        if (index != null) return index;
+        // the closure is created in the scope right outside the function
+        int creation = function.base - 1;
+        Captures outer = function.enclosing;
+        if (outer == null || scope >= outer.base) {
+            return function.add(scope, slot, creation - scope, slot);
+        }
+        int from = capture(outer, scope, slot);
+        return function.add(scope, slot, creation - outer.base + 1, from);
+    }
+
+    // Resolves a read or an assignment of a local variable.
+    private void resolveLocal(Expr expr, int scope, int slot) {
+        if (isCaptured(scope)) {
+            cells.get(scope).capture(slot);
+            if (expr instanceof Expr.Variable) ((Expr.Variable) expr).captured = true;
+            if (expr instanceof Expr.Assign) ((Expr.Assign) expr).captured = true;
+        } else {
+            cells.get(scope).use(slot, expr);
         }
     }
 
     private void resolveFunction(Expr.LambdaFunction function, FunctionType type) {
         FunctionType enclosingFunction = currentFunction;
         currentFunction = type;
+        Captures enclosingCaptures = captures;
+        captures = new Captures(enclosingCaptures, scopes.size());
+        int enclosingLoopDepth = loopDepth;
+        loopDepth = 0;
         beginScope();
         for (Token param : function.params) {
             declare(param);
             define(param);
         }
         resolve(function.body);
-        endScope();
+        function.cells = cells();
+        function.slotCount = endScope();
+        function.captureDepths = Captures.toArray(captures.depths);
+        function.captureSlots = Captures.toArray(captures.slots);
+        captures = enclosingCaptures;
         currentFunction = enclosingFunction;
+        loopDepth = enclosingLoopDepth;
     }
 
     @Override
     public Void visitBlockStmt(Stmt.Block stmt) {
+        // A block that declares nothing runs in its enclosing scope, which
+        // keeps loop bodies from allocating a scope on every iteration.
+        if (!declaresVariables(stmt.statements)) {
+            resolve(stmt.statements);
+            stmt.slotCount = 0;
+            return null;
+        }
         beginScope();
         resolve(stmt.statements);
-        endScope();
+        stmt.cells = cells();
+        stmt.slotCount = endScope();
         return null;
     }
+
+    private boolean declaresVariables(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            if (statement instanceof Stmt.Var || statement instanceof Stmt.Const ||
+                statement instanceof Stmt.Function || statement instanceof Stmt.Class) {
+                return true;
+            }
+        }
+        return false;
+    }
     @Override
     public Void visitVariableExpr(Expr.Variable expr) {
         if (!scopes.isEmpty() && scopes.peek().get(expr.name.lexeme) == Boolean.FALSE) {
             JLang.error(expr.name,
                 "Can't read local variable in its own initializer.");
         }
-        resolveLocal(expr, expr.name);
+        int scope = scopeOf(expr.name);
+        if (scope != -1) {
+            int slot = slots.get(scope).get(expr.name.lexeme);
+            expr.depth = depthOf(scope);
+            expr.slot = slotOf(scope, slot);
+            resolveLocal(expr, scope, slot);
+        }
         return null;
     }
     @Override
@@ -144,29 +275,35 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitArrayAccessExpr(Expr.ArrayAccess expr) {
-        // resolve(expr.name);  // Ensure the array identifier is resolved.
-        // resolve(expr.index);
+        resolve(expr.name);
+        resolve(expr.index);
         return null;
     }
 
     @Override
     public Void visitAssignExpr(Expr.Assign expr) {
         resolve(expr.value);
-        resolveLocal(expr, expr.name);
+        int scope = scopeOf(expr.name);
+        if (scope != -1) {
+            checkAssignable(expr.name, scope);
+            int slot = slots.get(scope).get(expr.name.lexeme);
+            expr.depth = depthOf(scope);
+            expr.slot = slotOf(scope, slot);
+            resolveLocal(expr, scope, slot);
+        }
         return null;
     }
  
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) {
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name);
+        if (stmt.slot != -1) cells.peek().use(stmt.slot, stmt);
         define(stmt.name);
         resolveFunction(stmt, FunctionType.FUNCTION);
         return null;
     }
     @Override
     public Void visitLambdaFunctionExpr(Expr.LambdaFunction expr) {
-        declare(expr.name);
-        define(expr.name);
         resolveFunction(expr, FunctionType.LAMBDA);
         return null;
     }
@@ -199,11 +336,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
                 "Can't return a value from an initializer.");
             }
                 
-            if ( currentFunction == FunctionType.FUNCTION || currentFunction == FunctionType.LAMBDA ) {
-                resolve(stmt.value);
-            } else {
-                // Add any additional checks or errors for other types of functions
-            }
+            resolve(stmt.value);
         }
         return null;
     }
@@ -254,19 +387,31 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
     @Override
     public Void visitUnaryExpr(Expr.Unary expr) {
+        if (expr.operator.type == TokenType.INCREMENT || expr.operator.type == TokenType.DECREMENT) {
+            checkIncrement(expr.right);
+        }
         resolve(expr.right);
         return null;
     }
     @Override
     public Void visitPostfixExpr(Expr.Postfix expr) {
+        checkIncrement(expr.left);
         resolve(expr.left);
         return null;
     }
+
+    private void checkIncrement(Expr operand) {
+        if (!(operand instanceof Expr.Variable)) return;
+        Token name = ((Expr.Variable) operand).name;
+        int scope = scopeOf(name);
+        if (scope != -1) checkAssignable(name, scope);
+    }
     @Override
     public Void visitClassStmt(Stmt.Class stmt) {
         ClassType enclosingClass = currentClass;
         currentClass = ClassType.CLASS;
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name);
+        if (stmt.slot != -1) cells.peek().use(stmt.slot, stmt);
         define(stmt.name);
         if (!stmt.parents.isEmpty()) {
             currentClass = ClassType.SUBCLASS;
@@ -274,14 +419,12 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
                 resolve(superclass);
             }
             
+            // one scope holds the class, super looks up methods through it
             beginScope();
-            for (Expr.Variable superclass : stmt.parents) {
-                scopes.peek().put(JLangClass.CLASS_SUPER_INSTANCE_NAME, true);
-                // This will need to be updated to support multiple superclasses in the scope
-            }
+            declareHidden(JLangClass.CLASS_SUPER_INSTANCE_NAME);
         }
         beginScope();
-        scopes.peek().put(JLangClass.CLASS_INNER_INSTANCE_NAME, true);
+        declareHidden(JLangClass.CLASS_INNER_INSTANCE_NAME);
         for (Stmt.Function method : stmt.methods) {
             FunctionType declaration = FunctionType.METHOD;
             if (method.name.lexeme.equals(JLangClass.CLASS_INITIALIZATION_FUNCTION_NAME)) {
@@ -302,20 +445,16 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         for (Expr superclass : expr.parents) {
             resolve(superclass);
         }
-        // Begin a new scope for the class body
-        beginScope();
-    
-        // Define a new scope for the class's methods
+        ClassType enclosingClass = currentClass;
+        currentClass = ClassType.CLASS;
+        // Methods see 'this' through the scope bind() adds, like named classes
         beginScope();
+        declareHidden(JLangClass.CLASS_INNER_INSTANCE_NAME);
         for (Stmt.Function method : expr.methods) {
-            declare(method.name);
-            define(method.name);
             resolveFunction(method, FunctionType.METHOD);
         }
-        // End the scope for the class's methods
-        endScope();
-        // End the scope for the class body
         endScope();
+        currentClass = enclosingClass;
         return null;
     }
 
@@ -349,7 +488,17 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             JLang.error(expr.keyword,
             "Can't use "+JLangClass.CLASS_SUPER_INSTANCE_NAME+" in a class with no superclass.");
         }
-        resolveLocal(expr, expr.keyword);
+        // 'super' and 'this' never change, closures keep their values
+        int scope = scopeOf(expr.keyword);
+        if (scope != -1) {
+            expr.depth = depthOf(scope);
+            expr.slot = slotOf(scope, 0);
+        }
+        int thisScope = scopeOf(JLangClass.CLASS_INNER_INSTANCE_NAME);
+        if (thisScope != -1) {
+            expr.thisDepth = depthOf(thisScope);
+            expr.thisSlot = slotOf(thisScope, 0);
+        }
         return null;
     }
 
@@ -394,9 +543,11 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         // Resolve each catch block
         for (Stmt.Catch catchBlock : stmt.catchBlocks) {
             beginScope();
-            declare(catchBlock.variable);
+            cells.peek().use(declare(catchBlock.variable), catchBlock);
             define(catchBlock.variable);
             resolve(catchBlock.block);
+            // marks the Catch when a closure captures its variable
+            cells();
             endScope();
         }
 
@@ -407,6 +558,20 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
         return null;
     }
+    @Override
+    public Void visitCatchStmt(Stmt.Catch stmt) {
+        // Catch clauses are resolved as part of their enclosing try statement.
+        return null;
+    }
+
+    @Override
+    public Void visitBlockExpr(Expr.Block expr) {
+        for (Expr expression : expr.statements) {
+            resolve(expression);
+        }
+        return null;
+    }
+
     @Override
     public Void visitThisExpr(Expr.This expr) {
         if (currentClass == ClassType.NONE) {
@@ -414,7 +579,11 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             "Can't use 'this' outside of a class.");
             return null;
         }
-        resolveLocal(expr, expr.keyword);
+        int scope = scopeOf(expr.keyword);
+        if (scope != -1) {
+            expr.depth = depthOf(scope);
+            expr.slot = slotOf(scope, 0);
+        }
         return null;
     }
 
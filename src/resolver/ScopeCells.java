@@ -0,0 +1,54 @@
+package resolver;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ast.Expr;
+import ast.Stmt;
+
+// Which variables of an open scope a closure captures. Whether a variable
+// needs a cell is only known once its scope is closed, so the nodes that
+// declare or use it are kept until then.
+class ScopeCells {
+    private final Map<Integer, List<Object>> nodes = new HashMap<>();
+    private final BitSet captured = new BitSet();
+
+    void use(int slot, Object node) {
+        nodes.computeIfAbsent(slot, key -> new ArrayList<>()).add(node);
+    }
+
+    void capture(int slot) {
+        captured.set(slot);
+    }
+
+    // Marks the nodes of the captured variables and returns their slots,
+    // or null when nothing was captured.
+    int[] close() {
+        if (captured.isEmpty()) return null;
+        for (int slot = captured.nextSetBit(0); slot >= 0; slot = captured.nextSetBit(slot + 1)) {
+            for (Object node : nodes.getOrDefault(slot, new ArrayList<>())) mark(node);
+        }
+        return captured.stream().toArray();
+    }
+
+    private static void mark(Object node) {
+        if (node instanceof Expr.Variable) {
+            ((Expr.Variable) node).captured = true;
+        } else if (node instanceof Expr.Assign) {
+            ((Expr.Assign) node).captured = true;
+        } else if (node instanceof Stmt.Var) {
+            ((Stmt.Var) node).captured = true;
+        } else if (node instanceof Stmt.Const) {
+            ((Stmt.Const) node).captured = true;
+        } else if (node instanceof Stmt.Function) {
+            ((Stmt.Function) node).captured = true;
+        } else if (node instanceof Stmt.Class) {
+            ((Stmt.Class) node).captured = true;
+        } else if (node instanceof Stmt.Catch) {
+            ((Stmt.Catch) node).captured = true;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package vm;
+
+final class CallFrame {
+    VMClosure closure;
+    int ip;
+    int base;
+    // initializers and constructor calls always give back the receiver
+    boolean returnsReceiver;
+}
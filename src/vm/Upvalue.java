@@ -0,0 +1,15 @@
+package vm;
+
+// A variable captured by a closure. While the declaring frame is alive the
+// upvalue is open and points at the variable's stack slot; once the slot goes
+// away the value is copied in and the upvalue is closed.
+final class Upvalue {
+    int slot;
+    boolean open = true;
+    Object closed;
+    Upvalue next;
+
+    Upvalue(int slot) {
+        this.slot = slot;
+    }
+}
@@ -0,0 +1,752 @@
+package vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ast.Stmt;
+import compiler.BytecodeCompiler;
+import compiler.FunctionProto;
+import compiler.OpCode;
+import enivirement.Environment;
+import interpreter.Interpreter;
+import interpreter.Output;
+import interpreter.array.JLangArray;
+import interpreter.callable.JLangCallable;
+import interpreter.callable.JLangFunction;
+import interpreter.errors.DivisionByZeroException;
+import interpreter.errors.InvalidArgumentsException;
+import interpreter.errors.RuntimeError;
+import interpreter.jchar.JLangChar;
+import interpreter.klass.JLangBaseObject;
+import interpreter.klass.JLangClass;
+import interpreter.klass.JLangInstance;
+import interpreter.klass.PropertyCache;
+import interpreter.range.JLangRange;
+import interpreter.string.JLangString;
+import main.JLang;
+import tokenizer.Token;
+import tokenizer.TokenType;
+
+// Stack machine for the code produced by compiler.BytecodeCompiler. It shares
+// the globals and the built-ins with the Interpreter it is created from, so
+// both engines see the same runtime objects.
+public class VM {
+    private static final int FRAMES_MAX = 100000;
+    // shared by every closure that captures nothing
+    private static final Upvalue[] NO_UPVALUES = new Upvalue[0];
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private final Interpreter interpreter;
+    private final Environment globals;
+
+    private Object[] stack = new Object[1024];
+    private int sp = 0;
+    private CallFrame[] frames = new CallFrame[64];
+    private int frameCount = 0;
+    private Upvalue openUpvalues = null;
+
+    // exception handlers pushed by TRY_BEGIN: owning frame, target and stack height
+    private int[] handlerFrames = new int[16];
+    private int[] handlerTargets = new int[16];
+    private int[] handlerStacks = new int[16];
+    private int handlerCount = 0;
+
+    public VM(Interpreter interpreter) {
+        this.interpreter = interpreter;
+        this.globals = interpreter.globals;
+    }
+
+    public void interpret(List<Stmt> statements) {
+        FunctionProto script = new BytecodeCompiler().compile(statements);
+        if (script == null) return;
+        try {
+            callFromHost(new VMClosure(this, script, NO_UPVALUES, null), null, NO_ARGUMENTS);
+        } catch (RuntimeError error) {
+            JLang.runtimeError(error);
+        }
+    }
+
+    // Entry point for calls coming from Java: the top level, JLangClass.call
+    // and built-ins such as map() calling back into a closure. A method
+    // gets its receiver in the first slot, anything else the closure itself.
+    Object callFromHost(VMClosure closure, Object receiver, Object[] arguments) {
+        int arity = closure.proto.arity;
+        ensureStack(sp + arity + 1);
+        int base = sp;
+        stack[sp++] = receiver != null ? receiver : closure;
+        for (int i = 0; i < arity; i++) {
+            stack[sp++] = i < arguments.length ? arguments[i] : null;
+        }
+        pushFrame(closure, base, false);
+        return run(frameCount - 1);
+    }
+
+    private CallFrame pushFrame(VMClosure closure, int base, boolean constructing) {
+        if (frameCount == FRAMES_MAX) {
+            throw error(closure.proto.lines.length > 0 ? closure.proto.lines[0] : 0, "Stack overflow.");
+        }
+        if (frameCount == frames.length) frames = Arrays.copyOf(frames, frameCount * 2);
+        CallFrame frame = frames[frameCount];
+        if (frame == null) frame = frames[frameCount] = new CallFrame();
+        frameCount++;
+        frame.closure = closure;
+        frame.ip = 0;
+        frame.base = base;
+        frame.returnsReceiver = constructing || closure.proto.type == resolver.FunctionType.INITIALIZER;
+        ensureStack(base + closure.proto.maxStack + 1);
+        return frame;
+    }
+
+    private void ensureStack(int size) {
+        if (size > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(size, stack.length * 2));
+        }
+    }
+
+    private Upvalue captureUpvalue(int slot) {
+        Upvalue previous = null;
+        Upvalue upvalue = openUpvalues;
+        while (upvalue != null && upvalue.slot > slot) {
+            previous = upvalue;
+            upvalue = upvalue.next;
+        }
+        if (upvalue != null && upvalue.slot == slot) return upvalue;
+
+        Upvalue created = new Upvalue(slot);
+        created.next = upvalue;
+        if (previous == null) {
+            openUpvalues = created;
+        } else {
+            previous.next = created;
+        }
+        return created;
+    }
+
+    private void closeUpvalues(int last) {
+        while (openUpvalues != null && openUpvalues.slot >= last) {
+            Upvalue upvalue = openUpvalues;
+            upvalue.closed = stack[upvalue.slot];
+            upvalue.open = false;
+            openUpvalues = upvalue.next;
+        }
+    }
+
+    private Object run(int baseFrame) {
+        int handlerBase = handlerCount;
+        CallFrame frame = frames[frameCount - 1];
+        FunctionProto proto = frame.closure.proto;
+        int[] code = proto.code;
+        Object[] constants = proto.constants;
+        int base = frame.base;
+        int ip = 0;
+
+        for (;;) {
+            try {
+                for (;;) {
+                    switch (code[ip++]) {
+                        case OpCode.CONSTANT:
+                            stack[sp++] = constants[code[ip++]];
+                            break;
+                        case OpCode.NIL:
+                            stack[sp++] = null;
+                            break;
+                        case OpCode.TRUE:
+                            stack[sp++] = Boolean.TRUE;
+                            break;
+                        case OpCode.FALSE:
+                            stack[sp++] = Boolean.FALSE;
+                            break;
+                        case OpCode.POP:
+                            stack[--sp] = null;
+                            break;
+                        case OpCode.DUP:
+                            stack[sp] = stack[sp - 1];
+                            sp++;
+                            break;
+                        case OpCode.SWAP: {
+                            Object top = stack[sp - 1];
+                            stack[sp - 1] = stack[sp - 2];
+                            stack[sp - 2] = top;
+                            break;
+                        }
+                        case OpCode.STRING:
+                        case OpCode.CHAR:
+                            stack[sp++] = constants[code[ip++]];
+                            break;
+
+                        case OpCode.GET_LOCAL:
+                            stack[sp++] = stack[base + code[ip++]];
+                            break;
+                        case OpCode.SET_LOCAL:
+                            stack[base + code[ip++]] = stack[sp - 1];
+                            break;
+                        case OpCode.GET_UPVALUE: {
+                            Upvalue upvalue = frame.closure.upvalues[code[ip++]];
+                            stack[sp++] = upvalue.open ? stack[upvalue.slot] : upvalue.closed;
+                            break;
+                        }
+                        case OpCode.SET_UPVALUE: {
+                            Upvalue upvalue = frame.closure.upvalues[code[ip++]];
+                            if (upvalue.open) {
+                                stack[upvalue.slot] = stack[sp - 1];
+                            } else {
+                                upvalue.closed = stack[sp - 1];
+                            }
+                            break;
+                        }
+                        case OpCode.GET_GLOBAL:
+                            stack[sp++] = globals.get((Token) constants[code[ip++]]);
+                            break;
+                        case OpCode.SET_GLOBAL:
+                            globals.assign((Token) constants[code[ip++]], stack[sp - 1]);
+                            break;
+                        case OpCode.DEFINE_GLOBAL:
+                            globals.define((String) constants[code[ip++]], stack[--sp]);
+                            stack[sp] = null;
+                            break;
+                        case OpCode.DEFINE_CONST:
+                            globals.defineConst((String) constants[code[ip++]], stack[--sp]);
+                            stack[sp] = null;
+                            break;
+                        case OpCode.CLOSE_UPVALUE:
+                            closeUpvalues(sp - 1);
+                            stack[--sp] = null;
+                            break;
+
+                        case OpCode.GET_PROPERTY: {
+                            PropertyCache cache = (PropertyCache) constants[code[ip++]];
+                            stack[sp - 1] = cache.get(stack[sp - 1]);
+                            break;
+                        }
+                        case OpCode.SET_PROPERTY: {
+                            PropertyCache cache = (PropertyCache) constants[code[ip++]];
+                            Object value = stack[--sp];
+                            cache.set(stack[sp - 1], value);
+                            stack[sp - 1] = value;
+                            stack[sp] = null;
+                            break;
+                        }
+                        case OpCode.GET_SUPER: {
+                            Token name = (Token) constants[code[ip++]];
+                            JLangClass klass = (JLangClass) stack[--sp];
+                            JLangInstance object = (JLangInstance) stack[sp - 1];
+                            JLangFunction method = klass.findSuperMethod(name.lexeme);
+                            if (method == null) {
+                                throw new RuntimeError(name, "Undefined method '" + name.lexeme + "' for superclass.");
+                            }
+                            stack[sp - 1] = method.bind(object);
+                            stack[sp] = null;
+                            break;
+                        }
+
+                        case OpCode.EQUAL: {
+                            Object right = stack[--sp];
+                            stack[sp - 1] = Interpreter.isEqual(stack[sp - 1], right);
+                            break;
+                        }
+                        case OpCode.NOT_EQUAL: {
+                            Object right = stack[--sp];
+                            stack[sp - 1] = !Interpreter.isEqual(stack[sp - 1], right);
+                            break;
+                        }
+                        case OpCode.GREATER: {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            checkNumberOperands(proto, ip, left, right);
+                            stack[sp - 1] = (double) left > (double) right;
+                            break;
+                        }
+                        case OpCode.GREATER_EQUAL: {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            checkNumberOperands(proto, ip, left, right);
+                            stack[sp - 1] = (double) left >= (double) right;
+                            break;
+                        }
+                        case OpCode.LESS: {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            checkNumberOperands(proto, ip, left, right);
+                            stack[sp - 1] = (double) left < (double) right;
+                            break;
+                        }
+                        case OpCode.LESS_EQUAL: {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            checkNumberOperands(proto, ip, left, right);
+                            stack[sp - 1] = (double) left <= (double) right;
+                            break;
+                        }
+                        case OpCode.ADD: {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            if (left instanceof Double && right instanceof Double) {
+                                stack[sp - 1] = (double) left + (double) right;
+                            } else {
+                                stack[sp - 1] = add(proto, ip, left, right);
+                            }
+                            break;
+                        }
+                        case OpCode.ADD_NUMBERS: {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            checkNumberOperands(proto, ip, left, right);
+                            stack[sp - 1] = (double) left + (double) right;
+                            break;
+                        }
+                        case OpCode.SUBTRACT: {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            checkNumberOperands(proto, ip, left, right);
+                            stack[sp - 1] = (double) left - (double) right;
+                            break;
+                        }
+                        case OpCode.MULTIPLY: {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            checkNumberOperands(proto, ip, left, right);
+                            stack[sp - 1] = (double) left * (double) right;
+                            break;
+                        }
+                        case OpCode.DIVIDE: {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            checkNumberOperands(proto, ip, left, right);
+                            if ((double) right == 0.0) {
+                                throw new DivisionByZeroException(token(proto, ip), "Division by zero.");
+                            }
+                            stack[sp - 1] = (double) left / (double) right;
+                            break;
+                        }
+                        case OpCode.DIVIDE_ASSIGN: {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            checkNumberOperands(proto, ip, left, right);
+                            if ((double) right == 0) {
+                                throw new RuntimeError(token(proto, ip), "Division by zero.");
+                            }
+                            stack[sp - 1] = (double) left / (double) right;
+                            break;
+                        }
+                        case OpCode.SHIFT_LEFT: {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            checkNumberOperands(proto, ip, left, right);
+                            stack[sp - 1] = ((Double) left).intValue() << ((Double) right).intValue();
+                            break;
+                        }
+                        case OpCode.SHIFT_RIGHT: {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            checkNumberOperands(proto, ip, left, right);
+                            stack[sp - 1] = ((Double) left).intValue() >> ((Double) right).intValue();
+                            break;
+                        }
+                        case OpCode.POWER: {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            checkNumberOperands(proto, ip, left, right);
+                            stack[sp - 1] = Math.pow((Double) left, (Double) right);
+                            break;
+                        }
+                        case OpCode.NOT:
+                            stack[sp - 1] = !Interpreter.isTruthy(stack[sp - 1]);
+                            break;
+                        case OpCode.NEGATE:
+                            checkNumberOperand(proto, ip, stack[sp - 1]);
+                            stack[sp - 1] = -(double) stack[sp - 1];
+                            break;
+                        case OpCode.INCREMENT:
+                            checkNumberOperand(proto, ip, stack[sp - 1]);
+                            stack[sp - 1] = (double) stack[sp - 1] + 1.0;
+                            break;
+                        case OpCode.DECREMENT:
+                            checkNumberOperand(proto, ip, stack[sp - 1]);
+                            stack[sp - 1] = (double) stack[sp - 1] - 1.0;
+                            break;
+                        case OpCode.NOT_ASSIGNABLE:
+                            throw new RuntimeException("The operand is not a variable and cannot be assigned a new value.");
+
+                        case OpCode.JUMP:
+                            ip = code[ip];
+                            break;
+                        case OpCode.JUMP_IF_FALSE: {
+                            int target = code[ip++];
+                            Object condition = stack[--sp];
+                            stack[sp] = null;
+                            if (!Interpreter.isTruthy(condition)) ip = target;
+                            break;
+                        }
+                        case OpCode.JUMP_IF_FALSE_KEEP: {
+                            int target = code[ip++];
+                            if (!Interpreter.isTruthy(stack[sp - 1])) {
+                                ip = target;
+                            } else {
+                                stack[--sp] = null;
+                            }
+                            break;
+                        }
+                        case OpCode.JUMP_IF_TRUE_KEEP: {
+                            int target = code[ip++];
+                            if (Interpreter.isTruthy(stack[sp - 1])) {
+                                ip = target;
+                            } else {
+                                stack[--sp] = null;
+                            }
+                            break;
+                        }
+
+                        case OpCode.INVOKE: {
+                            PropertyCache cache = (PropertyCache) constants[code[ip++]];
+                            int argCount = code[ip++];
+                            int calleeSlot = sp - argCount - 1;
+                            Object receiver = stack[calleeSlot];
+                            JLangFunction method = cache.method(receiver);
+                            boolean pushed;
+                            if (method != null) {
+                                pushed = invoke(proto, ip, frame, method, argCount);
+                            } else {
+                                stack[calleeSlot] = cache.get(receiver);
+                                pushed = call(proto, ip, frame, argCount);
+                            }
+                            if (pushed) {
+                                frame = frames[frameCount - 1];
+                                proto = frame.closure.proto;
+                                code = proto.code;
+                                constants = proto.constants;
+                                base = frame.base;
+                                ip = 0;
+                            }
+                            break;
+                        }
+                        case OpCode.SUPER_INVOKE: {
+                            Token name = (Token) constants[code[ip++]];
+                            int argCount = code[ip++];
+                            JLangClass klass = (JLangClass) stack[--sp];
+                            stack[sp] = null;
+                            JLangFunction method = klass.findSuperMethod(name.lexeme);
+                            if (method == null) {
+                                throw new RuntimeError(name, "Undefined method '" + name.lexeme + "' for superclass.");
+                            }
+                            if (invoke(proto, ip, frame, method, argCount)) {
+                                frame = frames[frameCount - 1];
+                                proto = frame.closure.proto;
+                                code = proto.code;
+                                constants = proto.constants;
+                                base = frame.base;
+                                ip = 0;
+                            }
+                            break;
+                        }
+                        case OpCode.CALL: {
+                            int argCount = code[ip++];
+                            if (call(proto, ip, frame, argCount)) {
+                                frame = frames[frameCount - 1];
+                                proto = frame.closure.proto;
+                                code = proto.code;
+                                constants = proto.constants;
+                                base = frame.base;
+                                ip = 0;
+                            }
+                            break;
+                        }
+                        case OpCode.CLOSURE: {
+                            FunctionProto function = (FunctionProto) constants[code[ip++]];
+                            Upvalue[] upvalues = function.upvalueCount == 0 ? NO_UPVALUES : new Upvalue[function.upvalueCount];
+                            for (int i = 0; i < upvalues.length; i++) {
+                                boolean isLocal = code[ip++] == 1;
+                                int index = code[ip++];
+                                upvalues[i] = isLocal ? captureUpvalue(base + index) : frame.closure.upvalues[index];
+                            }
+                            stack[sp++] = new VMClosure(this, function, upvalues, null);
+                            break;
+                        }
+                        case OpCode.RETURN: {
+                            Object result = stack[--sp];
+                            if (frame.returnsReceiver) result = stack[base];
+                            closeUpvalues(base);
+                            Arrays.fill(stack, base, sp + 1, null);
+                            sp = base;
+                            frameCount--;
+                            if (frameCount == baseFrame) return result;
+                            stack[sp++] = result;
+                            frame = frames[frameCount - 1];
+                            proto = frame.closure.proto;
+                            code = proto.code;
+                            constants = proto.constants;
+                            base = frame.base;
+                            ip = frame.ip;
+                            break;
+                        }
+
+                        case OpCode.CLASS: {
+                            String name = (String) constants[code[ip++]];
+                            int parentCount = code[ip++];
+                            boolean anonymous = code[ip++] == 1;
+                            List<JLangClass> superclasses = new ArrayList<>();
+                            for (int i = sp - parentCount; i < sp; i++) {
+                                if (!(stack[i] instanceof JLangClass)) {
+                                    throw new RuntimeError(token(proto, ip), "Superclass must be a class.");
+                                }
+                                superclasses.add((JLangClass) stack[i]);
+                                stack[i] = null;
+                            }
+                            sp -= parentCount;
+                            Map<String, JLangFunction> methods = new HashMap<>();
+                            if (anonymous) {
+                                // anonymous classes copy their parents' methods down
+                                for (JLangClass superclass : superclasses) {
+                                    for (Map.Entry<String, JLangFunction> method : superclass.methods.entrySet()) {
+                                        methods.putIfAbsent(method.getKey(), method.getValue());
+                                    }
+                                }
+                            }
+                            stack[sp++] = new JLangClass(name, superclasses, methods);
+                            break;
+                        }
+                        case OpCode.METHOD: {
+                            String name = (String) constants[code[ip++]];
+                            int distance = code[ip++];
+                            JLangFunction method = (JLangFunction) stack[--sp];
+                            stack[sp] = null;
+                            ((JLangClass) stack[sp - distance]).defineMethod(name, method);
+                            break;
+                        }
+
+                        case OpCode.ARRAY: {
+                            int count = code[ip++];
+                            Object[] elements = new Object[count];
+                            for (int i = 0; i < count; i++) {
+                                elements[i] = stack[sp - count + i];
+                                stack[sp - count + i] = null;
+                            }
+                            sp -= count;
+                            stack[sp++] = new JLangArray(elements);
+                            break;
+                        }
+                        case OpCode.INDEX: {
+                            Object index = stack[--sp];
+                            stack[sp] = null;
+                            stack[sp - 1] = index(stack[sp - 1], index);
+                            break;
+                        }
+                        case OpCode.OBJECT: {
+                            Token[] keys = (Token[]) constants[code[ip++]];
+                            JLangClass objectClass = (JLangClass) globals.valueOf("Object");
+                            JLangBaseObject object = new JLangBaseObject(objectClass);
+                            int first = sp - keys.length;
+                            for (int i = 0; i < keys.length; i++) {
+                                object.set(keys[i], stack[first + i]);
+                                stack[first + i] = null;
+                            }
+                            sp = first;
+                            stack[sp++] = object;
+                            break;
+                        }
+                        case OpCode.PRINT:
+                            Output.println(Interpreter.stringify(stack[--sp]));
+                            stack[sp] = null;
+                            break;
+                        case OpCode.PRINT_VALUE:
+                            Output.println(Interpreter.stringify(stack[sp - 1]));
+                            break;
+
+                        case OpCode.TRY_BEGIN:
+                            pushHandler(frameCount - 1, code[ip++], sp);
+                            break;
+                        case OpCode.TRY_END:
+                            handlerCount--;
+                            break;
+                        case OpCode.CATCH_TEST: {
+                            String type = (String) constants[code[ip++]];
+                            int target = code[ip++];
+                            if (!stack[sp - 1].getClass().getSimpleName().equals(type)) ip = target;
+                            break;
+                        }
+                        case OpCode.THROW:
+                            throw (RuntimeException) stack[--sp];
+
+                        default:
+                            throw new IllegalStateException("Unknown opcode " + code[ip - 1] + ".");
+                    }
+                }
+            } catch (RuntimeException exception) {
+                if (handlerCount == handlerBase) {
+                    // not ours to handle: drop every frame this run pushed
+                    int entry = frames[baseFrame].base;
+                    closeUpvalues(entry);
+                    Arrays.fill(stack, entry, sp, null);
+                    sp = entry;
+                    frameCount = baseFrame;
+                    throw exception;
+                }
+                handlerCount--;
+                int handlerStack = handlerStacks[handlerCount];
+                closeUpvalues(handlerStack);
+                Arrays.fill(stack, handlerStack, sp, null);
+                sp = handlerStack;
+                stack[sp++] = exception;
+                frameCount = handlerFrames[handlerCount] + 1;
+                frame = frames[frameCount - 1];
+                proto = frame.closure.proto;
+                code = proto.code;
+                constants = proto.constants;
+                base = frame.base;
+                ip = handlerTargets[handlerCount];
+            }
+        }
+    }
+
+    private void pushHandler(int frame, int target, int stackHeight) {
+        if (handlerCount == handlerFrames.length) {
+            handlerFrames = Arrays.copyOf(handlerFrames, handlerCount * 2);
+            handlerTargets = Arrays.copyOf(handlerTargets, handlerCount * 2);
+            handlerStacks = Arrays.copyOf(handlerStacks, handlerCount * 2);
+        }
+        handlerFrames[handlerCount] = frame;
+        handlerTargets[handlerCount] = target;
+        handlerStacks[handlerCount] = stackHeight;
+        handlerCount++;
+    }
+
+    // Calls a method on the receiver sitting below its arguments. A closure
+    // of this VM gets a frame whose 'this' is that slot and true comes back,
+    // like call(); any other method is bound and called the way call() does.
+    private boolean invoke(FunctionProto proto, int ip, CallFrame frame, JLangFunction method, int argCount) {
+        int calleeSlot = sp - argCount - 1;
+        if (method instanceof VMClosure && ((VMClosure) method).vm == this) {
+            VMClosure closure = (VMClosure) method;
+            checkArity(proto, ip, closure.proto.arity, argCount);
+            frame.ip = ip;
+            pushFrame(closure, calleeSlot, false);
+            return true;
+        }
+        stack[calleeSlot] = method.bind((JLangInstance) stack[calleeSlot]);
+        return call(proto, ip, frame, argCount);
+    }
+
+    // Calls the callee sitting below its arguments on the stack. A closure
+    // of this VM, or a class whose init is one, gets a frame pushed and true
+    // comes back, so run() goes on in that frame; anything else is called
+    // right away and leaves its result in the callee's slot.
+    private boolean call(FunctionProto proto, int ip, CallFrame frame, int argCount) {
+        int calleeSlot = sp - argCount - 1;
+        Object callee = stack[calleeSlot];
+        if (callee instanceof VMClosure && ((VMClosure) callee).vm == this) {
+            VMClosure closure = (VMClosure) callee;
+            checkArity(proto, ip, closure.proto.arity, argCount);
+            if (closure.receiver != null) stack[calleeSlot] = closure.receiver;
+            frame.ip = ip;
+            pushFrame(closure, calleeSlot, false);
+            return true;
+        }
+        if (callee != null && callee.getClass() == JLangClass.class) {
+            JLangClass klass = (JLangClass) callee;
+            JLangFunction initializer = klass.findMethod(JLangClass.CLASS_INITIALIZATION_FUNCTION_NAME);
+            if (initializer instanceof VMClosure && ((VMClosure) initializer).vm == this) {
+                VMClosure closure = (VMClosure) initializer;
+                checkArity(proto, ip, closure.proto.arity, argCount);
+                stack[calleeSlot] = new JLangInstance(klass);
+                frame.ip = ip;
+                pushFrame(closure, calleeSlot, true);
+                return true;
+            }
+        }
+        frame.ip = ip;
+        stack[calleeSlot] = callHost(proto, ip, callee, argCount);
+        for (int i = calleeSlot + 1; i < sp; i++) stack[i] = null;
+        sp = calleeSlot + 1;
+        return false;
+    }
+
+    private Object callHost(FunctionProto proto, int ip, Object callee, int argCount) {
+        if (!(callee instanceof JLangCallable)) {
+            throw new RuntimeError(token(proto, ip), "Can only call functions and classes.");
+        }
+        JLangCallable function = (JLangCallable) callee;
+        if (argCount != function.arity() && function.arity() != -1) {
+            throw new RuntimeError(token(proto, ip), "Expected " +
+            function.arity() + " arguments but got " + argCount + ".");
+        }
+        try {
+            return function.call(interpreter, Arrays.copyOfRange(stack, sp - argCount, sp));
+        } catch (InvalidArgumentsException e) {
+            throw new RuntimeError(new Token(TokenType.FUN, "", null, 1), e.getMessage());
+        }
+    }
+
+    private Object index(Object array, Object index) {
+        if (index instanceof Double) {
+            index = ((Double) index).intValue();
+        } else {
+            throw new RuntimeException("Array index must be an integer.");
+        }
+        if (array instanceof JLangArray) {
+            try {
+                return ((JLangArray) array).getItem((Integer) index);
+            } catch (IndexOutOfBoundsException e) {
+                throw new RuntimeException("Array of length " + ((JLangArray) array).size() + " index " + index + " out of bounds");
+            }
+        }
+        if (array instanceof JLangString) {
+            try {
+                return ((JLangString) array).getItem((int) index);
+            } catch (IndexOutOfBoundsException e) {
+                throw new RuntimeException("String of length " + ((JLangString) array).length() + " index " + index + " out of bounds");
+            }
+        }
+        if (array instanceof JLangRange) {
+            try {
+                return ((JLangRange) array).getItem((int) index);
+            } catch (IndexOutOfBoundsException e) {
+                throw new RuntimeException("Range of length " + ((JLangRange) array).length() + " index " + index + " out of bounds");
+            }
+        }
+        throw new RuntimeException("Only arrays are accessible by index.");
+    }
+
+    private Object add(FunctionProto proto, int ip, Object left, Object right) {
+        if (left instanceof JLangString && right instanceof JLangString) {
+            return JLangString.concat((JLangString) left, (JLangString) right);
+        }
+        if (left instanceof JLangChar && right instanceof JLangChar) {
+            return new JLangString(String.valueOf(((JLangChar) left).getValue()) + ((JLangChar) right).getValue());
+        }
+        if (left instanceof JLangString) {
+            return JLangString.concat((JLangString) left, new JLangString(Interpreter.stringify(right)));
+        }
+        if (right instanceof JLangString) {
+            return JLangString.concat(new JLangString(Interpreter.stringify(left)), (JLangString) right);
+        }
+        throw new RuntimeError(token(proto, ip), "Operands must be two numbers or at least one string.");
+    }
+
+    private void checkArity(FunctionProto proto, int ip, int arity, int argCount) {
+        if (argCount != arity) {
+            throw new RuntimeError(token(proto, ip), "Expected " +
+            arity + " arguments but got " + argCount + ".");
+        }
+    }
+
+    private void checkNumberOperand(FunctionProto proto, int ip, Object operand) {
+        if (operand instanceof Double) return;
+        throw new RuntimeError(token(proto, ip), "Operand must be a number.");
+    }
+
+    private void checkNumberOperands(FunctionProto proto, int ip, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) return;
+        throw new RuntimeError(token(proto, ip), "Operands must be numbers.");
+    }
+
+    // Errors only need a line; ip already points past the failing instruction.
+    private static Token token(FunctionProto proto, int ip) {
+        return new Token(TokenType.IDENTIFIER, "", null, proto.lines[ip - 1]);
+    }
+
+    private RuntimeError error(int line, String message) {
+        return new RuntimeError(new Token(TokenType.IDENTIFIER, "", null, line), message);
+    }
+}
@@ -0,0 +1,67 @@
+package vm;
+
+import java.util.List;
+
+import compiler.FunctionProto;
+import interpreter.Interpreter;
+import interpreter.callable.JLangFunction;
+import interpreter.klass.JLangObject;
+import resolver.FunctionType;
+
+// A compiled function together with its captured upvalues. It extends
+// JLangFunction so VM methods can live in the usual JLangClass method tables
+// and be called back from the built-ins.
+public class VMClosure extends JLangFunction {
+    final VM vm;
+    final FunctionProto proto;
+    final Upvalue[] upvalues;
+    final Object receiver;
+
+    VMClosure(VM vm, FunctionProto proto, Upvalue[] upvalues, Object receiver) {
+        super(null, null, proto.type == FunctionType.INITIALIZER);
+        this.vm = vm;
+        this.proto = proto;
+        this.upvalues = upvalues;
+        this.receiver = receiver;
+    }
+
+    @Override
+    public VMClosure bind(JLangObject instance) {
+        return new VMClosure(vm, proto, upvalues, instance);
+    }
+
+    @Override
+    public int arity() {
+        return proto.arity;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return vm.callFromHost(this, receiver, arguments.toArray());
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments) {
+        return vm.callFromHost(this, receiver, arguments);
+    }
+
+    // A method called on an instance from Java, JLangClass.call running
+    // init for one: the receiver goes in the frame's first slot, the way
+    // INVOKE leaves it there, so no bound copy is made.
+    @Override
+    public Object callOn(Interpreter interpreter, Object receiver, Object[] arguments) {
+        return vm.callFromHost(this, receiver, arguments);
+    }
+
+    // The same name the Interpreter's functions report.
+    @Override
+    public String typeName() {
+        return proto.type == FunctionType.LAMBDA ? "JLangAnonymousFunction" : "JLangFunction";
+    }
+
+    @Override
+    public String toString() {
+        if (proto.type == FunctionType.LAMBDA) return "<fn anonymous >";
+        return "<fn " + proto.name + ">";
+    }
+}